@@ -0,0 +1,65 @@
+package com.qiniu.android.http;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.qiniu.android.BaseTest;
+import com.qiniu.android.common.FixedZone;
+import com.qiniu.android.http.networkStatus.NetworkStatusManager;
+import com.qiniu.android.http.request.IUploadServer;
+import com.qiniu.android.http.request.UploadRequestState;
+import com.qiniu.android.http.serverRegion.UploadDomainRegion;
+import com.qiniu.android.http.serverRegion.UploadServerFreezeUtil;
+import com.qiniu.android.storage.Configuration;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(AndroidJUnit4.class)
+public class NetworkContextTest extends BaseTest {
+
+    @Test
+    public void testShared() {
+        assertTrue(NetworkContext.shared() == NetworkContext.shared());
+        assertTrue(UploadServerFreezeUtil.globalHttp2Freezer() == NetworkContext.shared().getHttp2Freezer());
+        assertTrue(NetworkStatusManager.getInstance() == NetworkContext.shared().getNetworkStatusManager());
+
+        Configuration config = new Configuration.Builder().build();
+        assertTrue(NetworkContext.shared() == config.networkContext);
+
+        NetworkContext context = new NetworkContext();
+        config = new Configuration.Builder().networkContext(context).build();
+        assertTrue(context == config.networkContext);
+    }
+
+    @Test
+    public void testIsolation() {
+        NetworkContext contextA = new NetworkContext();
+        NetworkContext contextB = new NetworkContext();
+
+        String type = UploadServerFreezeUtil.getFrozenType("isolation-a.test.com", null);
+        contextA.getHttp2Freezer().freezeType(type, 100);
+        assertTrue(contextA.getHttp2Freezer().isTypeFrozen(type));
+        assertFalse(contextB.getHttp2Freezer().isTypeFrozen(type));
+        assertFalse(NetworkContext.shared().getHttp2Freezer().isTypeFrozen(type));
+
+        String statusType = NetworkStatusManager.getNetworkStatusType(IUploadServer.HttpVersion2, "isolation-a.test.com", null);
+        contextA.getNetworkStatusManager().updateNetworkStatus(statusType, 10);
+        assertEquals(10, contextA.getNetworkStatusManager().getNetworkStatus(statusType).getSpeed());
+        assertTrue(contextB.getNetworkStatusManager().getNetworkStatus(statusType).getSpeed() != 10);
+
+        // 同一 NetworkContext 的 region 共享冻结信息
+        FixedZone zone = new FixedZone(new String[]{"isolation-a.test.com", "isolation-b.test.com"});
+        UploadRequestState state = new UploadRequestState();
+        state.setUseOldServer(false);
+
+        UploadDomainRegion regionA = new UploadDomainRegion(contextA);
+        regionA.setupRegionData(zone.getZonesInfo(null).zonesInfo.get(0));
+        assertEquals("isolation-b.test.com", regionA.getNextServer(state, null, null).getHost());
+
+        UploadDomainRegion regionB = new UploadDomainRegion(contextB);
+        regionB.setupRegionData(zone.getZonesInfo(null).zonesInfo.get(0));
+        assertEquals("isolation-a.test.com", regionB.getNextServer(state, null, null).getHost());
+
+        contextA.getHttp2Freezer().unfreezeType(type);
+    }
+}
@@ -6,6 +6,7 @@ import com.qiniu.android.TestConfig;
 import com.qiniu.android.common.AutoZone;
 import com.qiniu.android.common.FixedZone;
 import com.qiniu.android.BaseTest;
+import com.qiniu.android.storage.GlobalConfiguration;
 import com.qiniu.android.storage.UpToken;
 
 import org.junit.Before;
@@ -85,6 +86,64 @@ public class DnsApiTest extends BaseTest {
         assertTrue(addressList.size() > 0);
     }
 
+    @Test
+    public void testConcurrentPreFetch() {
+
+        final String[] hosts = new String[]{"upload.qiniup.com", "up.qiniup.com", "upload-z1.qiniup.com", "uc.qbox.me"};
+        GlobalConfiguration.getInstance().dnsPrefetchConcurrently = true;
+
+        final DnsPrefetcher dnsPrefetcher = DnsPrefetcher.getInstance();
+        dnsPrefetcher.clearMemoryCache();
+        dnsPrefetcher.addPreFetchHosts(hosts);
+        dnsPrefetcher.checkWhetherCachedDnsValid();
+
+        wait(new WaitConditional() {
+            @Override
+            public boolean shouldWait() {
+                for (String host : hosts) {
+                    List list = dnsPrefetcher.getInetAddressByHost(host);
+                    if (list == null || list.size() == 0) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+        }, 60);
+
+        GlobalConfiguration.getInstance().dnsPrefetchConcurrently = false;
+
+        for (String host : hosts) {
+            List addressList = dnsPrefetcher.getInetAddressByHost(host);
+            assertTrue(host, addressList != null && addressList.size() > 0);
+        }
+    }
+
+    @Test
+    public void testRefreshInBackground() {
+
+        final String host = "upload-na0.qiniup.com";
+        final DnsPrefetcher dnsPrefetcher = DnsPrefetcher.getInstance();
+        dnsPrefetcher.clearMemoryCache();
+
+        long missCount = dnsPrefetcher.getCacheMissCount();
+        assertNull(dnsPrefetcher.getInetAddressByHost(host));
+        assertEquals(missCount + 1, dnsPrefetcher.getCacheMissCount());
+
+        // 未命中时在后台解析
+        wait(new WaitConditional() {
+            @Override
+            public boolean shouldWait() {
+                List list = dnsPrefetcher.getInetAddressByHost(host);
+                return list == null || list.size() == 0;
+            }
+        }, 60);
+
+        long hitCount = dnsPrefetcher.getCacheHitCount() + dnsPrefetcher.getCacheStaleCount();
+        List addressList = dnsPrefetcher.getInetAddressByHost(host);
+        assertTrue(addressList != null && addressList.size() > 0);
+        assertEquals(hitCount + 1, dnsPrefetcher.getCacheHitCount() + dnsPrefetcher.getCacheStaleCount());
+    }
+
     @Test
     public void testMutiThreadPrefetch(){
 
@@ -9,7 +9,12 @@ import com.qiniu.android.utils.LogUtil;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 
 @RunWith(AndroidJUnit4.class)
 public class DnsCacheFileTest extends BaseTest {
@@ -63,4 +68,52 @@ public class DnsCacheFileTest extends BaseTest {
         assertTrue(dataAfter == null);
 
     }
+
+    @Test
+    public void testTempFile() throws IOException {
+        DnsCacheFile file = new DnsCacheFile(GlobalConfiguration.getInstance().dnsCacheDir);
+        file.set("key", "123".getBytes());
+
+        assertTrue(new File(file.directory, "key").exists());
+        assertFalse(new File(file.directory, "key.tmp").exists());
+
+        file.del("key");
+    }
+
+    @Test
+    public void testBinaryData() {
+        String host = "upload.qiniup.com";
+        List<IDnsNetworkAddress> addressList = new ArrayList<>();
+        addressList.add(new DnsNetworkAddress(host, "1.1.1.1", 120L, DnsSource.System, 1600000000L));
+        addressList.add(new DnsNetworkAddress(host, "2.2.2.2", null, DnsSource.Doh, null));
+        ConcurrentHashMap<String, List<IDnsNetworkAddress>> info = new ConcurrentHashMap<>();
+        info.put(host, addressList);
+        info.put("up.qiniup.com", Arrays.<IDnsNetworkAddress>asList(new DnsNetworkAddress("up.qiniup.com", "3.3.3.3", 60L, DnsSource.System, 1600000000L)));
+
+        DnsCacheInfo cacheInfo = new DnsCacheInfo("1600000000", "192.168.1.2", info);
+        byte[] data = cacheInfo.toData();
+        assertTrue(data.length < cacheInfo.toJsonData().length);
+
+        DnsCacheInfo recoveredInfo = DnsCacheInfo.createDnsCacheInfoByData(data);
+        assertNotNull(recoveredInfo);
+        assertEquals("192.168.1.2", recoveredInfo.getLocalIp());
+
+        List<IDnsNetworkAddress> recoveredList = recoveredInfo.takeAddressList(host);
+        assertEquals(2, recoveredList.size());
+        assertEquals("1.1.1.1", recoveredList.get(0).getIpValue());
+        assertEquals(120L, recoveredList.get(0).getTtlValue().longValue());
+        assertEquals(DnsSource.System, recoveredList.get(0).getSourceValue());
+        assertEquals("2.2.2.2", recoveredList.get(1).getIpValue());
+        assertNull(recoveredList.get(1).getTtlValue());
+        assertNull(recoveredInfo.takeAddressList(host));
+        assertEquals(1, recoveredInfo.getInfo().size());
+
+        // 旧的 json 格式仍可读取
+        recoveredInfo = DnsCacheInfo.createDnsCacheInfoByData(cacheInfo.toJsonData());
+        assertNotNull(recoveredInfo);
+        assertEquals(2, recoveredInfo.getInfo().size());
+
+        // 数据不完整时丢弃
+        assertNull(DnsCacheInfo.createDnsCacheInfoByData(Arrays.copyOf(data, data.length - 1)));
+    }
 }
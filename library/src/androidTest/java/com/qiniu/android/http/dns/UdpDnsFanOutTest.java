@@ -0,0 +1,139 @@
+package com.qiniu.android.http.dns;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.qiniu.android.BaseTest;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.List;
+
+@RunWith(AndroidJUnit4.class)
+public class UdpDnsFanOutTest extends BaseTest {
+
+    @Test
+    public void testFirstAnswer() throws Exception {
+        UdpDnsFanOut.clearServerStats();
+
+        StubServer slowServer = new StubServer(new byte[]{1, 1, 1, 1}, 1500);
+        StubServer fastServer = new StubServer(new byte[]{2, 2, 2, 2}, 0);
+        UdpDnsFanOut resolver = new UdpDnsFanOut(Arrays.asList(slowServer.address, fastServer.address), 3000);
+
+        long startTime = System.currentTimeMillis();
+        List<IDnsNetworkAddress> addressList = resolver.lookup("upload.qiniup.com");
+        long duration = System.currentTimeMillis() - startTime;
+
+        assertTrue(addressList != null && addressList.size() == 1);
+        assertEquals("2.2.2.2", addressList.get(0).getIpValue());
+        assertEquals("upload.qiniup.com", addressList.get(0).getHostValue());
+        assertTrue("duration:" + duration, duration < 1000);
+        assertTrue(UdpDnsFanOut.getServerResponseTime(fastServer.address) > 0);
+        assertTrue(UdpDnsFanOut.getServerResponseTime(slowServer.address) >= UdpDnsFanOut.getServerResponseTime(fastServer.address));
+
+        slowServer.close();
+        fastServer.close();
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        UdpDnsFanOut.clearServerStats();
+
+        // 不响应的 server
+        StubServer silentServer = new StubServer(null, 0);
+        UdpDnsFanOut resolver = new UdpDnsFanOut(Arrays.asList(silentServer.address), 500);
+
+        long startTime = System.currentTimeMillis();
+        List<IDnsNetworkAddress> addressList = resolver.lookup("upload.qiniup.com");
+        long duration = System.currentTimeMillis() - startTime;
+
+        assertNull(addressList);
+        assertTrue("duration:" + duration, duration >= 400 && duration < 2000);
+
+        silentServer.close();
+    }
+
+    @Test
+    public void testEmptyAnswer() throws Exception {
+        UdpDnsFanOut.clearServerStats();
+
+        // 响应 NXDOMAIN 的 server
+        StubServer emptyServer = new StubServer(new byte[0], 0);
+        UdpDnsFanOut resolver = new UdpDnsFanOut(Arrays.asList(emptyServer.address), 3000);
+
+        long startTime = System.currentTimeMillis();
+        for (int i = 0; i < 5; i++) {
+            assertNull(resolver.lookup("upload.qiniup.com"));
+        }
+        long duration = System.currentTimeMillis() - startTime;
+
+        // 已响应，不等待超时，也不记为失败
+        assertTrue("duration:" + duration, duration < 3000);
+        assertTrue(UdpDnsFanOut.getServerResponseTime(emptyServer.address) > 0);
+
+        emptyServer.close();
+    }
+
+    private static class StubServer {
+
+        private final DatagramSocket socket;
+        private final InetSocketAddress address;
+
+        private StubServer(final byte[] ip, final long delay) throws IOException {
+            socket = new DatagramSocket(0, InetAddress.getByName("127.0.0.1"));
+            address = new InetSocketAddress("127.0.0.1", socket.getLocalPort());
+
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    byte[] buffer = new byte[512];
+                    while (!socket.isClosed()) {
+                        try {
+                            DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+                            socket.receive(packet);
+                            if (ip == null) {
+                                continue;
+                            }
+                            if (delay > 0) {
+                                Thread.sleep(delay);
+                            }
+                            byte[] response = createResponse(buffer, packet.getLength(), ip);
+                            socket.send(new DatagramPacket(response, response.length, packet.getSocketAddress()));
+                        } catch (Exception ignored) {
+                        }
+                    }
+                }
+            }).start();
+        }
+
+        // 复制请求，设置响应标志并追加一条 A 记录，ip 为空时响应 NXDOMAIN
+        private static byte[] createResponse(byte[] query, int length, byte[] ip) {
+            if (ip.length == 0) {
+                byte[] response = new byte[length];
+                System.arraycopy(query, 0, response, 0, length);
+                response[2] = (byte) 0x81;
+                response[3] = (byte) 0x83;
+                return response;
+            }
+
+            byte[] response = new byte[length + 16];
+            System.arraycopy(query, 0, response, 0, length);
+            response[2] = (byte) 0x81;
+            response[3] = (byte) 0x80;
+            response[7] = 1;
+            byte[] answer = new byte[]{(byte) 0xC0, 0x0C, 0, 1, 0, 1, 0, 0, 0x02, 0x58, 0, 4, ip[0], ip[1], ip[2], ip[3]};
+            System.arraycopy(answer, 0, response, length, answer.length);
+            return response;
+        }
+
+        private void close() {
+            socket.close();
+        }
+    }
+}
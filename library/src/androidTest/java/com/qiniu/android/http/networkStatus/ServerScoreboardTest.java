@@ -0,0 +1,67 @@
+package com.qiniu.android.http.networkStatus;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.qiniu.android.BaseTest;
+import com.qiniu.android.http.request.IUploadServer;
+import com.qiniu.android.http.serverRegion.UploadServer;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(AndroidJUnit4.class)
+public class ServerScoreboardTest extends BaseTest {
+
+    @Test
+    public void testScore() {
+        ServerScoreboard scoreboard = ServerScoreboard.getInstance();
+        String host = "scoreboard.test.com";
+
+        scoreboard.recordSuccess(IUploadServer.HttpVersion2, host, "1.1.1.1", 50);
+        scoreboard.recordThroughput(IUploadServer.HttpVersion2, host, "1.1.1.1", 2000);
+        scoreboard.recordFailure(IUploadServer.HttpVersion2, host, "2.2.2.2");
+
+        ServerScoreboard.ServerScore fastScore = scoreboard.getScore(IUploadServer.HttpVersion2, host, "1.1.1.1");
+        ServerScoreboard.ServerScore failedScore = scoreboard.getScore(IUploadServer.HttpVersion2, host, "2.2.2.2");
+        assertTrue(fastScore.getRtt() < ServerScoreboard.DefaultRtt);
+        assertTrue(fastScore.getThroughput() > ServerScoreboard.DefaultThroughput);
+        assertTrue(fastScore.getFailureRate() < 0.001);
+        assertTrue(failedScore.getFailureRate() > 0);
+        assertTrue(fastScore.getScore() > failedScore.getScore());
+        assertNull(scoreboard.getScore(IUploadServer.HttpVersion3, host, "1.1.1.1"));
+    }
+
+    @Test
+    public void testChooseServer() {
+        ServerScoreboard scoreboard = ServerScoreboard.getInstance();
+        String host = "scoreboard.choose.test.com";
+        for (int i = 0; i < 5; i++) {
+            scoreboard.recordThroughput(IUploadServer.HttpVersion2, host, "1.1.1.1", 5000);
+            scoreboard.recordFailure(IUploadServer.HttpVersion2, host, "2.2.2.2");
+        }
+
+        List<UploadServer> servers = new ArrayList<>();
+        servers.add(createServer(host, "2.2.2.2"));
+        servers.add(createServer(host, "1.1.1.1"));
+
+        int fastCount = 0;
+        for (int i = 0; i < 100; i++) {
+            UploadServer server = scoreboard.chooseServer(servers);
+            if ("1.1.1.1".equals(server.getIp())) {
+                fastCount++;
+            }
+        }
+        assertTrue("fast server chosen:" + fastCount, fastCount > 90);
+
+        assertNull(scoreboard.chooseServer(new ArrayList<UploadServer>()));
+    }
+
+    private UploadServer createServer(String host, String ip) {
+        UploadServer server = new UploadServer(host, host, ip, null, null);
+        server.setHttpVersion(IUploadServer.HttpVersion2);
+        return server;
+    }
+}
@@ -0,0 +1,58 @@
+package com.qiniu.android.http.request;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.qiniu.android.BaseTest;
+import com.qiniu.android.storage.Configuration;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(AndroidJUnit4.class)
+public class RetryBackoffTest extends BaseTest {
+
+    @Test
+    public void testDelay() {
+        Configuration config = new Configuration.Builder().retryInterval(100).build();
+        assertEquals("retry:1", 100, RetryBackoff.getDelay(config, 1));
+        assertEquals("retry:5", 100, RetryBackoff.getDelay(config, 5));
+
+        config = new Configuration.Builder()
+                .retryInterval(100)
+                .useRetryBackoff(true)
+                .retryMaxInterval(1000)
+                .build();
+        for (int i = 0; i < 100; i++) {
+            long delay = RetryBackoff.getDelay(config, 1);
+            assertTrue("delay:" + delay, delay >= 0 && delay <= 100);
+            delay = RetryBackoff.getDelay(config, 3);
+            assertTrue("delay:" + delay, delay >= 0 && delay <= 400);
+            delay = RetryBackoff.getDelay(config, 30);
+            assertTrue("delay:" + delay, delay >= 0 && delay <= 1000);
+        }
+    }
+
+    @Test
+    public void testSchedule() throws InterruptedException {
+        final int count = 200;
+        final CountDownLatch latch = new CountDownLatch(count);
+
+        // 大量等待中的重试不占用线程，调用方不阻塞
+        long startTime = System.currentTimeMillis();
+        for (int i = 0; i < count; i++) {
+            RetryBackoff.schedule(500, new Runnable() {
+                @Override
+                public void run() {
+                    latch.countDown();
+                }
+            });
+        }
+        assertTrue(System.currentTimeMillis() - startTime < 400);
+        assertTrue(latch.getCount() > 0);
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,147 @@
+package com.qiniu.android.http.request;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.qiniu.android.BaseTest;
+import com.qiniu.android.common.ZoneInfo;
+import com.qiniu.android.http.ResponseInfo;
+import com.qiniu.android.http.metrics.UploadSingleRequestMetrics;
+import com.qiniu.android.http.serverRegion.UploadServer;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.Date;
+
+@RunWith(AndroidJUnit4.class)
+public class UploadServerPinTest extends BaseTest {
+
+    @Test
+    public void testStreamLimit() {
+        UploadServerPin pin = new UploadServerPin(2);
+        UploadServer server = new UploadServer("upload.qiniup.com", "upload.qiniup.com", "1.1.1.1", null, null);
+        UploadServer otherServer = new UploadServer("upload.qiniup.com", "upload.qiniup.com", "2.2.2.2", null, null);
+
+        assertNull(pin.acquire(null));
+        UploadServerPin.Lease lease = pin.pin(server);
+        assertNotNull(lease);
+        assertNull(pin.pin(otherServer));
+
+        // 已占用 1 个，最多 2 个
+        assertEquals(server, pin.acquire(null).server);
+        assertNull(pin.acquire(null));
+
+        pin.release(lease);
+        lease = pin.acquire(null);
+        assertEquals(server, lease.server);
+
+        // 无法连接时取消固定
+        pin.unpin(server);
+        assertNull(pin.acquire(null));
+        assertNotNull(pin.pin(otherServer));
+        pin.release(lease);
+        assertEquals(otherServer, pin.acquire(null).server);
+    }
+
+    @Test
+    public void testStaleRelease() {
+        UploadServerPin pin = new UploadServerPin(1);
+        UploadServer server = new UploadServer("upload.qiniup.com", "upload.qiniup.com", "1.1.1.1", null, null);
+
+        UploadServerPin.Lease staleLease = pin.pin(server);
+        assertNotNull(staleLease);
+
+        // 重新固定同一 server 后，之前的占用不会归还到新的固定上
+        pin.reset();
+        UploadServerPin.Lease lease = pin.pin(server);
+        assertNotNull(lease);
+        pin.release(staleLease);
+        assertNull(pin.acquire(null));
+
+        pin.release(lease);
+        assertNotNull(pin.acquire(null));
+    }
+
+    @Test
+    public void testFrozenServer() {
+        UploadServerPin pin = new UploadServerPin(4);
+        UploadServer server = new UploadServer("upload.qiniup.com", "upload.qiniup.com", "1.1.1.1", null, null);
+        FrozenRegion region = new FrozenRegion();
+
+        assertNotNull(pin.pin(server));
+        assertNotNull(pin.acquire(region));
+
+        // 固定的 server 被冻结后取消固定
+        region.isFrozen = true;
+        assertNull(pin.acquire(region));
+        region.isFrozen = false;
+        assertNull(pin.acquire(region));
+    }
+
+    @Test
+    public void testHttp1Fallback() {
+        UploadServerPin pin = new UploadServerPin(16);
+        UploadServer server = new UploadServer("upload.qiniup.com", "upload.qiniup.com", "1.1.1.1", null, null);
+        assertNotNull(pin.pin(server));
+        pin.addMetrics(server, Arrays.asList(createMetrics("1.1", false), createMetrics("1.1", true)));
+
+        assertEquals("requestCount", 2, pin.getRequestCount());
+        assertEquals("reusedRequestCount", 1, pin.getReusedRequestCount());
+        assertEquals("http2RequestCount", 0, pin.getHttp2RequestCount());
+
+        // http1.1 时最多同时使用 MaxHttp1Connections 个连接
+        int count = 1;
+        while (pin.acquire(null) != null) {
+            count++;
+        }
+        assertEquals(UploadServerPin.MaxHttp1Connections, count);
+    }
+
+    private UploadSingleRequestMetrics createMetrics(String httpVersion, boolean isReused) {
+        UploadSingleRequestMetrics metrics = new UploadSingleRequestMetrics();
+        metrics.setHttpVersion(httpVersion);
+        metrics.setRequestStartDate(new Date());
+        if (!isReused) {
+            metrics.setConnectStartDate(new Date());
+        }
+        return metrics;
+    }
+
+    private static class FrozenRegion implements IUploadRegion {
+        private boolean isFrozen = false;
+
+        @Override
+        public boolean isValid() {
+            return true;
+        }
+
+        @Override
+        public boolean isEqual(IUploadRegion region) {
+            return region == this;
+        }
+
+        @Override
+        public ZoneInfo getZoneInfo() {
+            return null;
+        }
+
+        @Override
+        public void setupRegionData(ZoneInfo zoneInfo) {
+        }
+
+        @Override
+        public IUploadServer getNextServer(UploadRequestState requestState, ResponseInfo responseInfo, IUploadServer freezeServer) {
+            return null;
+        }
+
+        @Override
+        public void updateIpListFormHost(String host) {
+        }
+
+        @Override
+        public boolean isServerFrozen(IUploadServer server) {
+            return isFrozen;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.qiniu.android.http.request;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.qiniu.android.BaseTest;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.Arrays;
+
+@RunWith(AndroidJUnit4.class)
+public class UploadServerRacerTest extends BaseTest {
+
+    @Test
+    public void testRace() throws IOException {
+        // 仅监听 127.0.0.1，连接 127.0.0.2 会失败
+        ServerSocket serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        int port = serverSocket.getLocalPort();
+
+        String winner = UploadServerRacer.race(Arrays.asList("127.0.0.1", "127.0.0.2"), port, 3000);
+        assertEquals("127.0.0.1", winner);
+
+        // 前一个连接失败时立即开始下一个
+        winner = UploadServerRacer.race(Arrays.asList("127.0.0.2", "127.0.0.1"), port, 3000);
+        assertEquals("127.0.0.1", winner);
+
+        serverSocket.close();
+
+        winner = UploadServerRacer.race(Arrays.asList("127.0.0.1", "127.0.0.2"), port, 1000);
+        assertNull(winner);
+    }
+}
@@ -0,0 +1,37 @@
+package com.qiniu.android.http.request.httpclient;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.qiniu.android.BaseTest;
+import com.qiniu.android.http.request.IUploadServer;
+import com.qiniu.android.http.serverRegion.UploadServer;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(AndroidJUnit4.class)
+public class ConnectionPrewarmerTest extends BaseTest {
+
+    @Test
+    public void testPrewarm() {
+        OkHttpClientCache.evictAllConnections();
+        assertEquals(0, OkHttpClientCache.idleConnectionCount());
+
+        String host = "upload.qiniup.com";
+        List<IUploadServer> servers = new ArrayList<>();
+        servers.add(new UploadServer(host, host, null, null, null));
+        ConnectionPrewarmer.prewarm(servers, null, true, 10);
+
+        // 预热的连接空闲在连接池中
+        wait(new WaitConditional() {
+            @Override
+            public boolean shouldWait() {
+                return OkHttpClientCache.idleConnectionCount() == 0;
+            }
+        }, 30);
+        assertTrue(OkHttpClientCache.idleConnectionCount() > 0);
+    }
+}
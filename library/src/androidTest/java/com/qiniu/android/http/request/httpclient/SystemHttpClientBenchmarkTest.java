@@ -0,0 +1,69 @@
+package com.qiniu.android.http.request.httpclient;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.qiniu.android.BaseTest;
+import com.qiniu.android.http.ResponseInfo;
+import com.qiniu.android.http.metrics.UploadSingleRequestMetrics;
+import com.qiniu.android.http.request.IRequestClient;
+import com.qiniu.android.http.request.Request;
+import com.qiniu.android.utils.LogUtil;
+
+import org.json.JSONObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * 连续请求同一 Host 时，复用连接与每次新建连接的握手耗时对比
+ */
+@RunWith(AndroidJUnit4.class)
+public class SystemHttpClientBenchmarkTest extends BaseTest {
+
+    private static final int RequestCount = 10;
+    private static final String Url = "https://upload.qiniup.com/crossdomain.xml";
+
+    @Test
+    public void testConnectionReuse() {
+        // 每次请求前清空连接池，模拟不复用连接
+        long[] coldResult = requestSequentially(true);
+        logResult("new connection", coldResult);
+
+        OkHttpClientCache.evictAllConnections();
+        long[] warmResult = requestSequentially(false);
+        logResult("reuse connection", warmResult);
+
+        assertTrue("connection should be reused", warmResult[1] > 0);
+        assertTrue(warmResult[0] <= coldResult[0]);
+    }
+
+    // @return [握手总耗时，复用连接的请求数]
+    private long[] requestSequentially(boolean evictConnections) {
+        final long[] result = new long[2];
+        for (int i = 0; i < RequestCount; i++) {
+            if (evictConnections) {
+                OkHttpClientCache.evictAllConnections();
+            }
+
+            final WaitCondition waitCondition = new WaitCondition();
+            Request request = new Request(Url, Request.HttpMethodGet, null, null, 15);
+            SystemHttpClient client = new SystemHttpClient();
+            client.request(request, true, null, null, new IRequestClient.CompleteHandler() {
+                @Override
+                public void complete(ResponseInfo responseInfo, UploadSingleRequestMetrics metrics, JSONObject response) {
+                    if (metrics.getConnectStartDate() == null) {
+                        result[1]++;
+                    } else {
+                        result[0] += metrics.totalConnectTime() + metrics.totalSecureConnectTime();
+                    }
+                    waitCondition.shouldWait = false;
+                }
+            });
+            wait(waitCondition, 60);
+        }
+        return result;
+    }
+
+    private void logResult(String type, long[] result) {
+        LogUtil.i("== " + type + " requests:" + RequestCount + " handshake time:" + result[0] + "ms reused:" + result[1]);
+    }
+}
@@ -6,11 +6,20 @@ import com.qiniu.android.common.FixedZone;
 import com.qiniu.android.http.request.IUploadServer;
 import com.qiniu.android.http.request.UploadRequestState;
 import com.qiniu.android.BaseTest;
+import com.qiniu.android.http.dns.Dns;
+import com.qiniu.android.http.dns.DnsPrefetcher;
+import com.qiniu.android.http.dns.IDnsNetworkAddress;
+import com.qiniu.android.storage.GlobalConfiguration;
+import com.qiniu.android.utils.LogUtil;
 import com.qiniu.android.utils.Utils;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+
 @RunWith(AndroidJUnit4.class)
 public class UploadDomainRegionTest extends BaseTest {
 
@@ -33,4 +42,98 @@ public class UploadDomainRegionTest extends BaseTest {
         assertNotNull(server);
     }
 
+    @Test
+    public void testGetNextServerBenchmark() {
+
+        final String host = "benchmark.upload.test.com";
+        final int ipCount = 300;
+        final int requestCount = 1000;
+
+        // 每个 ip 属于不同的 ip 组
+        final List<IDnsNetworkAddress> addresses = new ArrayList<>();
+        for (int i = 0; i < ipCount; i++) {
+            addresses.add(new TestNetworkAddress(host, (10 + i / 256) + "." + (i % 256) + ".0.1"));
+        }
+        Dns dns = GlobalConfiguration.getInstance().dns;
+        GlobalConfiguration.getInstance().dns = new Dns() {
+            @Override
+            public List<IDnsNetworkAddress> lookup(String hostname) throws UnknownHostException {
+                return host.equals(hostname) ? addresses : null;
+            }
+        };
+
+        final DnsPrefetcher dnsPrefetcher = DnsPrefetcher.getInstance();
+        dnsPrefetcher.addPreFetchHosts(new String[]{host});
+        wait(new WaitConditional() {
+            @Override
+            public boolean shouldWait() {
+                List list = dnsPrefetcher.getInetAddressByHost(host);
+                return list == null || list.size() < ipCount;
+            }
+        }, 60);
+        GlobalConfiguration.getInstance().dns = dns;
+
+        // 冻结一半的 ip
+        for (int i = 0; i < ipCount; i += 2) {
+            String frozenType = UploadServerFreezeUtil.getFrozenType(host, addresses.get(i).getIpValue());
+            UploadServerFreezeUtil.globalHttp2Freezer().freezeType(frozenType, 100);
+        }
+
+        FixedZone zone = new FixedZone(new String[]{host});
+        UploadDomainRegion region = new UploadDomainRegion();
+        region.setupRegionData(zone.getZonesInfo(null).zonesInfo.get(0));
+        UploadRequestState state = new UploadRequestState();
+        state.setUseOldServer(false);
+
+        long startTime = System.nanoTime();
+        for (int i = 0; i < requestCount; i++) {
+            IUploadServer server = region.getNextServer(state, null, null);
+            assertNotNull(server);
+            String frozenType = UploadServerFreezeUtil.getFrozenType(host, server.getIp());
+            assertFalse(UploadServerFreezeUtil.globalHttp2Freezer().isTypeFrozen(frozenType));
+        }
+        long elapsedTime = (System.nanoTime() - startTime) / 1000;
+        LogUtil.i("== getNextServer ips:" + ipCount + " count:" + requestCount + " time:" + elapsedTime / requestCount + "us/op");
+
+        for (int i = 0; i < ipCount; i += 2) {
+            String frozenType = UploadServerFreezeUtil.getFrozenType(host, addresses.get(i).getIpValue());
+            UploadServerFreezeUtil.globalHttp2Freezer().unfreezeType(frozenType);
+        }
+    }
+
+    private static class TestNetworkAddress implements IDnsNetworkAddress {
+        private final String host;
+        private final String ip;
+        private final Long timestamp = Utils.currentSecondTimestamp();
+
+        private TestNetworkAddress(String host, String ip) {
+            this.host = host;
+            this.ip = ip;
+        }
+
+        @Override
+        public String getHostValue() {
+            return host;
+        }
+
+        @Override
+        public String getIpValue() {
+            return ip;
+        }
+
+        @Override
+        public Long getTtlValue() {
+            return 600L;
+        }
+
+        @Override
+        public String getSourceValue() {
+            return "customized";
+        }
+
+        @Override
+        public Long getTimestampValue() {
+            return timestamp;
+        }
+    }
 }
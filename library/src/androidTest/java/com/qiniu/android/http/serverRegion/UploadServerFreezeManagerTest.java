@@ -36,4 +36,19 @@ public class UploadServerFreezeManagerTest extends BaseTest {
         isFrozen = UploadServerFreezeManager.getInstance().isTypeFrozen(type);
         assertTrue(isFrozen == false);
     }
+
+    @Test
+    public void testExpiredFreeze() throws InterruptedException {
+
+        UploadServerFreezeManager freezeManager = new UploadServerFreezeManager();
+        freezeManager.freezeType("qiniu.com", 1);
+        assertTrue(freezeManager.isTypeFrozen("qiniu.com"));
+        assertEquals(1, freezeManager.frozenCount());
+
+        Thread.sleep(1100);
+
+        // 过期记录在查询时删除
+        assertFalse(freezeManager.isTypeFrozen("qiniu.com"));
+        assertEquals(0, freezeManager.frozenCount());
+    }
 }
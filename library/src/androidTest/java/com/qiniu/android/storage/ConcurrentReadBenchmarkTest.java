@@ -0,0 +1,88 @@
+package com.qiniu.android.storage;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.qiniu.android.BaseTest;
+import com.qiniu.android.TempFile;
+import com.qiniu.android.utils.LogUtil;
+import com.qiniu.android.utils.Utils;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 分片数据并发读取的吞吐量，对比不同并发数下读取（包括 md5 计算）的耗时；读取数据的正确性见 {@link ConcurrentReadTest}
+ */
+@RunWith(AndroidJUnit4.class)
+public class ConcurrentReadBenchmarkTest extends BaseTest {
+
+    private static final int FileKiloSize = 64 * 1024;
+    private static final int ChunkSize = 1024 * 1024;
+
+    @Test
+    public void testReadThroughput() throws IOException, InterruptedException {
+        File file = TempFile.createFile(FileKiloSize, "concurrent_read_benchmark");
+
+        int[] workerCounts = {1, 2, 4, 8};
+        for (int workerCount : workerCounts) {
+            long elapsedTime = readFile(file, workerCount);
+            double throughput = FileKiloSize / 1024.0 / Math.max(elapsedTime, 1) * 1000;
+            LogUtil.i("== concurrent read workers:" + workerCount + " time:" + elapsedTime + "ms throughput:" + String.format("%.2f", throughput) + "MB/s");
+        }
+
+        TempFile.remove(file);
+    }
+
+    private long readFile(File file, int workerCount) throws InterruptedException {
+        Configuration config = new Configuration.Builder()
+                .resumeUploadVersion(Configuration.RESUME_UPLOAD_VERSION_V2)
+                .chunkSize(ChunkSize)
+                .build();
+        UploadSourceFile source = new UploadSourceFile(file);
+        final UploadInfoV2 info = new UploadInfoV2(source, config);
+        final AtomicInteger readSize = new AtomicInteger(0);
+        final List<Exception> exceptions = new ArrayList<>();
+
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < workerCount; i++) {
+            workers.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        UploadData data = null;
+                        while ((data = info.nextUploadData()) != null) {
+                            readSize.addAndGet(data.data.remaining());
+                            data.updateState(UploadData.State.Complete);
+                        }
+                    } catch (IOException e) {
+                        synchronized (exceptions) {
+                            exceptions.add(e);
+                        }
+                    }
+                }
+            }));
+        }
+
+        long start = Utils.currentTimestamp();
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long elapsedTime = Utils.currentTimestamp() - start;
+        source.close();
+
+        String workerInfo = "workers:" + workerCount;
+        assertTrue(workerInfo + " read exception:" + exceptions, exceptions.isEmpty());
+        assertEquals(workerInfo + " total", file.length(), readSize.get());
+        assertTrue(workerInfo, info.isAllUploaded());
+        return elapsedTime;
+    }
+}
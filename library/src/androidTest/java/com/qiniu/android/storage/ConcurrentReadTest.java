@@ -0,0 +1,133 @@
+package com.qiniu.android.storage;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.qiniu.android.BaseTest;
+import com.qiniu.android.TempFile;
+import com.qiniu.android.utils.MD5;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 分片数据并发读取：不同并发数下读取的片应连续覆盖整个文件，且片数据及 md5 与顺序读取的结果一致
+ */
+@RunWith(AndroidJUnit4.class)
+public class ConcurrentReadTest extends BaseTest {
+
+    private static final int FileKiloSize = 8 * 1024 + 100;
+    private static final int ChunkSize = 1024 * 1024;
+
+    @Test
+    public void testConcurrentRead() throws IOException, InterruptedException {
+        File file = TempFile.createFile(FileKiloSize, "concurrent_read_test");
+        byte[] fileData = readFile(file);
+
+        int[] workerCounts = {1, 2, 4, 8};
+        for (int workerCount : workerCounts) {
+            checkConcurrentRead(file, fileData, workerCount);
+        }
+
+        TempFile.remove(file);
+    }
+
+    private void checkConcurrentRead(File file, byte[] fileData, int workerCount) throws InterruptedException {
+        Configuration config = new Configuration.Builder()
+                .resumeUploadVersion(Configuration.RESUME_UPLOAD_VERSION_V2)
+                .chunkSize(ChunkSize)
+                .build();
+        UploadSourceFile source = new UploadSourceFile(file);
+        final UploadInfoV2 info = new UploadInfoV2(source, config);
+        final List<UploadData> dataList = new ArrayList<>();
+        final List<byte[]> bytesList = new ArrayList<>();
+        final List<Exception> exceptions = new ArrayList<>();
+
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < workerCount; i++) {
+            workers.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        UploadData data = null;
+                        while ((data = info.nextUploadData()) != null) {
+                            ByteBuffer buffer = data.data.duplicate();
+                            byte[] bytes = new byte[buffer.remaining()];
+                            buffer.get(bytes);
+                            synchronized (dataList) {
+                                dataList.add(data);
+                                bytesList.add(bytes);
+                            }
+                            data.updateState(UploadData.State.Complete);
+                        }
+                    } catch (IOException e) {
+                        synchronized (exceptions) {
+                            exceptions.add(e);
+                        }
+                    }
+                }
+            }));
+        }
+
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        source.close();
+
+        String workerInfo = "workers:" + workerCount;
+        assertTrue(workerInfo + " read exception:" + exceptions, exceptions.isEmpty());
+        assertTrue(workerInfo, info.isAllUploaded());
+
+        // 片按 index 排列后应连续覆盖整个文件，每片数据及 md5 与文件对应位置的数据一致
+        UploadData[] sortedDataList = new UploadData[dataList.size()];
+        byte[][] sortedBytesList = new byte[dataList.size()][];
+        for (int i = 0; i < dataList.size(); i++) {
+            UploadData data = dataList.get(i);
+            assertTrue(workerInfo + " index:" + data.index, data.index < sortedDataList.length && sortedDataList[data.index] == null);
+            sortedDataList[data.index] = data;
+            sortedBytesList[data.index] = bytesList.get(i);
+        }
+
+        long offset = 0;
+        for (int i = 0; i < sortedDataList.length; i++) {
+            UploadData data = sortedDataList[i];
+            byte[] bytes = sortedBytesList[i];
+            assertEquals(workerInfo + " offset", offset, data.offset);
+            assertEquals(workerInfo + " size", data.size, bytes.length);
+
+            byte[] expected = Arrays.copyOfRange(fileData, (int) data.offset, (int) data.offset + data.size);
+            assertTrue(workerInfo + " data index:" + i, Arrays.equals(expected, bytes));
+            assertEquals(workerInfo + " md5 index:" + i, MD5.encrypt(expected), data.md5);
+            offset += data.size;
+        }
+        assertEquals(workerInfo + " total", fileData.length, offset);
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        byte[] data = new byte[(int) file.length()];
+        FileInputStream input = new FileInputStream(file);
+        try {
+            int readSize = 0;
+            while (readSize < data.length) {
+                int size = input.read(data, readSize, data.length - readSize);
+                if (size < 0) {
+                    break;
+                }
+                readSize += size;
+            }
+        } finally {
+            input.close();
+        }
+        return data;
+    }
+}
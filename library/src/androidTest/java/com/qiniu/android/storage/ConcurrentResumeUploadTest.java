@@ -100,6 +100,27 @@ public class ConcurrentResumeUploadTest extends UploadFlowTest {
         }
     }
 
+    @Test
+    public void testPrefetchV1() {
+        Configuration configuration = new Configuration.Builder()
+                .resumeUploadVersion(Configuration.RESUME_UPLOAD_VERSION_V1)
+                .useConcurrentResumeUpload(true)
+                .prefetchDepth(2)
+                .useHttps(true)
+                .build();
+        int[] sizeArray = {5000, 8000, 20000};
+        for (int size : sizeArray) {
+            String key = "android_concurrent_resume_prefetch_v1_" + size + "k";
+            try {
+                File file = TempFile.createFile(size, key);
+                uploadFileAndAssertSuccessResult(file, key, configuration, null);
+                TempFile.remove(file);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
     @Test
     public void testReuploadV1() {
         Configuration configuration = new Configuration.Builder()
@@ -263,6 +284,53 @@ public class ConcurrentResumeUploadTest extends UploadFlowTest {
         }
     }
 
+    @Test
+    public void testPrefetchV2() {
+        Configuration configuration = new Configuration.Builder()
+                .resumeUploadVersion(Configuration.RESUME_UPLOAD_VERSION_V2)
+                .useConcurrentResumeUpload(true)
+                .prefetchDepth(2)
+                .useHttps(true)
+                .chunkSize(4 * 1024 * 1024)
+                .build();
+        int[] sizeArray = {5000, 8000, 20000};
+        for (int size : sizeArray) {
+            String key = "android_concurrent_resume_prefetch_v2_" + size + "k";
+            try {
+                File file = TempFile.createFile(size, key);
+                uploadFileAndAssertSuccessResult(file, key, configuration, null);
+                TempFile.remove(file);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    @Test
+    public void testAdaptiveConcurrentTaskCountV2() {
+        Configuration configuration = new Configuration.Builder()
+                .resumeUploadVersion(Configuration.RESUME_UPLOAD_VERSION_V2)
+                .useConcurrentResumeUpload(true)
+                .useAdaptiveConcurrentTaskCount(true)
+                .concurrentTaskCount(2)
+                .maxConcurrentTaskCount(6)
+                .totalConcurrentTaskCount(4)
+                .useHttps(true)
+                .chunkSize(1024 * 1024)
+                .build();
+        int[] sizeArray = {5000, 20000};
+        for (int size : sizeArray) {
+            String key = "android_concurrent_resume_adaptive_v2_" + size + "k";
+            try {
+                File file = TempFile.createFile(size, key);
+                uploadFileAndAssertSuccessResult(file, key, configuration, null);
+                TempFile.remove(file);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
     @Test
     public void testReuploadV2() {
         Configuration configuration = new Configuration.Builder()
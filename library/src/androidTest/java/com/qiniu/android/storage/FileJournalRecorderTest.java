@@ -0,0 +1,52 @@
+package com.qiniu.android.storage;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.qiniu.android.BaseTest;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+@RunWith(AndroidJUnit4.class)
+public class FileJournalRecorderTest extends BaseTest {
+
+    @Test
+    public void testSnapshotAndRecords() throws Exception {
+        File f = File.createTempFile("qiniutest", "b");
+        FileJournalRecorder recorder = new FileJournalRecorder(f.getParent() + "/journal_test", 2);
+        String key = "journal_test_key";
+
+        recorder.del(key);
+        assertNull(recorder.get(key));
+        assertEquals(0, recorder.getRecords(key).size());
+
+        recorder.set(key, "snapshot".getBytes());
+        recorder.append(key, "a".getBytes());
+        recorder.append(key, "bb".getBytes());
+        recorder.append(key, "ccc".getBytes());
+        assertEquals("snapshot", new String(recorder.get(key)));
+        List<byte[]> records = recorder.getRecords(key);
+        assertEquals(3, records.size());
+        assertEquals("ccc", new String(records.get(2)));
+
+        // 日志末尾记录不完整时丢弃
+        File journal = new File(recorder.directory, FileRecorder.hash(key) + ".journal");
+        RandomAccessFile journalFile = new RandomAccessFile(journal, "rw");
+        journalFile.setLength(journalFile.length() - 1);
+        journalFile.close();
+        assertEquals(2, recorder.getRecords(key).size());
+
+        // 写入快照后清空日志
+        recorder.set(key, "snapshot2".getBytes());
+        assertEquals("snapshot2", new String(recorder.get(key)));
+        assertEquals(0, recorder.getRecords(key).size());
+
+        recorder.del(key);
+        assertNull(recorder.get(key));
+        assertFalse(journal.exists());
+    }
+}
@@ -97,6 +97,27 @@ public class ResumeUploadTest extends UploadFlowTest {
         }
     }
 
+    @Test
+    public void testZeroCopyV1() {
+        Configuration configuration = new Configuration.Builder()
+                .resumeUploadVersion(Configuration.RESUME_UPLOAD_VERSION_V1)
+                .useConcurrentResumeUpload(false)
+                .useZeroCopyFileRead(true)
+                .useHttps(true)
+                .build();
+        int[] sizeArray = {5000, 10000};
+        for (int size : sizeArray) {
+            String key = "android_resume_zero_copy_v1_" + size + "k";
+            try {
+                File file = TempFile.createFile(size, key);
+                uploadFileAndAssertSuccessResult(file, key, configuration, null);
+                TempFile.remove(file);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
     @Test
     public void testReuploadV1() {
         Configuration configuration = new Configuration.Builder()
@@ -290,6 +311,27 @@ public class ResumeUploadTest extends UploadFlowTest {
         }
     }
 
+    @Test
+    public void testZeroCopyV2() {
+        Configuration configuration = new Configuration.Builder()
+                .resumeUploadVersion(Configuration.RESUME_UPLOAD_VERSION_V2)
+                .useConcurrentResumeUpload(false)
+                .useZeroCopyFileRead(true)
+                .useHttps(true)
+                .build();
+        int[] sizeArray = {5000, 10000};
+        for (int size : sizeArray) {
+            String key = "android_resume_zero_copy_v2_" + size + "k";
+            try {
+                File file = TempFile.createFile(size, key);
+                uploadFileAndAssertSuccessResult(file, key, configuration, null);
+                TempFile.remove(file);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
     @Test
     public void testReuploadV2() {
         Configuration configuration = new Configuration.Builder()
@@ -0,0 +1,76 @@
+package com.qiniu.android.storage;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.qiniu.android.BaseTest;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+
+@RunWith(AndroidJUnit4.class)
+public class ShardedFileRecorderTest extends BaseTest {
+
+    @Test
+    public void testEvict() throws Exception {
+        File f = File.createTempFile("qiniutest", "b");
+        String directory = f.getParent() + "/sharded_recorder_test_" + System.currentTimeMillis();
+
+        // FileRecorder 遗留的纪录会被迁移
+        FileRecorder fileRecorder = new FileRecorder(directory);
+        fileRecorder.set("legacy", "legacy".getBytes());
+
+        ShardedFileRecorder recorder = new ShardedFileRecorder(directory, 30, 3600 * 1000);
+        assertEquals("legacy", new String(recorder.get("legacy")));
+        assertNull(fileRecorder.get("legacy"));
+
+        recorder.set("key1", "0123456789".getBytes());
+        recorder.set("key2", "0123456789".getBytes());
+        recorder.get("key1");
+
+        // 超过大小上限时删除最近最少使用的纪录
+        recorder.set("key3", "0123456789".getBytes());
+        assertNull(recorder.get("legacy"));
+        assertNotNull(recorder.get("key1"));
+        assertNotNull(recorder.get("key2"));
+        assertNotNull(recorder.get("key3"));
+        assertEquals("size", 30, recorder.totalSize());
+
+        // 重新加载索引
+        recorder = new ShardedFileRecorder(directory, 30, 3600 * 1000);
+        assertEquals(3, recorder.recordCount());
+        recorder.del("key3");
+        assertNull(recorder.get("key3"));
+        assertEquals(2, recorder.recordCount());
+
+        // 过期纪录加载时删除
+        Thread.sleep(10);
+        recorder = new ShardedFileRecorder(directory, 30, 1);
+        assertEquals(0, recorder.recordCount());
+    }
+
+    @Test
+    public void testSharedDirectory() throws Exception {
+        File f = File.createTempFile("qiniutest", "b");
+        String directory = f.getParent() + "/sharded_recorder_shared_test_" + System.currentTimeMillis();
+
+        ShardedFileRecorder recorderA = new ShardedFileRecorder(directory);
+        ShardedFileRecorder recorderB = new ShardedFileRecorder(directory);
+        assertEquals(0, recorderA.recordCount());
+        assertEquals(0, recorderB.recordCount());
+
+        // 建立索引后其他实例写入的纪录同样可以读取
+        recorderA.set("key", "data".getBytes());
+        assertEquals("data", new String(recorderB.get("key")));
+        assertEquals(1, recorderB.recordCount());
+
+        FileRecorder fileRecorder = new FileRecorder(directory);
+        fileRecorder.set("legacy", "legacy".getBytes());
+        assertEquals("legacy", new String(recorderB.get("legacy")));
+        assertNull(fileRecorder.get("legacy"));
+
+        recorderB.del("key");
+        assertNull(recorderA.get("key"));
+    }
+}
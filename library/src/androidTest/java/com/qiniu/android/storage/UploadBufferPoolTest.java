@@ -0,0 +1,203 @@
+package com.qiniu.android.storage;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.qiniu.android.BaseTest;
+import com.qiniu.android.TempFile;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+@RunWith(AndroidJUnit4.class)
+public class UploadBufferPoolTest extends BaseTest {
+
+    @Test
+    public void testBorrowAndRecycle() {
+        UploadBufferPool pool = new UploadBufferPool(4 * 1024 * 1024);
+
+        ByteBuffer buffer = pool.borrow(1024 * 1024 + 1);
+        assertEquals(0, buffer.position());
+        assertEquals(1024 * 1024 + 1, buffer.limit());
+        assertEquals(2 * 1024 * 1024, buffer.capacity());
+        assertEquals("missCount", 1, pool.missCount());
+
+        pool.recycle(buffer);
+        assertEquals("idleSize", 2 * 1024 * 1024, pool.idleSize());
+
+        // 重复归还及非缓存池的缓存会被忽略
+        pool.recycle(buffer);
+        pool.recycle(ByteBuffer.allocate(2 * 1024 * 1024));
+        assertEquals("idleSize", 2 * 1024 * 1024, pool.idleSize());
+
+        ByteBuffer reuseBuffer = pool.borrow(2 * 1024 * 1024);
+        assertTrue(reuseBuffer == buffer);
+        assertEquals("hitCount", 1, pool.hitCount());
+        assertEquals("idleSize", 0, pool.idleSize());
+
+        // 其他级别的空闲缓存在超过上限时被释放
+        pool.recycle(reuseBuffer);
+        ByteBuffer largeBuffer = pool.borrow(4 * 1024 * 1024);
+        assertEquals("allocatedSize", 4 * 1024 * 1024, pool.allocatedSize());
+        assertEquals("idleSize", 0, pool.idleSize());
+        pool.recycle(largeBuffer);
+
+        pool.trim();
+        assertEquals("allocatedSize", 0, pool.allocatedSize());
+        assertEquals("overflowCount", 0, pool.overflowCount());
+    }
+
+    @Test
+    public void testBorrowOverflow() {
+        UploadBufferPool pool = new UploadBufferPool(1024 * 1024);
+        ByteBuffer buffer = pool.borrow(1024 * 1024);
+        assertFalse(pool.couldBorrowWithinLimit(1024 * 1024));
+
+        // 超过上限时不等待，立即分配新缓存
+        long startTime = System.currentTimeMillis();
+        ByteBuffer overflowBuffer = pool.borrow(1024 * 1024);
+        long duration = System.currentTimeMillis() - startTime;
+        assertTrue("duration:" + duration, duration < 1000);
+        assertTrue(overflowBuffer != buffer);
+        assertEquals("overflowCount", 1, pool.overflowCount());
+        assertEquals("allocatedSize", 2 * 1024 * 1024, pool.allocatedSize());
+
+        // 上限内的缓存归还后保留复用，超过上限分配的缓存归还时直接释放
+        pool.recycle(buffer);
+        assertEquals("idleSize", 1024 * 1024, pool.idleSize());
+        pool.recycle(overflowBuffer);
+        assertEquals("allocatedSize", 1024 * 1024, pool.allocatedSize());
+        assertEquals("idleSize", 1024 * 1024, pool.idleSize());
+        assertTrue(pool.couldBorrowWithinLimit(1024 * 1024));
+        assertTrue(pool.borrow(1024 * 1024) == buffer);
+    }
+
+    @Test
+    public void testReserve() {
+        UploadBufferPool pool = new UploadBufferPool(2 * 1024 * 1024, directExecutor);
+        Object owner = new Object();
+        List<Integer> runTasks = new ArrayList<>();
+
+        // 读取数据时借用缓存，读取后释放预留
+        pool.reserve(owner, 1024 * 1024, task(runTasks, 0));
+        ByteBuffer buffer = pool.borrow(1024 * 1024);
+        pool.releaseReservation(1024 * 1024);
+        pool.reserve(owner, 1024 * 1024, task(runTasks, 1));
+        assertEquals(2, runTasks.size());
+
+        // 使用及预留的内存达到上限，读取等待，预读暂停
+        pool.reserve(owner, 1024 * 1024, task(runTasks, 2));
+        pool.reserve(owner, 2 * 1024 * 1024, task(runTasks, 3));
+        assertEquals(2, runTasks.size());
+        assertEquals("waitingCount", 2, pool.waitingCount());
+        assertFalse(pool.couldBorrowWithinLimit(64 * 1024));
+
+        // 预留释放后按顺序执行
+        pool.releaseReservation(1024 * 1024);
+        assertEquals(3, runTasks.size());
+        assertEquals(2, (int) runTasks.get(2));
+
+        // 缓存仍在使用，等待缓存归还
+        pool.releaseReservation(1024 * 1024);
+        assertEquals(3, runTasks.size());
+        pool.recycle(buffer);
+        assertEquals(4, runTasks.size());
+        assertEquals("reservedSize", 2 * 1024 * 1024, pool.reservedSize());
+        assertEquals("waitCount", 2, pool.waitCount());
+        assertEquals("overflowCount", 0, pool.overflowCount());
+    }
+
+    @Test
+    public void testReserveLargerThanMaxSize() {
+        UploadBufferPool pool = new UploadBufferPool(1024 * 1024, directExecutor);
+        Object owner = new Object();
+        List<Integer> runTasks = new ArrayList<>();
+
+        // 未使用任何内存时大于上限的片也可读取
+        pool.reserve(owner, 4 * 1024 * 1024, task(runTasks, 0));
+        assertEquals(1, runTasks.size());
+        pool.reserve(owner, 4 * 1024 * 1024, task(runTasks, 1));
+        assertEquals(1, runTasks.size());
+
+        pool.releaseReservation(4 * 1024 * 1024);
+        assertEquals(2, runTasks.size());
+    }
+
+    @Test
+    public void testFinish() {
+        UploadBufferPool pool = new UploadBufferPool(1024 * 1024, directExecutor);
+        Object owner = new Object();
+        Object otherOwner = new Object();
+        List<Integer> runTasks = new ArrayList<>();
+
+        pool.reserve(owner, 1024 * 1024, task(runTasks, 0));
+        pool.reserve(owner, 1024 * 1024, task(runTasks, 1));
+        pool.reserve(otherOwner, 1024 * 1024, task(runTasks, 2));
+        assertEquals(1, runTasks.size());
+
+        // 上传结束，其等待的任务立即执行，其他上传的任务继续等待
+        pool.finish(owner);
+        assertEquals(2, runTasks.size());
+        assertEquals(1, (int) runTasks.get(1));
+        assertEquals("waitingCount", 1, pool.waitingCount());
+
+        pool.releaseReservation(1024 * 1024);
+        pool.releaseReservation(1024 * 1024);
+        assertEquals(3, runTasks.size());
+    }
+
+    @Test
+    public void testReadBufferFromPool() throws IOException {
+        File file = TempFile.createFile(5 * 1024 + 3, "upload_buffer_pool_read_buffer");
+        UploadSourceFile source = new UploadSourceFile(file);
+        UploadSourceFile poolSource = new UploadSourceFile(file);
+        UploadBufferPool pool = new UploadBufferPool(8 * 1024 * 1024);
+        poolSource.setBufferPool(pool);
+
+        int dataSize = 1024 * 1024;
+        long offset = 0;
+        while (true) {
+            byte[] data = source.readData(dataSize, offset);
+            ByteBuffer buffer = poolSource.readBuffer(dataSize, offset, null);
+            if (data.length == 0) {
+                assertNull(buffer);
+                break;
+            }
+
+            assertNotNull(buffer);
+            byte[] bufferData = new byte[buffer.remaining()];
+            buffer.duplicate().get(bufferData);
+            assertTrue("offset:" + offset, Arrays.equals(data, bufferData));
+            pool.recycle(buffer);
+            offset += data.length;
+        }
+
+        assertEquals("missCount", 1, pool.missCount());
+        assertTrue(pool.hitCount() > 0);
+        source.close();
+        poolSource.close();
+    }
+
+    private static final Executor directExecutor = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private static Runnable task(final List<Integer> runTasks, final int index) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                runTasks.add(index);
+            }
+        };
+    }
+}
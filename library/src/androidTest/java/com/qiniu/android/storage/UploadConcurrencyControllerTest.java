@@ -0,0 +1,62 @@
+package com.qiniu.android.storage;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.qiniu.android.BaseTest;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(AndroidJUnit4.class)
+public class UploadConcurrencyControllerTest extends BaseTest {
+
+    private static final int MB = 1024 * 1024;
+
+    @Test
+    public void testAdditiveIncrease() {
+        UploadConcurrencyController controller = new UploadConcurrencyController(2, 1, 4);
+        assertEquals(2, controller.concurrentTaskCount());
+
+        // 约每轮（当前并发数个片）成功后并发数加 1
+        controller.updateSuccess(controller.epoch(), MB, 1000);
+        controller.updateSuccess(controller.epoch(), MB, 1000);
+        controller.updateSuccess(controller.epoch(), MB, 1000);
+        assertEquals(3, controller.concurrentTaskCount());
+
+        for (int i = 0; i < 20; i++) {
+            controller.updateSuccess(controller.epoch(), MB, 1000);
+        }
+        assertEquals(4, controller.concurrentTaskCount());
+    }
+
+    @Test
+    public void testLatencyDecrease() {
+        UploadConcurrencyController controller = new UploadConcurrencyController(4, 1, 8);
+        controller.updateSuccess(controller.epoch(), MB, 1000);
+        assertEquals(4, controller.concurrentTaskCount());
+
+        // 单位数据耗时明显变长
+        controller.updateSuccess(controller.epoch(), MB, 3000);
+        assertEquals(3, controller.concurrentTaskCount());
+    }
+
+    @Test
+    public void testFailureDecrease() {
+        UploadConcurrencyController controller = new UploadConcurrencyController(8, 1, 8);
+        int epoch = controller.epoch();
+
+        // 同一轮的多次失败只减小一次
+        controller.updateFailure(epoch);
+        controller.updateFailure(epoch);
+        controller.updateFailure(epoch);
+        assertEquals(4, controller.concurrentTaskCount());
+
+        controller.updateFailure(controller.epoch());
+        assertEquals(2, controller.concurrentTaskCount());
+
+        for (int i = 0; i < 5; i++) {
+            controller.updateFailure(controller.epoch());
+        }
+        assertEquals(1, controller.concurrentTaskCount());
+    }
+}
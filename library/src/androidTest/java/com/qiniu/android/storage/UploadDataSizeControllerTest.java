@@ -0,0 +1,87 @@
+package com.qiniu.android.storage;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.qiniu.android.BaseTest;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(AndroidJUnit4.class)
+public class UploadDataSizeControllerTest extends BaseTest {
+
+    private static final int MB = 1024 * 1024;
+
+    @Test
+    public void testInitDataSize() {
+        UploadDataSizeController controller = new UploadDataSizeController(3 * MB, MB, 16 * MB);
+        assertEquals(2 * MB, controller.dataSize());
+
+        controller = new UploadDataSizeController(64 * MB, MB, 16 * MB);
+        assertEquals(16 * MB, controller.dataSize());
+    }
+
+    @Test
+    public void testFastNetwork() {
+        UploadDataSizeController controller = new UploadDataSizeController(2 * MB, MB, 16 * MB);
+
+        // 10M/s，RTT 50ms
+        controller.updateSuccess(2 * MB, 200, 50);
+        assertEquals(16 * MB, controller.dataSize());
+    }
+
+    @Test
+    public void testSlowNetwork() {
+        UploadDataSizeController controller = new UploadDataSizeController(2 * MB, MB, 16 * MB);
+
+        // 100K/s，RTT 300ms
+        controller.updateSuccess(2 * MB, 20 * 1000, 300);
+        assertEquals(MB, controller.dataSize());
+    }
+
+    @Test
+    public void testHighRtt() {
+        UploadDataSizeController controller = new UploadDataSizeController(2 * MB, MB, 16 * MB);
+
+        // 1M/s，RTT 800ms，片上传耗时不小于 8s
+        controller.updateSuccess(2 * MB, 2 * 1000, 800);
+        assertEquals(8 * MB, controller.dataSize());
+    }
+
+    @Test
+    public void testFailure() {
+        UploadDataSizeController controller = new UploadDataSizeController(2 * MB, MB, 16 * MB);
+        controller.updateSuccess(2 * MB, 200, 50);
+        assertEquals(16 * MB, controller.dataSize());
+
+        controller.updateFailure();
+        assertEquals(8 * MB, controller.dataSize());
+        controller.updateFailure();
+        assertEquals(4 * MB, controller.dataSize());
+
+        for (int i = 0; i < 10; i++) {
+            controller.updateFailure();
+        }
+        assertEquals(MB, controller.dataSize());
+
+        // 成功后逐步恢复
+        controller.updateSuccess(2 * MB, 200, 50);
+        assertEquals(2 * MB, controller.dataSize());
+        controller.updateSuccess(2 * MB, 200, 50);
+        assertEquals(4 * MB, controller.dataSize());
+    }
+
+    @Test
+    public void testMaxDataSizeNotOverflow() {
+        int maxDataSize = 1 << 30;
+        UploadDataSizeController controller = new UploadDataSizeController(maxDataSize, MB, maxDataSize);
+        controller.updateFailure();
+        assertEquals(maxDataSize / 2, controller.dataSize());
+
+        // 1G/s，RTT 1s，片大小恢复至上限后不溢出
+        for (int i = 0; i < 3; i++) {
+            controller.updateSuccess(maxDataSize, 1000, 1000);
+            assertEquals(maxDataSize, controller.dataSize());
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.qiniu.android.storage;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.qiniu.android.BaseTest;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(AndroidJUnit4.class)
+public class UploadPartHedgerTest extends BaseTest {
+
+    private static final long MB = 1024 * 1024;
+
+    @Test
+    public void testHedgeDelay() {
+        UploadPartHedger hedger = new UploadPartHedger(3);
+
+        // 样本不足时不对冲
+        for (int i = 0; i < 4; i++) {
+            hedger.addSample(4 * MB, 2000);
+        }
+        assertEquals("delay", -1, hedger.getHedgeDelay(4 * MB));
+
+        // 每 MB 耗时 500ms，按片大小折算
+        hedger.addSample(4 * MB, 2000);
+        assertEquals("delay", 2000, hedger.getHedgeDelay(4 * MB));
+        assertEquals("delay", 4000, hedger.getHedgeDelay(8 * MB));
+
+        // 下限 1s
+        assertEquals("delay", 1000, hedger.getHedgeDelay(MB));
+    }
+
+    @Test
+    public void testHedgeCount() {
+        UploadPartHedger hedger = new UploadPartHedger(2);
+        for (int i = 0; i < 10; i++) {
+            hedger.addSample(MB, 3000);
+        }
+
+        assertTrue(hedger.tryHedge());
+        assertTrue(hedger.tryHedge());
+        assertFalse(hedger.tryHedge());
+        assertEquals(2, hedger.getHedgeCount());
+        assertEquals("delay", -1, hedger.getHedgeDelay(MB));
+
+        hedger = new UploadPartHedger(0);
+        assertFalse(hedger.tryHedge());
+    }
+}
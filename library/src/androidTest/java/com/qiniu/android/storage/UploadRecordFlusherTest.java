@@ -0,0 +1,61 @@
+package com.qiniu.android.storage;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.qiniu.android.BaseTest;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+@RunWith(AndroidJUnit4.class)
+public class UploadRecordFlusherTest extends BaseTest {
+
+    @Test
+    public void testFlush() throws InterruptedException {
+        final List<Integer> writeSizes = Collections.synchronizedList(new ArrayList<Integer>());
+        UploadRecordFlusher flusher = new UploadRecordFlusher(500, 3, new UploadRecordFlusher.Writer() {
+            @Override
+            public void write(List<UploadData> dataList) {
+                writeSizes.add(dataList.size());
+            }
+        });
+
+        UploadData data0 = new UploadData(0, 1024, 0);
+        UploadData data1 = new UploadData(1024, 1024, 1);
+        UploadData data2 = new UploadData(2048, 1024, 2);
+
+        // 间隔内合并，同一片仅纪录一次
+        flusher.add(data0);
+        flusher.add(data0);
+        flusher.add(data1);
+        Thread.sleep(100);
+        assertEquals(0, writeSizes.size());
+        Thread.sleep(1000);
+        assertEquals(1, writeSizes.size());
+        assertEquals(2, (int) writeSizes.get(0));
+
+        // 片数达到上限立即写入
+        flusher.add(data0);
+        flusher.add(data1);
+        flusher.add(data2);
+        Thread.sleep(200);
+        assertEquals(2, writeSizes.size());
+        assertEquals(3, (int) writeSizes.get(1));
+
+        // 强制写入
+        flusher.add(data0);
+        flusher.flush();
+        assertEquals(3, writeSizes.size());
+        assertEquals(0, flusher.pendingDataCount());
+
+        // 丢弃后不再写入
+        flusher.add(data1);
+        flusher.clear();
+        Thread.sleep(1000);
+        assertEquals(3, writeSizes.size());
+    }
+}
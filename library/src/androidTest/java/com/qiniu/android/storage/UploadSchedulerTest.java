@@ -0,0 +1,149 @@
+package com.qiniu.android.storage;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.qiniu.android.BaseTest;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+@RunWith(AndroidJUnit4.class)
+public class UploadSchedulerTest extends BaseTest {
+
+    private static final int MB = 1024 * 1024;
+
+    @Test
+    public void testSchedule() {
+        UploadScheduler scheduler = new UploadScheduler(1, directExecutor);
+        final List<String> runTasks = new ArrayList<>();
+        Object uploadA = new Object();
+        Object uploadB = new Object();
+
+        scheduler.execute(uploadA, 4 * MB, false, task(runTasks, "A0"));
+        for (int i = 1; i <= 3; i++) {
+            scheduler.execute(uploadA, 4 * MB, false, task(runTasks, "A" + i));
+        }
+        for (int i = 1; i <= 4; i++) {
+            scheduler.execute(uploadB, MB, false, task(runTasks, "B" + i));
+        }
+        scheduler.execute(new Object(), 1024, true, task(runTasks, "F"));
+        assertEquals(1, runTasks.size());
+        assertEquals(1, scheduler.runningCount());
+        assertEquals(8, scheduler.queueDepth());
+        assertEquals(8, scheduler.maxQueueDepth());
+
+        for (int i = 0; i < 8; i++) {
+            scheduler.release();
+        }
+
+        // Form 上传优先，之后各上传按数据量轮流执行
+        String[] expected = {"A0", "F", "A1", "B1", "B2", "B3", "B4", "A2", "A3"};
+        assertEquals(expected.length, runTasks.size());
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], runTasks.get(i));
+        }
+        assertEquals(1, scheduler.runningCount());
+        assertEquals(0, scheduler.queueDepth());
+        assertEquals("taskCount", 9, scheduler.taskCount());
+        assertEquals("waitCount", 8, scheduler.waitCount());
+        assertTrue(scheduler.maxWaitTime() >= scheduler.averageWaitTime());
+
+        scheduler.release();
+        assertEquals(0, scheduler.runningCount());
+    }
+
+    @Test
+    public void testFinish() {
+        UploadScheduler scheduler = new UploadScheduler(1, directExecutor);
+        final List<String> runTasks = new ArrayList<>();
+        Object uploadA = new Object();
+        Object uploadB = new Object();
+
+        scheduler.execute(uploadA, MB, false, task(runTasks, "A0"));
+        scheduler.execute(uploadA, MB, false, task(runTasks, "A1"));
+        scheduler.execute(uploadA, MB, false, task(runTasks, "A2"));
+        scheduler.execute(uploadB, MB, false, task(runTasks, "B0"));
+        assertEquals(3, scheduler.queueDepth());
+
+        // 结束的上传排队的请求立即执行，不再等待额度
+        scheduler.finish(uploadA);
+        assertEquals(3, runTasks.size());
+        assertEquals("A2", runTasks.get(2));
+        assertEquals(3, scheduler.runningCount());
+        assertEquals(1, scheduler.queueDepth());
+
+        scheduler.finish(uploadA);
+        assertEquals(3, runTasks.size());
+
+        scheduler.release();
+        scheduler.release();
+        assertEquals(3, runTasks.size());
+        scheduler.release();
+        assertEquals(4, runTasks.size());
+        assertEquals("B0", runTasks.get(3));
+        assertEquals(0, scheduler.queueDepth());
+    }
+
+    @Test
+    public void testReleaseDispatch() {
+        UploadScheduler scheduler = new UploadScheduler(1);
+        final List<Thread> runThreads = Collections.synchronizedList(new ArrayList<Thread>());
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                runThreads.add(Thread.currentThread());
+            }
+        };
+
+        scheduler.execute(this, MB, false, task);
+        scheduler.execute(this, MB, false, task);
+        assertEquals(1, runThreads.size());
+
+        // 排队的请求不在结束请求的线程中执行
+        scheduler.release();
+        wait(new WaitConditional() {
+            @Override
+            public boolean shouldWait() {
+                return runThreads.size() < 2;
+            }
+        }, 5);
+        assertEquals(2, runThreads.size());
+        assertTrue(runThreads.get(1) != Thread.currentThread());
+        scheduler.release();
+        assertEquals(0, scheduler.runningCount());
+    }
+
+    @Test
+    public void testUnlimited() {
+        UploadScheduler scheduler = new UploadScheduler(0);
+        final List<String> runTasks = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            scheduler.execute(this, MB, false, task(runTasks, "" + i));
+        }
+        assertEquals(10, runTasks.size());
+        assertEquals(10, scheduler.runningCount());
+        assertEquals(0, scheduler.maxQueueDepth());
+        assertEquals("taskCount", 10, scheduler.taskCount());
+    }
+
+    private static final Executor directExecutor = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private static Runnable task(final List<String> runTasks, final String name) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                runTasks.add(name);
+            }
+        };
+    }
+}
@@ -0,0 +1,87 @@
+package com.qiniu.android.storage;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.qiniu.android.BaseTest;
+import com.qiniu.android.TempFile;
+import com.qiniu.android.utils.Crc32;
+import com.qiniu.android.utils.MD5;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+@RunWith(AndroidJUnit4.class)
+public class UploadSourceFileTest extends BaseTest {
+
+    @Test
+    public void testReadBuffer() throws IOException {
+        File file = TempFile.createFile(5 * 1024 + 3, "upload_source_file_read_buffer");
+        UploadSourceFile source = new UploadSourceFile(file);
+        UploadSourceFile zeroCopySource = new UploadSourceFile(file, true);
+
+        int dataSize = 1024 * 1024;
+        long offset = 0;
+        while (true) {
+            byte[] data = source.readData(dataSize, offset);
+            ByteBuffer buffer = zeroCopySource.readBuffer(dataSize, offset, null);
+            if (data.length == 0) {
+                assertNull(buffer);
+                break;
+            }
+
+            assertNotNull(buffer);
+            assertEquals(data.length, buffer.remaining());
+            byte[] bufferData = new byte[buffer.remaining()];
+            buffer.duplicate().get(bufferData);
+            assertTrue("offset:" + offset, Arrays.equals(data, bufferData));
+
+            offset += data.length;
+        }
+        assertEquals("size", file.length(), offset);
+
+        source.close();
+        zeroCopySource.close();
+        TempFile.remove(file);
+    }
+
+    @Test
+    public void testReadBufferDigest() throws IOException {
+        File file = TempFile.createFile(300, "upload_source_file_read_buffer_digest");
+        UploadSourceFile source = new UploadSourceFile(file);
+        UploadSourceFile zeroCopySource = new UploadSourceFile(file, true);
+
+        int dataSize = 128 * 1024;
+        long offset = 0;
+        while (true) {
+            UploadDataDigest digest = new UploadDataDigest(true, true);
+            UploadDataDigest zeroCopyDigest = new UploadDataDigest(true, true);
+            ByteBuffer buffer = source.readBuffer(dataSize, offset, digest);
+            ByteBuffer zeroCopyBuffer = zeroCopySource.readBuffer(dataSize, offset, zeroCopyDigest);
+            if (buffer == null) {
+                assertNull(zeroCopyBuffer);
+                break;
+            }
+
+            byte[] data = new byte[buffer.remaining()];
+            buffer.duplicate().get(data);
+            String md5 = MD5.encrypt(data);
+            long crc32 = Crc32.bytes(data);
+            assertEquals("offset:" + offset, md5, digest.md5());
+            assertEquals("offset:" + offset, crc32, (long) digest.crc32());
+            assertEquals("offset:" + offset, md5, zeroCopyDigest.md5());
+            assertEquals("offset:" + offset, crc32, (long) zeroCopyDigest.crc32());
+
+            offset += data.length;
+        }
+        assertEquals("size", file.length(), offset);
+
+        source.close();
+        zeroCopySource.close();
+        TempFile.remove(file);
+    }
+}
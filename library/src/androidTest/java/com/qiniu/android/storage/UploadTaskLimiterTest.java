@@ -0,0 +1,128 @@
+package com.qiniu.android.storage;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.qiniu.android.BaseTest;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+@RunWith(AndroidJUnit4.class)
+public class UploadTaskLimiterTest extends BaseTest {
+
+    @Test
+    public void testLimit() {
+        UploadTaskLimiter limiter = new UploadTaskLimiter(2, directExecutor);
+        final List<Integer> runTasks = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            final int index = i;
+            limiter.acquire(new Runnable() {
+                @Override
+                public void run() {
+                    runTasks.add(index);
+                }
+            });
+        }
+        assertEquals(2, runTasks.size());
+        assertEquals(2, limiter.runningCount());
+        assertEquals(3, limiter.waitingCount());
+
+        // 任务结束后按顺序执行等待的任务
+        limiter.release();
+        assertEquals(3, runTasks.size());
+        assertEquals(2, (int) runTasks.get(2));
+
+        // 增大上限
+        limiter.setLimit(4);
+        assertEquals(5, runTasks.size());
+        assertEquals(4, limiter.runningCount());
+        assertEquals(0, limiter.waitingCount());
+
+        // 减小上限，正在执行的任务不受影响
+        limiter.setLimit(1);
+        limiter.release();
+        limiter.release();
+        limiter.release();
+        assertEquals(1, limiter.runningCount());
+        limiter.acquire(new Runnable() {
+            @Override
+            public void run() {
+                runTasks.add(5);
+            }
+        });
+        assertEquals(5, runTasks.size());
+        limiter.release();
+        assertEquals(6, runTasks.size());
+    }
+
+    @Test
+    public void testFinish() {
+        UploadTaskLimiter limiter = new UploadTaskLimiter(1, directExecutor);
+        final List<Integer> runTasks = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            limiter.acquire(task(runTasks, i));
+        }
+        assertEquals(1, runTasks.size());
+
+        // 上传结束，等待的任务立即执行
+        limiter.finish();
+        assertEquals(3, runTasks.size());
+        assertEquals(3, limiter.runningCount());
+        assertEquals(0, limiter.waitingCount());
+
+        limiter.release();
+        limiter.release();
+        limiter.release();
+        assertEquals(0, limiter.runningCount());
+    }
+
+    @Test
+    public void testReleaseDispatch() {
+        UploadTaskLimiter limiter = new UploadTaskLimiter(1);
+        final List<Thread> runThreads = Collections.synchronizedList(new ArrayList<Thread>());
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                runThreads.add(Thread.currentThread());
+            }
+        };
+
+        limiter.acquire(task);
+        limiter.acquire(task);
+        assertEquals(1, runThreads.size());
+
+        // 等待的任务不在结束任务的线程中执行
+        limiter.release();
+        wait(new WaitConditional() {
+            @Override
+            public boolean shouldWait() {
+                return runThreads.size() < 2;
+            }
+        }, 5);
+        assertEquals(2, runThreads.size());
+        assertTrue(runThreads.get(1) != Thread.currentThread());
+        limiter.release();
+        assertEquals(0, limiter.runningCount());
+    }
+
+    private static final Executor directExecutor = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private static Runnable task(final List<Integer> runTasks, final int index) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                runTasks.add(index);
+            }
+        };
+    }
+}
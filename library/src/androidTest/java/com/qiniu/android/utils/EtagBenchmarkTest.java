@@ -0,0 +1,45 @@
+package com.qiniu.android.utils;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.qiniu.android.BaseTest;
+import com.qiniu.android.TempFile;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * 文件 etag 顺序计算与并发计算的耗时对比
+ */
+@RunWith(AndroidJUnit4.class)
+public class EtagBenchmarkTest extends BaseTest {
+
+    private static final int FileKiloSize = 256 * 1024;
+
+    @Test
+    public void testFileThroughput() throws IOException {
+        File file = TempFile.createFile(FileKiloSize, "etag_benchmark");
+
+        long start = Utils.currentTimestamp();
+        String etag = Etag.file(file);
+        logThroughput("sequential", Utils.currentTimestamp() - start);
+
+        int[] taskCounts = {2, 4, 8};
+        for (int taskCount : taskCounts) {
+            start = Utils.currentTimestamp();
+            String concurrentEtag = Etag.file(file, taskCount);
+            logThroughput("concurrent tasks:" + taskCount, Utils.currentTimestamp() - start);
+            assertEquals(etag, concurrentEtag);
+        }
+
+        TempFile.remove(file);
+    }
+
+    private void logThroughput(String type, long elapsedTime) {
+        double throughput = FileKiloSize / 1024.0 / Math.max(elapsedTime, 1) * 1000;
+        LogUtil.i("== etag " + type + " time:" + elapsedTime + "ms throughput:" + String.format("%.2f", throughput) + "MB/s");
+    }
+}
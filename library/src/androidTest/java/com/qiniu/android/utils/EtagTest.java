@@ -50,6 +50,27 @@ public class EtagTest {
         TempFile.remove(f);
     }
 
+    @Test
+    public void testFileConcurrent() throws IOException {
+        File f = TempFile.createFile(1024);
+        Assert.assertEquals("FhHnGzB75K2JC4YOzKDMLEiaeSKm", Etag.file(f, 4));
+        TempFile.remove(f);
+        f = TempFile.createFile(5 * 1024);
+        Assert.assertEquals("lkr1cErNyp23IdWan82rufDn3dzT", Etag.file(f, 4));
+        TempFile.remove(f);
+        f = TempFile.createFile(9 * 1024);
+        Assert.assertEquals("lvlmp343GVuq367WF4XTMetchhid", Etag.file(f, 2));
+        Assert.assertEquals("lvlmp343GVuq367WF4XTMetchhid", Etag.file(f, 8));
+        TempFile.remove(f);
+
+        int[] kiloSizes = {0, 1, 4 * 1024 - 1, 4 * 1024 + 1, 33 * 1024 + 7};
+        for (int kiloSize : kiloSizes) {
+            f = TempFile.createFile(kiloSize);
+            Assert.assertEquals("size:" + kiloSize + "k", Etag.file(f), Etag.file(f, 3));
+            TempFile.remove(f);
+        }
+    }
+
     @Test
     public void testLongToInt() {
         long len = 2323435710l;
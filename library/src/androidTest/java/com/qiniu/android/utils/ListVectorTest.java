@@ -47,6 +47,7 @@ public class ListVectorTest extends BaseTest {
         }
 
         final ListVector<String> v = listVector.subList(0, count/2);
+        Assert.assertEquals(count/2, v.size());
 
         new Thread(new Runnable() {
             @Override
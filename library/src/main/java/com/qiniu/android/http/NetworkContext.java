@@ -0,0 +1,85 @@
+package com.qiniu.android.http;
+
+import com.qiniu.android.http.networkStatus.NetworkStatusManager;
+import com.qiniu.android.http.networkStatus.ServerScoreboard;
+import com.qiniu.android.http.serverRegion.HttpServerManager;
+import com.qiniu.android.http.serverRegion.UploadServerFreezeManager;
+import com.qiniu.android.http.serverRegion.UploadServerFreezeUtil;
+
+/**
+ * 上传使用的网络状态：server 全局冻结信息、http3 支持信息、网络速度及 server 评分
+ * 默认所有 UploadManager 使用 {@link #shared()}，状态在进程内共享并持久化到磁盘；
+ * 通过 new 创建的 NetworkContext 相互隔离，且仅保存在内存，多个 UploadManager 的 Configuration 使用同一实例时共享状态
+ * 各状态均保存在 ConcurrentHashMap 中，查询不加锁
+ * 注：Dns 解析结果与账号及区域无关，所有 NetworkContext 共用 {@link com.qiniu.android.http.dns.DnsPrefetcher}
+ */
+public final class NetworkContext {
+
+    private static final NetworkContext sharedContext = new NetworkContext(NetworkStatusManager.getInstance(),
+            ServerScoreboard.getInstance(),
+            HttpServerManager.getInstance(),
+            UploadServerFreezeUtil.globalHttp2Freezer(),
+            UploadServerFreezeUtil.globalHttp3Freezer());
+
+    private final NetworkStatusManager networkStatusManager;
+    private final ServerScoreboard serverScoreboard;
+    private final HttpServerManager httpServerManager;
+    private final UploadServerFreezeManager http2Freezer;
+    private final UploadServerFreezeManager http3Freezer;
+
+    /**
+     * 创建独立的 NetworkContext
+     */
+    public NetworkContext() {
+        this(new NetworkStatusManager(),
+                new ServerScoreboard(),
+                new HttpServerManager(),
+                new UploadServerFreezeManager(),
+                new UploadServerFreezeManager());
+    }
+
+    private NetworkContext(NetworkStatusManager networkStatusManager,
+                           ServerScoreboard serverScoreboard,
+                           HttpServerManager httpServerManager,
+                           UploadServerFreezeManager http2Freezer,
+                           UploadServerFreezeManager http3Freezer) {
+        this.networkStatusManager = networkStatusManager;
+        this.serverScoreboard = serverScoreboard;
+        this.httpServerManager = httpServerManager;
+        this.http2Freezer = http2Freezer;
+        this.http3Freezer = http3Freezer;
+    }
+
+    /**
+     * @return 进程内共享的 NetworkContext
+     */
+    public static NetworkContext shared() {
+        return sharedContext;
+    }
+
+    public NetworkStatusManager getNetworkStatusManager() {
+        return networkStatusManager;
+    }
+
+    public ServerScoreboard getServerScoreboard() {
+        return serverScoreboard;
+    }
+
+    public HttpServerManager getHttpServerManager() {
+        return httpServerManager;
+    }
+
+    /**
+     * @return http2 server 全局冻结管理对象
+     */
+    public UploadServerFreezeManager getHttp2Freezer() {
+        return http2Freezer;
+    }
+
+    /**
+     * @return http3 server 全局冻结管理对象
+     */
+    public UploadServerFreezeManager getHttp3Freezer() {
+        return http3Freezer;
+    }
+}
@@ -1,12 +1,16 @@
 package com.qiniu.android.http.dns;
 
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 class BaseDns {
     int timeout = 10;
-    static final ExecutorService executor = new ThreadPoolExecutor(0, 4,
+    // 核心线程数为 0 时，队列未满不会创建新线程，所有解析将串行执行
+    static final ThreadPoolExecutor executor = new ThreadPoolExecutor(4, 4,
             60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+
+    static {
+        executor.allowCoreThreadTimeOut(true);
+    }
 }
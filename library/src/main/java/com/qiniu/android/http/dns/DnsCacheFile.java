@@ -12,6 +12,8 @@ import java.io.IOException;
 
 public class DnsCacheFile implements Recorder {
 
+    private static final String TempFileSuffix = ".tmp";
+
     public String directory;
     public File f;
 
@@ -37,6 +39,7 @@ public class DnsCacheFile implements Recorder {
 
     /**
      * 设置DNS缓存
+     * 先写入临时文件再重命名为缓存文件，写入中断时不会破坏已有的缓存文件
      *
      * @param key  缓存文件明
      * @param data 缓存数据
@@ -44,14 +47,16 @@ public class DnsCacheFile implements Recorder {
     @Override
     public synchronized void set(String key, byte[] data) {
         File f = new File(directory, key);
-        if (f.exists()) {
-            f.delete();
-        }
+        File tempFile = new File(directory, key + TempFileSuffix);
 
+        boolean success = false;
         FileOutputStream fo = null;
         try {
-            fo = new FileOutputStream(f);
+            fo = new FileOutputStream(tempFile);
             fo.write(data);
+            fo.flush();
+            fo.getFD().sync();
+            success = true;
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -59,9 +64,14 @@ public class DnsCacheFile implements Recorder {
             try {
                 fo.close();
             } catch (IOException e) {
+                success = false;
                 e.printStackTrace();
             }
         }
+
+        if (!success || !tempFile.renameTo(f)) {
+            tempFile.delete();
+        }
     }
 
     /**
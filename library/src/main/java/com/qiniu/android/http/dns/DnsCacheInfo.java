@@ -1,12 +1,22 @@
 package com.qiniu.android.http.dns;
 
+import com.qiniu.android.utils.IPAddressUtil;
+
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -14,15 +24,106 @@ import java.util.concurrent.ConcurrentHashMap;
  */
 public class DnsCacheInfo implements java.io.Serializable {
 
+    /**
+     * 二进制格式：
+     * magic(int) version(byte) currentTime(int) localIp(int)
+     * 字符串表：count(int) [string(UTF)]...
+     * host 记录：count(int) [length(int) record]...
+     * record：host(int) addressCount(short) [hostValue(int) ip ttl(long) timestamp(long) source(int)]...
+     * ip：length(byte) bytes，length 为 4（ipv4）、16（ipv6）或 0（非 ip 字面量，后跟 UTF 字符串）
+     * 字符串均以字符串表下标表示，-1 表示 null；ttl、timestamp 为 -1 表示 null
+     */
+    private static final int DataMagic = 0x514E4443;
+    private static final byte DataVersion = 1;
+
     private String currentTime;
     private String localIp;
     private ConcurrentHashMap<String, List<IDnsNetworkAddress>> info;
 
-    public static DnsCacheInfo createDnsCacheInfoByData(byte[] jsonData) {
-        if (jsonData == null) {
+    // 二进制数据中未解析的 host 记录，key: host value: {offset, length}
+    private transient byte[] data;
+    private transient String[] strings;
+    private transient HashMap<String, int[]> pendingRecords;
+
+    /**
+     * 通过缓存数据创建，支持二进制格式及旧的 json 格式
+     * 二进制格式只解析字符串表及记录索引，host 记录在使用时才解析
+     *
+     * @param data 缓存数据
+     * @return DnsCacheInfo，数据无效时为 null
+     */
+    public static DnsCacheInfo createDnsCacheInfoByData(byte[] data) {
+        if (data == null) {
             return null;
         }
 
+        if (isBinaryData(data)) {
+            return createDnsCacheInfoByBinaryData(data);
+        } else {
+            return createDnsCacheInfoByJsonData(data);
+        }
+    }
+
+    private static boolean isBinaryData(byte[] data) {
+        return data.length >= 4 && (((data[0] & 0xFF) << 24) | ((data[1] & 0xFF) << 16)
+                | ((data[2] & 0xFF) << 8) | (data[3] & 0xFF)) == DataMagic;
+    }
+
+    private static DnsCacheInfo createDnsCacheInfoByBinaryData(byte[] data) {
+        try {
+            DataInputStream input = new DataInputStream(new ByteArrayInputStream(data));
+            input.readInt();
+            if (input.readByte() != DataVersion) {
+                return null;
+            }
+
+            int currentTimeIndex = input.readInt();
+            int localIpIndex = input.readInt();
+
+            int stringCount = input.readInt();
+            if (stringCount < 0 || stringCount > data.length) {
+                return null;
+            }
+            String[] strings = new String[stringCount];
+            for (int i = 0; i < stringCount; i++) {
+                strings[i] = input.readUTF();
+            }
+
+            String currentTime = stringAt(strings, currentTimeIndex);
+            String localIp = stringAt(strings, localIpIndex);
+            if (currentTime == null || localIp == null) {
+                return null;
+            }
+
+            int recordCount = input.readInt();
+            int offset = data.length - input.available();
+            HashMap<String, int[]> pendingRecords = new HashMap<>();
+            for (int i = 0; i < recordCount; i++) {
+                int length = input.readInt();
+                offset += 4;
+                if (length < 4 || length > input.available()) {
+                    return null;
+                }
+                String host = stringAt(strings, input.readInt());
+                input.skipBytes(length - 4);
+                if (host != null) {
+                    pendingRecords.put(host, new int[]{offset, length});
+                }
+                offset += length;
+            }
+
+            DnsCacheInfo cacheInfo = new DnsCacheInfo(currentTime, localIp, new ConcurrentHashMap<String, List<IDnsNetworkAddress>>());
+            cacheInfo.data = data;
+            cacheInfo.strings = strings;
+            cacheInfo.pendingRecords = pendingRecords;
+            return cacheInfo;
+        } catch (Exception ignored) {
+            return null;
+        }
+    }
+
+    private static DnsCacheInfo createDnsCacheInfoByJsonData(byte[] jsonData) {
+
         JSONObject cacheInfoJSONObject = null;
         try {
             cacheInfoJSONObject = new JSONObject(new String(jsonData));
@@ -90,9 +191,87 @@ public class DnsCacheInfo implements java.io.Serializable {
     }
 
     public ConcurrentHashMap<String, List<IDnsNetworkAddress>> getInfo() {
+        loadAllRecords();
         return info;
     }
 
+    /**
+     * 取出 host 的解析结果，取出后不再保留在 DnsCacheInfo 中，二进制格式的记录在此时解析
+     *
+     * @param host host
+     * @return 解析结果，没有时为 null
+     */
+    List<IDnsNetworkAddress> takeAddressList(String host) {
+        if (host == null) {
+            return null;
+        }
+
+        List<IDnsNetworkAddress> addressList = info != null ? info.remove(host) : null;
+        if (addressList != null) {
+            return addressList;
+        }
+
+        int[] record = null;
+        synchronized (this) {
+            if (pendingRecords != null) {
+                record = pendingRecords.remove(host);
+            }
+        }
+        return record != null ? decodeRecord(record) : null;
+    }
+
+    synchronized boolean isEmpty() {
+        return (info == null || info.size() == 0) && (pendingRecords == null || pendingRecords.size() == 0);
+    }
+
+    private synchronized void loadAllRecords() {
+        if (pendingRecords == null) {
+            return;
+        }
+
+        for (Map.Entry<String, int[]> entry : pendingRecords.entrySet()) {
+            List<IDnsNetworkAddress> addressList = decodeRecord(entry.getValue());
+            if (addressList != null && info != null) {
+                info.put(entry.getKey(), addressList);
+            }
+        }
+        pendingRecords = null;
+        strings = null;
+        data = null;
+    }
+
+    private List<IDnsNetworkAddress> decodeRecord(int[] record) {
+        byte[] data;
+        String[] strings;
+        synchronized (this) {
+            data = this.data;
+            strings = this.strings;
+        }
+        if (data == null || strings == null) {
+            return null;
+        }
+
+        try {
+            DataInputStream input = new DataInputStream(new ByteArrayInputStream(data, record[0], record[1]));
+            input.readInt();
+            int addressCount = input.readUnsignedShort();
+            List<IDnsNetworkAddress> addressList = new ArrayList<>(addressCount);
+            for (int i = 0; i < addressCount; i++) {
+                String hostValue = stringAt(strings, input.readInt());
+                String ipValue = readIp(input);
+                long ttlValue = input.readLong();
+                long timestampValue = input.readLong();
+                String sourceValue = stringAt(strings, input.readInt());
+                addressList.add(new DnsNetworkAddress(hostValue, ipValue,
+                        ttlValue < 0 ? null : ttlValue, sourceValue,
+                        timestampValue < 0 ? null : timestampValue));
+            }
+            return addressList.size() > 0 ? addressList : null;
+        } catch (Exception ignored) {
+            return null;
+        }
+    }
+
     void setCurrentTime(String currentTime) {
         this.currentTime = currentTime;
     }
@@ -150,6 +329,134 @@ public class DnsCacheInfo implements java.io.Serializable {
         return cacheInfoJSONObject.toString().getBytes();
     }
 
+    /**
+     * 转为二进制格式，host 及 source 等字符串只保存一次，ip 以字节保存
+     *
+     * @return 二进制数据
+     */
+    public byte[] toData() {
+        ConcurrentHashMap<String, List<IDnsNetworkAddress>> info = getInfo();
+        ArrayList<String> strings = new ArrayList<>();
+        HashMap<String, Integer> stringIndexes = new HashMap<>();
+
+        try {
+            ByteArrayOutputStream records = new ByteArrayOutputStream();
+            DataOutputStream recordsOutput = new DataOutputStream(records);
+            ByteArrayOutputStream record = new ByteArrayOutputStream();
+            int recordCount = 0;
+            if (info != null) {
+                for (Map.Entry<String, List<IDnsNetworkAddress>> entry : info.entrySet()) {
+                    List<DnsNetworkAddress> addressList = new ArrayList<>();
+                    for (IDnsNetworkAddress address : entry.getValue()) {
+                        if (address instanceof DnsNetworkAddress && addressList.size() < 0xFFFF) {
+                            addressList.add((DnsNetworkAddress) address);
+                        }
+                    }
+                    if (addressList.size() == 0) {
+                        continue;
+                    }
+
+                    record.reset();
+                    DataOutputStream recordOutput = new DataOutputStream(record);
+                    recordOutput.writeInt(intern(strings, stringIndexes, entry.getKey()));
+                    recordOutput.writeShort(addressList.size());
+                    for (DnsNetworkAddress address : addressList) {
+                        Long ttlValue = address.getTtlValue();
+                        Long timestampValue = address.getTimestampValue();
+                        recordOutput.writeInt(intern(strings, stringIndexes, address.getHostValue()));
+                        writeIp(recordOutput, address.getIpValue());
+                        recordOutput.writeLong(ttlValue != null ? ttlValue : -1);
+                        recordOutput.writeLong(timestampValue != null ? timestampValue : -1);
+                        recordOutput.writeInt(intern(strings, stringIndexes, address.getSourceValue()));
+                    }
+                    recordOutput.flush();
+
+                    recordsOutput.writeInt(record.size());
+                    record.writeTo(recordsOutput);
+                    recordCount++;
+                }
+            }
+            recordsOutput.flush();
+
+            int currentTimeIndex = intern(strings, stringIndexes, currentTime);
+            int localIpIndex = intern(strings, stringIndexes, localIp);
+
+            ByteArrayOutputStream data = new ByteArrayOutputStream(records.size() + strings.size() * 16 + 32);
+            DataOutputStream output = new DataOutputStream(data);
+            output.writeInt(DataMagic);
+            output.writeByte(DataVersion);
+            output.writeInt(currentTimeIndex);
+            output.writeInt(localIpIndex);
+            output.writeInt(strings.size());
+            for (String string : strings) {
+                output.writeUTF(string);
+            }
+            output.writeInt(recordCount);
+            records.writeTo(output);
+            output.flush();
+            return data.toByteArray();
+        } catch (IOException ignored) {
+            return null;
+        }
+    }
+
+    private static int intern(List<String> strings, Map<String, Integer> stringIndexes, String string) {
+        if (string == null) {
+            return -1;
+        }
+
+        Integer index = stringIndexes.get(string);
+        if (index == null) {
+            index = strings.size();
+            strings.add(string);
+            stringIndexes.put(string, index);
+        }
+        return index;
+    }
+
+    private static String stringAt(String[] strings, int index) {
+        if (index < 0 || index >= strings.length) {
+            return null;
+        }
+        return strings[index];
+    }
+
+    private static void writeIp(DataOutputStream output, String ip) throws IOException {
+        byte[] address = null;
+        if (ip != null) {
+            if (IPAddressUtil.isIPv4LiteralAddress(ip)) {
+                address = IPAddressUtil.textToNumericFormatV4(ip);
+            } else if (IPAddressUtil.isIPv6LiteralAddress(ip)) {
+                address = IPAddressUtil.textToNumericFormatV6(ip);
+            }
+        }
+
+        // 解析后的文本需与原 ip 一致，否则按字符串保存
+        if (address != null && (address.length == 4 || address.length == 16) && ip.equals(formatIp(address))) {
+            output.writeByte(address.length);
+            output.write(address);
+        } else {
+            output.writeByte(0);
+            output.writeUTF(ip != null ? ip : "");
+        }
+    }
+
+    private static String readIp(DataInputStream input) throws IOException {
+        int length = input.readUnsignedByte();
+        if (length == 0) {
+            String ip = input.readUTF();
+            return ip.length() > 0 ? ip : null;
+        }
+
+        byte[] address = new byte[length];
+        input.readFully(address);
+        return formatIp(address);
+    }
+
+    private static String formatIp(byte[] address) throws IOException {
+        return InetAddress.getByAddress(address).getHostAddress();
+    }
+
     @Override
     public String toString() {
         return "{\"currentTime\":\"" + currentTime + "\", \"localIp\":\"" + localIp + "\"}";
@@ -9,6 +9,8 @@ import com.qiniu.android.http.metrics.UploadRegionRequestMetrics;
 import com.qiniu.android.storage.GlobalConfiguration;
 import com.qiniu.android.storage.UpToken;
 import com.qiniu.android.utils.AndroidNetwork;
+import com.qiniu.android.utils.AsyncRun;
+import com.qiniu.android.utils.SingleFlight;
 import com.qiniu.android.utils.Utils;
 import com.qiniu.android.utils.Wait;
 
@@ -16,9 +18,18 @@ import java.io.IOException;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Created by yangsen on 2020/5/28
@@ -30,10 +41,26 @@ public class DnsPrefetcher {
 
     private boolean isPrefetching = false;
     private DnsCacheInfo dnsCacheInfo = null;
+    // 从磁盘恢复的缓存，host 的解析结果在首次使用时才解析并放入 addressDictionary
+    private DnsCacheInfo recoveredDnsCache = null;
     private HashSet<String> prefetchHosts = new HashSet<>();
     private ConcurrentHashMap<String, List<IDnsNetworkAddress>> addressDictionary = new ConcurrentHashMap<>();
     private DnsCacheFile diskCache;
 
+    // 后台刷新 host 解析结果，key: host
+    private final SingleFlight<Object> refreshSingleFlight = new SingleFlight<>();
+    private final ConcurrentHashMap<String, Long> lastRefreshTimes = new ConcurrentHashMap<>();
+    // 同一 host 后台刷新的最小间隔，单位：毫秒
+    private static final long MinRefreshInterval = 10 * 1000;
+    // lastRefreshTimes 的纪录数上限
+    private static final int MaxRefreshRecordCount = 256;
+    // 后台刷新结果写入磁盘缓存的延迟，单位：毫秒
+    private static final int RecordDnsCacheDelay = 10 * 1000;
+    private final AtomicBoolean isDiskCacheRecordScheduled = new AtomicBoolean(false);
+    private final AtomicLong cacheHitCount = new AtomicLong();
+    private final AtomicLong cacheStaleCount = new AtomicLong();
+    private final AtomicLong cacheMissCount = new AtomicLong();
+
     private final static DnsPrefetcher dnsPrefetcher = new DnsPrefetcher();
 
     private DnsPrefetcher() {
@@ -104,7 +131,7 @@ public class DnsPrefetcher {
         }
 
         String host = address.getHostValue();
-        List<IDnsNetworkAddress> addressList = addressDictionary.get(host);
+        List<IDnsNetworkAddress> addressList = getAddressListOfHost(host);
         if (addressList == null || addressList.size() == 0) {
             return;
         }
@@ -123,24 +150,149 @@ public class DnsPrefetcher {
             return;
         }
         addressDictionary.remove(host);
+        DnsCacheInfo recoveredDnsCache = getRecoveredDnsCache();
+        if (recoveredDnsCache != null) {
+            recoveredDnsCache.takeAddressList(host);
+        }
     }
 
+    private List<IDnsNetworkAddress> getAddressListOfHost(String host) {
+        List<IDnsNetworkAddress> addressList = addressDictionary.get(host);
+        if (addressList != null) {
+            return addressList;
+        }
+
+        DnsCacheInfo recoveredDnsCache = getRecoveredDnsCache();
+        if (recoveredDnsCache == null) {
+            return null;
+        }
+
+        addressList = recoveredDnsCache.takeAddressList(host);
+        if (addressList == null) {
+            return null;
+        }
+
+        List<IDnsNetworkAddress> existAddressList = addressDictionary.putIfAbsent(host, addressList);
+        return existAddressList != null ? existAddressList : addressList;
+    }
+
+    /**
+     * 获取 host 缓存的解析结果
+     * 超过 ttl 但未超过 {@link GlobalConfiguration#dnsCacheMaxTTL} 的结果仍然返回，同时在后台刷新该 host 的解析结果，
+     * 同一 host 同时只有一个刷新任务；没有可用结果时也会在后台解析，供之后的请求使用。
+     *
+     * @param host host
+     * @return 解析结果，没有可用结果时为 null
+     */
     public List<IDnsNetworkAddress> getInetAddressByHost(String host) {
         if (!isDnsOpen()) {
             return null;
         }
 
-        List<IDnsNetworkAddress> addressList = addressDictionary.get(host);
+        List<IDnsNetworkAddress> addressList = getAddressListOfHost(host);
         if (addressList != null && addressList.size() > 0) {
             DnsNetworkAddress firstAddress = (DnsNetworkAddress) addressList.get(0);
             if (firstAddress.isValid()) {
+                if (firstAddress.needRefresh()) {
+                    cacheStaleCount.incrementAndGet();
+                    refreshHostInBackground(host);
+                } else {
+                    cacheHitCount.incrementAndGet();
+                }
                 return addressList;
             }
         }
 
+        cacheMissCount.incrementAndGet();
+        refreshHostInBackground(host);
         return null;
     }
 
+    /**
+     * @return 获取解析结果时，缓存有效的次数
+     */
+    public long getCacheHitCount() {
+        return cacheHitCount.get();
+    }
+
+    /**
+     * @return 获取解析结果时，缓存超过 ttl 但仍可使用的次数
+     */
+    public long getCacheStaleCount() {
+        return cacheStaleCount.get();
+    }
+
+    /**
+     * @return 获取解析结果时，没有可用缓存的次数，此时请求需同步解析
+     */
+    public long getCacheMissCount() {
+        return cacheMissCount.get();
+    }
+
+    private void refreshHostInBackground(final String host) {
+        if (host == null || host.length() == 0) {
+            return;
+        }
+
+        // 解析失败的 host 不频繁重试
+        long currentTime = Utils.currentTimestamp();
+        Long lastRefreshTime = lastRefreshTimes.get(host);
+        if (lastRefreshTime != null && currentTime - lastRefreshTime < MinRefreshInterval) {
+            return;
+        }
+        if (lastRefreshTimes.size() >= MaxRefreshRecordCount) {
+            removeExpiredRefreshTimes(currentTime);
+        }
+        lastRefreshTimes.put(host, currentTime);
+
+        try {
+            refreshSingleFlight.perform(host, new SingleFlight.ActionHandler<Object>() {
+                @Override
+                public void action(final SingleFlight.CompleteHandler<Object> completeHandler) throws Exception {
+                    AsyncRun.runInBack(new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                preFetchHostsToMemory(new String[]{host});
+                                recordDnsCacheLater();
+                            } finally {
+                                completeHandler.complete(null);
+                            }
+                        }
+                    });
+                }
+            }, null);
+        } catch (Exception ignored) {
+        }
+    }
+
+    // 超过刷新间隔的纪录不再限制刷新，删除；仍超过上限时全部删除
+    private void removeExpiredRefreshTimes(long currentTime) {
+        for (Map.Entry<String, Long> entry : lastRefreshTimes.entrySet()) {
+            if (currentTime - entry.getValue() >= MinRefreshInterval) {
+                lastRefreshTimes.remove(entry.getKey(), entry.getValue());
+            }
+        }
+        if (lastRefreshTimes.size() >= MaxRefreshRecordCount) {
+            lastRefreshTimes.clear();
+        }
+    }
+
+    // 后台刷新的结果延迟写入磁盘缓存，延迟期间的多次刷新仅写入一次
+    private void recordDnsCacheLater() {
+        if (!isDiskCacheRecordScheduled.compareAndSet(false, true)) {
+            return;
+        }
+
+        AsyncRun.runInBack(RecordDnsCacheDelay, new Runnable() {
+            @Override
+            public void run() {
+                isDiskCacheRecordScheduled.set(false);
+                recorderDnsCache();
+            }
+        });
+    }
+
     public String lookupBySafeDns(String hostname) throws UnknownHostException {
         if (hostname == null || hostname.length() == 0) {
             return null;
@@ -215,6 +367,16 @@ public class DnsPrefetcher {
     }
 
     private void preFetchHosts(String[] fetchHosts) {
+        preFetchHostsToMemory(fetchHosts);
+        recorderDnsCache();
+    }
+
+    // 解析 host 并放入内存缓存，不写入磁盘缓存
+    private void preFetchHostsToMemory(String[] fetchHosts) {
+        if (GlobalConfiguration.getInstance().dnsPrefetchConcurrently) {
+            preFetchHostsConcurrently(fetchHosts);
+            return;
+        }
 
         String[] nextFetchHosts = fetchHosts;
         int dnsTimeout = GlobalConfiguration.getInstance().dnsResolveTimeout;
@@ -240,9 +402,104 @@ public class DnsPrefetcher {
 
         // udp dns
         UdpDns udpDns = new UdpDns(dnsTimeout);
-        nextFetchHosts = preFetchHosts(nextFetchHosts, udpDns);
+        preFetchHosts(nextFetchHosts, udpDns);
+    }
 
-        recorderDnsCache();
+    /**
+     * 并发预取：所有 host 同时解析，每个 host 按 自定义 dns、系统 dns、http dns、udp dns 的顺序提交解析任务，
+     * 任务在线程数有限的线程池中执行，先执行的解析未结束时后面的解析也可开始，任一解析成功后该 host 其他未开始的解析不再执行；
+     * 解析结果在成功时即放入缓存，所有 host 解析结束或超过 {@link GlobalConfiguration#dnsPrefetchTimeout} 时返回
+     *
+     * @param preHosts 需要预取的 host
+     */
+    private void preFetchHostsConcurrently(String[] preHosts) {
+        if (preHosts == null || preHosts.length == 0) {
+            return;
+        }
+
+        GlobalConfiguration config = GlobalConfiguration.getInstance();
+        int dnsTimeout = config.dnsResolveTimeout;
+        final long deadline = Utils.currentTimestamp() + config.dnsPrefetchTimeout * 1000L;
+
+        ArrayList<Dns> dnsList = new ArrayList<>();
+        if (getCustomDns() != null) {
+            dnsList.add(getCustomDns());
+        }
+        dnsList.add(systemDns);
+        dnsList.add(new HttpDns(dnsTimeout));
+        dnsList.add(new UdpDns(dnsTimeout));
+
+        HashSet<String> hostSet = new HashSet<>();
+        for (String host : preHosts) {
+            if (host != null && host.length() > 0) {
+                hostSet.add(host);
+            }
+        }
+        if (hostSet.isEmpty()) {
+            return;
+        }
+
+        final CountDownLatch latch = new CountDownLatch(hostSet.size());
+        final ConcurrentHashMap<String, AtomicInteger> remainTaskCounts = new ConcurrentHashMap<>();
+        final Set<String> finishedHosts = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        for (String host : hostSet) {
+            remainTaskCounts.put(host, new AtomicInteger(dnsList.size()));
+        }
+
+        final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        for (final Dns dns : dnsList) {
+            for (final String host : hostSet) {
+                tasks.add(new Runnable() {
+                    @Override
+                    public void run() {
+                        boolean isSuccess = false;
+                        if (!finishedHosts.contains(host) && Utils.currentTimestamp() < deadline) {
+                            isSuccess = preFetchHostWithRetry(host, dns);
+                        }
+
+                        // host 解析成功或所有解析都失败时结束
+                        int remainTaskCount = remainTaskCounts.get(host).decrementAndGet();
+                        if ((isSuccess || remainTaskCount == 0) && finishedHosts.add(host)) {
+                            latch.countDown();
+                        }
+                    }
+                });
+            }
+        }
+
+        // 最多 dnsPrefetchConcurrentCount 个解析同时进行
+        int workerCount = Math.min(Math.max(config.dnsPrefetchConcurrentCount, 1), tasks.size());
+        for (int i = 0; i < workerCount; i++) {
+            AsyncRun.runInBackground(new Runnable() {
+                @Override
+                public void run() {
+                    Runnable task;
+                    while ((task = tasks.poll()) != null) {
+                        task.run();
+                    }
+                }
+            });
+        }
+
+        try {
+            latch.await(Math.max(deadline - Utils.currentTimestamp(), 0), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ignored) {
+        }
+    }
+
+    private boolean preFetchHostWithRetry(String host, Dns dns) {
+        int rePreNum = 0;
+        while (rePreNum < GlobalConfiguration.getInstance().dnsRepreHostNum) {
+            try {
+                if (preFetchHost(host, dns)) {
+                    return true;
+                }
+            } catch (UnknownHostException e) {
+                lastPrefetchErrorMessage = e.toString();
+            }
+            rePreNum += 1;
+        }
+        return false;
     }
 
     private String[] preFetchHosts(String[] preHosts, Dns dns) {
@@ -283,7 +540,7 @@ public class DnsPrefetcher {
             return false;
         }
 
-        List<IDnsNetworkAddress> preAddressList = addressDictionary.get(preHost);
+        List<IDnsNetworkAddress> preAddressList = getAddressListOfHost(preHost);
         if (preAddressList != null && preAddressList.size() > 0) {
             DnsNetworkAddress firstAddress = (DnsNetworkAddress) preAddressList.get(0);
             if (!firstAddress.needRefresh()) {
@@ -323,12 +580,11 @@ public class DnsPrefetcher {
     private boolean recoverDnsCache(byte[] data) {
 
         DnsCacheInfo dnsCacheInfo = DnsCacheInfo.createDnsCacheInfoByData(data);
-        if (dnsCacheInfo == null || dnsCacheInfo.getInfo() == null || dnsCacheInfo.getInfo().size() == 0) {
+        if (dnsCacheInfo == null || dnsCacheInfo.isEmpty()) {
             return false;
         }
 
-        addressDictionary.putAll(dnsCacheInfo.getInfo());
-        dnsCacheInfo.setInfo(addressDictionary);
+        setRecoveredDnsCache(dnsCacheInfo);
         setDnsCacheInfo(dnsCacheInfo);
 
         return false;
@@ -346,10 +602,19 @@ public class DnsPrefetcher {
             return false;
         }
 
+        // 未使用过的恢复缓存一并保存
+        DnsCacheInfo recoveredDnsCache = getRecoveredDnsCache();
+        if (recoveredDnsCache != null) {
+            setRecoveredDnsCache(null);
+            for (Map.Entry<String, List<IDnsNetworkAddress>> entry : recoveredDnsCache.getInfo().entrySet()) {
+                addressDictionary.putIfAbsent(entry.getKey(), entry.getValue());
+            }
+        }
+
         DnsCacheInfo dnsCacheInfo = new DnsCacheInfo(currentTime, localIp, addressDictionary);
         setDnsCacheInfo(dnsCacheInfo);
 
-        byte[] data = dnsCacheInfo.toJsonData();
+        byte[] data = dnsCacheInfo.toData();
         if (data == null) {
             return false;
         }
@@ -359,6 +624,7 @@ public class DnsPrefetcher {
     }
 
     public void clearMemoryCache() {
+        setRecoveredDnsCache(null);
         addressDictionary.clear();
     }
 
@@ -444,4 +710,12 @@ public class DnsPrefetcher {
     private synchronized void setDnsCacheInfo(DnsCacheInfo dnsCacheInfo) {
         this.dnsCacheInfo = dnsCacheInfo;
     }
+
+    private synchronized DnsCacheInfo getRecoveredDnsCache() {
+        return recoveredDnsCache;
+    }
+
+    private synchronized void setRecoveredDnsCache(DnsCacheInfo recoveredDnsCache) {
+        this.recoveredDnsCache = recoveredDnsCache;
+    }
 }
@@ -9,6 +9,7 @@ import com.qiniu.android.storage.GlobalConfiguration;
 import java.io.IOException;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -18,8 +19,14 @@ import java.util.concurrent.TimeUnit;
 public class UdpDns extends BaseDns implements Dns {
     private IResolver udpIpv4Resolver;
     private IResolver udpIpv6Resolver;
+    private UdpDnsFanOut fanOutResolver;
 
     public UdpDns(int timeout) {
+        if (GlobalConfiguration.getInstance().udpDnsFanOut) {
+            fanOutResolver = createFanOutResolver(timeout);
+            return;
+        }
+
         String[] udpIpv4Servers = GlobalConfiguration.getInstance().getUdpDnsIpv4Servers();
         if (udpIpv4Servers != null && udpIpv4Servers.length > 0) {
             udpIpv4Resolver = new DnsUdpResolver(udpIpv4Servers, Record.TYPE_A, timeout, executor);
@@ -31,12 +38,36 @@ public class UdpDns extends BaseDns implements Dns {
         }
     }
 
+    private static UdpDnsFanOut createFanOutResolver(int timeout) {
+        ArrayList<String> servers = new ArrayList<>();
+        String[] udpIpv4Servers = GlobalConfiguration.getInstance().getUdpDnsIpv4Servers();
+        if (udpIpv4Servers != null) {
+            servers.addAll(Arrays.asList(udpIpv4Servers));
+        }
+        String[] udpIpv6Servers = GlobalConfiguration.getInstance().getUdpDnsIpv6Servers();
+        if (udpIpv6Servers != null) {
+            servers.addAll(Arrays.asList(udpIpv6Servers));
+        }
+        return new UdpDnsFanOut(servers.toArray(new String[0]), timeout);
+    }
+
     @Override
     public List<IDnsNetworkAddress> lookup(String hostname) throws UnknownHostException {
         if (!GlobalConfiguration.getInstance().udpDnsEnable) {
             return null;
         }
 
+        if (fanOutResolver != null) {
+            if (fanOutResolver.isEmpty()) {
+                throw new UnknownHostException("resolver server is invalid");
+            }
+            try {
+                return fanOutResolver.lookup(hostname);
+            } catch (IOException ignore) {
+                return null;
+            }
+        }
+
         if (udpIpv4Resolver == null && udpIpv6Resolver == null) {
             throw new UnknownHostException("resolver server is invalid");
         }
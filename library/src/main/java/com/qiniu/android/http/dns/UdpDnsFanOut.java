@@ -0,0 +1,426 @@
+package com.qiniu.android.http.dns;
+
+import com.qiniu.android.storage.GlobalConfiguration;
+import com.qiniu.android.utils.Utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 同时向所有 server 发送 udp Dns 请求（A 记录），在当前线程通过 Selector 接收，取最先返回的有效结果
+ * 记录各 server 的响应时间：按响应时间由快到慢发送，连续超时或出错 {@link #MaxFailedCount} 次的 server 在
+ * {@link #FailedRetryInterval} 内不再使用（所有 server 均不可用时仍全部使用）；server 响应但没有记录（如 NXDOMAIN）不记为失败
+ */
+class UdpDnsFanOut {
+
+    static final int DnsPort = 53;
+
+    // 连续失败多少次后暂停使用 server
+    private static final int MaxFailedCount = 3;
+    // 暂停使用的时长，单位：毫秒
+    private static final long FailedRetryInterval = 60 * 1000;
+    // 响应时间新样本的权重
+    private static final double SmoothFactor = 0.4;
+    private static final int MaxPacketSize = 1500;
+
+    private static final int TypeA = 1;
+    private static final int TypeAAAA = 28;
+    private static final int ClassIN = 1;
+
+    // key: server 地址
+    private static final ConcurrentHashMap<String, ServerStat> serverStats = new ConcurrentHashMap<>();
+
+    private final List<InetSocketAddress> servers;
+    // 单位：毫秒
+    private final int timeout;
+
+    /**
+     * @param servers server ip，端口为 {@link #DnsPort}
+     * @param timeout 超时时间，单位：秒
+     */
+    UdpDnsFanOut(String[] servers, int timeout) {
+        this(createServerAddressList(servers), timeout * 1000);
+    }
+
+    UdpDnsFanOut(List<InetSocketAddress> servers, int timeoutMs) {
+        this.servers = servers != null ? servers : new ArrayList<InetSocketAddress>();
+        this.timeout = timeoutMs;
+    }
+
+    private static List<InetSocketAddress> createServerAddressList(String[] servers) {
+        List<InetSocketAddress> addressList = new ArrayList<>();
+        if (servers == null) {
+            return addressList;
+        }
+        for (String server : servers) {
+            if (server == null || server.length() == 0) {
+                continue;
+            }
+            // ip 不会触发 Dns 解析
+            InetSocketAddress address = new InetSocketAddress(server, DnsPort);
+            if (!address.isUnresolved()) {
+                addressList.add(address);
+            }
+        }
+        return addressList;
+    }
+
+    boolean isEmpty() {
+        return servers.size() == 0;
+    }
+
+    /**
+     * @return 解析结果，所有 server 均无有效结果时为 null
+     */
+    List<IDnsNetworkAddress> lookup(String hostname) throws IOException {
+        if (hostname == null || hostname.length() == 0 || isEmpty()) {
+            return null;
+        }
+
+        int id = (int) (Math.random() * 0xFFFF);
+        byte[] query = createQuery(id, hostname);
+
+        List<InetSocketAddress> sendServers = getSendServers();
+        List<DatagramChannel> channels = new ArrayList<>();
+        Selector selector = Selector.open();
+        try {
+            int pendingCount = 0;
+            for (InetSocketAddress server : sendServers) {
+                DatagramChannel channel = null;
+                try {
+                    channel = DatagramChannel.open();
+                    channels.add(channel);
+                    channel.configureBlocking(false);
+                    channel.connect(server);
+                    channel.write(ByteBuffer.wrap(query));
+                    channel.register(selector, SelectionKey.OP_READ, new PendingQuery(server, System.nanoTime()));
+                    pendingCount++;
+                } catch (IOException e) {
+                    getServerStat(server).recordFailure();
+                }
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate(MaxPacketSize);
+            long deadline = System.nanoTime() + timeout * 1000000L;
+            while (pendingCount > 0) {
+                long remainingTime = (deadline - System.nanoTime()) / 1000000L;
+                if (remainingTime <= 0) {
+                    break;
+                }
+                if (selector.select(remainingTime) == 0) {
+                    continue;
+                }
+
+                Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+                while (iterator.hasNext()) {
+                    SelectionKey key = iterator.next();
+                    iterator.remove();
+                    PendingQuery pendingQuery = (PendingQuery) key.attachment();
+                    DatagramChannel channel = (DatagramChannel) key.channel();
+
+                    List<IDnsNetworkAddress> addressList = null;
+                    boolean isIOError = false;
+                    try {
+                        buffer.clear();
+                        int length = channel.read(buffer);
+                        if (length <= 0) {
+                            continue;
+                        }
+                        if (!isResponse(id, buffer.array(), length)) {
+                            // 非本次请求的响应，继续等待
+                            continue;
+                        }
+                        addressList = parseResponse(id, hostname, buffer.array(), length,
+                                pendingQuery.server.getAddress().getHostAddress());
+                    } catch (IOException e) {
+                        // 如：端口不可达
+                        isIOError = true;
+                    }
+
+                    key.cancel();
+                    pendingCount--;
+                    pendingQuery.isComplete = true;
+                    if (isIOError) {
+                        getServerStat(pendingQuery.server).recordFailure();
+                        continue;
+                    }
+
+                    // server 已响应，没有记录（如 NXDOMAIN）不是 server 的问题，不记为失败
+                    long responseTime = (System.nanoTime() - pendingQuery.sendTime) / 1000000L;
+                    getServerStat(pendingQuery.server).recordSuccess(responseTime);
+                    if (addressList == null || addressList.size() == 0) {
+                        continue;
+                    }
+
+                    recordPendingServers(selector, false);
+                    return addressList;
+                }
+            }
+
+            recordPendingServers(selector, true);
+            return null;
+        } finally {
+            for (DatagramChannel channel : channels) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                }
+            }
+            try {
+                selector.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    // 未返回的 server：超时记为失败，否则响应时间至少为已等待的时间
+    private static void recordPendingServers(Selector selector, boolean isTimeout) {
+        long currentTime = System.nanoTime();
+        for (SelectionKey key : selector.keys()) {
+            PendingQuery pendingQuery = (PendingQuery) key.attachment();
+            if (pendingQuery.isComplete) {
+                continue;
+            }
+            if (isTimeout) {
+                getServerStat(pendingQuery.server).recordFailure();
+            } else {
+                getServerStat(pendingQuery.server).recordNoLessThan((currentTime - pendingQuery.sendTime) / 1000000L);
+            }
+        }
+    }
+
+    // 可用的 server 按响应时间由快到慢排序，没有响应时间的 server 优先，以便获取样本
+    private List<InetSocketAddress> getSendServers() {
+        long currentTime = Utils.currentTimestamp();
+        List<InetSocketAddress> sendServers = new ArrayList<>();
+        for (InetSocketAddress server : servers) {
+            if (getServerStat(server).isAvailable(currentTime)) {
+                sendServers.add(server);
+            }
+        }
+        if (sendServers.size() == 0) {
+            sendServers.addAll(servers);
+        }
+
+        Collections.sort(sendServers, new Comparator<InetSocketAddress>() {
+            @Override
+            public int compare(InetSocketAddress o1, InetSocketAddress o2) {
+                return Double.compare(getServerStat(o1).getResponseTime(), getServerStat(o2).getResponseTime());
+            }
+        });
+        return sendServers;
+    }
+
+    private static ServerStat getServerStat(InetSocketAddress server) {
+        String key = getServerKey(server);
+        ServerStat stat = serverStats.get(key);
+        if (stat == null) {
+            stat = new ServerStat();
+            ServerStat existStat = serverStats.putIfAbsent(key, stat);
+            if (existStat != null) {
+                stat = existStat;
+            }
+        }
+        return stat;
+    }
+
+    private static String getServerKey(InetSocketAddress server) {
+        return server.getAddress().getHostAddress() + ":" + server.getPort();
+    }
+
+    /**
+     * @return server 的平均响应时间，单位：毫秒，没有记录时为 0
+     */
+    static double getServerResponseTime(InetSocketAddress server) {
+        return getServerStat(server).getResponseTime();
+    }
+
+    static void clearServerStats() {
+        serverStats.clear();
+    }
+
+    // ---------- Dns 报文 -----------
+    static byte[] createQuery(int id, String hostname) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(hostname.length() + 18);
+        writeShort(outputStream, id);
+        // 标志：期望递归
+        writeShort(outputStream, 0x0100);
+        // QDCOUNT、ANCOUNT、NSCOUNT、ARCOUNT
+        writeShort(outputStream, 1);
+        writeShort(outputStream, 0);
+        writeShort(outputStream, 0);
+        writeShort(outputStream, 0);
+
+        for (String label : hostname.split("\\.")) {
+            if (label.length() == 0) {
+                continue;
+            }
+            byte[] labelBytes = label.getBytes("UTF-8");
+            if (labelBytes.length > 63) {
+                throw new IOException("invalid hostname:" + hostname);
+            }
+            outputStream.write(labelBytes.length);
+            outputStream.write(labelBytes);
+        }
+        outputStream.write(0);
+        writeShort(outputStream, TypeA);
+        writeShort(outputStream, ClassIN);
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * @return 是否为本次请求的响应，不检查 RCODE
+     */
+    static boolean isResponse(int id, byte[] data, int length) {
+        if (data == null || length < 12 || length > data.length) {
+            return false;
+        }
+        return readShort(data, 0) == id && (readShort(data, 2) & 0x8000) != 0;
+    }
+
+    /**
+     * @return 响应中的 A 及 AAAA 记录，报文无效或出错时为 null
+     */
+    static List<IDnsNetworkAddress> parseResponse(int id, String hostname, byte[] data, int length, String server) {
+        if (data == null || length < 12 || length > data.length) {
+            return null;
+        }
+
+        int responseId = readShort(data, 0);
+        int flags = readShort(data, 2);
+        // 非响应或 RCODE 不为 0
+        if (responseId != id || (flags & 0x8000) == 0 || (flags & 0x000F) != 0) {
+            return null;
+        }
+
+        int questionCount = readShort(data, 4);
+        int answerCount = readShort(data, 6);
+        int position = 12;
+        for (int i = 0; i < questionCount; i++) {
+            position = skipName(data, position, length);
+            position += 4;
+            if (position < 0 || position > length) {
+                return null;
+            }
+        }
+
+        long timestamp = Utils.currentSecondTimestamp();
+        long minTTL = GlobalConfiguration.getInstance().dnsCacheTime;
+        String source = DnsSource.Udp + ":<" + server + ">";
+        List<IDnsNetworkAddress> addressList = new ArrayList<>();
+        for (int i = 0; i < answerCount; i++) {
+            position = skipName(data, position, length);
+            if (position < 0 || position + 10 > length) {
+                return null;
+            }
+            int type = readShort(data, position);
+            int dataClass = readShort(data, position + 2);
+            long ttl = ((long) readShort(data, position + 4) << 16) | readShort(data, position + 6);
+            int dataLength = readShort(data, position + 8);
+            position += 10;
+            if (position + dataLength > length) {
+                return null;
+            }
+
+            if (dataClass == ClassIN && ((type == TypeA && dataLength == 4) || (type == TypeAAAA && dataLength == 16))) {
+                byte[] addressBytes = new byte[dataLength];
+                System.arraycopy(data, position, addressBytes, 0, dataLength);
+                try {
+                    String ip = InetAddress.getByAddress(addressBytes).getHostAddress();
+                    // 缓存时间不短于 dnsCacheTime
+                    addressList.add(new DnsNetworkAddress(hostname, ip, Math.max(ttl, minTTL), source, timestamp));
+                } catch (IOException ignored) {
+                }
+            }
+            position += dataLength;
+        }
+        return addressList;
+    }
+
+    // 返回 name 之后的位置，出错时返回 -1
+    private static int skipName(byte[] data, int position, int length) {
+        while (position >= 0 && position < length) {
+            int labelLength = data[position] & 0xFF;
+            if (labelLength == 0) {
+                return position + 1;
+            }
+            if ((labelLength & 0xC0) == 0xC0) {
+                return position + 2;
+            }
+            position += labelLength + 1;
+        }
+        return -1;
+    }
+
+    private static int readShort(byte[] data, int position) {
+        return ((data[position] & 0xFF) << 8) | (data[position + 1] & 0xFF);
+    }
+
+    private static void writeShort(ByteArrayOutputStream outputStream, int value) {
+        outputStream.write((value >> 8) & 0xFF);
+        outputStream.write(value & 0xFF);
+    }
+
+    private static class PendingQuery {
+        private final InetSocketAddress server;
+        private final long sendTime;
+        private boolean isComplete = false;
+
+        private PendingQuery(InetSocketAddress server, long sendTime) {
+            this.server = server;
+            this.sendTime = sendTime;
+        }
+    }
+
+    private static class ServerStat {
+        // 单位：毫秒，0 表示没有记录
+        private double responseTime = 0;
+        private int failedCount = 0;
+        private long lastFailedTime = 0;
+
+        private synchronized double getResponseTime() {
+            return responseTime;
+        }
+
+        private synchronized boolean isAvailable(long currentTime) {
+            return failedCount < MaxFailedCount || currentTime - lastFailedTime > FailedRetryInterval;
+        }
+
+        private synchronized void recordSuccess(long responseTime) {
+            recordSample(responseTime);
+            this.failedCount = 0;
+        }
+
+        private void recordSample(long responseTime) {
+            responseTime = Math.max(responseTime, 1);
+            if (this.responseTime <= 0) {
+                this.responseTime = responseTime;
+            } else {
+                this.responseTime = responseTime * SmoothFactor + this.responseTime * (1 - SmoothFactor);
+            }
+        }
+
+        private synchronized void recordNoLessThan(long responseTime) {
+            if (this.responseTime < responseTime) {
+                recordSample(responseTime);
+            }
+        }
+
+        private synchronized void recordFailure() {
+            this.failedCount++;
+            this.lastFailedTime = Utils.currentTimestamp();
+        }
+    }
+}
@@ -34,6 +34,19 @@ public class UploadRegionRequestMetrics extends UploadMetrics {
         return bytes;
     }
 
+    /**
+     * @return 复用已有连接的请求数
+     */
+    public Integer reusedConnectionCount() {
+        int count = 0;
+        for (UploadSingleRequestMetrics metrics : metricsList) {
+            if (metrics != null && metrics.isConnectionReused()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
     public UploadSingleRequestMetrics lastMetrics() {
         int size = metricsList.size();
         return size < 1 ? null : metricsList.get(size - 1);
@@ -73,8 +73,8 @@ public class UploadSingleRequestMetrics extends UploadMetrics {
             if (request.allHeaders != null) {
                 headerLength = (new JSONObject(request.allHeaders)).toString().length();
             }
-            if (request.httpBody != null) {
-                bodyLength = request.httpBody.length;
+            if (request.httpBody != null || request.getHttpBodyBuffer() != null) {
+                bodyLength = request.getHttpBodyLength();
             }
             totalBytes = headerLength + bodyLength;
         }
@@ -348,6 +348,13 @@ public class UploadSingleRequestMetrics extends UploadMetrics {
         return time(responseStartDate, responseEndDate);
     }
 
+    /**
+     * @return 请求是否复用了已有连接（请求已发出且未建立新连接）
+     */
+    public boolean isConnectionReused() {
+        return requestStartDate != null && connectStartDate == null;
+    }
+
     public long totalBytes() {
         return totalBytes;
     }
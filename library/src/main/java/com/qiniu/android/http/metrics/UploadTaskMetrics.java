@@ -34,6 +34,20 @@ public class UploadTaskMetrics extends UploadMetrics {
         return count;
     }
 
+    /**
+     * @return 复用已有连接的请求数
+     */
+    public Long reusedConnectionCount(){
+        long count = 0;
+        for (String key : metricsInfo.keySet()){
+            UploadRegionRequestMetrics metrics = metricsInfo.get(key);
+            if (metrics != null){
+                count += metrics.reusedConnectionCount();
+            }
+        }
+        return count;
+    }
+
     public Long bytesSend(){
         long bytesSend = 0;
         for (String key : metricsInfo.keySet()){
@@ -18,12 +18,16 @@ import java.util.concurrent.TimeUnit;
 public class NetworkStatusManager {
 
     private static String kNetworkStatusDiskKey = "NetworkStatus:v1.0.0";
+    // 写入磁盘的延迟，期间的更新合并为一次写入，单位：毫秒
+    private static final int RecordDelay = 5 * 1000;
 
-    private boolean hasInit = false;
-    private boolean isHandlingNetworkInfoOfDisk = false;
+    // 是否持久化到磁盘，仅 getInstance() 返回的实例持久化
+    private final boolean isPersistent;
+    private volatile boolean hasInit = false;
+    private volatile boolean isHandlingNetworkInfoOfDisk = false;
     private Recorder recorder;
-    private ConcurrentHashMap<String, NetworkStatus> networkStatusInfo;
-    private static NetworkStatusManager networkStatusManager = new NetworkStatusManager();
+    private final ConcurrentHashMap<String, NetworkStatus> networkStatusInfo = new ConcurrentHashMap<>();
+    private static NetworkStatusManager networkStatusManager = new NetworkStatusManager(true);
     private final ExecutorService executorService = new ThreadPoolExecutor(1, 2,
             120L, TimeUnit.MILLISECONDS,
             new LinkedBlockingQueue<Runnable>());
@@ -33,13 +37,31 @@ public class NetworkStatusManager {
         return networkStatusManager;
     }
 
-    public synchronized void initData() {
-        if (hasInit){
+    /**
+     * 创建仅保存在内存中的实例，参考 {@link com.qiniu.android.http.NetworkContext}
+     */
+    public NetworkStatusManager() {
+        this(false);
+    }
+
+    private NetworkStatusManager(boolean isPersistent) {
+        this.isPersistent = isPersistent;
+    }
+
+    public void initData() {
+        // 已初始化时不加锁
+        if (hasInit) {
             return;
         }
-        hasInit = true;
-        networkStatusManager.networkStatusInfo = new ConcurrentHashMap<>();
-        networkStatusManager.asyncRecoverNetworkStatusFromDisk();
+        synchronized (this) {
+            if (hasInit) {
+                return;
+            }
+            hasInit = true;
+        }
+        if (isPersistent) {
+            asyncRecoverNetworkStatusFromDisk();
+        }
     }
 
     @Deprecated
@@ -75,22 +97,30 @@ public class NetworkStatusManager {
         }
         status.setSpeed(speed);
 
-        asyncRecordNetworkStatusInfo();
+        if (isPersistent) {
+            asyncRecordNetworkStatusInfo();
+        }
     }
 
     // ---------- 持久化 -----------
     private void asyncRecordNetworkStatusInfo() {
+        // 已计划写入时不加锁
+        if (isHandlingNetworkInfoOfDisk) {
+            return;
+        }
         synchronized (this) {
             if (isHandlingNetworkInfoOfDisk) {
                 return;
             }
             isHandlingNetworkInfoOfDisk = true;
         }
-        executorService.submit(new Runnable() {
+        AsyncRun.runInBack(RecordDelay, new Runnable() {
             @Override
             public void run() {
+                synchronized (NetworkStatusManager.this) {
+                    isHandlingNetworkInfoOfDisk = false;
+                }
                 recordNetworkStatusInfo();
-                isHandlingNetworkInfoOfDisk = false;
             }
         });
     }
@@ -106,7 +136,9 @@ public class NetworkStatusManager {
             @Override
             public void run() {
                 recoverNetworkStatusFromDisk();
-                isHandlingNetworkInfoOfDisk = true;
+                synchronized (NetworkStatusManager.this) {
+                    isHandlingNetworkInfoOfDisk = false;
+                }
             }
         });
     }
@@ -115,7 +147,7 @@ public class NetworkStatusManager {
 
         setupRecorder();
 
-        if (recorder == null || networkStatusInfo == null) {
+        if (recorder == null) {
             return;
         }
 
@@ -136,7 +168,7 @@ public class NetworkStatusManager {
 
         setupRecorder();
 
-        if (recorder == null || networkStatusInfo == null) {
+        if (recorder == null) {
             return;
         }
 
@@ -0,0 +1,381 @@
+package com.qiniu.android.http.networkStatus;
+
+import com.qiniu.android.http.request.IUploadServer;
+import com.qiniu.android.storage.FileRecorder;
+import com.qiniu.android.storage.Recorder;
+import com.qiniu.android.utils.AsyncRun;
+import com.qiniu.android.utils.Utils;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 记录每个 server（httpVersion、host、ip）的网络状态：RTT、吞吐量、失败率及最近一次请求时间，用于选择 server
+ * 各指标为指数加权平均，长时间没有新样本时逐渐回归默认值；
+ * 更新后延迟 {@link #RecordDelay} 写入磁盘，期间的更新合并为一次写入
+ */
+public class ServerScoreboard {
+
+    private static final String kScoreboardDiskKey = "ServerScoreboard:v1.0.0";
+
+    // 新样本的权重，与 NetworkStatusManager 一致
+    private static final double SmoothFactor = 0.4;
+    // 指标回归默认值的半衰期，单位：毫秒
+    private static final long DecayHalfLife = 10 * 60 * 1000;
+    // 超过此时间没有新样本的记录不再保存，单位：毫秒
+    private static final long ExpireTime = 24 * 3600 * 1000;
+    // 最多记录的 server 数
+    private static final int MaxScoreCount = 256;
+    // 写入磁盘的延迟，单位：毫秒
+    private static final int RecordDelay = 5 * 1000;
+
+    // 默认 RTT，单位：毫秒
+    static final double DefaultRtt = 200;
+    // 默认吞吐量，单位：KB/s
+    static final double DefaultThroughput = NetworkStatusManager.DefaultSpeed;
+
+    private static final ServerScoreboard scoreboard = new ServerScoreboard(true);
+
+    // 是否持久化到磁盘，仅 getInstance() 返回的实例持久化
+    private final boolean isPersistent;
+    private volatile boolean hasInit = false;
+    private volatile boolean isRecordScheduled = false;
+    private Recorder recorder;
+    private final ConcurrentHashMap<String, ServerScore> scores = new ConcurrentHashMap<>();
+
+    public static ServerScoreboard getInstance() {
+        scoreboard.initData();
+        return scoreboard;
+    }
+
+    /**
+     * 创建仅保存在内存中的实例，参考 {@link com.qiniu.android.http.NetworkContext}
+     */
+    public ServerScoreboard() {
+        this(false);
+    }
+
+    private ServerScoreboard(boolean isPersistent) {
+        this.isPersistent = isPersistent;
+    }
+
+    private void initData() {
+        // 已初始化时不加锁
+        if (hasInit || !isPersistent) {
+            return;
+        }
+        synchronized (this) {
+            if (hasInit) {
+                return;
+            }
+            hasInit = true;
+        }
+        AsyncRun.runInBack(new Runnable() {
+            @Override
+            public void run() {
+                recoverFromDisk();
+            }
+        });
+    }
+
+    public static String getScoreKey(String httpVersion, String host, String ip) {
+        return (httpVersion != null ? httpVersion : "") + "-" + (host != null ? host : "") + "-" + (ip != null ? ip : "");
+    }
+
+    /**
+     * @return server 的网络状态，没有记录时为 null
+     */
+    public ServerScore getScore(String httpVersion, String host, String ip) {
+        return scores.get(getScoreKey(httpVersion, host, ip));
+    }
+
+    /**
+     * 请求成功
+     *
+     * @param rtt 首字节耗时，单位：毫秒，小于等于 0 时不记录
+     */
+    public void recordSuccess(String httpVersion, String host, String ip, long rtt) {
+        ServerScore score = getOrCreateScore(httpVersion, host, ip);
+        score.update(rtt, 0, false);
+        scheduleRecord();
+    }
+
+    /**
+     * 吞吐量
+     *
+     * @param throughput 单位：KB/s，小于等于 0 时不记录
+     */
+    public void recordThroughput(String httpVersion, String host, String ip, long throughput) {
+        ServerScore score = getOrCreateScore(httpVersion, host, ip);
+        score.update(0, throughput, false);
+        scheduleRecord();
+    }
+
+    /**
+     * 请求因网络原因失败
+     */
+    public void recordFailure(String httpVersion, String host, String ip) {
+        ServerScore score = getOrCreateScore(httpVersion, host, ip);
+        score.update(0, 0, true);
+        scheduleRecord();
+    }
+
+    /**
+     * 按网络状态加权随机选择 server，评分越高被选中的概率越大；没有记录的 server 使用默认评分，以便获得样本
+     *
+     * @param servers 候选 server
+     * @return 选中的 server，servers 为空时为 null
+     */
+    public <T extends IUploadServer> T chooseServer(List<T> servers) {
+        if (servers == null || servers.size() == 0) {
+            return null;
+        }
+        if (servers.size() == 1) {
+            return servers.get(0);
+        }
+
+        double[] weights = new double[servers.size()];
+        double totalWeight = 0;
+        for (int i = 0; i < servers.size(); i++) {
+            weights[i] = getServerScore(servers.get(i));
+            totalWeight += weights[i];
+        }
+
+        double random = Math.random() * totalWeight;
+        for (int i = 0; i < servers.size(); i++) {
+            random -= weights[i];
+            if (random < 0) {
+                return servers.get(i);
+            }
+        }
+        return servers.get(servers.size() - 1);
+    }
+
+    double getServerScore(IUploadServer server) {
+        if (server == null) {
+            return 0;
+        }
+
+        ServerScore score = getScore(server.getHttpVersion(), server.getHost(), server.getIp());
+        return score != null ? score.getScore() : new ServerScore().getScore();
+    }
+
+    private ServerScore getOrCreateScore(String httpVersion, String host, String ip) {
+        String key = getScoreKey(httpVersion, host, ip);
+        ServerScore score = scores.get(key);
+        if (score == null) {
+            removeOldestScoreIfNeeded();
+            score = new ServerScore();
+            ServerScore existScore = scores.putIfAbsent(key, score);
+            if (existScore != null) {
+                score = existScore;
+            }
+        }
+        return score;
+    }
+
+    private void removeOldestScoreIfNeeded() {
+        if (scores.size() < MaxScoreCount) {
+            return;
+        }
+
+        String oldestKey = null;
+        long oldestTime = Long.MAX_VALUE;
+        for (Map.Entry<String, ServerScore> entry : scores.entrySet()) {
+            long lastSeenTime = entry.getValue().getLastSeenTime();
+            if (lastSeenTime < oldestTime) {
+                oldestTime = lastSeenTime;
+                oldestKey = entry.getKey();
+            }
+        }
+        if (oldestKey != null) {
+            scores.remove(oldestKey);
+        }
+    }
+
+    // ---------- 持久化 -----------
+    private void scheduleRecord() {
+        // 已计划写入时不加锁
+        if (!isPersistent || isRecordScheduled) {
+            return;
+        }
+        synchronized (this) {
+            if (isRecordScheduled) {
+                return;
+            }
+            isRecordScheduled = true;
+        }
+
+        AsyncRun.runInBack(RecordDelay, new Runnable() {
+            @Override
+            public void run() {
+                synchronized (ServerScoreboard.this) {
+                    isRecordScheduled = false;
+                }
+                recordToDisk();
+            }
+        });
+    }
+
+    private void recordToDisk() {
+        Recorder recorder = getRecorder();
+        if (recorder == null) {
+            return;
+        }
+
+        long currentTime = Utils.currentTimestamp();
+        JSONObject scoresJson = new JSONObject();
+        for (Map.Entry<String, ServerScore> entry : scores.entrySet()) {
+            ServerScore score = entry.getValue();
+            if (currentTime - score.getLastSeenTime() > ExpireTime) {
+                scores.remove(entry.getKey(), score);
+                continue;
+            }
+            try {
+                scoresJson.put(entry.getKey(), score.toJson());
+            } catch (JSONException ignored) {
+            }
+        }
+        recorder.set(kScoreboardDiskKey, scoresJson.toString().getBytes());
+    }
+
+    private void recoverFromDisk() {
+        Recorder recorder = getRecorder();
+        if (recorder == null) {
+            return;
+        }
+
+        JSONObject scoresJson = null;
+        try {
+            scoresJson = new JSONObject(new String(recorder.get(kScoreboardDiskKey)));
+        } catch (Exception ignored) {
+            return;
+        }
+
+        long currentTime = Utils.currentTimestamp();
+        for (Iterator<String> it = scoresJson.keys(); it.hasNext(); ) {
+            String key = it.next();
+            try {
+                ServerScore score = ServerScore.scoreFromJson(scoresJson.getJSONObject(key));
+                if (score != null && currentTime - score.getLastSeenTime() <= ExpireTime) {
+                    scores.putIfAbsent(key, score);
+                }
+            } catch (JSONException ignored) {
+            }
+        }
+    }
+
+    private synchronized Recorder getRecorder() {
+        if (recorder == null) {
+            try {
+                recorder = new FileRecorder(Utils.sdkDirectory() + "/NetworkInfo");
+            } catch (Exception ignored) {
+            }
+        }
+        return recorder;
+    }
+
+    public static class ServerScore {
+
+        private double rtt = DefaultRtt;
+        private double throughput = DefaultThroughput;
+        private double failureRate = 0;
+        private long lastSeenTime = 0;
+
+        /**
+         * @return RTT，单位：毫秒
+         */
+        public synchronized double getRtt() {
+            return decay(rtt, DefaultRtt);
+        }
+
+        /**
+         * @return 吞吐量，单位：KB/s
+         */
+        public synchronized double getThroughput() {
+            return decay(throughput, DefaultThroughput);
+        }
+
+        /**
+         * @return 失败率，[0, 1]
+         */
+        public synchronized double getFailureRate() {
+            return decay(failureRate, 0);
+        }
+
+        public synchronized long getLastSeenTime() {
+            return lastSeenTime;
+        }
+
+        /**
+         * 评分：吞吐量越高、RTT 越低、失败率越低，评分越高
+         */
+        public synchronized double getScore() {
+            double rtt = getRtt();
+            double successRate = 1 - getFailureRate();
+            return getThroughput() * successRate * successRate * DefaultRtt / (DefaultRtt + rtt);
+        }
+
+        private synchronized void update(long rtt, long throughput, boolean isFailed) {
+            // 先按时间衰减，再加入新样本
+            this.rtt = getRtt();
+            this.throughput = getThroughput();
+            this.failureRate = getFailureRate();
+            this.lastSeenTime = Utils.currentTimestamp();
+
+            if (rtt > 0) {
+                this.rtt = rtt * SmoothFactor + this.rtt * (1 - SmoothFactor);
+            }
+            if (throughput > 0) {
+                this.throughput = throughput * SmoothFactor + this.throughput * (1 - SmoothFactor);
+            }
+            if (rtt > 0 || isFailed) {
+                this.failureRate = (isFailed ? 1 : 0) * SmoothFactor + this.failureRate * (1 - SmoothFactor);
+            }
+        }
+
+        private double decay(double value, double defaultValue) {
+            if (lastSeenTime <= 0) {
+                return value;
+            }
+
+            long elapsedTime = Utils.currentTimestamp() - lastSeenTime;
+            if (elapsedTime <= 0) {
+                return value;
+            }
+            double weight = Math.pow(0.5, (double) elapsedTime / DecayHalfLife);
+            return defaultValue + (value - defaultValue) * weight;
+        }
+
+        private synchronized JSONObject toJson() throws JSONException {
+            JSONObject jsonObject = new JSONObject();
+            jsonObject.put("rtt", rtt);
+            jsonObject.put("throughput", throughput);
+            jsonObject.put("failureRate", failureRate);
+            jsonObject.put("lastSeenTime", lastSeenTime);
+            return jsonObject;
+        }
+
+        private static ServerScore scoreFromJson(JSONObject jsonObject) {
+            if (jsonObject == null) {
+                return null;
+            }
+
+            ServerScore score = new ServerScore();
+            try {
+                score.rtt = jsonObject.getDouble("rtt");
+                score.throughput = jsonObject.getDouble("throughput");
+                score.failureRate = jsonObject.getDouble("failureRate");
+                score.lastSeenTime = jsonObject.getLong("lastSeenTime");
+            } catch (JSONException ignored) {
+                return null;
+            }
+            return score;
+        }
+    }
+}
@@ -5,11 +5,19 @@ import com.qiniu.android.http.request.IUploadServer;
 public class UploadServerNetworkStatus {
 
     public static IUploadServer getBetterNetworkServer(IUploadServer serverA, IUploadServer serverB) {
-        return isServerNetworkBetter(serverA, serverB) ? serverA : serverB;
+        return getBetterNetworkServer(NetworkStatusManager.getInstance(), serverA, serverB);
+    }
+
+    public static IUploadServer getBetterNetworkServer(NetworkStatusManager statusManager, IUploadServer serverA, IUploadServer serverB) {
+        return isServerNetworkBetter(statusManager, serverA, serverB) ? serverA : serverB;
     }
 
-    // 如果两个 Server 网速相同且类别相同优先使用 serverA，类别不同优先使用 Http3
     public static boolean isServerNetworkBetter(IUploadServer serverA, IUploadServer serverB) {
+        return isServerNetworkBetter(NetworkStatusManager.getInstance(), serverA, serverB);
+    }
+
+    // 如果两个 Server 网速相同且类别相同优先使用 serverA，类别不同优先使用 Http3
+    public static boolean isServerNetworkBetter(NetworkStatusManager statusManager, IUploadServer serverA, IUploadServer serverB) {
         if (serverA == null) {
             return false;
         } else if (serverB == null) {
@@ -24,8 +32,11 @@ public class UploadServerNetworkStatus {
             return true;
         }
 
-        NetworkStatusManager.NetworkStatus serverStatusA = NetworkStatusManager.getInstance().getNetworkStatus(serverTypeA);
-        NetworkStatusManager.NetworkStatus serverStatusB = NetworkStatusManager.getInstance().getNetworkStatus(serverTypeB);
+        if (statusManager == null) {
+            statusManager = NetworkStatusManager.getInstance();
+        }
+        NetworkStatusManager.NetworkStatus serverStatusA = statusManager.getNetworkStatus(serverTypeA);
+        NetworkStatusManager.NetworkStatus serverStatusB = statusManager.getNetworkStatus(serverTypeB);
 
         int serverASpeed = serverStatusA.getSpeed();
         int serverBSpeed = serverStatusB.getSpeed();
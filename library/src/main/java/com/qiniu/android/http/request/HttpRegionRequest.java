@@ -14,11 +14,15 @@ import com.qiniu.android.utils.StringUtils;
 
 import org.json.JSONObject;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Map;
 
 class HttpRegionRequest {
 
+    // 避开指定 server 时最多选择的次数
+    private static final int MaxExcludeTryCount = 8;
+
     private final Configuration config;
     private final UploadOptions uploadOption;
     private final UpToken token;
@@ -26,9 +30,15 @@ class HttpRegionRequest {
     private final UploadRequestInfo requestInfo;
 
     private UploadRequestState requestState;
-    private HttpSingleRequest singleRequest;
-    private IUploadServer currentServer;
+    private volatile HttpSingleRequest singleRequest;
+    private volatile IUploadServer currentServer;
     private UploadRegionRequestMetrics requestMetrics;
+    // 同一上传共享的固定 server，为空时每次请求单独选择 server
+    private UploadServerPin serverPin;
+    // 占用的 serverPin 请求数
+    private UploadServerPin.Lease pinLease;
+    // 首次选择 server 时需避开的 server，如：对冲请求避开原请求的 server
+    private IUploadServer excludedServer;
 
     HttpRegionRequest(Configuration config,
                       UploadOptions uploadOption,
@@ -46,6 +56,25 @@ class HttpRegionRequest {
         singleRequest = new HttpSingleRequest(config, uploadOption, token, requestInfo, requestState);
     }
 
+    void setServerPin(UploadServerPin serverPin) {
+        this.serverPin = serverPin;
+    }
+
+    void setExcludedServer(IUploadServer excludedServer) {
+        this.excludedServer = excludedServer;
+    }
+
+    IUploadServer getCurrentServer() {
+        return currentServer;
+    }
+
+    void cancel() {
+        HttpSingleRequest request = singleRequest;
+        if (request != null) {
+            request.cancel();
+        }
+    }
+
     void get(String action,
              boolean isAsync,
              Map<String, String> header,
@@ -63,6 +92,16 @@ class HttpRegionRequest {
               RequestShouldRetryHandler shouldRetryHandler,
               RequestProgressHandler progressHandler,
               RequestCompleteHandler completeHandler) {
+        post(action, isAsync, wrapData(data), header, shouldRetryHandler, progressHandler, completeHandler);
+    }
+
+    void post(String action,
+              boolean isAsync,
+              ByteBuffer data,
+              Map<String, String> header,
+              RequestShouldRetryHandler shouldRetryHandler,
+              RequestProgressHandler progressHandler,
+              RequestCompleteHandler completeHandler) {
         requestMetrics = new UploadRegionRequestMetrics(region);
         requestMetrics.start();
         performRequest(getNextServer(null), action, isAsync, data, header, "POST", shouldRetryHandler, progressHandler, completeHandler);
@@ -75,15 +114,29 @@ class HttpRegionRequest {
              RequestShouldRetryHandler shouldRetryHandler,
              RequestProgressHandler progressHandler,
              RequestCompleteHandler completeHandler) {
+        put(action, isAsync, wrapData(data), header, shouldRetryHandler, progressHandler, completeHandler);
+    }
+
+    void put(String action,
+             boolean isAsync,
+             ByteBuffer data,
+             Map<String, String> header,
+             RequestShouldRetryHandler shouldRetryHandler,
+             RequestProgressHandler progressHandler,
+             RequestCompleteHandler completeHandler) {
         requestMetrics = new UploadRegionRequestMetrics(region);
         requestMetrics.start();
         performRequest(getNextServer(null), action, isAsync, data, header, "PUT", shouldRetryHandler, progressHandler, completeHandler);
     }
 
+    private static ByteBuffer wrapData(byte[] data) {
+        return data != null ? ByteBuffer.wrap(data) : null;
+    }
+
     private void performRequest(final IUploadServer server,
                                 final String action,
                                 final boolean isAsync,
-                                final byte[] data,
+                                final ByteBuffer data,
                                 final Map<String, String> header,
                                 final String method,
                                 final RequestShouldRetryHandler shouldRetryHandler,
@@ -124,6 +177,17 @@ class HttpRegionRequest {
 
                 requestMetrics.addMetricsList(requestMetricsList);
 
+                if (serverPin != null) {
+                    serverPin.addMetrics(server, requestMetricsList);
+                    if (responseInfo != null && (!responseInfo.canConnectToHost() || responseInfo.isHostUnavailable())) {
+                        serverPin.unpin(server);
+                    }
+                }
+
+                if (config.useConnectionRace && responseInfo != null && !responseInfo.canConnectToHost()) {
+                    UploadServerRacer.invalidate(server, getServerPort());
+                }
+
                 boolean hijackedAndNeedRetry = false;
                 if (requestMetricsList != null && requestMetricsList.size() > 0) {
                     UploadSingleRequestMetrics metrics = requestMetricsList.get(requestMetricsList.size() - 1);
@@ -142,15 +206,14 @@ class HttpRegionRequest {
                         && responseInfo.couldRegionRetry()) || hijackedAndNeedRetry) {
 
                     IUploadServer newServer = getNextServer(responseInfo);
+                    request.releaseHttpBody();
                     if (newServer != null) {
-                        performRequest(newServer, action, isAsync, request.httpBody, header, method, shouldRetryHandler, progressHandler, completeHandler);
-                        request.httpBody = null;
+                        performRequest(newServer, action, isAsync, data, header, method, shouldRetryHandler, progressHandler, completeHandler);
                     } else {
-                        request.httpBody = null;
                         completeAction(responseInfo, response, completeHandler);
                     }
                 } else {
-                    request.httpBody = null;
+                    request.releaseHttpBody();
                     completeAction(responseInfo, response, completeHandler);
                 }
             }
@@ -164,6 +227,7 @@ class HttpRegionRequest {
                                 RequestCompleteHandler completeHandler) {
 
         requestMetrics.end();
+        releasePinnedServer();
         singleRequest = null;
         if (completeHandler != null) {
             completeHandler.complete(responseInfo, requestMetrics, response);
@@ -176,7 +240,54 @@ class HttpRegionRequest {
             requestState.setUseOldServer(true);
         }
 
-        return region.getNextServer(requestState, responseInfo, currentServer);
+        releasePinnedServer();
+        if (excludedServer != null && responseInfo == null) {
+            return getNextServerExcluding(excludedServer);
+        }
+
+        if (serverPin != null && responseInfo == null) {
+            UploadServerPin.Lease lease = serverPin.acquire(region);
+            if (lease != null) {
+                pinLease = lease;
+                return lease.server;
+            }
+        }
+
+        IUploadServer server = region.getNextServer(requestState, responseInfo, currentServer);
+        if (config.useConnectionRace && config.proxy == null && config.urlConverter == null) {
+            boolean ipv6Enabled = region.getZoneInfo() != null && region.getZoneInfo().ipv6;
+            server = UploadServerRacer.race(region, server, getServerPort(), ipv6Enabled, config.connectTimeout);
+        }
+
+        if (serverPin != null && server != null) {
+            pinLease = serverPin.pin(server);
+        }
+        return server;
+    }
+
+    // region 按网络状态随机选择 server，多次选择以避开 excludedServer，无其他 server 时返回 null
+    private IUploadServer getNextServerExcluding(IUploadServer excludedServer) {
+        for (int i = 0; i < MaxExcludeTryCount; i++) {
+            IUploadServer server = region.getNextServer(requestState, null, currentServer);
+            if (server == null) {
+                break;
+            }
+            if (!UploadServerPin.isSameServer(server, excludedServer)) {
+                return server;
+            }
+        }
+        return null;
+    }
+
+    private void releasePinnedServer() {
+        if (serverPin != null && pinLease != null) {
+            serverPin.release(pinLease);
+        }
+        pinLease = null;
+    }
+
+    private int getServerPort() {
+        return config.useHttps ? 443 : 80;
     }
 
 
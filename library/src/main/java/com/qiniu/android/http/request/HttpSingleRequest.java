@@ -9,12 +9,12 @@ import com.qiniu.android.http.connectCheck.ConnectChecker;
 import com.qiniu.android.http.dns.DnsSource;
 import com.qiniu.android.http.dns.DnsPrefetcher;
 import com.qiniu.android.http.networkStatus.NetworkStatusManager;
+import com.qiniu.android.http.networkStatus.ServerScoreboard;
 import com.qiniu.android.http.request.httpclient.SystemHttpClient;
 import com.qiniu.android.http.request.handler.CheckCancelHandler;
 import com.qiniu.android.http.request.handler.RequestProgressHandler;
 import com.qiniu.android.http.request.handler.RequestShouldRetryHandler;
 import com.qiniu.android.http.metrics.UploadSingleRequestMetrics;
-import com.qiniu.android.http.serverRegion.HttpServerManager;
 import com.qiniu.android.storage.Configuration;
 import com.qiniu.android.storage.GlobalConfiguration;
 import com.qiniu.android.storage.UpToken;
@@ -40,7 +40,8 @@ class HttpSingleRequest {
 
     private ArrayList<UploadSingleRequestMetrics> requestMetricsList;
 
-    private IRequestClient client;
+    // 在 completeAction 中置空，cancel 时在其他线程读取
+    private volatile IRequestClient client;
 
     HttpSingleRequest(Configuration config,
                       UploadOptions uploadOption,
@@ -78,6 +79,8 @@ class HttpSingleRequest {
         //                 如果是 qn-curl client（七牛 http3 插件），仅允许 http3 请求。
         if (config.requestClient != null && (!config.requestClient.getClientId().equals("qn-curl") || (server != null && server.isHttp3()))) {
             client = config.requestClient;
+            // 自定义 client 仅支持 httpBody
+            request.loadHttpBodyFromBuffer();
         } else {
             client = new SystemHttpClient();
         }
@@ -103,6 +106,7 @@ class HttpSingleRequest {
             public void progress(long totalBytesWritten, long totalBytesExpectedToWrite) {
                 if (checkCancelHandler.checkCancel()) {
                     requestState.setUserCancel(true);
+                    IRequestClient client = HttpSingleRequest.this.client;
                     if (client != null) {
                         client.cancel();
                     }
@@ -170,11 +174,30 @@ class HttpSingleRequest {
                         && (responseInfo != null && responseInfo.couldHostRetry())) {
                     currentRetryTime += 1;
 
-                    try {
-                        Thread.sleep(config.retryInterval);
-                    } catch (InterruptedException ignored) {
+                    long retryDelay = RetryBackoff.getDelay(config, currentRetryTime);
+                    if (!isAsync) {
+                        // 同步请求在调用线程中等待
+                        try {
+                            Thread.sleep(retryDelay);
+                        } catch (InterruptedException ignored) {
+                        }
+                        retryRequest(request, server, isAsync, shouldRetryHandler, progressHandler, completeHandler);
+                        return;
                     }
-                    retryRequest(request, server, isAsync, shouldRetryHandler, progressHandler, completeHandler);
+
+                    // 异步请求延迟重试，等待期间不占用线程
+                    final UploadSingleRequestMetrics lastMetrics = metrics;
+                    RetryBackoff.schedule(retryDelay, new Runnable() {
+                        @Override
+                        public void run() {
+                            if (checkCancelHandler.checkCancel()) {
+                                ResponseInfo cancelledInfo = ResponseInfo.cancelled();
+                                completeAction(server, cancelledInfo, cancelledInfo.response, lastMetrics, completeHandler);
+                                return;
+                            }
+                            retryRequest(request, server, isAsync, shouldRetryHandler, progressHandler, completeHandler);
+                        }
+                    });
                 } else {
                     completeAction(server, responseInfo, response, metrics, completeHandler);
                 }
@@ -183,6 +206,17 @@ class HttpSingleRequest {
 
     }
 
+    /**
+     * 取消请求，请求以 {@link ResponseInfo#cancelled()} 结束
+     */
+    void cancel() {
+        requestState.setUserCancel(true);
+        IRequestClient client = this.client;
+        if (client != null) {
+            client.cancel();
+        }
+    }
+
     private boolean shouldCheckConnect(ResponseInfo responseInfo) {
         if (!GlobalConfiguration.getInstance().connectCheckEnable) {
             return false;
@@ -209,6 +243,7 @@ class HttpSingleRequest {
         }
         client = null;
 
+        updateServerScore(responseInfo, server, requestMetrics);
         updateHostNetworkStatus(responseInfo, server, requestMetrics);
 
         if (completeHandler != null) {
@@ -216,6 +251,19 @@ class HttpSingleRequest {
         }
     }
 
+    private void updateServerScore(ResponseInfo responseInfo, IUploadServer server, UploadSingleRequestMetrics requestMetrics) {
+        if (responseInfo == null || server == null || responseInfo.isCancelled()) {
+            return;
+        }
+
+        ServerScoreboard scoreboard = config.networkContext.getServerScoreboard();
+        if (!responseInfo.canConnectToHost() || responseInfo.isHostUnavailable() || responseInfo.isTlsError()) {
+            scoreboard.recordFailure(server.getHttpVersion(), server.getHost(), server.getIp());
+        } else if (requestMetrics != null) {
+            scoreboard.recordSuccess(server.getHttpVersion(), server.getHost(), server.getIp(), requestMetrics.totalWaitTime());
+        }
+    }
+
     private void updateHostNetworkStatus(ResponseInfo responseInfo, IUploadServer server, UploadSingleRequestMetrics requestMetrics) {
         if (requestMetrics == null) {
             return;
@@ -251,7 +299,8 @@ class HttpSingleRequest {
         int speed = (int) (byteCount / milliSecond);
         Log.d("speed","httpVersion:" + server.getHttpVersion() + " byte:" + byteCount/1024.0 + "  milliSecond:" + milliSecond + "   speed:" + speed);
         String type = NetworkStatusManager.getNetworkStatusType(server.getHttpVersion(), server.getHost(), server.getIp());
-        NetworkStatusManager.getInstance().updateNetworkStatus(type, speed);
+        config.networkContext.getNetworkStatusManager().updateNetworkStatus(type, speed);
+        config.networkContext.getServerScoreboard().recordThroughput(server.getHttpVersion(), server.getHost(), server.getIp(), speed);
     }
 
     private void updateHttpServerInfo(IUploadServer server, ResponseInfo responseInfo) {
@@ -285,7 +334,7 @@ class HttpSingleRequest {
         }
 
         if (host != null && ip != null && live > 0) {
-            HttpServerManager.getInstance().addHttp3Server(host, ip, live);
+            config.networkContext.getHttpServerManager().addHttp3Server(host, ip, live);
         }
     }
 
@@ -16,4 +16,12 @@ public interface IUploadRegion {
     IUploadServer getNextServer(UploadRequestState requestState, ResponseInfo responseInfo, IUploadServer freezeServer);
 
     void updateIpListFormHost(String host);
+
+    /**
+     * server 是否已被冻结（包括区域内冻结及全局冻结）
+     *
+     * @param server server
+     * @return 是否已冻结
+     */
+    boolean isServerFrozen(IUploadServer server);
 }
@@ -1,5 +1,6 @@
 package com.qiniu.android.http.request;
 
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -19,6 +20,8 @@ public class Request {
     public final int writeTimeout;
     public byte[] httpBody;
 
+    // 请求体不是完整的 byte[] 时（如：文件映射数据、块数据切片）保存请求体，此时 httpBody 为空
+    private ByteBuffer httpBodyBuffer;
     private String host;
 
     public Request(String urlString,
@@ -58,6 +61,71 @@ public class Request {
         this.timeout = connectTimeout + writeTimeout + readTimeout;
     }
 
+    Request(String urlString,
+            String httpMethod,
+            Map<String, String> allHeaders,
+            ByteBuffer httpBody,
+            int connectTimeout,
+            int readTimeout,
+            int writeTimeout) {
+        this(urlString, httpMethod, allHeaders, wholeArrayOfBuffer(httpBody), connectTimeout, readTimeout, writeTimeout);
+        if (httpBody != null && this.httpBody.length == 0 && httpBody.remaining() > 0) {
+            this.httpBodyBuffer = httpBody;
+        }
+    }
+
+    private static byte[] wholeArrayOfBuffer(ByteBuffer buffer) {
+        if (buffer == null || !buffer.hasArray() || buffer.arrayOffset() != 0 || buffer.position() != 0) {
+            return null;
+        }
+        byte[] array = buffer.array();
+        return buffer.remaining() == array.length ? array : null;
+    }
+
+    /**
+     * 获取请求体 buffer, 仅当请求体不是完整的 byte[] 时有值，读取时需 duplicate
+     *
+     * @return 请求体 buffer
+     */
+    public ByteBuffer getHttpBodyBuffer() {
+        return httpBodyBuffer;
+    }
+
+    /**
+     * 获取请求体大小
+     *
+     * @return 请求体大小
+     */
+    public long getHttpBodyLength() {
+        if (httpBodyBuffer != null) {
+            return httpBodyBuffer.remaining();
+        }
+        return httpBody != null ? httpBody.length : 0;
+    }
+
+    /**
+     * 将请求体 buffer 中的数据拷贝至 httpBody，供仅支持 httpBody 的 client 使用
+     */
+    void loadHttpBodyFromBuffer() {
+        if (httpBodyBuffer == null) {
+            return;
+        }
+
+        ByteBuffer buffer = httpBodyBuffer.duplicate();
+        byte[] body = new byte[buffer.remaining()];
+        buffer.get(body);
+        httpBody = body;
+        httpBodyBuffer = null;
+    }
+
+    /**
+     * 释放请求体
+     */
+    void releaseHttpBody() {
+        httpBody = null;
+        httpBodyBuffer = null;
+    }
+
     void setHost(String host) {
         this.host = host;
     }
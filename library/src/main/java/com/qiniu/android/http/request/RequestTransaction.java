@@ -21,6 +21,7 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -57,7 +58,7 @@ public class RequestTransaction {
                               String key,
                               UpToken token) {
         this(config, uploadOption, key, token);
-        IUploadRegion region = new UploadDomainRegion();
+        IUploadRegion region = new UploadDomainRegion(config.networkContext);
         region.setupRegionData(ZoneInfo.buildInfo(hosts, regionId));
         this.initData(region, region);
     }
@@ -101,6 +102,39 @@ public class RequestTransaction {
     }
 
 
+    /**
+     * 设置同一上传共享的固定 server，请求优先使用固定的 server 以复用连接
+     *
+     * @param serverPin 固定 server，为空时每次请求单独选择 server
+     */
+    public void setServerPin(UploadServerPin serverPin) {
+        regionRequest.setServerPin(serverPin);
+    }
+
+    /**
+     * 设置首次选择 server 时需避开的 server，没有其他可用 server 时请求失败
+     * 对冲请求使用，避免与原请求使用同一个 server
+     *
+     * @param excludedServer 需避开的 server
+     */
+    public void setExcludedServer(IUploadServer excludedServer) {
+        regionRequest.setExcludedServer(excludedServer);
+    }
+
+    /**
+     * @return 当前请求使用的 server，未开始请求时为 null
+     */
+    public IUploadServer getCurrentServer() {
+        return regionRequest.getCurrentServer();
+    }
+
+    /**
+     * 取消正在进行的请求，请求以 {@link ResponseInfo#cancelled()} 结束
+     */
+    public void cancel() {
+        regionRequest.cancel();
+    }
+
     public void queryUploadHosts(boolean isAsync,
                                  final RequestCompleteHandler completeHandler) {
         requestInfo.requestType = UploadRequestInfo.RequestTypeUCQuery;
@@ -200,6 +234,20 @@ public class RequestTransaction {
                           boolean isAsync,
                           final RequestProgressHandler progressHandler,
                           final RequestCompleteHandler completeHandler) {
+        makeBlock(blockOffset, blockSize, ByteBuffer.wrap(firstChunkData), Crc32.bytes(firstChunkData), isAsync, progressHandler, completeHandler);
+    }
+
+    /**
+     * @param firstChunkData 块中第一个片的数据
+     * @param firstChunkCrc  第一个片数据的 crc32，由调用方在读取数据时计算，避免再次遍历数据
+     */
+    public void makeBlock(long blockOffset,
+                          long blockSize,
+                          ByteBuffer firstChunkData,
+                          long firstChunkCrc,
+                          boolean isAsync,
+                          final RequestProgressHandler progressHandler,
+                          final RequestCompleteHandler completeHandler) {
 
         requestInfo.requestType = UploadRequestInfo.RequestTypeMkblk;
         requestInfo.fileOffset = blockOffset;
@@ -211,7 +259,7 @@ public class RequestTransaction {
         header.put("User-Agent", userAgent);
 
         String action = "/mkblk/" + blockSize;
-        final String chunkCrc = "" + Crc32.bytes(firstChunkData);
+        final String chunkCrc = "" + firstChunkCrc;
         RequestShouldRetryHandler shouldRetryHandler = new RequestShouldRetryHandler() {
             @Override
             public boolean shouldRetry(ResponseInfo responseInfo, JSONObject response) {
@@ -246,6 +294,21 @@ public class RequestTransaction {
                             boolean isAsync,
                             final RequestProgressHandler progressHandler,
                             final RequestCompleteHandler completeHandler) {
+        uploadChunk(blockContext, blockOffset, ByteBuffer.wrap(chunkData), Crc32.bytes(chunkData), chunkOffset, isAsync, progressHandler, completeHandler);
+    }
+
+    /**
+     * @param chunkData  片数据
+     * @param chunkCrc32 片数据的 crc32，由调用方在读取数据时计算，避免再次遍历数据
+     */
+    public void uploadChunk(String blockContext,
+                            long blockOffset,
+                            ByteBuffer chunkData,
+                            long chunkCrc32,
+                            long chunkOffset,
+                            boolean isAsync,
+                            final RequestProgressHandler progressHandler,
+                            final RequestCompleteHandler completeHandler) {
 
         requestInfo.requestType = UploadRequestInfo.RequestTypeBput;
         requestInfo.fileOffset = blockOffset + chunkOffset;
@@ -257,7 +320,7 @@ public class RequestTransaction {
         header.put("User-Agent", userAgent);
 
         String action = String.format("/bput/%s/%s", blockContext, chunkOffset + "");
-        final String chunkCrc = "" + Crc32.bytes(chunkData);
+        final String chunkCrc = "" + chunkCrc32;
 
         RequestShouldRetryHandler shouldRetryHandler = new RequestShouldRetryHandler() {
             @Override
@@ -376,7 +439,7 @@ public class RequestTransaction {
             }
         };
 
-        regionRequest.post(action, isAsync, null, header, shouldRetryHandler, null, new HttpRegionRequest.RequestCompleteHandler() {
+        regionRequest.post(action, isAsync, (byte[]) null, header, shouldRetryHandler, null, new HttpRegionRequest.RequestCompleteHandler() {
             @Override
             public void complete(ResponseInfo responseInfo, UploadRegionRequestMetrics requestMetrics, JSONObject response) {
                 completeHandler.complete(responseInfo, requestMetrics, response);
@@ -391,6 +454,20 @@ public class RequestTransaction {
                            byte[] partData,
                            final RequestProgressHandler progressHandler,
                            final RequestCompleteHandler completeHandler) {
+        uploadPart(isAsync, uploadId, partIndex, ByteBuffer.wrap(partData), null, progressHandler, completeHandler);
+    }
+
+    /**
+     * @param partData 片数据
+     * @param partMd5  片数据的 md5，由调用方在读取数据时计算，为空且需要校验时会重新计算
+     */
+    public void uploadPart(boolean isAsync,
+                           String uploadId,
+                           int partIndex,
+                           ByteBuffer partData,
+                           String partMd5,
+                           final RequestProgressHandler progressHandler,
+                           final RequestCompleteHandler completeHandler) {
 
         requestInfo.requestType = UploadRequestInfo.RequestTypeUploadPart;
 
@@ -400,7 +477,7 @@ public class RequestTransaction {
         header.put("Content-Type", "application/octet-stream");
         header.put("User-Agent", userAgent);
         if (uploadOption.checkCrc) {
-            String md5 = MD5.encrypt(partData);
+            String md5 = partMd5 != null ? partMd5 : MD5.encrypt(partData);
             if (md5 != null) {
                 header.put("Content-MD5", md5);
             }
@@ -548,7 +625,7 @@ public class RequestTransaction {
         };
 
         String action = String.format("/v1/sdk/config?sdk_name=%s&sdk_version=%s", Utils.sdkLanguage(), Utils.sdkVerion());
-        regionRequest.post(action, isAsync, null, header, shouldRetryHandler, null, new HttpRegionRequest.RequestCompleteHandler() {
+        regionRequest.post(action, isAsync, (byte[]) null, header, shouldRetryHandler, null, new HttpRegionRequest.RequestCompleteHandler() {
             @Override
             public void complete(ResponseInfo responseInfo, UploadRegionRequestMetrics requestMetrics, JSONObject response) {
                 completeAction(responseInfo, requestMetrics, response, completeHandler);
@@ -571,7 +648,7 @@ public class RequestTransaction {
         };
 
         String action = String.format("/v1/sdk/config/user?ak=%s&sdk_name=%s&sdk_version=%s", token.accessKey, Utils.sdkLanguage(), Utils.sdkVerion());
-        regionRequest.post(action, isAsync, null, header, shouldRetryHandler, null, new HttpRegionRequest.RequestCompleteHandler() {
+        regionRequest.post(action, isAsync, (byte[]) null, header, shouldRetryHandler, null, new HttpRegionRequest.RequestCompleteHandler() {
             @Override
             public void complete(ResponseInfo responseInfo, UploadRegionRequestMetrics requestMetrics, JSONObject response) {
                 completeAction(responseInfo, requestMetrics, response, completeHandler);
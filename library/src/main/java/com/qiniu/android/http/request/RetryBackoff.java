@@ -0,0 +1,45 @@
+package com.qiniu.android.http.request;
+
+import com.qiniu.android.storage.Configuration;
+import com.qiniu.android.utils.AsyncRun;
+
+/**
+ * 重试等待：计算重试间隔，并通过 {@link AsyncRun#runInBackground(long, Runnable)} 延迟执行重试，等待期间不占用线程
+ * 间隔计算参考 {@link Configuration#useRetryBackoff}
+ */
+final class RetryBackoff {
+
+    private RetryBackoff() {
+    }
+
+    /**
+     * @param config    配置
+     * @param retryTime 第几次重试，从 1 开始
+     * @return 重试间隔，单位：毫秒
+     */
+    static long getDelay(Configuration config, int retryTime) {
+        if (config == null || config.retryInterval <= 0) {
+            return 0;
+        }
+        if (!config.useRetryBackoff) {
+            return config.retryInterval;
+        }
+
+        long maxDelay = Math.max(config.retryMaxInterval, 0);
+        long delay = config.retryInterval;
+        for (int i = 1; i < retryTime && delay < maxDelay; i++) {
+            delay *= 2;
+        }
+        delay = Math.min(delay, maxDelay);
+        return (long) (Math.random() * (delay + 1));
+    }
+
+    /**
+     * 延迟执行，delay 小于等于 0 时也在后台线程中执行
+     *
+     * @param delay 单位：毫秒
+     */
+    static void schedule(long delay, Runnable runnable) {
+        AsyncRun.runInBackground(delay, runnable);
+    }
+}
@@ -4,7 +4,7 @@ public class UploadRequestState {
 
     private boolean couldUseHttp3;
     private boolean isUseOldServer;
-    private boolean isUserCancel;
+    private volatile boolean isUserCancel;
 
     public boolean couldUseHttp3(){
         return couldUseHttp3;
@@ -0,0 +1,178 @@
+package com.qiniu.android.http.request;
+
+import com.qiniu.android.http.metrics.UploadSingleRequestMetrics;
+
+import java.util.List;
+
+/**
+ * 同一上传的请求固定使用同一个 server（相同 Host 及 IP），使请求复用同一个连接：
+ * http2 时多个请求在同一连接上并发（多路复用），同时进行的请求数不超过 maxConcurrentStreams；
+ * 协商为 http1.1 时每个连接同时只能进行一个请求，同时进行的请求数不超过 {@link #MaxHttp1Connections}，连接由连接池复用。
+ * 超过限制的请求重新选择 server（仍可能选中固定的 server）；请求无法连接或固定的 server 被 region 冻结时取消固定，之后的请求重新选择 server。
+ * 每次固定对应一个代数，占用的请求数以 {@link Lease} 归还，取消固定前的占用不会归还到之后固定的 server 上
+ */
+public final class UploadServerPin {
+
+    // http1.1 时固定 server 的最大连接数
+    static final int MaxHttp1Connections = 4;
+
+    private final int maxConcurrentStreams;
+    private IUploadServer server;
+    // 固定的代数，每次取消固定后增加
+    private long generation = 0;
+    // 固定的 server 协商的协议是否为 http2，未知时按 http2 处理
+    private boolean isHttp2 = true;
+    private int activeStreamCount = 0;
+
+    private long requestCount = 0;
+    private long reusedRequestCount = 0;
+    private long http2RequestCount = 0;
+
+    /**
+     * @param maxConcurrentStreams http2 时固定 server 同时进行的最大请求数
+     */
+    public UploadServerPin(int maxConcurrentStreams) {
+        this.maxConcurrentStreams = Math.max(maxConcurrentStreams, 1);
+    }
+
+    /**
+     * 获取固定的 server，获取成功时占用一个请求数，请求结束后需调用 {@link #release(Lease)}；
+     * 固定的 server 已被 region 冻结时取消固定
+     *
+     * @param region 当前 region，为空时不检查冻结
+     * @return 占用的固定 server，没有固定 server 或请求数已达上限时为 null
+     */
+    synchronized Lease acquire(IUploadRegion region) {
+        if (server == null) {
+            return null;
+        }
+        if (region != null && region.isServerFrozen(server)) {
+            reset();
+            return null;
+        }
+
+        int maxCount = isHttp2 ? maxConcurrentStreams : MaxHttp1Connections;
+        if (activeStreamCount >= maxCount) {
+            return null;
+        }
+        activeStreamCount++;
+        return new Lease(server, generation);
+    }
+
+    /**
+     * 固定 server 并占用一个请求数，已有固定 server 时不替换
+     *
+     * @param server 新选择的 server
+     * @return 占用的固定 server，未占用时为 null
+     */
+    synchronized Lease pin(IUploadServer server) {
+        if (server == null || server.getHost() == null) {
+            return null;
+        }
+        if (this.server != null && !isSameServer(this.server, server)) {
+            return null;
+        }
+        if (this.server == null) {
+            this.server = server;
+            this.isHttp2 = true;
+        }
+        activeStreamCount++;
+        return new Lease(this.server, generation);
+    }
+
+    synchronized void release(Lease lease) {
+        // 取消固定前占用的请求数已清零
+        if (lease != null && lease.generation == generation && activeStreamCount > 0) {
+            activeStreamCount--;
+        }
+    }
+
+    /**
+     * 固定的 server 无法连接时取消固定
+     */
+    synchronized void unpin(IUploadServer server) {
+        if (isSameServer(this.server, server)) {
+            reset();
+        }
+    }
+
+    /**
+     * 取消固定，切换区域时调用
+     */
+    public synchronized void reset() {
+        this.server = null;
+        this.activeStreamCount = 0;
+        this.generation++;
+    }
+
+    /**
+     * 记录请求的连接复用情况及协商的协议
+     */
+    synchronized void addMetrics(IUploadServer server, List<UploadSingleRequestMetrics> metricsList) {
+        if (metricsList == null) {
+            return;
+        }
+
+        for (UploadSingleRequestMetrics metrics : metricsList) {
+            if (metrics == null || metrics.getRequestStartDate() == null) {
+                continue;
+            }
+            requestCount++;
+            if (metrics.isConnectionReused()) {
+                reusedRequestCount++;
+            }
+            boolean isHttp2Request = "2".equals(metrics.getHttpVersion());
+            if (isHttp2Request) {
+                http2RequestCount++;
+            }
+            if (this.server != null && isSameServer(this.server, server) && metrics.getHttpVersion() != null) {
+                isHttp2 = isHttp2Request;
+            }
+        }
+    }
+
+    /**
+     * @return 发出的请求数
+     */
+    public synchronized long getRequestCount() {
+        return requestCount;
+    }
+
+    /**
+     * @return 复用已有连接的请求数
+     */
+    public synchronized long getReusedRequestCount() {
+        return reusedRequestCount;
+    }
+
+    /**
+     * @return 使用 http2 的请求数
+     */
+    public synchronized long getHttp2RequestCount() {
+        return http2RequestCount;
+    }
+
+    /**
+     * 占用的固定 server，请求结束后以此归还请求数
+     */
+    static final class Lease {
+        final IUploadServer server;
+        private final long generation;
+
+        private Lease(IUploadServer server, long generation) {
+            this.server = server;
+            this.generation = generation;
+        }
+    }
+
+    static boolean isSameServer(IUploadServer serverA, IUploadServer serverB) {
+        if (serverA == null || serverB == null) {
+            return false;
+        }
+        return equals(serverA.getHost(), serverB.getHost()) && equals(serverA.getIp(), serverB.getIp());
+    }
+
+    private static boolean equals(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
@@ -0,0 +1,285 @@
+package com.qiniu.android.http.request;
+
+import com.qiniu.android.http.dns.DnsPrefetcher;
+import com.qiniu.android.http.dns.IDnsNetworkAddress;
+import com.qiniu.android.http.serverRegion.UploadServer;
+import com.qiniu.android.utils.AsyncRun;
+import com.qiniu.android.utils.LogUtil;
+import com.qiniu.android.utils.SingleFlight;
+import com.qiniu.android.utils.StringUtils;
+import com.qiniu.android.utils.Utils;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 连接竞速（Happy Eyeballs）：同时向 host 的多个 IP 建立 TCP 连接，后一个 IP 比前一个延迟 {@link #ConnectStagger} 开始，
+ * 前一个连接失败时立即开始下一个；最先建立连接的 IP 胜出，其他连接关闭。
+ * 胜出的 IP 缓存 {@link #WinnerCacheTime}，期间请求直接使用该 IP，连接由连接池复用，不再竞速；该 IP 连接失败或被冻结时清除缓存。
+ * 竞速在后台进行，同一 host:port 同时只有一次竞速，竞速结束前请求使用 region 选出的 server，不阻塞请求线程；
+ * 所有 IP 均连接失败时同样缓存结果，期间不再竞速。被冻结的 IP 不参与竞速。
+ * 注：竞速时建立的连接仅用于选择 IP，不用于请求
+ */
+final class UploadServerRacer {
+
+    // 最多同时竞速的 IP 数
+    private static final int MaxRaceCount = 3;
+    // 相邻两个连接开始的间隔，单位：毫秒
+    private static final long ConnectStagger = 250;
+    // 胜出 IP 的缓存时间，单位：毫秒
+    private static final long WinnerCacheTime = 60 * 1000;
+
+    // key: host:port
+    private static final ConcurrentHashMap<String, Winner> winners = new ConcurrentHashMap<>();
+    private static final SingleFlight<String> singleFlight = new SingleFlight<>();
+
+    private UploadServerRacer() {
+    }
+
+    /**
+     * 选择 server 所在 host 中最先连接成功的 IP，没有竞速结果时在后台开始竞速，不等待竞速结束
+     *
+     * @param region      server 所在的 region，用于检查 IP 是否被冻结
+     * @param server      region 选出的 server，其 IP 优先
+     * @param port        端口
+     * @param ipv6Enabled 是否使用 ipv6
+     * @param timeout     连接超时时间，单位：秒
+     * @return 胜出 IP 的 server，无需竞速、竞速未结束或所有 IP 均连接失败时返回 server
+     */
+    static IUploadServer race(IUploadRegion region, IUploadServer server, int port, boolean ipv6Enabled, int timeout) {
+        if (region == null || server == null || server.getHost() == null || server.getIp() == null || server.isHttp3()) {
+            return server;
+        }
+
+        String host = server.getHost();
+        List<IDnsNetworkAddress> addresses = DnsPrefetcher.getInstance().getInetAddressByHost(host);
+        if (addresses == null || addresses.size() < 2) {
+            return server;
+        }
+
+        String key = host + ":" + port;
+        Winner winner = winners.get(key);
+        if (winner != null && !winner.isExpired()) {
+            if (winner.ip == null) {
+                return server;
+            }
+
+            IDnsNetworkAddress winnerAddress = findAddress(addresses, winner.ip);
+            if (winnerAddress != null) {
+                if (winnerAddress.getIpValue().equals(server.getIp())) {
+                    return server;
+                }
+                IUploadServer winnerServer = createServer(server, winnerAddress);
+                if (!region.isServerFrozen(winnerServer)) {
+                    return winnerServer;
+                }
+            }
+            winners.remove(key, winner);
+        }
+
+        List<IDnsNetworkAddress> candidates = getCandidates(region, server, addresses, ipv6Enabled);
+        if (candidates.size() >= 2) {
+            List<String> ips = new ArrayList<>();
+            for (IDnsNetworkAddress address : candidates) {
+                ips.add(address.getIpValue());
+            }
+            raceInBackground(key, ips, port, timeout * 1000L);
+        }
+        return server;
+    }
+
+    // 同一 host:port 同时只有一次竞速
+    private static void raceInBackground(final String key, final List<String> ips, final int port, final long timeout) {
+        try {
+            singleFlight.perform(key, new SingleFlight.ActionHandler<String>() {
+                @Override
+                public void action(final SingleFlight.CompleteHandler<String> completeHandler) throws Exception {
+                    AsyncRun.runInBackground(new Runnable() {
+                        @Override
+                        public void run() {
+                            String ip = race(ips, port, timeout);
+                            LogUtil.i("race " + key + " ips:" + StringUtils.toNonnullString(ips) + " winner:" + StringUtils.toNonnullString(ip));
+                            winners.put(key, new Winner(ip));
+                            completeHandler.complete(ip);
+                        }
+                    });
+                }
+            }, null);
+        } catch (Exception e) {
+            LogUtil.i("race " + key + " error:" + e.getMessage());
+        }
+    }
+
+    private static IUploadServer createServer(IUploadServer server, IDnsNetworkAddress address) {
+        UploadServer newServer = new UploadServer(server.getServerId(), server.getHost(), address.getIpValue(),
+                address.getSourceValue(), address.getTimestampValue());
+        newServer.setHttpVersion(server.getHttpVersion());
+        return newServer;
+    }
+
+    /**
+     * 连接失败，清除胜出 IP 的缓存
+     *
+     * @param server 连接失败的 server
+     * @param port   端口
+     */
+    static void invalidate(IUploadServer server, int port) {
+        if (server == null || server.getHost() == null || server.getIp() == null) {
+            return;
+        }
+
+        String key = server.getHost() + ":" + port;
+        Winner winner = winners.get(key);
+        if (winner != null && server.getIp().equals(winner.ip)) {
+            winners.remove(key, winner);
+        }
+    }
+
+    // server 的 IP 在前，ipv6 开启时 ipv4、ipv6 交替排列，被冻结的 IP 不参与竞速
+    private static List<IDnsNetworkAddress> getCandidates(IUploadRegion region, IUploadServer server,
+                                                          List<IDnsNetworkAddress> addresses, boolean ipv6Enabled) {
+        List<IDnsNetworkAddress> candidates = new ArrayList<>();
+        String serverIp = server.getIp();
+        IDnsNetworkAddress serverAddress = findAddress(addresses, serverIp);
+        if (serverAddress == null) {
+            return candidates;
+        }
+
+        List<IDnsNetworkAddress> sameFamily = new ArrayList<>();
+        List<IDnsNetworkAddress> otherFamily = new ArrayList<>();
+        boolean isServerIpv6 = Utils.isIpv6(serverIp);
+        for (IDnsNetworkAddress address : addresses) {
+            String ip = address.getIpValue();
+            if (ip == null || address == serverAddress) {
+                continue;
+            }
+
+            boolean isIpv6 = Utils.isIpv6(ip);
+            if (isIpv6 && !ipv6Enabled) {
+                continue;
+            }
+            if (region.isServerFrozen(createServer(server, address))) {
+                continue;
+            }
+            if (isIpv6 == isServerIpv6) {
+                sameFamily.add(address);
+            } else {
+                otherFamily.add(address);
+            }
+        }
+
+        candidates.add(serverAddress);
+        while (candidates.size() < MaxRaceCount && (sameFamily.size() > 0 || otherFamily.size() > 0)) {
+            if (otherFamily.size() > 0) {
+                candidates.add(otherFamily.remove(0));
+            }
+            if (candidates.size() < MaxRaceCount && sameFamily.size() > 0) {
+                candidates.add(sameFamily.remove(0));
+            }
+        }
+        return candidates;
+    }
+
+    private static IDnsNetworkAddress findAddress(List<IDnsNetworkAddress> addresses, String ip) {
+        for (IDnsNetworkAddress address : addresses) {
+            if (ip.equals(address.getIpValue())) {
+                return address;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 竞速连接
+     *
+     * @param ips     参与竞速的 IP，按顺序开始连接
+     * @param port    端口
+     * @param timeout 超时时间，单位：毫秒
+     * @return 最先连接成功的 IP，所有 IP 均失败或超时时返回 null
+     */
+    static String race(List<String> ips, final int port, final long timeout) {
+        ExecutorCompletionService<String> completionService = new ExecutorCompletionService<>(AsyncRun.getBackgroundExecutor());
+        final List<Socket> sockets = new ArrayList<>();
+        long deadline = Utils.currentTimestamp() + timeout;
+        int startedCount = 0;
+        int finishedCount = 0;
+        String winner = null;
+
+        try {
+            while (winner == null && (startedCount < ips.size() || finishedCount < startedCount)) {
+                if (startedCount < ips.size()) {
+                    final String ip = ips.get(startedCount++);
+                    final Socket socket = new Socket();
+                    synchronized (sockets) {
+                        sockets.add(socket);
+                    }
+                    completionService.submit(new Callable<String>() {
+                        @Override
+                        public String call() throws Exception {
+                            socket.connect(new InetSocketAddress(InetAddress.getByName(ip), port), (int) timeout);
+                            return ip;
+                        }
+                    });
+                }
+
+                long waitTime = deadline - Utils.currentTimestamp();
+                if (startedCount < ips.size()) {
+                    waitTime = Math.min(waitTime, ConnectStagger);
+                }
+                if (waitTime <= 0) {
+                    break;
+                }
+
+                // 等待超时时开始下一个连接
+                Future<String> future = completionService.poll(waitTime, TimeUnit.MILLISECONDS);
+                if (future == null) {
+                    continue;
+                }
+
+                finishedCount++;
+                try {
+                    winner = future.get();
+                } catch (ExecutionException ignored) {
+                }
+            }
+        } catch (InterruptedException ignored) {
+        } finally {
+            // 关闭所有连接，未结束的连接随之失败
+            synchronized (sockets) {
+                for (Socket socket : sockets) {
+                    try {
+                        socket.close();
+                    } catch (IOException ignored) {
+                    }
+                }
+            }
+        }
+
+        return winner;
+    }
+
+    private static class Winner {
+        // 为 null 时所有 IP 均连接失败
+        private final String ip;
+        private final long createTime;
+
+        private Winner(String ip) {
+            this.ip = ip;
+            this.createTime = Utils.currentTimestamp();
+        }
+
+        private boolean isExpired() {
+            return Utils.currentTimestamp() - createTime > WinnerCacheTime;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.qiniu.android.http.request.httpclient;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+
+/**
+ * 以 ByteBuffer 为数据源的 RequestBody，直接从 buffer 写入 sink，不会将 buffer 整体拷贝到 Java 堆中；
+ * buffer 可以为文件映射数据，每次写入均从 buffer 的 position 开始，支持重复写入（重试）
+ */
+public class ByteBufferBody extends RequestBody {
+
+    private static final int SEGMENT_SIZE = 1024 * 16; // okio.Segment.SIZE
+
+    private final MediaType mediaType;
+    private final ByteBuffer body;
+
+    public ByteBufferBody(MediaType mediaType,
+                          ByteBuffer body) {
+
+        this.mediaType = mediaType;
+        this.body = body;
+    }
+
+    @Override
+    public MediaType contentType() {
+        return mediaType;
+    }
+
+    @Override
+    public long contentLength() throws IOException {
+        return body.remaining();
+    }
+
+    @Override
+    public void writeTo(BufferedSink bufferedSink) throws IOException {
+
+        ByteBuffer source = body.duplicate();
+        int limit = source.limit();
+        while (source.hasRemaining()) {
+            source.limit(Math.min(limit, source.position() + SEGMENT_SIZE));
+            while (source.hasRemaining()) {
+                bufferedSink.write(source);
+            }
+            bufferedSink.flush();
+
+            source.limit(limit);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.qiniu.android.http.request.httpclient;
+
+import com.qiniu.android.http.ProxyConfiguration;
+import com.qiniu.android.http.request.IUploadServer;
+import com.qiniu.android.utils.LogUtil;
+import com.qiniu.android.utils.Utils;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Response;
+
+/**
+ * 连接预热：上传开始前向即将使用的 server 发送 HEAD 请求，建立的 TCP 及 TLS 连接放入共享连接池，
+ * 之后对相同 server（相同 Host、IP 及代理）的上传请求复用该连接，握手耗时与读取文件等准备工作重叠
+ * 注：仅支持 {@link SystemHttpClient}，http3 server 不预热
+ */
+public final class ConnectionPrewarmer {
+
+    // 同一 server 预热的最小间隔，单位：毫秒
+    private static final long MinPrewarmInterval = 60 * 1000;
+
+    // key: 代理配置 + 协议 + host + IP
+    private static final ConcurrentHashMap<String, Long> lastPrewarmTimes = new ConcurrentHashMap<>();
+
+    private ConnectionPrewarmer() {
+    }
+
+    /**
+     * 异步预热连接
+     *
+     * @param servers         需要预热的 server
+     * @param connectionProxy 代理配置
+     * @param useHttps        是否使用 https
+     * @param timeout         连接超时时间，单位：秒
+     */
+    public static void prewarm(List<IUploadServer> servers, ProxyConfiguration connectionProxy, boolean useHttps, int timeout) {
+        if (servers == null) {
+            return;
+        }
+
+        for (IUploadServer server : servers) {
+            prewarm(server, connectionProxy, useHttps, timeout);
+        }
+    }
+
+    private static void prewarm(IUploadServer server, ProxyConfiguration connectionProxy, boolean useHttps, int timeout) {
+        if (server == null || server.getHost() == null || server.getHost().length() == 0 || server.isHttp3()) {
+            return;
+        }
+
+        final String scheme = useHttps ? "https://" : "http://";
+        final String key = (connectionProxy != null ? connectionProxy.hostAddress + ":" + connectionProxy.port : "")
+                + "-" + scheme + server.getHost() + "-" + server.getIp();
+        long currentTime = Utils.currentTimestamp();
+        Long lastPrewarmTime = lastPrewarmTimes.get(key);
+        if (lastPrewarmTime != null && currentTime - lastPrewarmTime < MinPrewarmInterval) {
+            return;
+        }
+        lastPrewarmTimes.put(key, currentTime);
+
+        InetAddress address = server.getInetAddress();
+        OkHttpClient client = OkHttpClientCache.getClient(connectionProxy, server.getHost(), address);
+        OkHttpClientCache.CallTag tag = new OkHttpClientCache.CallTag(null, timeout, timeout, timeout);
+        okhttp3.Request request = new okhttp3.Request.Builder()
+                .head()
+                .url(scheme + server.getHost())
+                .tag(OkHttpClientCache.CallTag.class, tag)
+                .build();
+
+        client.newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                lastPrewarmTimes.remove(key);
+                LogUtil.i("prewarm connection failed:" + key + " error:" + e.getMessage());
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                // HEAD 请求没有 body，关闭后连接回到连接池
+                response.close();
+                LogUtil.i("prewarm connection:" + key);
+            }
+        });
+    }
+}
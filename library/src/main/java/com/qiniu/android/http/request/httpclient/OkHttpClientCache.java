@@ -0,0 +1,213 @@
+package com.qiniu.android.http.request.httpclient;
+
+import com.qiniu.android.http.ProxyConfiguration;
+import com.qiniu.android.http.dns.SystemDns;
+import com.qiniu.android.storage.GlobalConfiguration;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.Dns;
+import okhttp3.EventListener;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Response;
+
+/**
+ * 共享的 OkHttpClient，所有请求共用同一个连接池及 Dispatcher
+ * OkHttp 只在 Address（Host、端口、代理、Dns 等）相同的请求间复用连接，其中 Dns 按对象比较，
+ * 因此按代理配置及指定的 IP 缓存 OkHttpClient，相同配置的请求使用同一个 OkHttpClient，连接可复用，省去 TCP 及 TLS 握手；
+ * 每个请求的 EventListener 及超时时间通过 {@link CallTag} 传入。
+ */
+final class OkHttpClientCache {
+
+    // 指定 IP 的 OkHttpClient 最大缓存数量
+    private static final int MaxPinnedClientCount = 64;
+
+    private static ConnectionPool connectionPool;
+    private static Dispatcher dispatcher;
+    private static final Dns systemDns = new Dns() {
+        @Override
+        public List<InetAddress> lookup(String s) throws UnknownHostException {
+            return new SystemDns().lookupInetAddress(s);
+        }
+    };
+
+    // key: 代理配置
+    private static final Map<String, OkHttpClient> baseClients = new HashMap<>();
+    // key: 代理配置 + DNS 配置
+    private static final Map<String, OkHttpClient> clients = new LinkedHashMap<String, OkHttpClient>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, OkHttpClient> eldest) {
+            return size() > MaxPinnedClientCount;
+        }
+    };
+
+    private OkHttpClientCache() {
+    }
+
+    /**
+     * 获取 OkHttpClient
+     *
+     * @param connectionProxy 代理配置
+     * @param host            指定 IP 的 host，为空时不指定
+     * @param address         host 的 IP，为空时不指定
+     * @return OkHttpClient
+     */
+    static synchronized OkHttpClient getClient(ProxyConfiguration connectionProxy, String host, InetAddress address) {
+        String proxyKey = proxyKey(connectionProxy);
+        OkHttpClient baseClient = baseClients.get(proxyKey);
+        if (baseClient == null) {
+            baseClient = createBaseClient(connectionProxy);
+            baseClients.put(proxyKey, baseClient);
+        }
+
+        if (!GlobalConfiguration.getInstance().isDnsOpen) {
+            return baseClient;
+        }
+
+        String key;
+        Dns dns;
+        if (host != null && address != null) {
+            key = proxyKey + "|" + host + "|" + address.getHostAddress();
+            dns = new PinnedDns(host, address);
+        } else {
+            key = proxyKey + "|";
+            dns = systemDns;
+        }
+
+        OkHttpClient client = clients.get(key);
+        if (client == null) {
+            client = baseClient.newBuilder().dns(dns).build();
+            clients.put(key, client);
+        }
+        return client;
+    }
+
+    /**
+     * 关闭连接池中所有的空闲连接
+     */
+    static void evictAllConnections() {
+        getConnectionPool().evictAll();
+    }
+
+    static int idleConnectionCount() {
+        return getConnectionPool().idleConnectionCount();
+    }
+
+    static int connectionCount() {
+        return getConnectionPool().connectionCount();
+    }
+
+    private static OkHttpClient createBaseClient(ProxyConfiguration connectionProxy) {
+        OkHttpClient.Builder builder = new OkHttpClient.Builder();
+        if (connectionProxy != null) {
+            builder.proxy(connectionProxy.proxy());
+            if (connectionProxy.user != null && connectionProxy.password != null) {
+                builder.proxyAuthenticator(connectionProxy.authenticator());
+            }
+        }
+
+        builder.connectionPool(getConnectionPool());
+        builder.dispatcher(getDispatcher());
+        builder.eventListenerFactory(new EventListener.Factory() {
+            @Override
+            public EventListener create(Call call) {
+                CallTag tag = call.request().tag(CallTag.class);
+                if (tag == null || tag.eventListener == null) {
+                    return EventListener.NONE;
+                }
+                return tag.eventListener;
+            }
+        });
+        builder.addInterceptor(new Interceptor() {
+            @Override
+            public Response intercept(Chain chain) throws IOException {
+                CallTag tag = chain.request().tag(CallTag.class);
+                if (tag == null) {
+                    return chain.proceed(chain.request());
+                }
+                return chain.withConnectTimeout(tag.connectTimeout, TimeUnit.SECONDS)
+                        .withReadTimeout(tag.readTimeout, TimeUnit.SECONDS)
+                        .withWriteTimeout(tag.writeTimeout, TimeUnit.SECONDS)
+                        .proceed(chain.request());
+            }
+        });
+        return builder.build();
+    }
+
+    private static synchronized ConnectionPool getConnectionPool() {
+        if (connectionPool == null) {
+            GlobalConfiguration config = GlobalConfiguration.getInstance();
+            connectionPool = new ConnectionPool(Math.max(config.connectionPoolMaxIdleCount, 0),
+                    Math.max(config.connectionKeepAliveDuration, 1), TimeUnit.SECONDS);
+        }
+        return connectionPool;
+    }
+
+    private static synchronized Dispatcher getDispatcher() {
+        if (dispatcher == null) {
+            GlobalConfiguration config = GlobalConfiguration.getInstance();
+            dispatcher = new Dispatcher();
+            dispatcher.setMaxRequests(Math.max(config.httpMaxRequests, 1));
+            dispatcher.setMaxRequestsPerHost(Math.max(config.httpMaxRequestsPerHost, 1));
+        }
+        return dispatcher;
+    }
+
+    private static String proxyKey(ProxyConfiguration connectionProxy) {
+        if (connectionProxy == null) {
+            return "";
+        }
+        return connectionProxy.type + ":" + connectionProxy.hostAddress + ":" + connectionProxy.port
+                + ":" + connectionProxy.user + ":" + connectionProxy.password;
+    }
+
+    /**
+     * 请求的 EventListener 及超时时间，作为 okhttp3.Request 的 tag 传入
+     */
+    static final class CallTag {
+        private final EventListener eventListener;
+        private final int connectTimeout;
+        private final int readTimeout;
+        private final int writeTimeout;
+
+        CallTag(EventListener eventListener, int connectTimeout, int readTimeout, int writeTimeout) {
+            this.eventListener = eventListener;
+            this.connectTimeout = connectTimeout;
+            this.readTimeout = readTimeout;
+            this.writeTimeout = writeTimeout;
+        }
+    }
+
+    // host 解析为指定的 IP，其他域名使用系统 DNS
+    private static final class PinnedDns implements Dns {
+        private final String host;
+        private final InetAddress address;
+
+        private PinnedDns(String host, InetAddress address) {
+            this.host = host;
+            this.address = address;
+        }
+
+        @Override
+        public List<InetAddress> lookup(String s) throws UnknownHostException {
+            if (host.equals(s)) {
+                List<InetAddress> inetAddressList = new ArrayList<>();
+                inetAddressList.add(address);
+                return inetAddressList;
+            }
+            return systemDns.lookup(s);
+        }
+    }
+}
@@ -5,12 +5,10 @@ import com.qiniu.android.http.CancellationHandler;
 import com.qiniu.android.http.ProgressHandler;
 import com.qiniu.android.http.ProxyConfiguration;
 import com.qiniu.android.http.ResponseInfo;
-import com.qiniu.android.http.dns.SystemDns;
 import com.qiniu.android.http.request.IUploadServer;
 import com.qiniu.android.http.request.Request;
 import com.qiniu.android.http.request.IRequestClient;
 import com.qiniu.android.http.metrics.UploadSingleRequestMetrics;
-import com.qiniu.android.storage.GlobalConfiguration;
 import com.qiniu.android.utils.AsyncRun;
 import com.qiniu.android.utils.StringUtils;
 
@@ -26,19 +24,15 @@ import java.net.ProtocolException;
 import java.net.Proxy;
 import java.net.SocketTimeoutException;
 import java.net.UnknownHostException;
-import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
 
 import javax.net.ssl.SSLException;
 
 import okhttp3.Call;
 import okhttp3.Callback;
 import okhttp3.Connection;
-import okhttp3.ConnectionPool;
-import okhttp3.Dns;
 import okhttp3.EventListener;
 import okhttp3.Handshake;
 import okhttp3.Headers;
@@ -58,10 +52,8 @@ public class SystemHttpClient extends IRequestClient {
     public static final String FormMime = "application/x-www-form-urlencoded";
 
     private boolean hasHandleComplete = false;
-    private static ConnectionPool pool;
     private IUploadServer currentServer;
     private Request currentRequest;
-    private static final OkHttpClient baseClient = new OkHttpClient();
     private OkHttpClient httpClient;
     private Call call;
     private UploadSingleRequestMetrics metrics;
@@ -173,51 +165,13 @@ public class SystemHttpClient extends IRequestClient {
             return null;
         }
 
-        OkHttpClient.Builder clientBuilder = baseClient.newBuilder();
-
-        if (connectionProxy != null) {
-            clientBuilder.proxy(connectionProxy.proxy());
-            if (connectionProxy.user != null && connectionProxy.password != null) {
-                clientBuilder.proxyAuthenticator(connectionProxy.authenticator());
-            }
+        String host = null;
+        InetAddress address = null;
+        if (currentServer != null) {
+            host = currentServer.getHost();
+            address = currentServer.getInetAddress();
         }
-
-        clientBuilder.eventListener(createEventLister());
-
-        if (GlobalConfiguration.getInstance().isDnsOpen) {
-            clientBuilder.dns(new Dns() {
-                @Override
-                public List<InetAddress> lookup(String s) throws UnknownHostException {
-                    if (currentServer != null && s.equals(currentServer.getHost())) {
-                        InetAddress address = currentServer.getInetAddress();
-                        if (address != null) {
-                            List<InetAddress> inetAddressList = new ArrayList<>();
-                            inetAddressList.add(address);
-                            return inetAddressList;
-                        } else {
-                            return new SystemDns().lookupInetAddress(s);
-                        }
-                    } else {
-                        return new SystemDns().lookupInetAddress(s);
-                    }
-                }
-            });
-        }
-
-        clientBuilder.connectionPool(SystemHttpClient.getConnectPool());
-
-        clientBuilder.connectTimeout(currentRequest.connectTimeout, TimeUnit.SECONDS);
-        clientBuilder.readTimeout(currentRequest.readTimeout, TimeUnit.SECONDS);
-        clientBuilder.writeTimeout(currentRequest.writeTimeout, TimeUnit.SECONDS);
-
-        return clientBuilder.build();
-    }
-
-    private synchronized static ConnectionPool getConnectPool() {
-        if (pool == null) {
-            pool = new ConnectionPool(10, 10, TimeUnit.MINUTES);
-        }
-        return pool;
+        return OkHttpClientCache.getClient(connectionProxy, host, address);
     }
 
     private okhttp3.Request.Builder createRequestBuilder(final Progress progress) {
@@ -226,28 +180,34 @@ public class SystemHttpClient extends IRequestClient {
         }
 
         Headers allHeaders = Headers.of(currentRequest.allHeaders);
+        OkHttpClientCache.CallTag tag = new OkHttpClientCache.CallTag(createEventLister(),
+                currentRequest.connectTimeout, currentRequest.readTimeout, currentRequest.writeTimeout);
 
         okhttp3.Request.Builder requestBuilder = null;
         if (currentRequest.httpMethod.equals(Request.HttpMethodHEAD) ||
                 currentRequest.httpMethod.equals(Request.HttpMethodGet)) {
-            requestBuilder = new okhttp3.Request.Builder().get().url(currentRequest.urlString);
+            requestBuilder = new okhttp3.Request.Builder().get().url(currentRequest.urlString).tag(OkHttpClientCache.CallTag.class, tag);
             for (String key : currentRequest.allHeaders.keySet()) {
                 String value = currentRequest.allHeaders.get(key);
                 requestBuilder.header(key, value);
             }
         } else if (currentRequest.httpMethod.equals(Request.HttpMethodPOST) ||
                 currentRequest.httpMethod.equals(Request.HttpMethodPUT)) {
-            requestBuilder = new okhttp3.Request.Builder().url(currentRequest.urlString);
+            requestBuilder = new okhttp3.Request.Builder().url(currentRequest.urlString).tag(OkHttpClientCache.CallTag.class, tag);
             requestBuilder = requestBuilder.headers(allHeaders);
 
             RequestBody rbody;
-            if (currentRequest.httpBody.length > 0) {
+            if (currentRequest.getHttpBodyLength() > 0) {
                 MediaType type = MediaType.parse(DefaultMime);
                 String contentType = currentRequest.allHeaders.get(ContentTypeHeader);
                 if (contentType != null) {
                     type = MediaType.parse(contentType);
                 }
-                rbody = new ByteBody(type, currentRequest.httpBody);
+                if (currentRequest.getHttpBodyBuffer() != null) {
+                    rbody = new ByteBufferBody(type, currentRequest.getHttpBodyBuffer());
+                } else {
+                    rbody = new ByteBody(type, currentRequest.httpBody);
+                }
             } else {
                 rbody = new ByteBody(null, new byte[0]);
             }
@@ -258,7 +218,7 @@ public class SystemHttpClient extends IRequestClient {
                         progress.progress(bytesWritten, totalSize);
                     }
                 }
-            }, currentRequest.httpBody.length, null);
+            }, currentRequest.getHttpBodyLength(), null);
 
             if (currentRequest.httpMethod.equals(Request.HttpMethodPOST)) {
                 requestBuilder = requestBuilder.post(rbody);
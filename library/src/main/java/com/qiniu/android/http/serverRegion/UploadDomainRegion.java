@@ -1,6 +1,7 @@
 package com.qiniu.android.http.serverRegion;
 
 import com.qiniu.android.common.ZoneInfo;
+import com.qiniu.android.http.NetworkContext;
 import com.qiniu.android.http.ResponseInfo;
 import com.qiniu.android.http.dns.DnsPrefetcher;
 import com.qiniu.android.http.dns.IDnsNetworkAddress;
@@ -29,9 +30,14 @@ public class UploadDomainRegion implements IUploadRegion {
     // 是否冻结过Host，PS：如果没有冻结过 Host,则当前 Region 上传也就不会有错误信息，可能会返回-9，所以必须要再进行一次尝试
     private boolean hasFreezeHost;
     private boolean isAllFrozen;
+    // 全局冻结信息、http3 支持信息及网络状态
+    private final NetworkContext networkContext;
     // 局部冻结管理对象
     private final UploadServerFreezeManager partialHttp2Freezer = new UploadServerFreezeManager();
     private final UploadServerFreezeManager partialHttp3Freezer = new UploadServerFreezeManager();
+    // 检查冻结状态的冻结管理对象，局部在前
+    private final UploadServerFreezeManager[] http2Freezers;
+    private final UploadServerFreezeManager[] http3Freezers;
 
     private ArrayList<String> domainHostList;
     private HashMap<String, UploadServerDomain> domainHashMap;
@@ -39,6 +45,19 @@ public class UploadDomainRegion implements IUploadRegion {
     private HashMap<String, UploadServerDomain> oldDomainHashMap;
     private ZoneInfo zoneInfo;
 
+    public UploadDomainRegion() {
+        this(null);
+    }
+
+    /**
+     * @param networkContext 网络状态，为 null 时使用 {@link NetworkContext#shared()}
+     */
+    public UploadDomainRegion(NetworkContext networkContext) {
+        this.networkContext = networkContext != null ? networkContext : NetworkContext.shared();
+        this.http2Freezers = new UploadServerFreezeManager[]{partialHttp2Freezer, this.networkContext.getHttp2Freezer()};
+        this.http3Freezers = new UploadServerFreezeManager[]{partialHttp3Freezer, this.networkContext.getHttp3Freezer()};
+    }
+
     @Override
     public boolean isEqual(IUploadRegion region) {
         if (region == null) {
@@ -143,9 +162,10 @@ public class UploadDomainRegion implements IUploadRegion {
                 if (domain == null) {
                     continue;
                 }
-                UploadServer domainServer = domain.getServer(new UploadServerDomain.GetServerCondition() {
+                final List<UploadServer> candidates = new ArrayList<>();
+                domain.getServer(new UploadServerDomain.GetServerCondition() {
                     @Override
-                    public boolean condition(String host, UploadServer serverP, UploadServer filterServer) {
+                    public boolean condition(String host, String frozenType, UploadServer serverP, UploadServer filterServer) {
                         String filterServerIP = filterServer == null ? null : filterServer.getIp();
 
                         // 1.1 剔除 ipv6
@@ -154,22 +174,21 @@ public class UploadDomainRegion implements IUploadRegion {
                         }
 
                         // 1.2 剔除冻结对象
-                        String frozenType = UploadServerFreezeUtil.getFrozenType(host, filterServerIP);
-                        boolean isFrozen = UploadServerFreezeUtil.isTypeFrozenByFreezeManagers(frozenType, new UploadServerFreezeManager[]{partialHttp3Freezer, UploadServerFreezeUtil.globalHttp3Freezer()});
+                        boolean isFrozen = UploadServerFreezeUtil.isTypeFrozenByFreezeManagers(frozenType, http3Freezers);
 
-                        if (isFrozen || !HttpServerManager.getInstance().isServerSupportHttp3(host, filterServerIP)) {
+                        if (isFrozen || !networkContext.getHttpServerManager().isServerSupportHttp3(host, filterServerIP)) {
                             return false;
                         }
 
-                        // 1.3 挑选网络状态最优
-                        return UploadServerNetworkStatus.isServerNetworkBetter(filterServer, serverP);
+                        // 1.3 收集可用 server，之后按网络状态加权选择
+                        filterServer.setHttpVersion(IUploadServer.HttpVersion3);
+                        candidates.add(filterServer);
+                        return false;
                     }
                 });
-                if (domainServer != null) {
-                    domainServer.setHttpVersion(IUploadServer.HttpVersion3);
-                }
+                UploadServer domainServer = networkContext.getServerScoreboard().chooseServer(candidates);
 
-                http3Server = (UploadServer) UploadServerNetworkStatus.getBetterNetworkServer(domainServer, http3Server);
+                http3Server = (UploadServer) UploadServerNetworkStatus.getBetterNetworkServer(networkContext.getNetworkStatusManager(), domainServer, http3Server);
 
                 if (http3Server != null) {
                     break;
@@ -184,9 +203,10 @@ public class UploadDomainRegion implements IUploadRegion {
             if (domain == null) {
                 continue;
             }
-            UploadServer domainServer = domain.getServer(new UploadServerDomain.GetServerCondition() {
+            final List<UploadServer> candidates = new ArrayList<>();
+            domain.getServer(new UploadServerDomain.GetServerCondition() {
                 @Override
-                public boolean condition(String host, UploadServer serverP, UploadServer filterServer) {
+                public boolean condition(String host, String frozenType, UploadServer serverP, UploadServer filterServer) {
                     String filterServerIP = filterServer == null ? null : filterServer.getIp();
 
                     // 1.1 剔除 ipv6
@@ -195,29 +215,28 @@ public class UploadDomainRegion implements IUploadRegion {
                     }
 
                     // 1.2 剔除冻结对象
-                    String frozenType = UploadServerFreezeUtil.getFrozenType(host, filterServerIP);
-                    boolean isFrozen = UploadServerFreezeUtil.isTypeFrozenByFreezeManagers(frozenType, new UploadServerFreezeManager[]{partialHttp2Freezer, UploadServerFreezeUtil.globalHttp2Freezer()});
+                    boolean isFrozen = UploadServerFreezeUtil.isTypeFrozenByFreezeManagers(frozenType, http2Freezers);
 
                     if (isFrozen) {
                         return false;
                     }
 
-                    // 1.3 挑选网络状态最优
-                    return UploadServerNetworkStatus.isServerNetworkBetter(filterServer, serverP);
+                    // 1.3 收集可用 server，之后按网络状态加权选择
+                    filterServer.setHttpVersion(IUploadServer.HttpVersion2);
+                    candidates.add(filterServer);
+                    return false;
                 }
             });
-            if (domainServer != null) {
-                domainServer.setHttpVersion(IUploadServer.HttpVersion2);
-            }
+            UploadServer domainServer = networkContext.getServerScoreboard().chooseServer(candidates);
 
-            http2Server = (UploadServer) UploadServerNetworkStatus.getBetterNetworkServer(domainServer, http2Server);
+            http2Server = (UploadServer) UploadServerNetworkStatus.getBetterNetworkServer(networkContext.getNetworkStatusManager(), domainServer, http2Server);
 
             if (http2Server != null) {
                 break;
             }
         }
 
-        UploadServer server = (UploadServer) UploadServerNetworkStatus.getBetterNetworkServer(http3Server, http2Server);
+        UploadServer server = (UploadServer) UploadServerNetworkStatus.getBetterNetworkServer(networkContext.getNetworkStatusManager(), http3Server, http2Server);
         if (server == null && !hasFreezeHost && hostList.size() > 0) {
             int index = (int) (Math.random() * hostList.size());
             String host = hostList.get(index);
@@ -262,6 +281,17 @@ public class UploadDomainRegion implements IUploadRegion {
         }
     }
 
+    @Override
+    public boolean isServerFrozen(IUploadServer server) {
+        if (server == null || server.getHost() == null) {
+            return true;
+        }
+
+        String frozenType = UploadServerFreezeUtil.getFrozenType(server.getHost(), server.getIp());
+        UploadServerFreezeManager[] freezers = server.isHttp3() ? http3Freezers : http2Freezers;
+        return UploadServerFreezeUtil.isTypeFrozenByFreezeManagers(frozenType, freezers);
+    }
+
     private void freezeServerIfNeed(ResponseInfo responseInfo, IUploadServer freezeServer) {
         if (responseInfo == null || freezeServer == null || freezeServer.getServerId() == null) {
             return;
@@ -277,7 +307,7 @@ public class UploadDomainRegion implements IUploadRegion {
 
             if (IUploadServer.HttpVersion3.equals(responseInfo.httpVersion) || responseInfo.isHostUnavailable()) {
                 hasFreezeHost = true;
-                UploadServerFreezeUtil.globalHttp3Freezer().freezeType(frozenType, GlobalConfiguration.getInstance().globalHostFrozenTime);
+                networkContext.getHttp3Freezer().freezeType(frozenType, GlobalConfiguration.getInstance().globalHostFrozenTime);
             }
             return;
         }
@@ -294,7 +324,7 @@ public class UploadDomainRegion implements IUploadRegion {
         if (responseInfo.isHostUnavailable()) {
             hasFreezeHost = true;
             LogUtil.i("global freeze server host:" + StringUtils.toNonnullString(freezeServer.getHost()) + " ip:" + StringUtils.toNonnullString(freezeServer.getIp()));
-            UploadServerFreezeUtil.globalHttp2Freezer().freezeType(frozenType, GlobalConfiguration.getInstance().globalHostFrozenTime);
+            networkContext.getHttp2Freezer().freezeType(frozenType, GlobalConfiguration.getInstance().globalHostFrozenTime);
         }
     }
 
@@ -316,10 +346,13 @@ public class UploadDomainRegion implements IUploadRegion {
     private static class UploadServerDomain {
 
         protected final String host;
+        // 未解析到 IP 时的冻结类型
+        protected final String frozenType;
         protected ArrayList<UploadIpGroup> ipGroupList = new ArrayList<>();
 
         protected UploadServerDomain(String host) {
             this.host = host;
+            this.frozenType = UploadServerFreezeUtil.getFrozenType(host, null);
         }
 
         protected UploadServer getServer(GetServerCondition condition) {
@@ -342,7 +375,7 @@ public class UploadDomainRegion implements IUploadRegion {
                     IDnsNetworkAddress networkAddress = ipGroup.getNetworkAddress();
                     UploadServer filterServer = new UploadServer(host, host, networkAddress.getIpValue(), networkAddress.getSourceValue(), networkAddress.getTimestampValue());
 
-                    if (condition == null || condition.condition(host, server, filterServer)) {
+                    if (condition == null || condition.condition(host, ipGroup.frozenType, server, filterServer)) {
                         server = filterServer;
                     }
 
@@ -356,7 +389,7 @@ public class UploadDomainRegion implements IUploadRegion {
 
             // 未解析到IP:
             UploadServer hostServer = new UploadServer(host, host, null, null, null);
-            if (condition == null || condition.condition(host, null, hostServer)) {
+            if (condition == null || condition.condition(host, frozenType, null, hostServer)) {
                 // 未解析时，没有可比性，直接返回自身，自身即为最优
                 server = hostServer;
             }
@@ -419,25 +452,33 @@ public class UploadDomainRegion implements IUploadRegion {
             ArrayList<UploadIpGroup> ipGroupList = new ArrayList<>();
             for (String groupType : ipGroupInfo.keySet()) {
                 ArrayList<IDnsNetworkAddress> addresses = ipGroupInfo.get(groupType);
-                UploadIpGroup ipGroup = new UploadIpGroup(groupType, addresses);
+                String frozenType = UploadServerFreezeUtil.getFrozenType(host, addresses.get(0).getIpValue());
+                UploadIpGroup ipGroup = new UploadIpGroup(groupType, frozenType, addresses);
                 ipGroupList.add(ipGroup);
             }
             this.ipGroupList = ipGroupList;
         }
 
         protected interface GetServerCondition {
-            boolean condition(String host, UploadServer server, UploadServer filterServer);
+            /**
+             * @param frozenType filterServer 的冻结类型，同 {@link UploadServerFreezeUtil#getFrozenType(String, String)}
+             */
+            boolean condition(String host, String frozenType, UploadServer server, UploadServer filterServer);
         }
     }
 
     private static class UploadIpGroup {
         private int addressIndex = -1;
         private final String groupType;
+        // 组内 ip 的冻结类型相同，创建时计算，避免每次选择 server 时重复计算
+        private final String frozenType;
         private final ArrayList<IDnsNetworkAddress> addressList;
 
         protected UploadIpGroup(String groupType,
+                                String frozenType,
                                 ArrayList<IDnsNetworkAddress> addressList) {
             this.groupType = groupType;
+            this.frozenType = frozenType;
             this.addressList = addressList;
         }
 
@@ -1,16 +1,20 @@
 package com.qiniu.android.http.serverRegion;
 
-import com.qiniu.android.utils.Utils;
-
-import java.util.Date;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Created by yangsen on 2020/6/3
+ * 冻结信息使用单调时钟（{@link System#nanoTime()}）记录解冻时间，查询时不创建对象；
+ * 查询到已过期的记录时将其删除，冻结时也会定期清理所有过期记录
  */
 public class UploadServerFreezeManager {
 
+    // 清理过期记录的最小间隔，单位：纳秒
+    private static final long ClearInterval = 60L * 1000 * 1000 * 1000;
+
     private ConcurrentHashMap<String, UploadServerFreezeItem> frozenInfo = new ConcurrentHashMap<>();
+    private volatile long lastClearTime = System.nanoTime();
     private final static UploadServerFreezeManager manager = new UploadServerFreezeManager();
 
     public UploadServerFreezeManager() {
@@ -24,24 +28,28 @@ public class UploadServerFreezeManager {
         if (type == null || type.length() == 0) {
             return true;
         }
-        boolean isFrozen = true;
+
         UploadServerFreezeItem item = frozenInfo.get(type);
-        if (item == null || !item.isFrozenByDate(new Date())) {
-            isFrozen = false;
+        if (item == null) {
+            return false;
         }
-        return isFrozen;
+        if (item.isFrozen(System.nanoTime())) {
+            return true;
+        }
+
+        frozenInfo.remove(type, item);
+        return false;
     }
 
     public void freezeType(String type, int frozenTime) {
         if (type == null || type.length() == 0) {
             return;
         }
-        UploadServerFreezeItem item = frozenInfo.get(type);
-        if (item == null) {
-            item = new UploadServerFreezeItem(type);
-            frozenInfo.put(type, item);
-        }
-        item.freeze(frozenTime);
+
+        long currentTime = System.nanoTime();
+        // 每次冻结都替换记录，避免清理过期记录时删除刚冻结的记录
+        frozenInfo.put(type, new UploadServerFreezeItem(currentTime + frozenTime * 1000L * 1000 * 1000));
+        clearExpiredItemsIfNeeded(currentTime);
     }
 
     public void unfreezeType(String type) {
@@ -51,26 +59,34 @@ public class UploadServerFreezeManager {
         frozenInfo.remove(type);
     }
 
-    private static class UploadServerFreezeItem {
-        protected final String type;
-        private Date freezeDate;
+    int frozenCount() {
+        return frozenInfo.size();
+    }
 
-        private UploadServerFreezeItem(String type) {
-            this.type = type;
+    private void clearExpiredItemsIfNeeded(long currentTime) {
+        if (currentTime - lastClearTime < ClearInterval) {
+            return;
         }
+        lastClearTime = currentTime;
 
-        private synchronized boolean isFrozenByDate(Date date) {
-            boolean isFrozen = true;
-            if (freezeDate == null || freezeDate.getTime() < date.getTime()) {
-                isFrozen = false;
+        for (Map.Entry<String, UploadServerFreezeItem> entry : frozenInfo.entrySet()) {
+            if (!entry.getValue().isFrozen(currentTime)) {
+                frozenInfo.remove(entry.getKey(), entry.getValue());
             }
-            return isFrozen;
         }
+    }
+
+    private static class UploadServerFreezeItem {
+        // 解冻时间，System.nanoTime()
+        private final long unfreezeTime;
 
-        private synchronized void freeze(int frozenTime) {
-            freezeDate = new Date(Utils.currentTimestamp() + frozenTime * 1000);
+        private UploadServerFreezeItem(long unfreezeTime) {
+            this.unfreezeTime = unfreezeTime;
         }
 
+        private boolean isFrozen(long currentTime) {
+            return unfreezeTime - currentTime >= 0;
+        }
     }
 
 }
@@ -33,6 +33,6 @@ public class UploadServerFreezeUtil {
 
     public static String getFrozenType(String host, String ip) {
         String ipType = Utils.getIpType(ip, host);
-        return String.format("%s-%s", host, ipType);
+        return host + "-" + ipType;
     }
 }
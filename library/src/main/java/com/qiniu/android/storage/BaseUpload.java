@@ -5,6 +5,9 @@ import com.qiniu.android.common.ZoneInfo;
 import com.qiniu.android.common.ZonesInfo;
 import com.qiniu.android.http.ResponseInfo;
 import com.qiniu.android.http.request.IUploadRegion;
+import com.qiniu.android.http.request.IUploadServer;
+import com.qiniu.android.http.request.UploadRequestState;
+import com.qiniu.android.http.request.httpclient.ConnectionPrewarmer;
 import com.qiniu.android.http.metrics.UploadRegionRequestMetrics;
 import com.qiniu.android.http.metrics.UploadTaskMetrics;
 import com.qiniu.android.http.serverRegion.UploadDomainRegion;
@@ -12,8 +15,13 @@ import com.qiniu.android.http.serverRegion.UploadDomainRegion;
 import org.json.JSONObject;
 
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 
 abstract class BaseUpload implements Runnable {
+    // 预热连接时最多选择 server 的次数
+    private static final int PrewarmServerCount = 3;
+
     protected final String key;
     protected final String fileName;
     protected final byte[] data;
@@ -26,6 +34,9 @@ abstract class BaseUpload implements Runnable {
     protected final UpTaskCompletionHandler completionHandler;
 
 
+    // 同一 UploadManager 的上传共享，为空时不调度
+    protected UploadScheduler scheduler;
+
     private UploadRegionRequestMetrics currentRegionRequestMetrics;
     private UploadTaskMetrics metrics;
 
@@ -77,6 +88,10 @@ abstract class BaseUpload implements Runnable {
         this(null, data, fileName, key, token, option, config, null, null, completionHandler);
     }
 
+    void setScheduler(UploadScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
     protected void initData() {
         currentRegionIndex = 0;
         metrics = new UploadTaskMetrics(getUpType());
@@ -95,6 +110,7 @@ abstract class BaseUpload implements Runnable {
                 if (code == 0) {
                     int prepareCode = prepareToUpload();
                     if (prepareCode == 0) {
+                        prewarmConnectionIfNeeded();
                         startToUpload();
                     } else {
                         ResponseInfo responseInfoP = ResponseInfo.errorInfo(prepareCode, null);
@@ -107,6 +123,33 @@ abstract class BaseUpload implements Runnable {
         });
     }
 
+    // 预热当前区域可能使用的 server，与读取文件等准备工作同时进行
+    private void prewarmConnectionIfNeeded() {
+        if (!config.useConnectionPrewarm || config.requestClient != null || config.urlConverter != null) {
+            return;
+        }
+
+        IUploadRegion region = getCurrentRegion();
+        if (region == null) {
+            return;
+        }
+
+        // 选择 server 时按网络状态加权随机，多选几次以覆盖较优的 server
+        List<IUploadServer> servers = new ArrayList<>();
+        HashSet<String> serverKeys = new HashSet<>();
+        UploadRequestState requestState = new UploadRequestState();
+        for (int i = 0; i < PrewarmServerCount; i++) {
+            IUploadServer server = region.getNextServer(requestState, null, null);
+            if (server == null) {
+                break;
+            }
+            if (serverKeys.add(server.getHost() + "-" + server.getIp())) {
+                servers.add(server);
+            }
+        }
+        ConnectionPrewarmer.prewarm(servers, config.proxy, config.useHttps, config.connectTimeout);
+    }
+
     protected boolean reloadUploadInfo() {
         return true;
     }
@@ -168,7 +211,7 @@ abstract class BaseUpload implements Runnable {
 
         ArrayList<IUploadRegion> defaultRegions = new ArrayList<>();
         for (ZoneInfo zoneInfo : zoneInfos) {
-            UploadDomainRegion region = new UploadDomainRegion();
+            UploadDomainRegion region = new UploadDomainRegion(config.networkContext);
             region.setupRegionData(zoneInfo);
             if (region.isValid()) {
                 defaultRegions.add(region);
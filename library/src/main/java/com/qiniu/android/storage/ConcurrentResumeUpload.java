@@ -35,8 +35,19 @@ class ConcurrentResumeUpload extends PartsUpload {
             }
         };
 
+        // 自适应并发时按并发数上限启动任务，同时上传的片数由 taskLimiter 限制，超出限制的任务等待
+        int taskCount = config.concurrentTaskCount;
+        if (config.useAdaptiveConcurrentTaskCount) {
+            if (concurrencyController == null) {
+                int maxTaskCount = Math.max(config.maxConcurrentTaskCount, config.concurrentTaskCount);
+                concurrencyController = new UploadConcurrencyController(config.concurrentTaskCount, 1, maxTaskCount);
+            }
+            taskLimiter = new UploadTaskLimiter(concurrencyController.concurrentTaskCount());
+            taskCount = concurrencyController.maxConcurrentTaskCount();
+        }
+
         groupTaskThread = new GroupTaskThread(taskCompleteHandler);
-        for (int i = 0; i < config.concurrentTaskCount; i++) {
+        for (int i = 0; i < taskCount; i++) {
             groupTaskThread.addTask(new GroupTaskThread.GroupTask() {
                 @Override
                 public void run(final GroupTaskThread.GroupTask task) {
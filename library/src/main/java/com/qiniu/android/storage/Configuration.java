@@ -2,6 +2,7 @@ package com.qiniu.android.storage;
 
 import com.qiniu.android.common.AutoZone;
 import com.qiniu.android.common.Zone;
+import com.qiniu.android.http.NetworkContext;
 import com.qiniu.android.http.ProxyConfiguration;
 import com.qiniu.android.http.UrlConverter;
 import com.qiniu.android.http.request.IRequestClient;
@@ -49,6 +50,19 @@ public final class Configuration {
      */
     public final int retryInterval;
 
+    /**
+     * 重试间隔是否指数退避，默认为false
+     * 开启后第 n 次重试的间隔为 [0, min(retryInterval * 2^(n-1), retryMaxInterval)] 内的随机值（full jitter），
+     * 区域性故障时大量分片的重试在时间上分散；关闭时重试间隔固定为 retryInterval。
+     * 异步请求的重试等待均不占用线程
+     */
+    public final boolean useRetryBackoff;
+
+    /**
+     * 指数退避时重试间隔的上限 单位：毫秒 默认10000，useRetryBackoff 开启时生效
+     */
+    public final int retryMaxInterval;
+
     /**
      * 连接超时时间 单位 秒，默认：10
      * 注：每个文件上传肯能存在多个操作，当每个操作失败时，可能存在多个请求重试。
@@ -89,11 +103,101 @@ public final class Configuration {
      */
     public final int concurrentTaskCount;
 
+    /**
+     * 并发分片上传时是否根据网络情况自适应调整并发任务个数，默认为false
+     * 开启后 {@link Configuration#concurrentTaskCount} 为初始并发数，之后根据分片上传的耗时及失败情况在 1 至
+     * {@link Configuration#maxConcurrentTaskCount} 之间调整：上传耗时稳定时逐步增加并发数，耗时明显变长或请求失败时减小并发数。
+     */
+    public final boolean useAdaptiveConcurrentTaskCount;
+
+    /**
+     * 自适应并发时并发任务个数的上限，默认为 8 个
+     */
+    public final int maxConcurrentTaskCount;
+
+    /**
+     * 同一 UploadManager 中同时执行的上传请求（Form 上传及分片上传）总数上限，默认为 0，也即不限制
+     * 达到上限时其他请求等待正在执行的请求结束后再执行，可避免同时上传多个文件时请求过多；
+     * 等待的请求中 Form 上传优先，分片上传在各文件间按上传的数据量轮流执行，参见 {@link UploadScheduler}
+     */
+    public final int totalConcurrentTaskCount;
+
+    /**
+     * 分片上传文件时是否使用零拷贝方式读取文件，默认为false
+     * 开启后文件分片数据通过内存映射（mmap）读取，请求时直接由映射数据写入网络，分片数据不会拷贝到 Java 堆中，
+     * 可降低大文件、并发上传时的内存占用和 GC 压力；仅对 File 资源生效。
+     * 注：自定义 {@link Configuration#requestClient} 仅支持 byte[] 请求体，此时分片数据在请求时仍会拷贝。
+     */
+    public final boolean useZeroCopyFileRead;
+
+    /**
+     * 分片上传时预读的片数，默认为 0，也即不预读
+     * 大于 0 时，在片上传的同时会在后台提前读取后续的片数据并计算校验信息，使磁盘读取与网络上传并行；
+     * 已读取等待上传的片数不超过此值，预读的片数据占用内存（或缓存池），不建议设置过大。
+     */
+    public final int prefetchDepth;
+
+    /**
+     * 分片数据缓存池最大内存，单位：字节，默认：32M，小于等于 0 时不使用缓存池
+     * 同一 UploadManager 的分片上传共享缓存池，分片数据从缓存池借用，上传结束后归还复用，以减少内存分配和 GC；
+     * 读取分片数据前在缓存池预留内存，使用及预留的内存达到上限时读取排队，其他分片上传结束归还内存后再读取（不占用线程），预读暂停；
+     * 单个分片大于上限时，在缓存池未使用任何内存时读取。
+     * 注：使用零拷贝方式读取的文件分片数据不占用缓存池。
+     */
+    public final int bufferPoolMaxSize;
+
+    /**
+     * 分片上传 V2 是否根据网络情况自适应调整分片大小，默认为false
+     * 开启后 {@link Configuration#chunkSize} 为初始分片大小，之后每个分片的大小根据已上传分片的吞吐量及 RTT 调整：
+     * 网络较快时使用较大的分片以减少请求数，网络较差（请求失败）时使用较小的分片以减少重传的数据；
+     * 分片大小范围为 1M 至 max(chunkSize, 16M)，且受分片数据缓存池大小限制。
+     */
+    public final boolean useAdaptiveChunkSize;
+
     /**
      * 重试时是否允许使用备用上传域名，默认为true
      */
     public final boolean allowBackupHost;
 
+    /**
+     * 是否开启连接竞速，默认为false
+     * 开启后选择上传 IP 时，同时向域名的多个 IP（ipv6 开启时包括 ipv6）建立连接，使用最先连接成功的 IP，
+     * 可避免部分 IP 无法连接时等待连接超时；使用代理或 urlConverter 时不生效。
+     */
+    public final boolean useConnectionRace;
+
+    /**
+     * 是否开启连接预热，默认为false
+     * 开启后在区域查询完成、开始上传前，向即将使用的上传 server 预先建立连接，首个请求可复用该连接，省去 TCP 及 TLS 握手；
+     * 仅在使用默认 requestClient 且未设置 urlConverter 时生效。
+     */
+    public final boolean useConnectionPrewarm;
+
+    /**
+     * 是否开启 http2 多路复用，默认为false
+     * 开启后分片上传的所有请求固定使用同一个上传 server（相同域名及 IP），复用同一个 http2 连接并发上传；
+     * 服务端协商为 http1.1 时同一 server 最多同时使用 4 个连接。请求无法连接时重新选择 server。
+     */
+    public final boolean useHttp2Multiplexing;
+
+    /**
+     * http2 多路复用时，同一连接同时进行的最大请求数，默认为 8
+     * 超出的请求重新选择 server，useHttp2Multiplexing 开启时生效
+     */
+    public final int http2MaxConcurrentStreams;
+
+    /**
+     * 是否开启分片对冲请求，默认为false，仅分片上传 V2 生效
+     * 开启后某一片的上传耗时超过近期片上传耗时（按片大小折算）的 95 分位时，向其他上传 server 重复发送该片，
+     * 使用先成功的结果并取消另一个请求；V2 同一片重复上传的结果相同，可安全重复发送。
+     */
+    public final boolean useHedgedPartUpload;
+
+    /**
+     * 每个文件最多发出的对冲请求数，默认为 3，useHedgedPartUpload 开启时生效
+     */
+    public final int hedgedPartMaxCount;
+
     /**
      * 持久化记录接口，可以实现将记录持久化到文件，数据库等
      */
@@ -104,6 +208,18 @@ public final class Configuration {
      */
     public final KeyGenerator keyGen;
 
+    /**
+     * 分片上传进度异步纪录的最长间隔，单位：毫秒，默认为 0，也即每片上传结束后同步纪录
+     * 大于 0 时片上传结束后不再同步写入纪录，而是在后台合并写入：距首个待纪录片超过此间隔或待纪录片数达到 recordFlushDataCount 时写入，
+     * 上传结束或取消时强制写入；进程异常退出时最多丢失此间隔内的进度，恢复后对应的片会重新上传
+     */
+    public final long recordFlushInterval;
+
+    /**
+     * 分片上传进度异步纪录时，待纪录片数达到此值立即写入，默认为 8，recordFlushInterval 大于 0 时生效
+     */
+    public final int recordFlushDataCount;
+
     /**
      * 上传请求代理配置信息
      */
@@ -119,11 +235,25 @@ public final class Configuration {
      */
     public final IRequestClient requestClient;
 
+    /**
+     * 上传使用的网络状态（server 冻结信息、http3 支持信息、网络速度及 server 评分），默认为 {@link NetworkContext#shared()}
+     * 同一进程中多个 UploadManager 上传不同区域或账号时，可为每个 UploadManager 指定 new NetworkContext()，避免相互影响；
+     * 多个 Configuration 使用同一 NetworkContext 时共享网络状态
+     */
+    public final NetworkContext networkContext;
+
     private Configuration(Builder builder) {
         requestClient = builder.requestClient;
         useConcurrentResumeUpload = builder.useConcurrentResumeUpload;
         resumeUploadVersion = builder.resumeUploadVersion;
         concurrentTaskCount = builder.concurrentTaskCount;
+        useAdaptiveConcurrentTaskCount = builder.useAdaptiveConcurrentTaskCount;
+        maxConcurrentTaskCount = builder.maxConcurrentTaskCount;
+        totalConcurrentTaskCount = builder.totalConcurrentTaskCount;
+        useZeroCopyFileRead = builder.useZeroCopyFileRead;
+        bufferPoolMaxSize = builder.bufferPoolMaxSize;
+        prefetchDepth = builder.prefetchDepth;
+        useAdaptiveChunkSize = builder.useAdaptiveChunkSize;
 
         if (builder.resumeUploadVersion == RESUME_UPLOAD_VERSION_V1) {
             if (builder.chunkSize < 1024) {
@@ -144,11 +274,21 @@ public final class Configuration {
 
         recorder = builder.recorder;
         keyGen = getKeyGen(builder.keyGen);
+        recordFlushInterval = builder.recordFlushInterval;
+        recordFlushDataCount = builder.recordFlushDataCount;
 
         retryMax = builder.retryMax;
         retryInterval = builder.retryInterval;
+        useRetryBackoff = builder.useRetryBackoff;
+        retryMaxInterval = builder.retryMaxInterval;
 
         allowBackupHost = builder.allowBackupHost;
+        useConnectionRace = builder.useConnectionRace;
+        useConnectionPrewarm = builder.useConnectionPrewarm;
+        useHttp2Multiplexing = builder.useHttp2Multiplexing;
+        http2MaxConcurrentStreams = builder.http2MaxConcurrentStreams;
+        useHedgedPartUpload = builder.useHedgedPartUpload;
+        hedgedPartMaxCount = builder.hedgedPartMaxCount;
 
         proxy = builder.proxy;
 
@@ -157,6 +297,8 @@ public final class Configuration {
         useHttps = builder.useHttps;
 
         zone = builder.zone != null ? builder.zone : new AutoZone();
+
+        networkContext = builder.networkContext != null ? builder.networkContext : NetworkContext.shared();
     }
 
     private KeyGenerator getKeyGen(KeyGenerator keyGen) {
@@ -184,6 +326,8 @@ public final class Configuration {
         private Zone zone = null;
         private Recorder recorder = null;
         private KeyGenerator keyGen = null;
+        private long recordFlushInterval = 0;
+        private int recordFlushDataCount = 8;
         private ProxyConfiguration proxy = null;
 
         private boolean useHttps = true;
@@ -194,11 +338,27 @@ public final class Configuration {
         private int responseTimeout = 10;
         private int retryMax = 1;
         private int retryInterval = 500;
+        private boolean useRetryBackoff = false;
+        private int retryMaxInterval = 10 * 1000;
         private boolean allowBackupHost = true;
+        private boolean useConnectionRace = false;
+        private boolean useConnectionPrewarm = false;
+        private boolean useHttp2Multiplexing = false;
+        private int http2MaxConcurrentStreams = 8;
+        private boolean useHedgedPartUpload = false;
+        private int hedgedPartMaxCount = 3;
+        private NetworkContext networkContext = null;
         private UrlConverter urlConverter = null;
         private boolean useConcurrentResumeUpload = false;
         private int resumeUploadVersion = RESUME_UPLOAD_VERSION_V1;
         private int concurrentTaskCount = 3;
+        private boolean useAdaptiveConcurrentTaskCount = false;
+        private int maxConcurrentTaskCount = 8;
+        private int totalConcurrentTaskCount = 0;
+        private boolean useZeroCopyFileRead = false;
+        private int bufferPoolMaxSize = 32 * 1024 * 1024;
+        private int prefetchDepth = 0;
+        private boolean useAdaptiveChunkSize = false;
 
         public Builder requestClient(IRequestClient requestClient) {
             this.requestClient = requestClient;
@@ -221,6 +381,16 @@ public final class Configuration {
             return this;
         }
 
+        public Builder recordFlushInterval(long recordFlushInterval) {
+            this.recordFlushInterval = recordFlushInterval;
+            return this;
+        }
+
+        public Builder recordFlushDataCount(int recordFlushDataCount) {
+            this.recordFlushDataCount = recordFlushDataCount;
+            return this;
+        }
+
         public Builder proxy(ProxyConfiguration proxy) {
             this.proxy = proxy;
             return this;
@@ -261,11 +431,56 @@ public final class Configuration {
             return this;
         }
 
+        public Builder useRetryBackoff(boolean useRetryBackoff) {
+            this.useRetryBackoff = useRetryBackoff;
+            return this;
+        }
+
+        public Builder retryMaxInterval(int retryMaxInterval) {
+            this.retryMaxInterval = retryMaxInterval;
+            return this;
+        }
+
         public Builder allowBackupHost(boolean isAllow) {
             this.allowBackupHost = isAllow;
             return this;
         }
 
+        public Builder useConnectionRace(boolean useConnectionRace) {
+            this.useConnectionRace = useConnectionRace;
+            return this;
+        }
+
+        public Builder useConnectionPrewarm(boolean useConnectionPrewarm) {
+            this.useConnectionPrewarm = useConnectionPrewarm;
+            return this;
+        }
+
+        public Builder useHttp2Multiplexing(boolean useHttp2Multiplexing) {
+            this.useHttp2Multiplexing = useHttp2Multiplexing;
+            return this;
+        }
+
+        public Builder http2MaxConcurrentStreams(int http2MaxConcurrentStreams) {
+            this.http2MaxConcurrentStreams = http2MaxConcurrentStreams;
+            return this;
+        }
+
+        public Builder useHedgedPartUpload(boolean useHedgedPartUpload) {
+            this.useHedgedPartUpload = useHedgedPartUpload;
+            return this;
+        }
+
+        public Builder hedgedPartMaxCount(int hedgedPartMaxCount) {
+            this.hedgedPartMaxCount = hedgedPartMaxCount;
+            return this;
+        }
+
+        public Builder networkContext(NetworkContext networkContext) {
+            this.networkContext = networkContext;
+            return this;
+        }
+
         public Builder urlConverter(UrlConverter converter) {
             this.urlConverter = converter;
             return this;
@@ -286,6 +501,41 @@ public final class Configuration {
             return this;
         }
 
+        public Builder useAdaptiveConcurrentTaskCount(boolean useAdaptiveConcurrentTaskCount) {
+            this.useAdaptiveConcurrentTaskCount = useAdaptiveConcurrentTaskCount;
+            return this;
+        }
+
+        public Builder maxConcurrentTaskCount(int maxConcurrentTaskCount) {
+            this.maxConcurrentTaskCount = maxConcurrentTaskCount;
+            return this;
+        }
+
+        public Builder totalConcurrentTaskCount(int totalConcurrentTaskCount) {
+            this.totalConcurrentTaskCount = totalConcurrentTaskCount;
+            return this;
+        }
+
+        public Builder useZeroCopyFileRead(boolean useZeroCopyFileRead) {
+            this.useZeroCopyFileRead = useZeroCopyFileRead;
+            return this;
+        }
+
+        public Builder bufferPoolMaxSize(int bufferPoolMaxSize) {
+            this.bufferPoolMaxSize = bufferPoolMaxSize;
+            return this;
+        }
+
+        public Builder prefetchDepth(int prefetchDepth) {
+            this.prefetchDepth = prefetchDepth;
+            return this;
+        }
+
+        public Builder useAdaptiveChunkSize(boolean useAdaptiveChunkSize) {
+            this.useAdaptiveChunkSize = useAdaptiveChunkSize;
+            return this;
+        }
+
         public Builder useHttps(boolean useHttps) {
             this.useHttps = useHttps;
             return this;
@@ -0,0 +1,263 @@
+package com.qiniu.android.storage;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * 以日志方式纪录分片上传进度，每个键对应一个快照文件及一个日志文件：
+ * 1. 快照先写入临时文件并 fsync，再重命名覆盖原快照，写入快照后清空日志
+ * 2. 增量记录追加至日志，每条记录格式为：长度（4 字节）+ crc32（4 字节）+ 内容；每追加 syncBatchCount 条记录 fsync 一次
+ * 3. 读取日志时遇到不完整或校验失败的记录即停止，进程异常退出最多丢失最后未完整写入的记录
+ */
+public final class FileJournalRecorder implements JournalRecorder {
+
+    private static final String JournalFileSuffix = ".journal";
+    private static final String TempFileSuffix = ".tmp";
+    private static final int RecordHeaderSize = 8;
+    private static final int MaxRecordSize = 16 * 1024 * 1024;
+    private static final int DefaultSyncBatchCount = 16;
+
+    public final String directory;
+
+    private final int syncBatchCount;
+    // 各日志文件未 fsync 的记录数
+    private final Map<String, Integer> unsyncedRecordCount = new HashMap<>();
+
+    public FileJournalRecorder(String directory) throws IOException {
+        this(directory, DefaultSyncBatchCount);
+    }
+
+    /**
+     * @param directory      进度文件保存目录
+     * @param syncBatchCount 每追加多少条记录 fsync 一次，小于等于 1 时每条记录均 fsync
+     * @throws IOException 目录创建失败
+     */
+    public FileJournalRecorder(String directory, int syncBatchCount) throws IOException {
+        this.directory = directory;
+        this.syncBatchCount = Math.max(syncBatchCount, 1);
+        File f = new File(directory);
+        if (!f.exists()) {
+            boolean r = f.mkdirs();
+            if (!r) {
+                throw new IOException("mkdir failed");
+            }
+            return;
+        }
+        if (!f.isDirectory()) {
+            throw new IOException("does not mkdir");
+        }
+    }
+
+    /**
+     * 纪录分片上传进度快照，并清空日志
+     *
+     * @param key  上传文件进度文件保存名
+     * @param data 上传文件的进度数据
+     */
+    @Override
+    public synchronized void set(String key, byte[] data) {
+        if (key == null || data == null) {
+            return;
+        }
+
+        String name = FileRecorder.hash(key);
+        File tempFile = new File(directory, name + TempFileSuffix);
+        FileOutputStream fo = null;
+        boolean isSuccess = false;
+        try {
+            fo = new FileOutputStream(tempFile);
+            fo.write(data);
+            fo.getFD().sync();
+            isSuccess = true;
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        close(fo);
+
+        if (!isSuccess || !tempFile.renameTo(new File(directory, name))) {
+            tempFile.delete();
+            return;
+        }
+
+        new File(directory, name + JournalFileSuffix).delete();
+        unsyncedRecordCount.remove(name);
+    }
+
+    /**
+     * 获取分片上传进度快照
+     *
+     * @param key 上传文件进度文件保存名
+     */
+    @Override
+    public synchronized byte[] get(String key) {
+        if (key == null) {
+            return null;
+        }
+
+        String name = FileRecorder.hash(key);
+        File f = new File(directory, name);
+        if (!f.exists()) {
+            return null;
+        }
+        if (outOfDate(f)) {
+            del(key);
+            return null;
+        }
+
+        byte[] data = null;
+        FileInputStream fi = null;
+        try {
+            fi = new FileInputStream(f);
+            data = new byte[(int) f.length()];
+            new DataInputStream(fi).readFully(data);
+        } catch (IOException e) {
+            e.printStackTrace();
+            data = null;
+        }
+        close(fi);
+
+        if (data == null || data.length == 0) {
+            return null;
+        }
+        return data;
+    }
+
+    /**
+     * 追加分片上传进度的增量记录
+     *
+     * @param key    上传文件进度文件保存名
+     * @param record 增量记录
+     */
+    @Override
+    public synchronized void append(String key, byte[] record) {
+        if (key == null || record == null || record.length > MaxRecordSize) {
+            return;
+        }
+
+        String name = FileRecorder.hash(key);
+        CRC32 crc32 = new CRC32();
+        crc32.update(record);
+        ByteBuffer buffer = ByteBuffer.allocate(RecordHeaderSize + record.length);
+        buffer.putInt(record.length);
+        buffer.putInt((int) crc32.getValue());
+        buffer.put(record);
+
+        Integer count = unsyncedRecordCount.get(name);
+        count = count == null ? 1 : count + 1;
+
+        FileOutputStream fo = null;
+        try {
+            fo = new FileOutputStream(new File(directory, name + JournalFileSuffix), true);
+            fo.write(buffer.array());
+            if (count >= syncBatchCount) {
+                fo.getFD().sync();
+                count = 0;
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        close(fo);
+
+        unsyncedRecordCount.put(name, count);
+    }
+
+    /**
+     * 获取快照之后追加的增量记录
+     *
+     * @param key 上传文件进度文件保存名
+     */
+    @Override
+    public synchronized List<byte[]> getRecords(String key) {
+        List<byte[]> records = new ArrayList<>();
+        if (key == null) {
+            return records;
+        }
+
+        File f = new File(directory, FileRecorder.hash(key) + JournalFileSuffix);
+        if (!f.exists()) {
+            return records;
+        }
+
+        long restSize = f.length();
+        FileInputStream fi = null;
+        try {
+            fi = new FileInputStream(f);
+            DataInputStream input = new DataInputStream(fi);
+            while (restSize >= RecordHeaderSize) {
+                int size = input.readInt();
+                int crc = input.readInt();
+                restSize -= RecordHeaderSize;
+                if (size < 0 || size > restSize) {
+                    break;
+                }
+
+                byte[] record = new byte[size];
+                input.readFully(record);
+                restSize -= size;
+
+                CRC32 crc32 = new CRC32();
+                crc32.update(record);
+                if ((int) crc32.getValue() != crc) {
+                    break;
+                }
+                records.add(record);
+            }
+        } catch (EOFException ignored) {
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        close(fi);
+
+        return records;
+    }
+
+    /**
+     * 删除已上传文件的进度快照及日志
+     *
+     * @param key 上传文件进度文件保存名
+     */
+    @Override
+    public synchronized void del(String key) {
+        if (key == null) {
+            return;
+        }
+
+        String name = FileRecorder.hash(key);
+        new File(directory, name).delete();
+        new File(directory, name + JournalFileSuffix).delete();
+        new File(directory, name + TempFileSuffix).delete();
+        unsyncedRecordCount.remove(name);
+    }
+
+    @Override
+    public String getFileName() {
+        return null;
+    }
+
+    private boolean outOfDate(File f) {
+        return f.lastModified() + 1000 * 3600 * 24 * 2 < new Date().getTime();
+    }
+
+    private static void close(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -34,15 +34,21 @@ class FormUpload extends BaseUpload {
 
         uploadTransaction = new RequestTransaction(config, option, getTargetRegion(), getCurrentRegion(), key, token);
 
-        RequestProgressHandler progressHandler = new RequestProgressHandler() {
+        final RequestProgressHandler progressHandler = new RequestProgressHandler() {
             @Override
             public void progress(long totalBytesWritten, long totalBytesExpectedToWrite) {
                 upProgress.progress(key, totalBytesWritten, totalBytesExpectedToWrite);
             }
         };
-        uploadTransaction.uploadFormData(data, fileName, isAsync, progressHandler, new RequestTransaction.RequestCompleteHandler() {
+        // Form 上传优先调度，请求结束后先释放再处理结果（切换区域重试时会重新调度）
+        final UploadScheduler scheduler = this.scheduler;
+        final RequestTransaction transaction = uploadTransaction;
+        final RequestTransaction.RequestCompleteHandler completeHandler = new RequestTransaction.RequestCompleteHandler() {
             @Override
             public void complete(ResponseInfo responseInfo, UploadRegionRequestMetrics requestMetrics, JSONObject response) {
+                if (scheduler != null) {
+                    scheduler.release();
+                }
                 addRegionRequestMetricsOfOneFlow(requestMetrics);
 
                 if (!responseInfo.isOK()) {
@@ -55,7 +61,19 @@ class FormUpload extends BaseUpload {
                 upProgress.notifyDone(key, data.length);
                 completeAction(responseInfo, response);
             }
-        });
+        };
+        Runnable uploadTask = new Runnable() {
+            @Override
+            public void run() {
+                transaction.uploadFormData(data, fileName, isAsync, progressHandler, completeHandler);
+            }
+        };
+
+        if (scheduler != null) {
+            scheduler.execute(this, data.length, true, uploadTask);
+        } else {
+            uploadTask.run();
+        }
     }
 
     @Override
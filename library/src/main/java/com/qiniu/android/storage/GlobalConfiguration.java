@@ -28,6 +28,24 @@ public class GlobalConfiguration {
      */
     public int dnsResolveTimeout = 3;
 
+    /**
+     * dns 预取时是否并发解析，默认关闭
+     * 关闭时逐个 host 串行解析；开启时所有 host 并发解析，且同一 host 的多种解析方式可同时进行，先成功的结果立即生效
+     */
+    public boolean dnsPrefetchConcurrently = false;
+
+    /**
+     * dns 并发预取时同时进行的解析数，默认：4
+     * 解析在 SDK 共享的后台线程池中进行，每次预取时读取
+     */
+    public int dnsPrefetchConcurrentCount = 4;
+
+    /**
+     * dns 并发预取的总超时时间，超时后不再等待未完成的解析
+     * 单位：秒  默认：10
+     */
+    public int dnsPrefetchTimeout = 10;
+
     /**
      * dns 预取, ip 默认有效时间  单位：秒 默认：120
      * 只有在 dns 预取未返回 ttl 时使用
@@ -81,6 +99,13 @@ public class GlobalConfiguration {
      */
     public String[] udpDnsIpv6Servers = null;
 
+    /**
+     * udp Dns 是否同时向所有 server（ipv4 及 ipv6）发送请求，取最先返回的有效结果，默认关闭
+     * 开启后在单个线程中通过 NIO 发送及接收，并记录各 server 的响应时间，连续超时的 server 暂时不再使用
+     * 关闭时先使用 ipv4 server，无结果时再使用 ipv6 server
+     */
+    public boolean udpDnsFanOut = false;
+
     /**
      * 是否使用 doh 预取，默认开启
      */
@@ -152,6 +177,30 @@ public class GlobalConfiguration {
      */
     public boolean enableHttp3 = false;
 
+    /**
+     * 连接池中最大空闲连接数，默认：10
+     * 相同 Host（及相同 IP）的请求复用连接，可省去 TCP 及 TLS 握手；连接池在首次请求时创建，需在首次请求前设置
+     */
+    public int connectionPoolMaxIdleCount = 10;
+
+    /**
+     * 连接池中空闲连接的保活时长  单位：秒  默认：10 * 60
+     * 连接池在首次请求时创建，需在首次请求前设置
+     */
+    public int connectionKeepAliveDuration = 10 * 60;
+
+    /**
+     * 同时执行的异步请求最大数量，默认：64
+     * 需在首次请求前设置
+     */
+    public int httpMaxRequests = 64;
+
+    /**
+     * 对同一 Host 同时执行的异步请求最大数量，默认：16
+     * 分片并发上传时同一 Host 的请求较多，OkHttp 默认值 5 会限制同时上传的分片数；需在首次请求前设置
+     */
+    public int httpMaxRequestsPerHost = 16;
+
     private static final GlobalConfiguration configuration = new GlobalConfiguration();
 
     private GlobalConfiguration() {
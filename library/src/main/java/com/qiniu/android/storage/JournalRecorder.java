@@ -0,0 +1,26 @@
+package com.qiniu.android.storage;
+
+import java.util.List;
+
+/**
+ * 以日志方式纪录分片上传进度的接口：{@link #set(String, byte[])} 写入完整的进度快照并清空日志，
+ * 之后每片上传状态的变化通过 {@link #append(String, byte[])} 追加一条增量记录，恢复时由快照及其后的增量记录重建上传进度
+ */
+public interface JournalRecorder extends Recorder {
+
+    /**
+     * 追加一条增量记录
+     *
+     * @param key    持久化的键
+     * @param record 增量记录
+     */
+    void append(String key, byte[] record);
+
+    /**
+     * 获取最近一次快照之后追加的增量记录，按追加顺序排列
+     *
+     * @param key 持久化的键
+     * @return 增量记录，没有时为空列表
+     */
+    List<byte[]> getRecords(String key);
+}
@@ -19,6 +19,10 @@ class PartsUpload extends BaseUpload {
     private ResponseInfo uploadDataErrorResponseInfo;
     private JSONObject uploadDataErrorResponse;
 
+    // 当前上传同时上传的片数限制，自适应并发时由 concurrencyController 调整
+    protected UploadTaskLimiter taskLimiter;
+    protected UploadConcurrencyController concurrencyController;
+
     protected PartsUpload(UploadSource source,
                           String key,
                           UpToken token,
@@ -223,7 +227,35 @@ class PartsUpload extends BaseUpload {
     }
 
     protected void uploadNextData(final UploadFileDataCompleteHandler completeHandler) {
+        // 先获取当前上传的并发限制，再在缓存池预留读取数据的内存，最后由 UploadManager 的调度器调度，达到限制时等待其他请求结束
+        final UploadTaskLimiter taskLimiter = this.taskLimiter;
+        acquireTask(taskLimiter, new Runnable() {
+            @Override
+            public void run() {
+                reserveBufferAndScheduleTask(new Runnable() {
+                    @Override
+                    public void run() {
+                        performUploadNextData(new UploadFileDataCompleteHandler() {
+                            @Override
+                            public void complete(boolean stop, ResponseInfo responseInfo, JSONObject response) {
+                                if (responseInfo != null && responseInfo.isCancelled()) {
+                                    // 上传已取消，排队的片请求不再等待
+                                    finishTasks(taskLimiter);
+                                }
+                                releaseScheduledTask();
+                                releaseTask(taskLimiter);
+                                completeHandler.complete(stop, responseInfo, response);
+                            }
+                        });
+                    }
+                });
+            }
+        });
+    }
 
+    private void performUploadNextData(final UploadFileDataCompleteHandler completeHandler) {
+        final UploadConcurrencyController concurrencyController = this.concurrencyController;
+        final int epoch = concurrencyController != null ? concurrencyController.epoch() : 0;
         uploadPerformer.uploadNextData(new PartsUploadPerformer.PartsUploadPerformerDataCompleteHandler() {
             @Override
             public void complete(boolean stop, ResponseInfo responseInfo, UploadRegionRequestMetrics requestMetrics, JSONObject response) {
@@ -231,11 +263,117 @@ class PartsUpload extends BaseUpload {
                     setErrorResponse(responseInfo, response);
                 }
                 addRegionRequestMetricsOfOneFlow(requestMetrics);
+                updateConcurrency(concurrencyController, epoch, responseInfo, requestMetrics);
                 completeHandler.complete(stop, responseInfo, response);
             }
         });
     }
 
+    // 根据片上传请求的耗时及结果调整并发数
+    private void updateConcurrency(UploadConcurrencyController concurrencyController,
+                                   int epoch,
+                                   ResponseInfo responseInfo,
+                                   UploadRegionRequestMetrics requestMetrics) {
+        if (concurrencyController == null || responseInfo == null || requestMetrics == null) {
+            return;
+        }
+
+        if (responseInfo.isOK()) {
+            UploadSingleRequestMetrics metrics = requestMetrics.lastMetrics();
+            if (metrics != null) {
+                concurrencyController.updateSuccess(epoch, metrics.bytesSend(), metrics.totalElapsedTime());
+            }
+        } else if (responseInfo.isNetworkBroken() || responseInfo.isServerError()
+                || ResponseInfo.isStatusCodeForBrokenNetwork(responseInfo.statusCode)) {
+            concurrencyController.updateFailure(epoch);
+        } else {
+            return;
+        }
+
+        UploadTaskLimiter taskLimiter = this.taskLimiter;
+        if (taskLimiter != null) {
+            taskLimiter.setLimit(concurrencyController.concurrentTaskCount());
+        }
+    }
+
+    // 预留在调度之前，等待内存的请求不占用调度器的执行数，否则可能与持有预读数据、等待调度的上传互相等待
+    private void reserveBufferAndScheduleTask(final Runnable task) {
+        UploadInfo uploadInfo = uploadPerformer.uploadInfo;
+        final UploadBufferPool bufferPool = uploadInfo != null ? uploadInfo.getBufferPool() : null;
+        // 已有预读数据时上传预读的片，不再借用缓存
+        if (bufferPool == null || uploadInfo.loadedDataCount() > 0) {
+            scheduleTask(task);
+            return;
+        }
+
+        final long size = uploadInfo.nextLoadMemorySize();
+        bufferPool.reserve(this, size, new Runnable() {
+            @Override
+            public void run() {
+                scheduleTask(new Runnable() {
+                    @Override
+                    public void run() {
+                        // 片数据在 task 中同步读取，之后请求异步进行
+                        try {
+                            task.run();
+                        } finally {
+                            bufferPool.releaseReservation(size);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    private void scheduleTask(Runnable task) {
+        UploadScheduler scheduler = this.scheduler;
+        UploadInfo uploadInfo = uploadPerformer.uploadInfo;
+        if (scheduler != null) {
+            // 上传已取消时请求会立即返回，优先执行，不再排在其他上传之后
+            boolean isCancelled = option != null && option.cancellationSignal.isCancelled();
+            scheduler.execute(this, uploadInfo != null ? uploadInfo.nextDataSize() : 0, isCancelled, task);
+        } else {
+            task.run();
+        }
+    }
+
+    private void releaseScheduledTask() {
+        UploadScheduler scheduler = this.scheduler;
+        if (scheduler != null) {
+            scheduler.release();
+        }
+    }
+
+    // 上传结束，排队的片请求立即出队执行
+    private void finishTasks(UploadTaskLimiter limiter) {
+        UploadInfo uploadInfo = uploadPerformer.uploadInfo;
+        UploadBufferPool bufferPool = uploadInfo != null ? uploadInfo.getBufferPool() : null;
+        if (bufferPool != null) {
+            bufferPool.finish(this);
+        }
+        UploadScheduler scheduler = this.scheduler;
+        if (scheduler != null) {
+            scheduler.finish(this);
+        }
+        if (limiter != null) {
+            limiter.finish();
+        }
+    }
+
+    private static void acquireTask(UploadTaskLimiter limiter, Runnable task) {
+        if (limiter != null) {
+            limiter.acquire(task);
+        } else {
+            task.run();
+        }
+    }
+
+    private static void releaseTask(UploadTaskLimiter limiter) {
+        if (limiter != null) {
+            limiter.release();
+        }
+    }
+
     protected void completeUpload(final UploadFileCompleteHandler completeHandler) {
 
         uploadPerformer.completeUpload(new PartsUploadPerformer.PartsUploadPerformerCompleteHandler() {
@@ -252,9 +390,12 @@ class PartsUpload extends BaseUpload {
 
     @Override
     protected void completeAction(ResponseInfo responseInfo, JSONObject response) {
+        finishTasks(taskLimiter);
         uploadPerformer.closeFile();
         if (shouldRemoveUploadInfoRecord(responseInfo)) {
             uploadPerformer.removeUploadInfoRecord();
+        } else {
+            uploadPerformer.flushUploadInfoRecord();
         }
 
         super.completeAction(responseInfo, response);
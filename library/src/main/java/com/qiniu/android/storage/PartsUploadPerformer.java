@@ -5,6 +5,7 @@ import com.qiniu.android.http.ResponseInfo;
 import com.qiniu.android.http.metrics.UploadRegionRequestMetrics;
 import com.qiniu.android.http.request.IUploadRegion;
 import com.qiniu.android.http.request.RequestTransaction;
+import com.qiniu.android.http.request.UploadServerPin;
 import com.qiniu.android.http.serverRegion.UploadDomainRegion;
 import com.qiniu.android.utils.LogUtil;
 import com.qiniu.android.utils.StringUtils;
@@ -13,11 +14,14 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 abstract class PartsUploadPerformer {
     private static final String kRecordFileInfoKey = "recordFileInfo";
     private static final String kRecordZoneInfoKey = "recordZoneInfo";
+    // 日志超过快照大小且不小于此值时重写快照，单位：字节
+    private static final long MinJournalCompactSize = 64 * 1024;
 
     final String key;
     final String fileName;
@@ -36,6 +40,17 @@ abstract class PartsUploadPerformer {
     Long recoveredFrom;
     UploadInfo uploadInfo;
     List<RequestTransaction> uploadTransactions;
+    // http2 多路复用时所有请求共享，为空时不固定 server
+    final UploadServerPin serverPin;
+
+    // 纪录写入锁
+    private final Object recordLock = new Object();
+    // 异步纪录，未配置 recordFlushInterval 时为 null
+    private final UploadRecordFlusher recordFlusher;
+    // recorder 为 JournalRecorder 时：是否已有快照，快照及其后日志的大小
+    private boolean hasRecordSnapshot = false;
+    private long recordSnapshotSize = 0;
+    private long recordJournalSize = 0;
 
     PartsUploadPerformer(UploadSource uploadSource,
                          String fileName,
@@ -53,6 +68,17 @@ abstract class PartsUploadPerformer {
         this.recorder = config.recorder;
         this.recorderKey = recorderKey;
         this.upProgress = new UpProgress(this.options.progressHandler);
+        this.serverPin = config.useHttp2Multiplexing ? new UploadServerPin(config.http2MaxConcurrentStreams) : null;
+        if (config.recorder != null && config.recordFlushInterval > 0) {
+            this.recordFlusher = new UploadRecordFlusher(config.recordFlushInterval, config.recordFlushDataCount, new UploadRecordFlusher.Writer() {
+                @Override
+                public void write(List<UploadData> dataList) {
+                    writeUploadDataRecord(dataList);
+                }
+            });
+        } else {
+            this.recordFlusher = null;
+        }
 
         this.initData();
     }
@@ -61,6 +87,9 @@ abstract class PartsUploadPerformer {
         uploadTransactions = new ArrayList<>();
         uploadInfo = getDefaultUploadInfo();
         recoverUploadInfoFromRecord();
+        if (uploadInfo != null) {
+            uploadInfo.setPrefetchDepth(config.prefetchDepth);
+        }
     }
 
     boolean canReadFile() {
@@ -89,6 +118,9 @@ abstract class PartsUploadPerformer {
 
     void switchRegion(IUploadRegion region) {
         currentRegion = region;
+        if (serverPin != null) {
+            serverPin.reset();
+        }
         if (targetRegion == null) {
             targetRegion = region;
         }
@@ -113,23 +145,33 @@ abstract class PartsUploadPerformer {
             return;
         }
 
-        synchronized (this) {
-            JSONObject zoneInfoJson = null;
-            JSONObject fileInfoJson = null;
-            if (currentRegion != null && currentRegion.getZoneInfo() != null) {
-                zoneInfoJson = currentRegion.getZoneInfo().detailInfo;
-            }
-            if (uploadInfo != null) {
-                fileInfoJson = uploadInfo.toJsonObject();
-            }
-            if (zoneInfoJson != null && fileInfoJson != null) {
-                JSONObject info = new JSONObject();
-                try {
-                    info.put(kRecordZoneInfoKey, zoneInfoJson);
-                    info.put(kRecordFileInfoKey, fileInfoJson);
-                } catch (JSONException ignored) {
+        // 纪录的写入在 recordLock 内进行，不阻塞其他需要 this 锁的任务
+        synchronized (recordLock) {
+            byte[] data = null;
+            synchronized (this) {
+                JSONObject zoneInfoJson = null;
+                JSONObject fileInfoJson = null;
+                if (currentRegion != null && currentRegion.getZoneInfo() != null) {
+                    zoneInfoJson = currentRegion.getZoneInfo().detailInfo;
                 }
-                recorder.set(key, info.toString().getBytes());
+                if (uploadInfo != null) {
+                    fileInfoJson = uploadInfo.toJsonObject();
+                }
+                if (zoneInfoJson != null && fileInfoJson != null) {
+                    JSONObject info = new JSONObject();
+                    try {
+                        info.put(kRecordZoneInfoKey, zoneInfoJson);
+                        info.put(kRecordFileInfoKey, fileInfoJson);
+                    } catch (JSONException ignored) {
+                    }
+                    data = info.toString().getBytes();
+                }
+            }
+            if (data != null) {
+                recorder.set(key, data);
+                hasRecordSnapshot = true;
+                recordSnapshotSize = data.length;
+                recordJournalSize = 0;
             }
         }
         LogUtil.i("key:" + StringUtils.toNonnullString(key) +
@@ -137,13 +179,88 @@ abstract class PartsUploadPerformer {
                 " recordUploadInfo");
     }
 
+    /**
+     * 纪录片上传状态的变化，配置了 {@link Configuration#recordFlushInterval} 时在后台合并写入，否则同步写入
+     *
+     * @param data 状态发生变化的片
+     */
+    void recordUploadData(UploadData data) {
+
+        String key = recorderKey;
+        if (recorder == null || key == null || key.length() == 0) {
+            return;
+        }
+
+        if (recordFlusher != null) {
+            recordFlusher.add(data);
+        } else {
+            writeUploadDataRecord(Collections.singletonList(data));
+        }
+    }
+
+    /**
+     * 强制写入所有待纪录的片，上传结束或取消时调用
+     */
+    void flushUploadInfoRecord() {
+        if (recordFlusher != null) {
+            recordFlusher.flush();
+        }
+    }
+
+    // recorder 为 JournalRecorder 时仅追加片的增量记录，日志超过快照大小时重写快照以压缩日志；否则重写完整的上传信息
+    private void writeUploadDataRecord(List<UploadData> dataList) {
+
+        String key = recorderKey;
+        if (recorder == null || key == null || key.length() == 0) {
+            return;
+        }
+
+        if (!(recorder instanceof JournalRecorder)) {
+            recordUploadInfo();
+            return;
+        }
+
+        boolean shouldRecordSnapshot = false;
+        synchronized (recordLock) {
+            for (UploadData data : dataList) {
+                JSONObject deltaJson = null;
+                if (hasRecordSnapshot && uploadInfo != null) {
+                    deltaJson = uploadInfo.getDeltaJsonObject(data);
+                }
+                if (deltaJson == null) {
+                    shouldRecordSnapshot = true;
+                    break;
+                }
+
+                byte[] record = deltaJson.toString().getBytes();
+                ((JournalRecorder) recorder).append(key, record);
+                recordJournalSize += record.length;
+            }
+            if (recordJournalSize > Math.max(recordSnapshotSize, MinJournalCompactSize)) {
+                shouldRecordSnapshot = true;
+            }
+        }
+
+        if (shouldRecordSnapshot) {
+            recordUploadInfo();
+        }
+    }
+
     void removeUploadInfoRecord() {
         recoveredFrom = null;
+        if (recordFlusher != null) {
+            recordFlusher.clear();
+        }
         if (uploadInfo != null) {
             uploadInfo.clearUploadState();
         }
-        if (recorder != null && recorderKey != null) {
-            recorder.del(recorderKey);
+        synchronized (recordLock) {
+            hasRecordSnapshot = false;
+            recordSnapshotSize = 0;
+            recordJournalSize = 0;
+            if (recorder != null && recorderKey != null) {
+                recorder.del(recorderKey);
+            }
         }
         LogUtil.i("key:" + StringUtils.toNonnullString(key) +
                 " recorderKey:" + StringUtils.toNonnullString(recorderKey) +
@@ -173,6 +290,18 @@ abstract class PartsUploadPerformer {
             JSONObject info = new JSONObject(new String(data));
             ZoneInfo zoneInfo = ZoneInfo.buildFromJson(info.getJSONObject(kRecordZoneInfoKey));
             UploadInfo recoverUploadInfo = getUploadInfoFromJson(uploadSource, info.getJSONObject(kRecordFileInfoKey));
+            List<byte[]> records = null;
+            if (recorder instanceof JournalRecorder && recoverUploadInfo != null) {
+                records = ((JournalRecorder) recorder).getRecords(key);
+                List<JSONObject> deltaJsonList = new ArrayList<>();
+                for (byte[] record : records) {
+                    try {
+                        deltaJsonList.add(new JSONObject(new String(record)));
+                    } catch (JSONException ignored) {
+                    }
+                }
+                recoverUploadInfo.applyDeltaJsonObjects(deltaJsonList);
+            }
             if (zoneInfo != null && recoverUploadInfo != null && recoverUploadInfo.isValid() && uploadInfo.isSameUploadInfo(recoverUploadInfo)) {
 
                 LogUtil.i("key:" + StringUtils.toNonnullString(key) +
@@ -181,11 +310,22 @@ abstract class PartsUploadPerformer {
 
                 recoverUploadInfo.checkInfoStateAndUpdate();
                 uploadInfo = recoverUploadInfo;
-                UploadDomainRegion region = new UploadDomainRegion();
+                UploadDomainRegion region = new UploadDomainRegion(config.networkContext);
                 region.setupRegionData(zoneInfo);
                 currentRegion = region;
                 targetRegion = region;
                 recoveredFrom = recoverUploadInfo.uploadSize();
+
+                if (records != null && records.size() > 0) {
+                    // 合并日志为新的快照，同时丢弃日志末尾可能不完整的记录
+                    recordUploadInfo();
+                } else if (records != null) {
+                    synchronized (recordLock) {
+                        hasRecordSnapshot = true;
+                        recordSnapshotSize = data.length;
+                        recordJournalSize = 0;
+                    }
+                }
             } else {
                 LogUtil.i("key:" + StringUtils.toNonnullString(key) +
                         " recorderKey:" + StringUtils.toNonnullString(recorderKey) +
@@ -210,6 +350,7 @@ abstract class PartsUploadPerformer {
 
     RequestTransaction createUploadRequestTransaction() {
         final RequestTransaction transaction = new RequestTransaction(config, options, targetRegion, currentRegion, key, token);
+        transaction.setServerPin(serverPin);
         synchronized (this) {
             if (uploadTransactions != null) {
                 uploadTransactions.add(transaction);
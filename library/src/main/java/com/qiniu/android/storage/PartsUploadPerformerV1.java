@@ -4,6 +4,7 @@ import com.qiniu.android.http.ResponseInfo;
 import com.qiniu.android.http.metrics.UploadRegionRequestMetrics;
 import com.qiniu.android.http.request.RequestTransaction;
 import com.qiniu.android.http.request.handler.RequestProgressHandler;
+import com.qiniu.android.utils.Crc32;
 import com.qiniu.android.utils.LogUtil;
 import com.qiniu.android.utils.StringUtils;
 
@@ -49,21 +50,17 @@ class PartsUploadPerformerV1 extends PartsUploadPerformer {
         UploadBlock block = null;
         UploadData chunk = null;
 
-        synchronized (this) {
-            try {
-                block = info.nextUploadBlock();
-                chunk = info.nextUploadData(block);
-                if (chunk != null) {
-                    chunk.updateState(UploadData.State.Uploading);
-                }
-            } catch (Exception e) {
-                // 此处可能导致后面无法恢复
-                LogUtil.i("key:" + StringUtils.toNonnullString(key) + e.getMessage());
+        // 块数据在锁外读取，多个任务可并发读取
+        try {
+            block = info.nextUploadBlock();
+            chunk = info.nextUploadData(block);
+        } catch (Exception e) {
+            // 此处可能导致后面无法恢复
+            LogUtil.i("key:" + StringUtils.toNonnullString(key) + e.getMessage());
 
-                ResponseInfo responseInfo = ResponseInfo.localIOError(e.getMessage());
-                completeHandler.complete(true, responseInfo, null, null);
-                return;
-            }
+            ResponseInfo responseInfo = ResponseInfo.localIOError(e.getMessage());
+            completeHandler.complete(true, responseInfo, null, null);
+            return;
         }
 
         if (block == null || chunk == null) {
@@ -111,7 +108,7 @@ class PartsUploadPerformerV1 extends PartsUploadPerformer {
                     uploadBlock.ctx = ctx;
                     uploadBlock.expireAt = expiredAt;
                     uploadChunk.updateState(UploadData.State.Complete);
-                    recordUploadInfo();
+                    recordUploadData(uploadChunk);
                     notifyProgress(false);
                 } else {
                     uploadChunk.updateState(UploadData.State.WaitToUpload);
@@ -160,7 +157,7 @@ class PartsUploadPerformerV1 extends PartsUploadPerformer {
                            final PartsUploadPerformerCompleteHandler completeHandler) {
 
         final RequestTransaction transaction = createUploadRequestTransaction();
-        transaction.makeBlock(block.offset, block.size, chunk.data, true, progressHandler, new RequestTransaction.RequestCompleteHandler() {
+        transaction.makeBlock(block.offset, block.size, chunk.data, chunkCrc32(chunk), true, progressHandler, new RequestTransaction.RequestCompleteHandler() {
             @Override
             public void complete(ResponseInfo responseInfo, UploadRegionRequestMetrics requestMetrics, JSONObject response) {
 
@@ -176,7 +173,7 @@ class PartsUploadPerformerV1 extends PartsUploadPerformer {
                              final PartsUploadPerformerCompleteHandler completeHandler) {
 
         final RequestTransaction transaction = createUploadRequestTransaction();
-        transaction.uploadChunk(block.ctx, block.offset, chunk.data, chunk.offset, true, progressHandler, new RequestTransaction.RequestCompleteHandler() {
+        transaction.uploadChunk(block.ctx, block.offset, chunk.data, chunkCrc32(chunk), chunk.offset, true, progressHandler, new RequestTransaction.RequestCompleteHandler() {
             @Override
             public void complete(ResponseInfo responseInfo, UploadRegionRequestMetrics requestMetrics, JSONObject response) {
 
@@ -186,4 +183,9 @@ class PartsUploadPerformerV1 extends PartsUploadPerformer {
         });
 
     }
+
+    // 片数据的 crc32 在读取时已计算，没有时重新计算
+    private static long chunkCrc32(UploadData chunk) {
+        return chunk.crc32 != null ? chunk.crc32 : Crc32.bytes(chunk.data);
+    }
 }
@@ -2,19 +2,30 @@ package com.qiniu.android.storage;
 
 import com.qiniu.android.http.ResponseInfo;
 import com.qiniu.android.http.metrics.UploadRegionRequestMetrics;
+import com.qiniu.android.http.metrics.UploadSingleRequestMetrics;
+import com.qiniu.android.http.request.IUploadServer;
 import com.qiniu.android.http.request.RequestTransaction;
 import com.qiniu.android.http.request.handler.RequestProgressHandler;
 import com.qiniu.android.utils.LogUtil;
 import com.qiniu.android.utils.StringUtils;
+import com.qiniu.android.utils.Utils;
 
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
 
 class PartsUploadPerformerV2 extends PartsUploadPerformer {
 
+    private static final int AdaptiveMinDataSize = 1024 * 1024;
+    private static final int AdaptiveMaxDataSize = 16 * 1024 * 1024;
+
+    // 分片对冲，未开启时为 null
+    private final UploadPartHedger partHedger;
+
     PartsUploadPerformerV2(UploadSource uploadSource,
                            String fileName,
                            String key,
@@ -23,6 +34,15 @@ class PartsUploadPerformerV2 extends PartsUploadPerformer {
                            Configuration config,
                            String recorderKey) {
         super(uploadSource, fileName, key, token, options, config, recorderKey);
+        this.partHedger = config.useHedgedPartUpload ? new UploadPartHedger(config.hedgedPartMaxCount) : null;
+    }
+
+    @Override
+    void initData() {
+        super.initData();
+        if (config.useAdaptiveChunkSize && uploadInfo instanceof UploadInfoV2) {
+            ((UploadInfoV2) uploadInfo).setDataSizeController(createDataSizeController());
+        }
     }
 
     @Override
@@ -78,21 +98,17 @@ class PartsUploadPerformerV2 extends PartsUploadPerformer {
     void uploadNextData(final PartsUploadPerformerDataCompleteHandler completeHandler) {
         final UploadInfoV2 info = (UploadInfoV2) uploadInfo;
 
+        // 片数据在锁外读取，多个任务可并发读取
         UploadData data = null;
-        synchronized (this) {
-            try {
-                data = info.nextUploadData();
-                if (data != null) {
-                    data.updateState(UploadData.State.Uploading);
-                }
-            } catch (Exception e) {
-                // 此处可能无法恢复
-                LogUtil.i("key:" + StringUtils.toNonnullString(key) + " " + e.getMessage());
+        try {
+            data = info.nextUploadData();
+        } catch (Exception e) {
+            // 此处可能无法恢复
+            LogUtil.i("key:" + StringUtils.toNonnullString(key) + " " + e.getMessage());
 
-                ResponseInfo responseInfo = ResponseInfo.localIOError(e.getMessage());
-                completeHandler.complete(true, responseInfo, null, responseInfo.response);
-                return;
-            }
+            ResponseInfo responseInfo = ResponseInfo.localIOError(e.getMessage());
+            completeHandler.complete(true, responseInfo, null, responseInfo.response);
+            return;
         }
 
         if (data == null) {
@@ -112,13 +128,38 @@ class PartsUploadPerformerV2 extends PartsUploadPerformer {
         RequestProgressHandler progressHandler = new RequestProgressHandler() {
             @Override
             public void progress(long totalBytesWritten, long totalBytesExpectedToWrite) {
-                uploadData.setUploadSize(totalBytesWritten);
-                notifyProgress(false);
+                // 对冲请求可能已上传更多
+                if (totalBytesWritten > uploadData.uploadSize()) {
+                    uploadData.setUploadSize(totalBytesWritten);
+                    notifyProgress(false);
+                }
             }
         };
 
+        UploadPartRequests requests = new UploadPartRequests();
+        uploadPart(info, uploadData, requests, null, progressHandler, completeHandler);
+        scheduleHedgeIfNeeded(info, uploadData, requests, completeHandler);
+    }
+
+    // 片上传请求，excludedServer 不为空时为对冲请求
+    private void uploadPart(final UploadInfoV2 info,
+                            final UploadData uploadData,
+                            final UploadPartRequests requests,
+                            IUploadServer excludedServer,
+                            RequestProgressHandler progressHandler,
+                            final PartsUploadPerformerDataCompleteHandler completeHandler) {
+
         final RequestTransaction transaction = createUploadRequestTransaction();
-        transaction.uploadPart(true, info.uploadId, info.getPartIndexOfData(data), data.data, progressHandler, new RequestTransaction.RequestCompleteHandler() {
+        if (excludedServer != null) {
+            transaction.setExcludedServer(excludedServer);
+        }
+        if (!requests.add(transaction)) {
+            destroyUploadRequestTransaction(transaction);
+            return;
+        }
+
+        final long startTime = Utils.currentTimestamp();
+        transaction.uploadPart(true, info.uploadId, info.getPartIndexOfData(uploadData), uploadData.data, uploadData.md5, progressHandler, new RequestTransaction.RequestCompleteHandler() {
             @Override
             public void complete(ResponseInfo responseInfo, UploadRegionRequestMetrics requestMetrics, JSONObject response) {
 
@@ -133,17 +174,70 @@ class PartsUploadPerformerV2 extends PartsUploadPerformer {
                     } catch (JSONException e) {
                     }
                 }
-                if (responseInfo.isOK() && etag != null && md5 != null) {
-                    uploadData.etag = etag;
+                boolean isSuccess = responseInfo.isOK() && etag != null && md5 != null;
+                if (isSuccess && partHedger != null) {
+                    partHedger.addSample(uploadData.size, Utils.currentTimestamp() - startTime);
+                }
+
+                // 所有请求结束后再处理结果，此时片数据不再被读取，可以归还缓存池
+                UploadPartRequests.Result result = requests.complete(transaction, isSuccess, responseInfo, requestMetrics, response, etag);
+                if (result == null) {
+                    return;
+                }
+
+                updateDataSize(info, result.responseInfo, result.requestMetrics);
+                if (result.isSuccess) {
+                    uploadData.etag = result.etag;
                     uploadData.updateState(UploadData.State.Complete);
-                    recordUploadInfo();
+                    recordUploadData(uploadData);
                     notifyProgress(false);
                 } else {
                     uploadData.updateState(UploadData.State.WaitToUpload);
                 }
-                completeHandler.complete(false, responseInfo, requestMetrics, response);
+                completeHandler.complete(false, result.responseInfo, result.requestMetrics, result.response);
+            }
+        });
+    }
+
+    // 片上传耗时超过阈值时，向其他 server 发送对冲请求
+    private void scheduleHedgeIfNeeded(final UploadInfoV2 info,
+                                       final UploadData uploadData,
+                                       final UploadPartRequests requests,
+                                       final PartsUploadPerformerDataCompleteHandler completeHandler) {
+        if (partHedger == null) {
+            return;
+        }
+
+        long delay = partHedger.getHedgeDelay(uploadData.size);
+        if (delay < 0) {
+            return;
+        }
+
+        ScheduledFuture<?> hedgeFuture = UploadPartHedger.schedule(delay, new Runnable() {
+            @Override
+            public void run() {
+                IUploadServer server = requests.getCurrentServer();
+                if (server == null || requests.isFinished() || !partHedger.tryHedge()) {
+                    return;
+                }
+
+                LogUtil.i("key:" + StringUtils.toNonnullString(key) + " hedge part:" + uploadData.index +
+                        " host:" + StringUtils.toNonnullString(server.getHost()) + " ip:" + StringUtils.toNonnullString(server.getIp()));
+
+                RequestProgressHandler progressHandler = new RequestProgressHandler() {
+                    @Override
+                    public void progress(long totalBytesWritten, long totalBytesExpectedToWrite) {
+                        // 两个请求同时上传时，进度取较大值
+                        if (totalBytesWritten > uploadData.uploadSize()) {
+                            uploadData.setUploadSize(totalBytesWritten);
+                            notifyProgress(false);
+                        }
+                    }
+                };
+                uploadPart(info, uploadData, requests, server, progressHandler, completeHandler);
             }
         });
+        requests.setHedgeFuture(hedgeFuture);
     }
 
     @Override
@@ -165,4 +259,141 @@ class PartsUploadPerformerV2 extends PartsUploadPerformer {
             }
         });
     }
+
+    // 片大小上限不超过 max(chunkSize, 16M)，同时上传及预读的片不超过缓存池大小，避免等待缓存
+    private UploadDataSizeController createDataSizeController() {
+        int maxDataSize = Math.max(config.chunkSize, AdaptiveMaxDataSize);
+        if (config.bufferPoolMaxSize > 0) {
+            int concurrentCount = config.useConcurrentResumeUpload ? config.concurrentTaskCount : 1;
+            concurrentCount += Math.max(config.prefetchDepth, 0);
+            maxDataSize = Math.min(maxDataSize, config.bufferPoolMaxSize / Math.max(concurrentCount, 1));
+        }
+        maxDataSize = Math.max(maxDataSize, AdaptiveMinDataSize);
+        return new UploadDataSizeController(config.chunkSize, AdaptiveMinDataSize, maxDataSize);
+    }
+
+    // 根据片上传请求的结果调整后续片的大小
+    private void updateDataSize(UploadInfoV2 info, ResponseInfo responseInfo, UploadRegionRequestMetrics requestMetrics) {
+        UploadDataSizeController dataSizeController = info.getDataSizeController();
+        if (dataSizeController == null || responseInfo == null) {
+            return;
+        }
+
+        if (responseInfo.isOK()) {
+            UploadSingleRequestMetrics metrics = requestMetrics != null ? requestMetrics.lastMetrics() : null;
+            if (metrics != null) {
+                long transferTime = metrics.totalRequestTime() + metrics.totalWaitTime() + metrics.totalResponseTime();
+                dataSizeController.updateSuccess(metrics.bytesSend(), transferTime, metrics.totalWaitTime());
+            }
+        } else if (responseInfo.isNetworkBroken() || ResponseInfo.isStatusCodeForBrokenNetwork(responseInfo.statusCode)) {
+            dataSizeController.updateFailure();
+        }
+    }
+
+    /**
+     * 同一片的上传请求（原请求及对冲请求）：先成功的请求为结果，并取消其他请求；
+     * 所有请求结束后返回结果，所有请求均失败时结果为最后一个失败的请求
+     */
+    private static class UploadPartRequests {
+
+        private final List<RequestTransaction> transactions = new ArrayList<>();
+        private Result result;
+        private boolean isFinished = false;
+        // 未到期的对冲，有请求成功或所有请求结束时取消
+        private ScheduledFuture<?> hedgeFuture;
+
+        synchronized boolean add(RequestTransaction transaction) {
+            if (isFinished || result != null) {
+                return false;
+            }
+            transactions.add(transaction);
+            return true;
+        }
+
+        synchronized boolean isFinished() {
+            return isFinished || result != null;
+        }
+
+        void setHedgeFuture(ScheduledFuture<?> hedgeFuture) {
+            synchronized (this) {
+                if (!isFinished()) {
+                    this.hedgeFuture = hedgeFuture;
+                    return;
+                }
+            }
+            hedgeFuture.cancel(false);
+        }
+
+        synchronized IUploadServer getCurrentServer() {
+            return transactions.size() > 0 ? transactions.get(0).getCurrentServer() : null;
+        }
+
+        /**
+         * @return 所有请求结束时返回结果，否则为 null
+         */
+        Result complete(RequestTransaction transaction,
+                        boolean isSuccess,
+                        ResponseInfo responseInfo,
+                        UploadRegionRequestMetrics requestMetrics,
+                        JSONObject response,
+                        String etag) {
+
+            List<RequestTransaction> cancelTransactions = null;
+            ScheduledFuture<?> cancelHedgeFuture = null;
+            Result finalResult = null;
+            synchronized (this) {
+                transactions.remove(transaction);
+                if (result == null || (!result.isSuccess && isSuccess)) {
+                    result = new Result(isSuccess, responseInfo, requestMetrics, response, etag);
+                    if (isSuccess && transactions.size() > 0) {
+                        cancelTransactions = new ArrayList<>(transactions);
+                    }
+                } else if (!result.isSuccess) {
+                    // 均失败时使用最后一个失败的请求
+                    result = new Result(false, responseInfo, requestMetrics, response, etag);
+                }
+
+                if (transactions.size() == 0 && !isFinished) {
+                    isFinished = true;
+                    finalResult = result;
+                }
+
+                if (hedgeFuture != null && (isFinished || result.isSuccess)) {
+                    cancelHedgeFuture = hedgeFuture;
+                    hedgeFuture = null;
+                }
+            }
+
+            if (cancelHedgeFuture != null) {
+                cancelHedgeFuture.cancel(false);
+            }
+
+            if (cancelTransactions != null) {
+                for (RequestTransaction cancelTransaction : cancelTransactions) {
+                    cancelTransaction.cancel();
+                }
+            }
+            return finalResult;
+        }
+
+        private static class Result {
+            private final boolean isSuccess;
+            private final ResponseInfo responseInfo;
+            private final UploadRegionRequestMetrics requestMetrics;
+            private final JSONObject response;
+            private final String etag;
+
+            private Result(boolean isSuccess,
+                           ResponseInfo responseInfo,
+                           UploadRegionRequestMetrics requestMetrics,
+                           JSONObject response,
+                           String etag) {
+                this.isSuccess = isSuccess;
+                this.responseInfo = responseInfo;
+                this.requestMetrics = requestMetrics;
+                this.response = response;
+                this.etag = etag;
+            }
+        }
+    }
 }
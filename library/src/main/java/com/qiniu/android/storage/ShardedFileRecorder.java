@@ -0,0 +1,388 @@
+package com.qiniu.android.storage;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 分目录存储的上传进度纪录：
+ * 1. 纪录文件按键 hash 的前两位分散在 256 个子目录中，避免单个目录文件过多
+ * 2. 首次使用时扫描目录建立内存索引；索引中没有的纪录读取时检查文件是否存在，其他实例（或进程）之后写入的纪录同样可以读取；
+ * {@link FileRecorder} 遗留在根目录的纪录会被迁移至子目录
+ * 3. 纪录超过 maxAge 未更新则删除；纪录总大小超过 maxSize 时按最近最少使用删除
+ * 4. 写入先写临时文件再重命名，不会读到写了一半的纪录
+ */
+public final class ShardedFileRecorder implements Recorder {
+
+    private static final String TempFileSuffix = ".tmp";
+    private static final int ShardNameLength = 2;
+    private static final int HashNameLength = 40;
+    // 过期纪录全量清理的间隔，单位：毫秒
+    private static final long ExpireCheckInterval = 10 * 60 * 1000;
+    private static final long DefaultMaxSize = 32 * 1024 * 1024;
+    private static final long DefaultMaxAge = 2 * 24 * 3600 * 1000;
+
+    public final String directory;
+
+    private final long maxSize;
+    private final long maxAge;
+
+    // 纪录索引，按访问顺序排列，头部为最近最少使用
+    private final LinkedHashMap<String, RecordInfo> recordInfoMap = new LinkedHashMap<>(16, 0.75f, true);
+    private boolean isIndexLoaded = false;
+    private long totalSize = 0;
+    private long lastExpireCheckTime = 0;
+
+    public ShardedFileRecorder(String directory) throws IOException {
+        this(directory, DefaultMaxSize, DefaultMaxAge);
+    }
+
+    /**
+     * @param directory 进度文件保存目录
+     * @param maxSize   纪录总大小上限，单位：字节
+     * @param maxAge    纪录有效期，单位：毫秒
+     * @throws IOException 目录创建失败
+     */
+    public ShardedFileRecorder(String directory, long maxSize, long maxAge) throws IOException {
+        this.directory = directory;
+        this.maxSize = maxSize;
+        this.maxAge = maxAge;
+        File f = new File(directory);
+        if (!f.exists()) {
+            boolean r = f.mkdirs();
+            if (!r) {
+                throw new IOException("mkdir failed");
+            }
+            return;
+        }
+        if (!f.isDirectory()) {
+            throw new IOException("does not mkdir");
+        }
+    }
+
+    /**
+     * 纪录分片上传进度
+     *
+     * @param key  上传文件进度文件保存名
+     * @param data 上传文件的进度数据
+     */
+    @Override
+    public synchronized void set(String key, byte[] data) {
+        if (key == null || data == null) {
+            return;
+        }
+
+        loadIndexIfNeeded();
+
+        String name = FileRecorder.hash(key);
+        File shard = getShardDirectory(name);
+        if (!shard.exists() && !shard.mkdirs()) {
+            return;
+        }
+
+        File tempFile = new File(shard, name + TempFileSuffix);
+        FileOutputStream fo = null;
+        boolean isSuccess = false;
+        try {
+            fo = new FileOutputStream(tempFile);
+            fo.write(data);
+            isSuccess = true;
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        close(fo);
+
+        if (!isSuccess || !tempFile.renameTo(new File(shard, name))) {
+            tempFile.delete();
+            return;
+        }
+
+        removeRecordInfo(name);
+        recordInfoMap.put(name, new RecordInfo(data.length, new Date().getTime()));
+        totalSize += data.length;
+
+        evictIfNeeded(name);
+    }
+
+    /**
+     * 获取分片上传进度
+     *
+     * @param key 上传文件进度文件保存名
+     */
+    @Override
+    public synchronized byte[] get(String key) {
+        if (key == null) {
+            return null;
+        }
+
+        loadIndexIfNeeded();
+
+        String name = FileRecorder.hash(key);
+        RecordInfo info = recordInfoMap.get(name);
+        if (info == null) {
+            info = loadRecordInfo(name);
+        }
+        if (info == null) {
+            return null;
+        }
+        if (isOutOfDate(info, new Date().getTime())) {
+            deleteRecord(name);
+            return null;
+        }
+
+        File f = getRecordFile(name);
+        if (!f.isFile()) {
+            // 纪录已被其他实例删除
+            deleteRecord(name);
+            return null;
+        }
+
+        byte[] data = null;
+        FileInputStream fi = null;
+        try {
+            fi = new FileInputStream(f);
+            data = new byte[(int) f.length()];
+            new DataInputStream(fi).readFully(data);
+        } catch (IOException e) {
+            e.printStackTrace();
+            data = null;
+        }
+        close(fi);
+
+        if (data == null || data.length == 0) {
+            deleteRecord(name);
+            return null;
+        }
+        return data;
+    }
+
+    /**
+     * 删除已上传文件的进度文件
+     *
+     * @param key 上传文件进度文件保存名
+     */
+    @Override
+    public synchronized void del(String key) {
+        if (key == null) {
+            return;
+        }
+
+        loadIndexIfNeeded();
+        deleteRecord(FileRecorder.hash(key));
+    }
+
+    @Override
+    public String getFileName() {
+        return null;
+    }
+
+    /**
+     * 纪录总大小
+     *
+     * @return 单位：字节
+     */
+    public synchronized long totalSize() {
+        loadIndexIfNeeded();
+        return totalSize;
+    }
+
+    /**
+     * 纪录数
+     *
+     * @return 纪录数
+     */
+    public synchronized int recordCount() {
+        loadIndexIfNeeded();
+        return recordInfoMap.size();
+    }
+
+    // 扫描目录建立索引，仅首次使用时进行
+    private void loadIndexIfNeeded() {
+        if (isIndexLoaded) {
+            return;
+        }
+        isIndexLoaded = true;
+
+        File root = new File(directory);
+        File[] files = root.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        long now = new Date().getTime();
+        List<File> recordFiles = new ArrayList<>();
+        for (File file : files) {
+            String name = file.getName();
+            if (file.isDirectory()) {
+                if (name.length() != ShardNameLength) {
+                    continue;
+                }
+                File[] shardFiles = file.listFiles();
+                if (shardFiles == null) {
+                    continue;
+                }
+                for (File shardFile : shardFiles) {
+                    if (isRecordName(shardFile.getName())) {
+                        recordFiles.add(shardFile);
+                    } else if (shardFile.getName().endsWith(TempFileSuffix)) {
+                        // 未完成写入的临时文件
+                        shardFile.delete();
+                    }
+                }
+            } else if (isRecordName(name)) {
+                // FileRecorder 遗留的纪录，有效的迁移至子目录
+                if (file.lastModified() + maxAge < now) {
+                    file.delete();
+                    continue;
+                }
+                File shard = getShardDirectory(name);
+                File shardFile = new File(shard, name);
+                if ((shard.exists() || shard.mkdirs()) && file.renameTo(shardFile)) {
+                    recordFiles.add(shardFile);
+                }
+            }
+        }
+
+        // 按修改时间排序，最早修改的视为最近最少使用
+        final Map<File, Long> modifiedTimeMap = new LinkedHashMap<>();
+        for (File file : recordFiles) {
+            modifiedTimeMap.put(file, file.lastModified());
+        }
+        Collections.sort(recordFiles, new Comparator<File>() {
+            @Override
+            public int compare(File o1, File o2) {
+                long t1 = modifiedTimeMap.get(o1);
+                long t2 = modifiedTimeMap.get(o2);
+                return t1 < t2 ? -1 : (t1 == t2 ? 0 : 1);
+            }
+        });
+
+        for (File file : recordFiles) {
+            RecordInfo info = new RecordInfo(file.length(), modifiedTimeMap.get(file));
+            recordInfoMap.put(file.getName(), info);
+            totalSize += info.size;
+        }
+
+        evictIfNeeded(null);
+    }
+
+    // 索引中没有的纪录，检查文件是否由其他实例写入，存在时加入索引
+    private RecordInfo loadRecordInfo(String name) {
+        File file = getRecordFile(name);
+        if (!file.isFile()) {
+            // FileRecorder 建立索引后写入的纪录
+            File legacyFile = new File(directory, name);
+            File shard = getShardDirectory(name);
+            if (!legacyFile.isFile() || !(shard.exists() || shard.mkdirs()) || !legacyFile.renameTo(file)) {
+                return null;
+            }
+        }
+
+        RecordInfo info = new RecordInfo(file.length(), file.lastModified());
+        recordInfoMap.put(name, info);
+        totalSize += info.size;
+        evictIfNeeded(name);
+        return info;
+    }
+
+    // 删除过期纪录，并按最近最少使用删除纪录至总大小不超过上限，retainName 为正在写入的纪录，不删除
+    private void evictIfNeeded(String retainName) {
+        long now = new Date().getTime();
+        if (now - lastExpireCheckTime >= ExpireCheckInterval) {
+            lastExpireCheckTime = now;
+            List<String> expiredNames = new ArrayList<>();
+            for (Map.Entry<String, RecordInfo> entry : recordInfoMap.entrySet()) {
+                if (isOutOfDate(entry.getValue(), now) && !entry.getKey().equals(retainName)) {
+                    expiredNames.add(entry.getKey());
+                }
+            }
+            for (String name : expiredNames) {
+                deleteRecord(name);
+            }
+        }
+
+        if (totalSize <= maxSize) {
+            return;
+        }
+
+        Iterator<Map.Entry<String, RecordInfo>> iterator = recordInfoMap.entrySet().iterator();
+        while (totalSize > maxSize && iterator.hasNext()) {
+            Map.Entry<String, RecordInfo> entry = iterator.next();
+            if (entry.getKey().equals(retainName)) {
+                continue;
+            }
+            iterator.remove();
+            totalSize -= entry.getValue().size;
+            getRecordFile(entry.getKey()).delete();
+        }
+    }
+
+    private void deleteRecord(String name) {
+        removeRecordInfo(name);
+        getRecordFile(name).delete();
+    }
+
+    private void removeRecordInfo(String name) {
+        RecordInfo info = recordInfoMap.remove(name);
+        if (info != null) {
+            totalSize -= info.size;
+        }
+    }
+
+    private boolean isOutOfDate(RecordInfo info, long now) {
+        return info.modifiedTime + maxAge < now;
+    }
+
+    private File getShardDirectory(String name) {
+        return new File(directory, name.substring(0, ShardNameLength));
+    }
+
+    private File getRecordFile(String name) {
+        return new File(getShardDirectory(name), name);
+    }
+
+    private static boolean isRecordName(String name) {
+        if (name == null || name.length() != HashNameLength) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void close(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static class RecordInfo {
+        private final long size;
+        private final long modifiedTime;
+
+        private RecordInfo(long size, long modifiedTime) {
+            this.size = size;
+            this.modifiedTime = modifiedTime;
+        }
+    }
+}
@@ -21,6 +21,9 @@ class UploadBlock {
     String md5 = null;
     String ctx = null;
 
+    // 块数据正在加载，由 UploadInfoV1 在锁内维护；加载中的块不会被其他任务选取
+    boolean isLoading = false;
+
     UploadBlock(long offset, int blockSize, int dataSize, int index) {
         this.offset = offset;
         this.size = blockSize;
@@ -0,0 +1,360 @@
+package com.qiniu.android.storage;
+
+import com.qiniu.android.utils.AsyncRun;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * 分片数据缓存池，由 {@link UploadManager} 持有，同一个 UploadManager 的所有分片上传共享。
+ * 1. 缓存按大小分级（2 的幂，最小 64K），同级缓存可复用；
+ * 2. 读取片数据前通过 {@link #reserve(Object, long, Runnable)} 预留内存，使用中的缓存与预留的内存之和超过 maxSize 时读取排队等待，
+ * 有缓存归还或预留释放时按顺序交由线程池执行，等待不占用线程；
+ * 3. 借用不会等待（借用在请求回调线程中进行，等待会阻塞其他请求）：超过上限时先释放其他级别的空闲缓存，仍超过时立即分配新缓存，
+ * 超过上限分配的缓存归还时直接释放，其他缓存归还后复用；预读仅在不超过上限且没有等待的读取时进行。
+ */
+public final class UploadBufferPool {
+
+    private static final int MinBufferSize = 64 * 1024;
+
+    /**
+     * 缓存池最大内存，单位：字节
+     */
+    public final long maxSize;
+
+    private final Map<Integer, LinkedList<ByteBuffer>> idleBuffers = new HashMap<>();
+    private final Set<ByteBuffer> borrowedBuffers = Collections.newSetFromMap(new IdentityHashMap<ByteBuffer, Boolean>());
+    // 超过上限分配的缓存，归还时释放
+    private final Set<ByteBuffer> overflowBuffers = Collections.newSetFromMap(new IdentityHashMap<ByteBuffer, Boolean>());
+    private long allocatedSize = 0;
+    private long idleSize = 0;
+    private long reservedSize = 0;
+    private final LinkedList<WaitingTask> waitingTasks = new LinkedList<>();
+    private final Executor executor;
+
+    private long hitCount = 0;
+    private long missCount = 0;
+    private long overflowCount = 0;
+    private long waitCount = 0;
+
+    UploadBufferPool(long maxSize) {
+        this(maxSize, AsyncRun.getBackgroundExecutor());
+    }
+
+    /**
+     * @param maxSize  缓存池最大内存，单位：字节
+     * @param executor 等待的读取任务出队后在此执行
+     */
+    UploadBufferPool(long maxSize, Executor executor) {
+        this.maxSize = maxSize;
+        this.executor = executor;
+    }
+
+    /**
+     * 预留内存后执行读取数据的任务：没有等待的任务且不超过内存上限时在调用线程中直接执行，否则排队等待，不阻塞调用线程；
+     * 未使用及预留任何内存时总会执行，大于上限的片也可读取。任务执行结束（数据已读取）后需调用 {@link #releaseReservation(long)}
+     *
+     * @param owner 任务所属的上传，上传结束时调用 {@link #finish(Object)}
+     * @param size  预留的内存大小，单位：字节
+     * @param task  任务
+     */
+    void reserve(Object owner, long size, Runnable task) {
+        synchronized (this) {
+            if (!waitingTasks.isEmpty() || !couldReserve(size)) {
+                waitCount++;
+                waitingTasks.add(new WaitingTask(owner, size, task));
+                return;
+            }
+            reservedSize += size;
+        }
+        task.run();
+    }
+
+    /**
+     * 释放预留的内存，执行可执行的等待任务
+     *
+     * @param size 预留时的大小，单位：字节
+     */
+    void releaseReservation(long size) {
+        synchronized (this) {
+            reservedSize = Math.max(reservedSize - size, 0);
+        }
+        runWaitingTasks();
+    }
+
+    /**
+     * 上传结束（完成或取消），其等待的读取任务不再等待，立即交由线程池执行，执行结束后同样需要释放预留
+     *
+     * @param owner 任务所属的上传
+     */
+    void finish(Object owner) {
+        List<WaitingTask> tasks = new ArrayList<>();
+        synchronized (this) {
+            Iterator<WaitingTask> iterator = waitingTasks.iterator();
+            while (iterator.hasNext()) {
+                WaitingTask task = iterator.next();
+                if (task.owner == owner) {
+                    iterator.remove();
+                    reservedSize += task.size;
+                    tasks.add(task);
+                }
+            }
+        }
+        dispatch(tasks);
+    }
+
+    /**
+     * 借用缓存，缓存 position 为 0，limit 为 size；不会等待，超过内存上限时仍分配新缓存
+     *
+     * @param size 需要的缓存大小
+     * @return 缓存
+     */
+    synchronized ByteBuffer borrow(int size) {
+        int bufferSize = bufferSizeOf(size);
+        ByteBuffer buffer = pollIdleBuffer(bufferSize);
+        if (buffer != null) {
+            hitCount++;
+            return lendBuffer(buffer, size);
+        }
+
+        // 释放其他级别的空闲缓存以腾出空间
+        if (allocatedSize + bufferSize > maxSize) {
+            trimIdleBuffers(allocatedSize + bufferSize - maxSize);
+        }
+        boolean isOverflow = allocatedSize + bufferSize > maxSize;
+
+        missCount++;
+        allocatedSize += bufferSize;
+        buffer = ByteBuffer.allocate(bufferSize);
+        if (isOverflow) {
+            overflowCount++;
+            overflowBuffers.add(buffer);
+        }
+        return lendBuffer(buffer, size);
+    }
+
+    /**
+     * 是否可以在不超过内存上限的情况下借用缓存，有等待的读取任务时不可借用
+     *
+     * @param size 需要的缓存大小
+     * @return 是否可以借用
+     */
+    synchronized boolean couldBorrowWithinLimit(int size) {
+        if (!waitingTasks.isEmpty()) {
+            return false;
+        }
+
+        int bufferSize = bufferSizeOf(size);
+        LinkedList<ByteBuffer> buffers = idleBuffers.get(bufferSize);
+        if (buffers != null && buffers.size() > 0) {
+            return true;
+        }
+        return allocatedSize - idleSize + reservedSize + bufferSize <= maxSize;
+    }
+
+    /**
+     * 归还缓存，非缓存池借出的缓存会被忽略；归还后执行可执行的等待任务
+     *
+     * @param buffer 缓存
+     */
+    void recycle(ByteBuffer buffer) {
+        synchronized (this) {
+            if (buffer == null || !borrowedBuffers.remove(buffer)) {
+                return;
+            }
+
+            if (overflowBuffers.remove(buffer)) {
+                allocatedSize -= buffer.capacity();
+            } else {
+                buffer.clear();
+                LinkedList<ByteBuffer> buffers = idleBuffers.get(buffer.capacity());
+                if (buffers == null) {
+                    buffers = new LinkedList<>();
+                    idleBuffers.put(buffer.capacity(), buffers);
+                }
+                buffers.add(buffer);
+                idleSize += buffer.capacity();
+            }
+        }
+        runWaitingTasks();
+    }
+
+    /**
+     * 释放所有空闲缓存
+     */
+    public synchronized void trim() {
+        trimIdleBuffers(idleSize);
+    }
+
+    /**
+     * 借用缓存时命中空闲缓存的次数
+     *
+     * @return 次数
+     */
+    public synchronized long hitCount() {
+        return hitCount;
+    }
+
+    /**
+     * 借用缓存时未命中空闲缓存，新分配缓存的次数
+     *
+     * @return 次数
+     */
+    public synchronized long missCount() {
+        return missCount;
+    }
+
+    /**
+     * 借用缓存时超过内存上限仍分配缓存的次数
+     *
+     * @return 次数
+     */
+    public synchronized long overflowCount() {
+        return overflowCount;
+    }
+
+    /**
+     * 预留内存时等待的次数
+     *
+     * @return 次数
+     */
+    public synchronized long waitCount() {
+        return waitCount;
+    }
+
+    /**
+     * 等待预留内存的读取任务数
+     *
+     * @return 任务数
+     */
+    public synchronized int waitingCount() {
+        return waitingTasks.size();
+    }
+
+    /**
+     * 预留的内存大小
+     *
+     * @return 大小，单位：字节
+     */
+    public synchronized long reservedSize() {
+        return reservedSize;
+    }
+
+    /**
+     * 已分配的缓存大小，包括使用中和空闲的
+     *
+     * @return 大小，单位：字节
+     */
+    public synchronized long allocatedSize() {
+        return allocatedSize;
+    }
+
+    /**
+     * 空闲的缓存大小
+     *
+     * @return 大小，单位：字节
+     */
+    public synchronized long idleSize() {
+        return idleSize;
+    }
+
+    // 使用中的缓存与预留的内存之和不超过上限，或未使用及预留任何内存
+    private boolean couldReserve(long size) {
+        long usedSize = allocatedSize - idleSize + reservedSize;
+        return usedSize == 0 || usedSize + size <= maxSize;
+    }
+
+    private void runWaitingTasks() {
+        List<WaitingTask> tasks = null;
+        synchronized (this) {
+            while (!waitingTasks.isEmpty() && couldReserve(waitingTasks.getFirst().size)) {
+                WaitingTask task = waitingTasks.removeFirst();
+                reservedSize += task.size;
+                if (tasks == null) {
+                    tasks = new ArrayList<>();
+                }
+                tasks.add(task);
+            }
+        }
+        dispatch(tasks);
+    }
+
+    // 等待的任务不在归还缓存的线程中执行，不占用请求回调线程
+    private void dispatch(List<WaitingTask> tasks) {
+        if (tasks == null) {
+            return;
+        }
+        for (WaitingTask task : tasks) {
+            executor.execute(task.task);
+        }
+    }
+
+    private ByteBuffer lendBuffer(ByteBuffer buffer, int size) {
+        buffer.clear();
+        buffer.limit(size);
+        borrowedBuffers.add(buffer);
+        return buffer;
+    }
+
+    private ByteBuffer pollIdleBuffer(int bufferSize) {
+        LinkedList<ByteBuffer> buffers = idleBuffers.get(bufferSize);
+        if (buffers == null || buffers.size() == 0) {
+            return null;
+        }
+        idleSize -= bufferSize;
+        return buffers.removeFirst();
+    }
+
+    private void trimIdleBuffers(long size) {
+        Iterator<Map.Entry<Integer, LinkedList<ByteBuffer>>> iterator = idleBuffers.entrySet().iterator();
+        while (size > 0 && iterator.hasNext()) {
+            Map.Entry<Integer, LinkedList<ByteBuffer>> entry = iterator.next();
+            LinkedList<ByteBuffer> buffers = entry.getValue();
+            while (size > 0 && buffers.size() > 0) {
+                buffers.removeFirst();
+                idleSize -= entry.getKey();
+                allocatedSize -= entry.getKey();
+                size -= entry.getKey();
+            }
+            if (buffers.size() == 0) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * @param size 需要的缓存大小
+     * @return 借用时实际分配的缓存大小
+     */
+    static int bufferSizeOf(int size) {
+        if (size <= MinBufferSize) {
+            return MinBufferSize;
+        }
+        int bufferSize = Integer.highestOneBit(size);
+        if (bufferSize < size && bufferSize < (1 << 30)) {
+            bufferSize <<= 1;
+        }
+        return Math.max(bufferSize, size);
+    }
+
+    private static class WaitingTask {
+        private final Object owner;
+        private final long size;
+        private final Runnable task;
+
+        private WaitingTask(Object owner, long size, Runnable task) {
+            this.owner = owner;
+            this.size = size;
+            this.task = task;
+        }
+    }
+}
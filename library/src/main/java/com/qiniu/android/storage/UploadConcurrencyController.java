@@ -0,0 +1,99 @@
+package com.qiniu.android.storage;
+
+/**
+ * 根据片上传请求的耗时及失败情况调整同时上传的片数（AIMD）
+ * 1. 片上传成功且单位数据耗时没有明显变大时，并发数加法增长（每轮并发增加 1）
+ * 2. 单位数据耗时超过基准耗时的 {@link #LatencyTolerance} 倍（网络排队，已超过可用带宽）时，并发数乘法减小
+ * 3. 片上传因网络原因失败时，并发数减半
+ * 同一轮中（并发数减小前开始上传的片）多次减小只生效一次，避免并发请求同时失败时并发数骤减
+ */
+class UploadConcurrencyController {
+
+    private static final double LatencyTolerance = 2;
+    private static final double LatencyDecreaseFactor = 0.9;
+    private static final double FailureDecreaseFactor = 0.5;
+    // 基准耗时每次增大的比例，使基准耗时可跟随网络变化
+    private static final double BaseLatencyDrift = 1.02;
+
+    private final int minCount;
+    private final int maxCount;
+    private double count;
+    // 每次减小并发数时增加
+    private int epoch = 0;
+
+    // 基准单位数据耗时，单位：毫秒/MB
+    private double baseLatency = -1;
+
+    UploadConcurrencyController(int initCount, int minCount, int maxCount) {
+        this.minCount = Math.max(minCount, 1);
+        this.maxCount = Math.max(this.minCount, maxCount);
+        this.count = clamp(initCount);
+    }
+
+    /**
+     * @return 当前允许同时上传的片数
+     */
+    synchronized int concurrentTaskCount() {
+        return (int) count;
+    }
+
+    synchronized int maxConcurrentTaskCount() {
+        return maxCount;
+    }
+
+    /**
+     * 开始上传片时获取，片上传结束后更新时传入
+     *
+     * @return 当前轮次
+     */
+    synchronized int epoch() {
+        return epoch;
+    }
+
+    /**
+     * 片上传成功
+     *
+     * @param epoch       开始上传时的轮次
+     * @param bytes       上传的字节数
+     * @param elapsedTime 上传耗时，单位：毫秒
+     */
+    synchronized void updateSuccess(int epoch, long bytes, long elapsedTime) {
+        if (bytes <= 0 || elapsedTime <= 0) {
+            return;
+        }
+
+        double latency = elapsedTime * 1024.0 * 1024.0 / bytes;
+        if (baseLatency < 0 || latency < baseLatency) {
+            baseLatency = latency;
+        } else {
+            baseLatency *= BaseLatencyDrift;
+        }
+
+        if (latency > baseLatency * LatencyTolerance) {
+            decrease(epoch, LatencyDecreaseFactor);
+        } else {
+            count = clamp(count + 1 / count);
+        }
+    }
+
+    /**
+     * 片上传因网络原因失败
+     *
+     * @param epoch 开始上传时的轮次
+     */
+    synchronized void updateFailure(int epoch) {
+        decrease(epoch, FailureDecreaseFactor);
+    }
+
+    private void decrease(int epoch, double factor) {
+        if (epoch != this.epoch) {
+            return;
+        }
+        this.epoch++;
+        count = clamp(count * factor);
+    }
+
+    private double clamp(double count) {
+        return Math.max(minCount, Math.min(maxCount, count));
+    }
+}
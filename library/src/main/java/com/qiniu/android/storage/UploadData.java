@@ -2,6 +2,8 @@ package com.qiniu.android.storage;
 
 import org.json.JSONObject;
 
+import java.nio.ByteBuffer;
+
 class UploadData {
 
     final long offset;
@@ -14,7 +16,12 @@ class UploadData {
     private State state;
     private long uploadSize = 0;
 
-    byte[] data;
+    // 片数据，可能为文件映射数据或从缓存池借用的缓存，使用时需 duplicate，不可修改其内容
+    ByteBuffer data;
+    // 片数据所属的缓存池，上传结束后片数据归还至缓存池
+    private UploadBufferPool dataPool;
+    // 片数据的 crc32，加载片数据时计算，不持久化
+    Long crc32;
 
     UploadData(long offset, int size, int index) {
         this.offset = offset;
@@ -73,11 +80,27 @@ class UploadData {
                 etag = null;
                 break;
             case Complete:
-                data = null;
+                releaseData();
         }
         this.state = state;
     }
 
+    void setData(ByteBuffer data, UploadBufferPool dataPool) {
+        releaseData();
+        this.data = data;
+        this.dataPool = dataPool;
+    }
+
+    // 释放片数据，从缓存池借用的片数据会归还至缓存池
+    void releaseData() {
+        if (dataPool != null && data != null) {
+            dataPool.recycle(data);
+        }
+        data = null;
+        dataPool = null;
+        crc32 = null;
+    }
+
     void setUploadSize(long uploadSize) {
         this.uploadSize = uploadSize;
     }
@@ -0,0 +1,95 @@
+package com.qiniu.android.storage;
+
+import com.qiniu.android.dns.util.Hex;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.zip.CRC32;
+
+/**
+ * 片数据的校验信息（md5 / crc32），在读取数据时分段更新，避免数据读取后再整体遍历计算
+ * 非线程安全
+ */
+class UploadDataDigest {
+
+    private static final int BufferSize = 64 * 1024;
+
+    private final MessageDigest md5Digest;
+    private final CRC32 crc32;
+    private byte[] buffer;
+
+    /**
+     * @param md5   是否计算 md5
+     * @param crc32 是否计算 crc32
+     */
+    UploadDataDigest(boolean md5, boolean crc32) {
+        MessageDigest md5Digest = null;
+        if (md5) {
+            try {
+                md5Digest = MessageDigest.getInstance("MD5");
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+        this.md5Digest = md5Digest;
+        this.crc32 = crc32 ? new CRC32() : null;
+    }
+
+    /**
+     * 更新校验信息，数据为 ByteBuffer 中 [position, limit) 部分，不会改变 data 的 position
+     *
+     * @param data 数据
+     */
+    void update(ByteBuffer data) {
+        if (data.hasArray()) {
+            update(data.array(), data.arrayOffset() + data.position(), data.remaining());
+            return;
+        }
+
+        // 非堆内存数据（如：文件映射）分段拷贝到缓冲区中计算
+        ByteBuffer source = data.duplicate();
+        if (buffer == null) {
+            buffer = new byte[BufferSize];
+        }
+        while (source.hasRemaining()) {
+            int len = Math.min(buffer.length, source.remaining());
+            source.get(buffer, 0, len);
+            update(buffer, 0, len);
+        }
+    }
+
+    private void update(byte[] data, int offset, int length) {
+        if (md5Digest != null) {
+            md5Digest.update(data, offset, length);
+        }
+        if (crc32 != null) {
+            crc32.update(data, offset, length);
+        }
+    }
+
+    /**
+     * 获取 md5，获取后 md5 会被重置
+     *
+     * @return md5，不计算 md5 时为 null
+     */
+    String md5() {
+        if (md5Digest == null) {
+            return null;
+        }
+        return Hex.encodeHexString(md5Digest.digest());
+    }
+
+    /**
+     * 获取 crc32，获取后 crc32 会被重置
+     *
+     * @return crc32，不计算 crc32 时为 null
+     */
+    Long crc32() {
+        if (crc32 == null) {
+            return null;
+        }
+        long value = crc32.getValue();
+        crc32.reset();
+        return value;
+    }
+}
@@ -0,0 +1,109 @@
+package com.qiniu.android.storage;
+
+/**
+ * 根据片上传请求的吞吐量及 RTT 调整后续片的大小
+ * 1. 片越大，单个请求的固定开销（约一个 RTT 及服务端处理时间）占比越小，片上传耗时不小于 RTT 的 {@link #OverheadRatio} 倍
+ * 2. 片越小，失败时需重传的数据越少，片上传耗时不大于 {@link #MaxDataUploadTime}；请求因网络原因失败时，片大小上限减半，成功后再逐步恢复
+ * 片大小取 2 的幂，与缓存池的分配规格一致
+ */
+class UploadDataSizeController {
+
+    // 片上传耗时与 RTT 比值的下限
+    private static final int OverheadRatio = 10;
+    // 片上传耗时范围，单位：毫秒
+    private static final long MinDataUploadTime = 2 * 1000;
+    private static final long MaxDataUploadTime = 10 * 1000;
+    // 吞吐量、RTT 平滑系数，与 NetworkStatusManager 一致
+    private static final double SampleWeight = 0.4;
+
+    private final int minDataSize;
+    private final int maxDataSize;
+    private int limitDataSize;
+    private int dataSize;
+
+    // 单位：byte/s
+    private double throughput = -1;
+    // 单位：毫秒
+    private double rtt = -1;
+
+    /**
+     * @param initDataSize 没有测速数据时片大小
+     * @param minDataSize  片大小下限
+     * @param maxDataSize  片大小上限
+     */
+    UploadDataSizeController(int initDataSize, int minDataSize, int maxDataSize) {
+        this.minDataSize = floorPowerOfTwo(minDataSize);
+        this.maxDataSize = Math.max(this.minDataSize, floorPowerOfTwo(maxDataSize));
+        this.limitDataSize = this.maxDataSize;
+        this.dataSize = clamp(floorPowerOfTwo(initDataSize));
+    }
+
+    /**
+     * 下一片的大小
+     *
+     * @return 片大小
+     */
+    synchronized int dataSize() {
+        return dataSize;
+    }
+
+    synchronized double throughput() {
+        return throughput;
+    }
+
+    synchronized double rtt() {
+        return rtt;
+    }
+
+    /**
+     * 片上传成功，更新吞吐量及 RTT
+     *
+     * @param bytes        上传的字节数
+     * @param transferTime 请求发送至响应结束的耗时，单位：毫秒
+     * @param rtt          请求发送结束至响应开始的耗时，单位：毫秒
+     */
+    synchronized void updateSuccess(long bytes, long transferTime, long rtt) {
+        if (bytes <= 0 || transferTime <= 0) {
+            return;
+        }
+
+        double sampleThroughput = bytes * 1000.0 / transferTime;
+        throughput = throughput < 0 ? sampleThroughput : sampleThroughput * SampleWeight + throughput * (1 - SampleWeight);
+        if (rtt >= 0) {
+            this.rtt = this.rtt < 0 ? rtt : rtt * SampleWeight + this.rtt * (1 - SampleWeight);
+        }
+
+        // maxDataSize 可达 2^30，翻倍可能溢出
+        limitDataSize = (int) Math.min((long) limitDataSize * 2, maxDataSize);
+        adjustDataSize();
+    }
+
+    /**
+     * 片上传因网络原因失败，减小片大小
+     */
+    synchronized void updateFailure() {
+        limitDataSize = Math.max(minDataSize, dataSize / 2);
+        adjustDataSize();
+    }
+
+    private void adjustDataSize() {
+        if (throughput <= 0) {
+            dataSize = clamp(Math.min(dataSize, limitDataSize));
+            return;
+        }
+
+        long uploadTime = (long) Math.max(rtt, 0) * OverheadRatio;
+        uploadTime = Math.max(MinDataUploadTime, Math.min(MaxDataUploadTime, uploadTime));
+        double size = throughput * uploadTime / 1000;
+        int targetDataSize = size >= Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) size;
+        dataSize = clamp(floorPowerOfTwo(Math.min(targetDataSize, limitDataSize)));
+    }
+
+    private int clamp(int size) {
+        return Math.max(minDataSize, Math.min(maxDataSize, size));
+    }
+
+    private static int floorPowerOfTwo(int size) {
+        return size <= 1 ? 1 : Integer.highestOneBit(size);
+    }
+}
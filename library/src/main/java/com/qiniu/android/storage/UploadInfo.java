@@ -1,18 +1,28 @@
 package com.qiniu.android.storage;
 
+import com.qiniu.android.utils.AsyncRun;
+import com.qiniu.android.utils.LogUtil;
+
 import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
 
 abstract class UploadInfo {
 
     private String sourceId;
-    private long sourceSize = UploadSource.UnknownSourceSize;
+    private volatile long sourceSize = UploadSource.UnknownSourceSize;
     protected String fileName = null;
 
     private UploadSource source;
 
+    // 预读深度，也即最多提前加载的片数
+    private int prefetchDepth = 0;
+    private int prefetchingCount = 0;
+    private boolean isClosed = false;
+
     UploadInfo(UploadSource source) {
         this.source = source;
         this.sourceSize = source.getSize();
@@ -82,6 +92,16 @@ abstract class UploadInfo {
         return source.getSize();
     }
 
+    /**
+     * 数据源是否支持并发读取
+     * 支持时分片数据可在锁外并发读取；不支持时需按顺序串行读取
+     *
+     * @return 是否支持并发读取
+     */
+    boolean couldReadConcurrently() {
+        return source != null && source.couldReadConcurrently();
+    }
+
     /**
      * 数据源是否有效，为空则无效
      *
@@ -107,6 +127,22 @@ abstract class UploadInfo {
      */
     abstract long uploadSize();
 
+    /**
+     * 下一片的大小，用于上传调度
+     *
+     * @return 片大小
+     */
+    abstract int nextDataSize();
+
+    /**
+     * 读取下一片数据时从缓存池借用的内存大小，用于缓存池的内存限制
+     *
+     * @return 内存大小，单位：字节
+     */
+    long nextLoadMemorySize() {
+        return UploadBufferPool.bufferSizeOf(nextDataSize());
+    }
+
     /**
      * 文件内容是否完全上传完毕
      *
@@ -124,6 +160,21 @@ abstract class UploadInfo {
      */
     abstract void checkInfoStateAndUpdate();
 
+    /**
+     * 片上传状态变化的增量记录，配合 {@link JournalRecorder} 使用，避免每片上传结束后重写完整的上传信息
+     *
+     * @param data 状态发生变化的片
+     * @return 增量记录，失败时为 null
+     */
+    abstract JSONObject getDeltaJsonObject(UploadData data);
+
+    /**
+     * 按增量记录更新上传状态，用于由快照及其后的增量记录重建上传状态；同一片有多条记录时以最后一条为准
+     *
+     * @param deltaJsonList 增量记录，按记录顺序排列
+     */
+    abstract void applyDeltaJsonObjects(List<JSONObject> deltaJsonList);
+
     /**
      * 转 json
      *
@@ -140,21 +191,135 @@ abstract class UploadInfo {
     }
 
     void close() {
+        synchronized (this) {
+            isClosed = true;
+        }
         source.close();
     }
 
+    synchronized boolean isClosed() {
+        return isClosed;
+    }
+
+    /**
+     * 设置预读深度，大于 0 时会在后台提前加载后续的片数据（包括读取及 md5 计算），使读取与上传并行
+     *
+     * @param prefetchDepth 预读深度
+     */
+    void setPrefetchDepth(int prefetchDepth) {
+        this.prefetchDepth = prefetchDepth;
+    }
+
+    /**
+     * 按预读深度在后台预读片数据，已加载待上传及正在预读的片数不超过预读深度
+     *
+     * @param dataSize 片大小，缓存池超过内存上限时不预读
+     */
+    void prefetchIfNeeded(int dataSize) {
+        if (prefetchDepth <= 0) {
+            return;
+        }
+
+        UploadBufferPool bufferPool = getBufferPool();
+        if (bufferPool != null && !bufferPool.couldBorrowWithinLimit(dataSize)) {
+            return;
+        }
+
+        int count = 0;
+        synchronized (this) {
+            if (isClosed || isPrefetchFinished()) {
+                return;
+            }
+            count = prefetchDepth - loadedDataCount() - prefetchingCount;
+            if (count <= 0) {
+                return;
+            }
+            prefetchingCount += count;
+        }
+
+        for (int i = 0; i < count; i++) {
+            AsyncRun.runInBackground(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        prefetchNextData();
+                    } catch (IOException e) {
+                        // 预读失败不影响上传，上传时会重新读取
+                        LogUtil.i("prefetch data error:" + e.getMessage());
+                    } finally {
+                        synchronized (UploadInfo.this) {
+                            prefetchingCount--;
+                        }
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * 是否已无可预读的数据
+     *
+     * @return 是否已无可预读的数据
+     */
+    abstract boolean isPrefetchFinished();
+
+    /**
+     * 已加载数据且等待上传的片数
+     *
+     * @return 片数
+     */
+    abstract int loadedDataCount();
+
+    /**
+     * 预读下一个片的数据，预读的片状态为等待上传（WaitToUpload）
+     *
+     * @throws IOException 读取异常
+     */
+    abstract void prefetchNextData() throws IOException;
+
+    /**
+     * 获取分片数据缓存池
+     *
+     * @return 缓存池，没有时为 null
+     */
+    UploadBufferPool getBufferPool() {
+        return source != null ? source.getBufferPool() : null;
+    }
+
+    /**
+     * 归还不再使用的数据至缓存池，非缓存池借出的数据会被忽略
+     *
+     * @param buffer 数据
+     */
+    void recycleBuffer(ByteBuffer buffer) {
+        UploadBufferPool bufferPool = getBufferPool();
+        if (bufferPool != null) {
+            bufferPool.recycle(buffer);
+        }
+    }
+
     byte[] readData(int dataSize, long dataOffset) throws IOException {
         if (source == null) {
             throw new IOException("file is not exist");
         }
 
-        byte[] data = null;
-        synchronized (source) {
-            data = source.readData(dataSize, dataOffset);
-        }
+        byte[] data = source.readData(dataSize, dataOffset);
         if (data != null && (data.length != dataSize || data.length == 0)) {
             sourceSize = dataOffset + data.length;
         }
         return data;
     }
+
+    ByteBuffer readBuffer(int dataSize, long dataOffset, UploadDataDigest digest) throws IOException {
+        if (source == null) {
+            throw new IOException("file is not exist");
+        }
+
+        ByteBuffer buffer = source.readBuffer(dataSize, dataOffset, digest);
+        int bufferSize = buffer != null ? buffer.remaining() : 0;
+        if (bufferSize != dataSize || bufferSize == 0) {
+            sourceSize = dataOffset + bufferSize;
+        }
+        return buffer;
+    }
 }
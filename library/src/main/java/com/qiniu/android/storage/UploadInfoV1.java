@@ -1,8 +1,6 @@
 package com.qiniu.android.storage;
 
-import com.qiniu.android.utils.BytesUtils;
 import com.qiniu.android.utils.ListVector;
-import com.qiniu.android.utils.MD5;
 import com.qiniu.android.utils.StringUtils;
 
 import org.json.JSONArray;
@@ -10,7 +8,10 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 
 class UploadInfoV1 extends UploadInfo {
@@ -25,6 +26,9 @@ class UploadInfoV1 extends UploadInfo {
 
     private boolean isEOF = false;
     private IOException readException = null;
+    private final Object loadLock = new Object();
+    // 正在预读的块
+    private final List<UploadBlock> prefetchingBlockList = new ArrayList<>();
 
     private UploadInfoV1(UploadSource source, int dataSize, ListVector<UploadBlock> blockList) {
         super(source);
@@ -140,6 +144,32 @@ class UploadInfoV1 extends UploadInfo {
         });
     }
 
+    @Override
+    void close() {
+        blockList.enumerateObjects(new ListVector.EnumeratorHandler<UploadBlock>() {
+            @Override
+            public boolean enumerate(UploadBlock block) {
+                for (UploadData data : block.uploadDataList) {
+                    data.releaseData();
+                }
+                return false;
+            }
+        });
+        super.close();
+    }
+
+    @Override
+    int nextDataSize() {
+        return dataSize;
+    }
+
+    @Override
+    long nextLoadMemorySize() {
+        // 块中所有片的数据一次读取
+        int dataCount = (BlockSize + dataSize - 1) / dataSize;
+        return (long) dataCount * UploadBufferPool.bufferSizeOf(dataSize);
+    }
+
     @Override
     long uploadSize() {
         if (blockList == null || blockList.size() == 0) {
@@ -192,6 +222,75 @@ class UploadInfoV1 extends UploadInfo {
         });
     }
 
+    @Override
+    JSONObject getDeltaJsonObject(final UploadData data) {
+        if (data == null) {
+            return null;
+        }
+
+        // 片的上传状态保存在块中，记录片所属的整个块
+        final UploadBlock[] blocks = {null};
+        blockList.enumerateObjects(new ListVector.EnumeratorHandler<UploadBlock>() {
+            @Override
+            public boolean enumerate(UploadBlock block) {
+                if (block.uploadDataList != null && block.uploadDataList.contains(data)) {
+                    blocks[0] = block;
+                    return true;
+                }
+                return false;
+            }
+        });
+        if (blocks[0] == null) {
+            return null;
+        }
+        try {
+            return blocks[0].toJsonObject();
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    @Override
+    void applyDeltaJsonObjects(List<JSONObject> deltaJsonList) {
+        if (deltaJsonList == null || deltaJsonList.size() == 0) {
+            return;
+        }
+
+        List<UploadBlock> deltaBlockList = new ArrayList<>();
+        for (JSONObject deltaJson : deltaJsonList) {
+            try {
+                UploadBlock block = UploadBlock.blockFromJson(deltaJson);
+                if (block != null && block.index >= 0 && block.offset == (long) block.index * BlockSize) {
+                    deltaBlockList.add(block);
+                }
+            } catch (Exception ignored) {
+            }
+        }
+
+        // 按 index 顺序更新（排序稳定，同一块以最后一条记录为准），块大小固定，中间缺失的块直接创建，需重新上传
+        Collections.sort(deltaBlockList, new Comparator<UploadBlock>() {
+            @Override
+            public int compare(UploadBlock o1, UploadBlock o2) {
+                return o1.index - o2.index;
+            }
+        });
+
+        synchronized (this) {
+            for (UploadBlock block : deltaBlockList) {
+                if (block.index < blockList.size()) {
+                    blockList.set(block.index, block);
+                    continue;
+                }
+
+                while (blockList.size() < block.index) {
+                    int index = blockList.size();
+                    blockList.add(new UploadBlock((long) index * BlockSize, BlockSize, dataSize, index));
+                }
+                blockList.add(block);
+            }
+        }
+    }
+
     @Override
     JSONObject toJsonObject() {
         JSONObject jsonObject = super.toJsonObject();
@@ -229,65 +328,231 @@ class UploadInfoV1 extends UploadInfo {
         return jsonObject;
     }
 
+    /**
+     * 获取下一个需要上传的块，块中待上传的片已加载数据并标记为上传中（Uploading），可通过 {@link #nextUploadData(UploadBlock)} 获取
+     * 块的选取在锁内进行，块数据的读取及 md5 计算在锁外进行，数据源支持并发读取时多个块可并发加载
+     *
+     * @return 块，没有需要上传的块时返回 null
+     * @throws IOException 读取异常
+     */
     UploadBlock nextUploadBlock() throws IOException {
+        UploadBlock block = null;
+        if (couldReadConcurrently()) {
+            block = loadNextUploadBlock(false);
+        } else {
+            // 不支持并发读取的资源需按顺序读取
+            synchronized (loadLock) {
+                block = loadNextUploadBlock(false);
+            }
+        }
 
-        // 从 blockList 中读取需要上传的 block
-        UploadBlock block = nextUploadBlockFormBlockList();
+        prefetchIfNeeded(dataSize);
+        return block;
+    }
 
-        // 内存的 blockList 中没有可上传的数据，则从资源中读并创建 block
-        if (block == null) {
-            if (isEOF) {
-                return null;
-            } else if (readException != null) {
-                // 资源读取异常，不可读取
-                throw readException;
+    @Override
+    void prefetchNextData() throws IOException {
+        if (couldReadConcurrently()) {
+            loadNextUploadBlock(true);
+        } else {
+            synchronized (loadLock) {
+                loadNextUploadBlock(true);
             }
+        }
+    }
 
-            // 从资源中读取新的 block 进行上传
-            long blockOffset = 0;
-            if (blockList.size() > 0) {
-                UploadBlock lastBlock = blockList.get(blockList.size() - 1);
-                blockOffset = lastBlock.offset + lastBlock.size;
+    @Override
+    synchronized boolean isPrefetchFinished() {
+        return isEOF || readException != null;
+    }
+
+    @Override
+    int loadedDataCount() {
+        final int[] count = {0};
+        blockList.enumerateObjects(new ListVector.EnumeratorHandler<UploadBlock>() {
+            @Override
+            public boolean enumerate(UploadBlock block) {
+                for (UploadData data : block.uploadDataList) {
+                    if (data.getState() == UploadData.State.WaitToUpload && data.data != null) {
+                        count[0]++;
+                    }
+                }
+                return false;
             }
-            block = new UploadBlock(blockOffset, BlockSize, dataSize, blockList.size());
-        }
+        });
+        return count[0];
+    }
 
-        UploadBlock loadBlock = null;
-        try {
-            loadBlock = loadBlockData(block);
-        } catch (IOException e) {
-            readException = e;
-            throw e;
-        }
+    // 加载下一个块
+    // isPrefetch 为 true 时，仅加载未加载数据的块，加载后块中片状态为等待上传；否则块中待上传的片状态为上传中
+    private UploadBlock loadNextUploadBlock(boolean isPrefetch) throws IOException {
+        while (true) {
+            UploadBlock block = null;
+            UploadData data = null;
+            synchronized (this) {
+                // 从 blockList 中读取需要上传的 block
+                block = isPrefetch ? nextUnloadedBlockFormBlockList() : nextUploadBlockFormBlockList();
+
+                // 内存的 blockList 中没有可上传的数据，则从资源中读并创建 block
+                if (block == null) {
+                    if (isEOF) {
+                        if (!isPrefetch && waitForPrefetchingBlock()) {
+                            continue;
+                        }
+                        return null;
+                    } else if (readException != null) {
+                        // 资源读取异常，不可读取
+                        throw readException;
+                    }
+
+                    // 从资源中读取新的 block 进行上传，先加入 blockList 占位，其他块可继续向后读取
+                    long blockOffset = 0;
+                    if (blockList.size() > 0) {
+                        UploadBlock lastBlock = blockList.get(blockList.size() - 1);
+                        blockOffset = lastBlock.offset + lastBlock.size;
+                    }
+                    block = new UploadBlock(blockOffset, BlockSize, dataSize, blockList.size());
+                    blockList.add(block);
+                }
 
-        if (loadBlock == null) {
-            // 没有加在到 block, 也即数据源读取结束
-            isEOF = true;
-            // 有多余的 block 则移除，移除中包含 block
-            if (blockList.size() > block.index) {
-                blockList = blockList.subList(0, block.index);
+                // 标记为上传中，避免被其他任务选取；已加载过片数据的直接上传
+                data = block.nextUploadDataWithoutCheckData();
+                boolean isLoaded = data.getState() == UploadData.State.WaitToUpload && data.data != null;
+                data.updateState(UploadData.State.Uploading);
+                if (isLoaded) {
+                    return block;
+                }
+                // 占用整个块，加载结束前其他任务不会选取块中的片
+                block.isLoading = true;
+                if (isPrefetch) {
+                    prefetchingBlockList.add(block);
+                }
             }
-        } else {
-            // 加在到 block
-            if (loadBlock.index == blockList.size()) {
-                // 新块：block index 等于 blockList size 则为新创建 block，需要加入 blockList
-                blockList.add(loadBlock);
-            } else if (loadBlock != block) {
-                // 更换块：重新加在了 block， 更换信息
-                blockList.set(loadBlock.index, loadBlock);
+
+            UploadBlock loadBlock = null;
+            try {
+                loadBlock = loadBlockData(block, data);
+            } catch (IOException e) {
+                synchronized (this) {
+                    // 预读异常不影响上传，上传时会重新读取
+                    if (!isPrefetch) {
+                        readException = e;
+                    }
+                    block.isLoading = false;
+                    data.updateState(UploadData.State.NeedToCheck);
+                    finishPrefetchingBlock(block);
+                }
+                throw e;
             }
 
-            // 数据源读取结束，块读取大小小于预期，读取结束
-            if (loadBlock.size < BlockSize) {
-                isEOF = true;
-                // 有多余的 block 则移除，移除中不包含 block
-                if (blockList.size() > block.index + 1) {
-                    blockList = blockList.subList(0, block.index + 1);
+            synchronized (this) {
+                block.isLoading = false;
+                if (isPrefetch) {
+                    finishPrefetchingBlock(block);
+                }
+
+                if (isClosed() || block.index >= blockList.size() || blockList.get(block.index) != block) {
+                    // 加载过程中 block 已被移除（其他块读取到了资源结尾）或已关闭，数据无效
+                    if (loadBlock != null) {
+                        for (UploadData loadData : loadBlock.uploadDataList) {
+                            loadData.releaseData();
+                        }
+                    }
+                    if (isPrefetch || isClosed()) {
+                        return null;
+                    }
+                    if (isEOF && !waitForPrefetchingBlock()) {
+                        return null;
+                    }
+                    continue;
+                }
+
+                if (loadBlock == null) {
+                    // 没有加在到 block, 也即数据源读取结束
+                    isEOF = true;
+                    // 有多余的 block 则移除，移除中包含 block
+                    if (blockList.size() > block.index) {
+                        blockList = blockList.subList(0, block.index);
+                    }
+                    if (!isPrefetch && waitForPrefetchingBlock()) {
+                        continue;
+                    }
+                    return null;
+                }
+
+                if (loadBlock != block) {
+                    // 更换块：重新加在了 block， 更换信息
+                    blockList.set(loadBlock.index, loadBlock);
+                }
+
+                // 数据源读取结束，块读取大小小于预期，读取结束
+                if (loadBlock.size < BlockSize) {
+                    isEOF = true;
+                    // 有多余的 block 则移除，移除中不包含 block
+                    if (blockList.size() > block.index + 1) {
+                        blockList = blockList.subList(0, block.index + 1);
+                    }
                 }
+
+                if (isPrefetch) {
+                    return loadBlock;
+                }
+
+                UploadData loadData = loadBlock.nextUploadDataWithoutCheckData();
+                if (loadData == null) {
+                    // 已上传，无需再上传
+                    continue;
+                }
+
+                loadData.updateState(UploadData.State.Uploading);
+                return loadBlock;
             }
         }
+    }
+
+    // 预读结束，唤醒等待预读的任务
+    private void finishPrefetchingBlock(UploadBlock block) {
+        if (prefetchingBlockList.remove(block)) {
+            notifyAll();
+        }
+    }
+
+    // 等待预读中的块加载结束，没有预读中的块时返回 false；需在锁内调用
+    private boolean waitForPrefetchingBlock() throws IOException {
+        if (prefetchingBlockList.isEmpty()) {
+            return false;
+        }
+        try {
+            wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("wait for prefetching block interrupted");
+        }
+        return true;
+    }
 
-        return loadBlock;
+    // 有需要上传但未加载数据的片的块
+    private UploadBlock nextUnloadedBlockFormBlockList() {
+        if (blockList == null || blockList.size() == 0) {
+            return null;
+        }
+        final UploadBlock[] blocks = {null};
+        blockList.enumerateObjects(new ListVector.EnumeratorHandler<UploadBlock>() {
+            @Override
+            public boolean enumerate(UploadBlock block) {
+                if (block.isLoading) {
+                    return false;
+                }
+                UploadData data = block.nextUploadDataWithoutCheckData();
+                if (data != null && data.data == null) {
+                    blocks[0] = block;
+                    return true;
+                } else {
+                    return false;
+                }
+            }
+        });
+        return blocks[0];
     }
 
     private UploadBlock nextUploadBlockFormBlockList() {
@@ -298,6 +563,9 @@ class UploadInfoV1 extends UploadInfo {
         blockList.enumerateObjects(new ListVector.EnumeratorHandler<UploadBlock>() {
             @Override
             public boolean enumerate(UploadBlock block) {
+                if (block.isLoading) {
+                    return false;
+                }
                 UploadData data = block.nextUploadDataWithoutCheckData();
                 if (data != null) {
                     blocks[0] = block;
@@ -312,68 +580,103 @@ class UploadInfoV1 extends UploadInfo {
 
 
     // 加载块中的数据
-    // 1. 数据块已加载，直接返回
+    // 1. 数据块已加载，由 nextUploadBlock 直接返回，不会加载
     // 2. 数据块未加载，读块数据
     // 2.1 如果未读到数据，则已 EOF，返回 null
     // 2.2 如果读到数据
     // 2.2.1 如果块数据符合预期，则当片未上传，则加载片数据
     // 2.2.2 如果块数据不符合预期，创建新块，加载片信息
-    private UploadBlock loadBlockData(UploadBlock block) throws IOException {
+    // reservedData 为调用方已标记为上传中的片；块中其他片仅在需要上传且未加载数据时加载，不会修改其他任务正在使用的片
+    private UploadBlock loadBlockData(UploadBlock block, UploadData reservedData) throws IOException {
         if (block == null) {
             return null;
         }
 
-        // 已经加载过 block 数据
-        // 没有需要上传的片 或者 有需要上传片但是已加载过片数据
-        UploadData nextUploadData = block.nextUploadDataWithoutCheckData();
-        if (nextUploadData.getState() == UploadData.State.WaitToUpload && nextUploadData.data != null) {
-            return block;
-        }
-
         // 未加载过 block 数据
-        // 根据 block 信息加载 blockBytes
-        byte[] blockBytes = null;
+        // 根据 block 信息按片加载数据，每片数据单独持有（从缓存池借用或为文件映射数据），块数据不再整体加载
+        // 读取时同步计算块的 md5 及片的 crc32
+        UploadDataDigest digest = new UploadDataDigest(true, true);
+        List<ByteBuffer> dataBufferList = new ArrayList<>();
+        List<Long> dataCrcList = new ArrayList<>();
+        int blockSize = 0;
         try {
-            blockBytes = readData(block.size, block.offset);
+            for (UploadData data : block.uploadDataList) {
+                ByteBuffer dataBuffer = readBuffer(data.size, block.offset + data.offset, digest);
+                if (dataBuffer == null) {
+                    break;
+                }
+                dataBufferList.add(dataBuffer);
+                dataCrcList.add(digest.crc32());
+                blockSize += dataBuffer.remaining();
+                if (dataBuffer.remaining() < data.size) {
+                    break;
+                }
+            }
         } catch (IOException e) {
+            recycleBuffers(dataBufferList);
             throw e;
         }
 
         // 没有数据不需要上传
-        if (blockBytes == null || blockBytes.length == 0) {
+        if (blockSize == 0) {
             return null;
         }
 
-        String md5 = MD5.encrypt(blockBytes);
+        String md5 = digest.md5();
         // 判断当前 block 的数据是否和实际数据吻合，不吻合则之前 block 被抛弃，重新创建 block
-        if (blockBytes.length != block.size || block.md5 == null || !block.md5.equals(md5)) {
-            block = new UploadBlock(block.offset, blockBytes.length, dataSize, block.index);
+        if (blockSize != block.size || block.md5 == null || !block.md5.equals(md5)) {
+            block = new UploadBlock(block.offset, blockSize, dataSize, block.index);
             block.md5 = md5;
         }
 
-        for (UploadData data : block.uploadDataList) {
-            if (data.getState() != UploadData.State.Complete) {
+        if (block.uploadDataList.size() != dataBufferList.size()) {
+            recycleBuffers(dataBufferList);
+            throw new IOException("block data load error");
+        }
+
+        for (int i = 0; i < block.uploadDataList.size(); i++) {
+            UploadData data = block.uploadDataList.get(i);
+            ByteBuffer dataBuffer = dataBufferList.get(i);
+            Long dataCrc = dataCrcList.get(i);
+            if (isDataLoadable(data, reservedData)) {
                 // 还未上传的
-                try {
-                    data.data = BytesUtils.subBytes(blockBytes, (int) data.offset, data.size);
-                    data.updateState(UploadData.State.WaitToUpload);
-                } catch (IOException e) {
-                    throw e;
-                }
+                data.setData(dataBuffer, getBufferPool());
+                data.crc32 = dataCrc;
+                data.updateState(UploadData.State.WaitToUpload);
             } else {
-                // 已经上传的
-                data.updateState(UploadData.State.Complete);
+                // 已经上传的或其他任务正在使用的
+                recycleBuffer(dataBuffer);
             }
         }
 
         return block;
     }
 
-    UploadData nextUploadData(UploadBlock block) throws IOException {
+    // 片是否可加载数据：调用方占用的片，或需要上传且未加载数据的片（新创建的块中的片均可加载）
+    private static boolean isDataLoadable(UploadData data, UploadData reservedData) {
+        if (data == reservedData) {
+            return true;
+        }
+        return data.needToUpload() && data.data == null;
+    }
+
+    private void recycleBuffers(List<ByteBuffer> bufferList) {
+        for (ByteBuffer buffer : bufferList) {
+            recycleBuffer(buffer);
+        }
+    }
+
+    // 获取块中已标记为上传中的片
+    UploadData nextUploadData(UploadBlock block) {
         if (block == null) {
             return null;
         }
-        return block.nextUploadDataWithoutCheckData();
+        for (UploadData data : block.uploadDataList) {
+            if (data.getState() == UploadData.State.Uploading) {
+                return data;
+            }
+        }
+        return null;
     }
 
     ArrayList<String> allBlocksContexts() {
@@ -1,7 +1,6 @@
 package com.qiniu.android.storage;
 
 import com.qiniu.android.utils.ListVector;
-import com.qiniu.android.utils.MD5;
 import com.qiniu.android.utils.StringUtils;
 import com.qiniu.android.utils.Utils;
 
@@ -9,7 +8,10 @@ import org.json.JSONArray;
 import org.json.JSONObject;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -20,6 +22,7 @@ class UploadInfoV2 extends UploadInfo {
     private static final String TypeKey = "infoType";
     private static final String TypeValue = "UploadInfoV2";
     private static final int maxDataSize = 1024 * 1024 * 1024;
+    private static final int maxDataCount = 10000;
     private static final int DataListCapacityIncrement = 2;
 
     private final int dataSize;
@@ -27,6 +30,11 @@ class UploadInfoV2 extends UploadInfo {
 
     private boolean isEOF = false;
     private IOException readException = null;
+    private final Object loadLock = new Object();
+    // 正在预读的片
+    private final List<UploadData> prefetchingDataList = new ArrayList<>();
+    // 自适应片大小，为空时片大小固定为 dataSize
+    private UploadDataSizeController dataSizeController;
 
     String uploadId;
     // 单位：秒
@@ -84,69 +92,218 @@ class UploadInfoV2 extends UploadInfo {
         return info;
     }
 
+    void setDataSizeController(UploadDataSizeController dataSizeController) {
+        this.dataSizeController = dataSizeController;
+    }
+
+    UploadDataSizeController getDataSizeController() {
+        return dataSizeController;
+    }
+
     int getPartIndexOfData(UploadData data) {
         return data.index + 1; // 片的 index， 从 1 开始
     }
 
+    /**
+     * 获取下一个需要上传的片，返回的片已加载数据并标记为上传中（Uploading）
+     * 片的选取在锁内进行，片数据的读取及 md5 计算在锁外进行，数据源支持并发读取时多个片可并发加载
+     *
+     * @return 片，没有需要上传的片时返回 null
+     * @throws IOException 读取异常
+     */
     UploadData nextUploadData() throws IOException {
+        UploadData data = null;
+        if (couldReadConcurrently()) {
+            data = loadNextUploadData(false);
+        } else {
+            // 不支持并发读取的资源需按顺序读取
+            synchronized (loadLock) {
+                data = loadNextUploadData(false);
+            }
+        }
 
-        UploadData data = nextUploadDataFormDataList();
+        prefetchIfNeeded(dataSizeController != null ? dataSizeController.dataSize() : dataSize);
+        return data;
+    }
 
-        // 内存的 blockList 中没有可上传的数据，则从资源中读并创建 block
-        if (data == null) {
-            if (isEOF) {
-                return null;
-            } else if (readException != null) {
-                // 资源读取异常，不可读取
-                throw readException;
+    @Override
+    void prefetchNextData() throws IOException {
+        if (couldReadConcurrently()) {
+            loadNextUploadData(true);
+        } else {
+            synchronized (loadLock) {
+                loadNextUploadData(true);
             }
+        }
+    }
+
+    @Override
+    synchronized boolean isPrefetchFinished() {
+        return isEOF || readException != null;
+    }
 
-            // 从资源中读取新的 data 进行上传
-            long dataOffset = 0;
-            if (dataList.size() > 0) {
-                UploadData lastData = dataList.get(dataList.size() - 1);
-                dataOffset = lastData.offset + lastData.size;
+    @Override
+    int loadedDataCount() {
+        final int[] count = {0};
+        dataList.enumerateObjects(new ListVector.EnumeratorHandler<UploadData>() {
+            @Override
+            public boolean enumerate(UploadData data) {
+                if (data.getState() == UploadData.State.WaitToUpload && data.data != null) {
+                    count[0]++;
+                }
+                return false;
             }
-            int dataIndex = dataList.size();
-            data = new UploadData(dataOffset, dataSize, dataIndex);
-        }
+        });
+        return count[0];
+    }
 
-        UploadData loadData = null;
-        try {
-            loadData = loadData(data);
-        } catch (IOException e) {
-            readException = e;
-            throw e;
-        }
-
-        if (loadData == null) {
-            // 没有加在到 data, 也即数据源读取结束
-            isEOF = true;
-            // 有多余的 data 则移除，移除中包含 data
-            if (dataList.size() > data.index) {
-                dataList = dataList.subList(0, data.index);
+    // 加载下一个片
+    // isPrefetch 为 true 时，仅加载未加载数据的片，加载后片状态为等待上传；否则片状态为上传中
+    private UploadData loadNextUploadData(boolean isPrefetch) throws IOException {
+        while (true) {
+            UploadData data = null;
+            synchronized (this) {
+                data = isPrefetch ? nextUnloadedDataFormDataList() : nextUploadDataFormDataList();
+
+                // 内存的 dataList 中没有可上传的数据，则从资源中读并创建 data
+                if (data == null) {
+                    if (isEOF) {
+                        if (!isPrefetch && waitForPrefetchingData()) {
+                            continue;
+                        }
+                        return null;
+                    } else if (readException != null) {
+                        // 资源读取异常，不可读取
+                        throw readException;
+                    }
+
+                    // 从资源中读取新的 data 进行上传，先加入 dataList 占位，其他片可继续向后读取
+                    long dataOffset = 0;
+                    if (dataList.size() > 0) {
+                        UploadData lastData = dataList.get(dataList.size() - 1);
+                        dataOffset = lastData.offset + lastData.size;
+                    }
+                    data = new UploadData(dataOffset, nextDataSize(dataOffset), dataList.size());
+                    dataList.add(data);
+                }
+
+                // 标记为上传中，避免被其他任务选取
+                data.updateState(UploadData.State.Uploading);
+                if (isPrefetch) {
+                    prefetchingDataList.add(data);
+                }
             }
-        } else {
-            // 加在到 data
-            if (loadData.index == dataList.size()) {
-                // 新块：data index 等于 dataList size 则为新创建 block，需要加入 dataList
-                dataList.add(loadData);
-            } else if (loadData != data) {
-                // 更换块：重新加在了 data， 更换信息
-                dataList.set(loadData.index, loadData);
+
+            UploadData loadData = null;
+            try {
+                loadData = loadData(data);
+            } catch (IOException e) {
+                synchronized (this) {
+                    // 预读异常不影响上传，上传时会重新读取
+                    if (!isPrefetch) {
+                        readException = e;
+                    }
+                    data.updateState(UploadData.State.NeedToCheck);
+                    finishPrefetchingData(data);
+                }
+                throw e;
             }
 
-            // 数据源读取结束，块读取大小小于预期，读取结束
-            if (loadData.size < data.size) {
-                isEOF = true;
-                // 有多余的 block 则移除，移除中不包含 block
-                if (dataList.size() > data.index + 1) {
-                    dataList = dataList.subList(0, data.index + 1);
+            synchronized (this) {
+                if (isPrefetch) {
+                    finishPrefetchingData(data);
+                }
+
+                if (isClosed() || data.index >= dataList.size() || dataList.get(data.index) != data) {
+                    // 加载过程中 data 已被移除（其他片读取到了资源结尾）或已关闭，数据无效
+                    if (loadData != null) {
+                        loadData.releaseData();
+                    }
+                    if (isPrefetch || isClosed()) {
+                        return null;
+                    }
+                    if (isEOF && !waitForPrefetchingData()) {
+                        return null;
+                    }
+                    continue;
+                }
+
+                if (loadData == null) {
+                    // 没有加在到 data, 也即数据源读取结束
+                    isEOF = true;
+                    // 有多余的 data 则移除，移除中包含 data
+                    if (dataList.size() > data.index) {
+                        dataList = dataList.subList(0, data.index);
+                    }
+                    if (!isPrefetch && waitForPrefetchingData()) {
+                        continue;
+                    }
+                    return null;
+                }
+
+                if (loadData != data) {
+                    // 更换块：重新加在了 data， 更换信息
+                    dataList.set(loadData.index, loadData);
                 }
+
+                // 数据源读取结束，块读取大小小于预期，读取结束
+                if (loadData.size < data.size) {
+                    isEOF = true;
+                    // 有多余的 block 则移除，移除中不包含 block
+                    if (dataList.size() > data.index + 1) {
+                        dataList = dataList.subList(0, data.index + 1);
+                    }
+                }
+
+                if (loadData.isUploaded()) {
+                    // 已上传，无需再上传
+                    if (isPrefetch) {
+                        return null;
+                    }
+                    continue;
+                }
+
+                loadData.updateState(isPrefetch ? UploadData.State.WaitToUpload : UploadData.State.Uploading);
+                return loadData;
             }
         }
+    }
 
-        return loadData;
+    // 新片的大小，自适应片大小时由 dataSizeController 决定，且需保证片的数量不超过服务端限制；需在锁内调用
+    private int nextDataSize(long dataOffset) {
+        if (dataSizeController == null) {
+            return dataSize;
+        }
+
+        int size = dataSizeController.dataSize();
+        long sourceSize = getSourceSize();
+        int restDataCount = maxDataCount - dataList.size();
+        if (sourceSize > dataOffset && restDataCount > 0) {
+            long minSize = (sourceSize - dataOffset + restDataCount - 1) / restDataCount;
+            size = (int) Math.max(size, Math.min(minSize, maxDataSize));
+        }
+        return size;
+    }
+
+    // 预读结束，唤醒等待预读的任务
+    private void finishPrefetchingData(UploadData data) {
+        if (prefetchingDataList.remove(data)) {
+            notifyAll();
+        }
+    }
+
+    // 等待预读中的片加载结束，没有预读中的片时返回 false；需在锁内调用
+    private boolean waitForPrefetchingData() throws IOException {
+        if (prefetchingDataList.isEmpty()) {
+            return false;
+        }
+        try {
+            wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("wait for prefetching data interrupted");
+        }
+        return true;
     }
 
     private UploadData nextUploadDataFormDataList() {
@@ -168,6 +325,26 @@ class UploadInfoV2 extends UploadInfo {
         return dataRet[0];
     }
 
+    // 需要上传但未加载数据的片
+    private UploadData nextUnloadedDataFormDataList() {
+        if (dataList == null || dataList.size() == 0) {
+            return null;
+        }
+        final UploadData[] dataRet = {null};
+        dataList.enumerateObjects(new ListVector.EnumeratorHandler<UploadData>() {
+            @Override
+            public boolean enumerate(UploadData data) {
+                if (data.needToUpload() && data.data == null) {
+                    dataRet[0] = data;
+                    return true;
+                } else {
+                    return false;
+                }
+            }
+        });
+        return dataRet[0];
+    }
+
     // 加载片中的数据
     // 1. 数据片已加载，直接返回
     // 2. 数据块未加载，读块数据
@@ -185,31 +362,30 @@ class UploadInfoV2 extends UploadInfo {
             return data;
         }
 
-        // 根据 data 信息加载 dataBytes
-        byte[] dataBytes = null;
-        try {
-            dataBytes = readData(data.size, data.offset);
-        } catch (IOException e) {
-            readException = e;
-            throw e;
-        }
+        // 读取时同步计算 md5，校验信息总是来自本次实际读取的数据
+        UploadDataDigest digest = new UploadDataDigest(true, false);
+
+        // 根据 data 信息加载 dataBuffer
+        ByteBuffer dataBuffer = readBuffer(data.size, data.offset, digest);
 
         // 没有数据不需要上传
-        if (dataBytes == null || dataBytes.length == 0) {
+        if (dataBuffer == null || dataBuffer.remaining() == 0) {
             return null;
         }
 
-        String md5 = MD5.encrypt(dataBytes);
+        String md5 = digest.md5();
+
         // 判断当前 block 的数据是否和实际数据吻合，不吻合则之前 block 被抛弃，重新创建 block
-        if (dataBytes.length != data.size || data.md5 == null || !data.md5.equals(md5)) {
-            data = new UploadData(data.offset, dataBytes.length, data.index);
+        if (dataBuffer.remaining() != data.size || data.md5 == null || !data.md5.equals(md5)) {
+            data = new UploadData(data.offset, dataBuffer.remaining(), data.index);
             data.md5 = md5;
         }
 
+        // 片状态由调用方在锁内更新，避免加载结束前被其他任务选取
         if (StringUtils.isNullOrEmpty(data.etag)) {
-            data.data = dataBytes;
-            data.updateState(UploadData.State.WaitToUpload);
+            data.setData(dataBuffer, getBufferPool());
         } else {
+            recycleBuffer(dataBuffer);
             data.updateState(UploadData.State.Complete);
         }
 
@@ -270,6 +446,23 @@ class UploadInfoV2 extends UploadInfo {
         });
     }
 
+    @Override
+    void close() {
+        dataList.enumerateObjects(new ListVector.EnumeratorHandler<UploadData>() {
+            @Override
+            public boolean enumerate(UploadData data) {
+                data.releaseData();
+                return false;
+            }
+        });
+        super.close();
+    }
+
+    @Override
+    int nextDataSize() {
+        return dataSizeController != null ? dataSizeController.dataSize() : dataSize;
+    }
+
     @Override
     long uploadSize() {
         if (dataList == null || dataList.size() == 0) {
@@ -335,6 +528,71 @@ class UploadInfoV2 extends UploadInfo {
         });
     }
 
+    @Override
+    JSONObject getDeltaJsonObject(UploadData data) {
+        if (data == null) {
+            return null;
+        }
+        try {
+            return data.toJsonObject();
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    @Override
+    void applyDeltaJsonObjects(List<JSONObject> deltaJsonList) {
+        if (deltaJsonList == null || deltaJsonList.size() == 0) {
+            return;
+        }
+
+        List<UploadData> deltaDataList = new ArrayList<>();
+        for (JSONObject deltaJson : deltaJsonList) {
+            try {
+                UploadData data = UploadData.dataFromJson(deltaJson);
+                if (data != null && data.index >= 0 && data.index < maxDataCount && data.size > 0) {
+                    deltaDataList.add(data);
+                }
+            } catch (Exception ignored) {
+            }
+        }
+
+        // 按 index 顺序更新（排序稳定，同一片以最后一条记录为准），中间缺失的片按间隔均分占位，占位的片需重新上传
+        Collections.sort(deltaDataList, new Comparator<UploadData>() {
+            @Override
+            public int compare(UploadData o1, UploadData o2) {
+                return o1.index - o2.index;
+            }
+        });
+
+        synchronized (this) {
+            for (UploadData data : deltaDataList) {
+                if (data.index < dataList.size()) {
+                    dataList.set(data.index, data);
+                    continue;
+                }
+
+                long dataOffset = 0;
+                if (dataList.size() > 0) {
+                    UploadData lastData = dataList.get(dataList.size() - 1);
+                    dataOffset = lastData.offset + lastData.size;
+                }
+                int gapCount = data.index - dataList.size();
+                long gapSize = data.offset - dataOffset;
+                if (gapSize < gapCount || (gapCount == 0 && gapSize != 0)) {
+                    continue;
+                }
+
+                for (int i = 0; i < gapCount; i++) {
+                    long size = gapSize / gapCount + (i == gapCount - 1 ? gapSize % gapCount : 0);
+                    dataList.add(new UploadData(dataOffset, (int) size, dataList.size()));
+                    dataOffset += size;
+                }
+                dataList.add(data);
+            }
+        }
+    }
+
     @Override
     JSONObject toJsonObject() {
         JSONObject jsonObject = super.toJsonObject();
@@ -30,7 +30,8 @@ import java.util.ArrayList;
 public class UploadManager {
 
     private final Configuration config;
-
+    private final UploadBufferPool bufferPool;
+    private final UploadScheduler scheduler;
 
     public UploadManager(Recorder recorder) {
         this(recorder, null);
@@ -52,6 +53,8 @@ public class UploadManager {
      */
     public UploadManager(Configuration config) {
         this.config = config != null ? config : new Configuration.Builder().build();
+        this.bufferPool = this.config.bufferPoolMaxSize > 0 ? new UploadBufferPool(this.config.bufferPoolMaxSize) : null;
+        this.scheduler = new UploadScheduler(this.config.totalConcurrentTaskCount);
         DnsPrefetchTransaction.addDnsLocalLoadTransaction();
         DnsPrefetchTransaction.setDnsCheckWhetherCachedValidTransactionAction();
         ServerConfigMonitor.startMonitor();
@@ -115,7 +118,7 @@ public class UploadManager {
         if (checkAndNotifyError(key, token, file, completionHandler)) {
             return;
         }
-        putSource(new UploadSourceFile(file), key, token, options, completionHandler);
+        putSource(new UploadSourceFile(file, config.useZeroCopyFileRead), key, token, options, completionHandler);
     }
 
     /**
@@ -239,7 +242,7 @@ public class UploadManager {
      * @return 响应信息 ResponseInfo#response 响应体，序列化后 json 格式
      */
     public ResponseInfo syncPut(File file, String key, String token, UploadOptions options) {
-        return syncPut(new UploadSourceFile(file), key, token, options);
+        return syncPut(new UploadSourceFile(file, config.useZeroCopyFileRead), key, token, options);
     }
 
     /**
@@ -293,6 +296,24 @@ public class UploadManager {
         return syncPut(stream, key, token, options);
     }
 
+    /**
+     * 获取分片数据缓存池，可通过缓存池查看命中、未命中等统计信息
+     *
+     * @return 缓存池，{@link Configuration#bufferPoolMaxSize} 小于等于 0 时为 null
+     */
+    public UploadBufferPool getBufferPool() {
+        return bufferPool;
+    }
+
+    /**
+     * 获取上传请求调度器，可通过调度器查看排队请求数、排队时长等统计信息
+     *
+     * @return 调度器
+     */
+    public UploadScheduler getScheduler() {
+        return scheduler;
+    }
+
     /**
      * 同步上传文件。使用 form 表单方式上传，建议只在文件较小情况下使用此方式，如 file.size() < 1024 * 1024。
      * 注：切勿在主线程调用
@@ -357,6 +378,7 @@ public class UploadManager {
             }
         };
         final FormUpload up = new FormUpload(data, key, fileName, t, option, config, completionHandlerP);
+        up.setScheduler(scheduler);
         AsyncRun.runInBack(up);
     }
 
@@ -398,6 +420,8 @@ public class UploadManager {
             return;
         }
 
+        source.setBufferPool(bufferPool);
+
         String recorderKey = key;
         if (config.recorder != null && config.keyGen != null) {
             recorderKey = config.keyGen.gen(key, source.getId());
@@ -411,9 +435,11 @@ public class UploadManager {
         };
         if (config.useConcurrentResumeUpload) {
             final ConcurrentResumeUpload up = new ConcurrentResumeUpload(source, key, t, option, config, config.recorder, recorderKey, completionHandlerP);
+            up.setScheduler(scheduler);
             AsyncRun.runInBack(up);
         } else {
             final PartsUpload up = new PartsUpload(source, key, t, option, config, config.recorder, recorderKey, completionHandlerP);
+            up.setScheduler(scheduler);
             AsyncRun.runInBack(up);
         }
     }
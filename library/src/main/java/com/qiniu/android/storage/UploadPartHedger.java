@@ -0,0 +1,93 @@
+package com.qiniu.android.storage;
+
+import com.qiniu.android.utils.AsyncRun;
+
+import java.util.Arrays;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * 分片对冲：记录近期成功的片上传耗时（折算为每 MB 耗时），某一片的上传耗时超过其 {@link #Percentile} 分位对应的耗时时，
+ * 向其他 server 重复发送该片；样本不足 {@link #MinSampleCount} 个时不对冲，每个上传最多对冲 maxHedgeCount 次
+ */
+class UploadPartHedger {
+
+    // 保留的最近样本数
+    private static final int MaxSampleCount = 32;
+    // 开始对冲需要的最少样本数
+    private static final int MinSampleCount = 5;
+    private static final double Percentile = 0.95;
+    // 对冲等待时间下限，单位：毫秒
+    private static final long MinHedgeDelay = 1000;
+    private static final double BytesPerMB = 1024 * 1024;
+
+    private final int maxHedgeCount;
+    // 每 MB 耗时，单位：毫秒，环形记录
+    private final double[] samples = new double[MaxSampleCount];
+    private int sampleCount = 0;
+    private int nextSampleIndex = 0;
+    private int hedgeCount = 0;
+
+    UploadPartHedger(int maxHedgeCount) {
+        this.maxHedgeCount = Math.max(maxHedgeCount, 0);
+    }
+
+    /**
+     * 记录成功上传的片
+     *
+     * @param size     片大小，单位：字节
+     * @param duration 上传耗时，单位：毫秒
+     */
+    synchronized void addSample(long size, long duration) {
+        if (size <= 0 || duration <= 0) {
+            return;
+        }
+
+        samples[nextSampleIndex] = duration * BytesPerMB / size;
+        nextSampleIndex = (nextSampleIndex + 1) % MaxSampleCount;
+        sampleCount = Math.min(sampleCount + 1, MaxSampleCount);
+    }
+
+    /**
+     * @param size 片大小，单位：字节
+     * @return 开始上传后多久发送对冲请求，单位：毫秒，不需要对冲时为 -1
+     */
+    synchronized long getHedgeDelay(long size) {
+        if (size <= 0 || hedgeCount >= maxHedgeCount || sampleCount < MinSampleCount) {
+            return -1;
+        }
+
+        double[] sortedSamples = Arrays.copyOf(samples, sampleCount);
+        Arrays.sort(sortedSamples);
+        int index = (int) Math.ceil(Percentile * sampleCount) - 1;
+        index = Math.min(Math.max(index, 0), sampleCount - 1);
+        long delay = (long) (sortedSamples[index] * size / BytesPerMB);
+        return Math.max(delay, MinHedgeDelay);
+    }
+
+    /**
+     * 占用一次对冲次数
+     *
+     * @return 是否还可对冲
+     */
+    synchronized boolean tryHedge() {
+        if (hedgeCount >= maxHedgeCount) {
+            return false;
+        }
+        hedgeCount++;
+        return true;
+    }
+
+    synchronized int getHedgeCount() {
+        return hedgeCount;
+    }
+
+    /**
+     * 延迟执行
+     *
+     * @param delay 单位：毫秒
+     * @return 用于取消未到期的对冲
+     */
+    static ScheduledFuture<?> schedule(long delay, Runnable runnable) {
+        return AsyncRun.runInBackground(delay, runnable);
+    }
+}
@@ -0,0 +1,117 @@
+package com.qiniu.android.storage;
+
+import com.qiniu.android.utils.AsyncRun;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * 上传进度异步纪录：合并片状态变化的纪录请求，在后台线程中批量写入，写入不占用请求回调线程；
+ * 距首个待纪录片超过 flushInterval 或待纪录片数达到 flushDataCount 时写入，上传结束时需调用 {@link #flush()} 强制写入
+ */
+class UploadRecordFlusher {
+
+    private final long flushInterval;
+    private final int flushDataCount;
+    private final Writer writer;
+
+    // 保证取出待纪录片与写入的原子性，写入按纪录顺序进行
+    private final Object writeLock = new Object();
+    private List<UploadData> pendingDataList = new ArrayList<>();
+    private ScheduledFuture<?> flushFuture;
+    private boolean isImmediateFlush = false;
+
+    private final Runnable flushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    UploadRecordFlusher(long flushInterval, int flushDataCount, Writer writer) {
+        this.flushInterval = Math.max(flushInterval, 0);
+        this.flushDataCount = Math.max(flushDataCount, 1);
+        this.writer = writer;
+    }
+
+    /**
+     * 添加待纪录的片，同一片多次添加仅纪录一次
+     *
+     * @param data 状态发生变化的片
+     */
+    synchronized void add(UploadData data) {
+        if (data == null) {
+            return;
+        }
+
+        if (!pendingDataList.contains(data)) {
+            pendingDataList.add(data);
+        }
+
+        if (pendingDataList.size() >= flushDataCount) {
+            if (flushFuture == null || !isImmediateFlush) {
+                if (flushFuture != null) {
+                    flushFuture.cancel(false);
+                }
+                flushFuture = AsyncRun.runInBackground(0, flushRunnable);
+                isImmediateFlush = true;
+            }
+        } else if (flushFuture == null) {
+            flushFuture = AsyncRun.runInBackground(flushInterval, flushRunnable);
+            isImmediateFlush = false;
+        }
+    }
+
+    /**
+     * 立即在当前线程写入所有待纪录的片
+     */
+    void flush() {
+        synchronized (writeLock) {
+            List<UploadData> dataList = null;
+            synchronized (this) {
+                cancelFlushFuture();
+                dataList = pendingDataList;
+                pendingDataList = new ArrayList<>();
+            }
+
+            if (dataList.size() > 0) {
+                writer.write(dataList);
+            }
+        }
+    }
+
+    /**
+     * 丢弃所有待纪录的片，正在进行的写入结束后返回
+     */
+    void clear() {
+        synchronized (writeLock) {
+            synchronized (this) {
+                cancelFlushFuture();
+                pendingDataList.clear();
+            }
+        }
+    }
+
+    synchronized int pendingDataCount() {
+        return pendingDataList.size();
+    }
+
+    private void cancelFlushFuture() {
+        if (flushFuture != null) {
+            flushFuture.cancel(false);
+            flushFuture = null;
+        }
+        isImmediateFlush = false;
+    }
+
+    interface Writer {
+
+        /**
+         * 写入纪录
+         *
+         * @param dataList 状态发生变化的片，按纪录顺序排列
+         */
+        void write(List<UploadData> dataList);
+    }
+}
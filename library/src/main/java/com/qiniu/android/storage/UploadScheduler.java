@@ -0,0 +1,281 @@
+package com.qiniu.android.storage;
+
+import com.qiniu.android.utils.AsyncRun;
+import com.qiniu.android.utils.Utils;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * 上传请求调度，由 {@link UploadManager} 持有，同一个 UploadManager 的所有上传共享。
+ * 1. 同时执行的上传请求（Form 上传请求及分片上传请求）总数不超过 maxRunningCount，超出时请求排队等待；
+ * 2. Form 上传请求优先于分片上传请求执行，小文件不必等待大文件的分片；
+ * 3. 分片上传请求按上传任务分队列，队列间采用差额轮询（DRR）：每轮每个任务获得 {@link #Quantum} 字节的额度，
+ * 额度足够时执行其分片请求，使各任务按上传的数据量公平分享，大文件不会使其他文件的上传饿死。
+ * 等待的请求不占用线程，有请求结束时将下一个请求交由后台线程池执行，不占用结束请求的回调线程；
+ * 上传任务结束（完成或取消）时需调用 {@link #finish(Object)}，任务排队的请求不再等待额度。
+ */
+public final class UploadScheduler {
+
+    // 每轮每个上传任务的额度，单位：字节
+    private static final long Quantum = 4 * 1024 * 1024;
+
+    /**
+     * 同时执行的上传请求总数上限，小于等于 0 时不限制
+     */
+    public final int maxRunningCount;
+
+    private final Executor executor;
+
+    private int runningCount = 0;
+    private final LinkedList<Task> priorityTasks = new LinkedList<>();
+    private final LinkedList<Flow> activeFlows = new LinkedList<>();
+    private final Map<Object, Flow> flows = new IdentityHashMap<>();
+    private int queueDepth = 0;
+
+    private long taskCount = 0;
+    private long waitCount = 0;
+    private long totalWaitTime = 0;
+    private long maxWaitTime = 0;
+    private int maxQueueDepth = 0;
+
+    UploadScheduler(int maxRunningCount) {
+        this(maxRunningCount, AsyncRun.getBackgroundExecutor());
+    }
+
+    /**
+     * @param maxRunningCount 同时执行的上传请求总数上限
+     * @param executor        排队的请求出队后在此执行
+     */
+    UploadScheduler(int maxRunningCount, Executor executor) {
+        this.maxRunningCount = maxRunningCount;
+        this.executor = executor;
+    }
+
+    /**
+     * 执行上传请求，请求结束后需调用 {@link #release()}
+     *
+     * @param owner      请求所属的上传任务，同一任务的请求按顺序执行
+     * @param cost       请求上传的数据量，单位：字节
+     * @param isPriority 是否优先执行（Form 上传）
+     * @param runnable   请求
+     */
+    void execute(Object owner, long cost, boolean isPriority, Runnable runnable) {
+        if (runnable == null) {
+            return;
+        }
+
+        synchronized (this) {
+            taskCount++;
+            if (maxRunningCount > 0 && runningCount >= maxRunningCount) {
+                Task task = new Task(owner, runnable, Math.max(cost, 1));
+                if (isPriority) {
+                    priorityTasks.add(task);
+                } else {
+                    Flow flow = flows.get(owner);
+                    if (flow == null) {
+                        flow = new Flow(owner);
+                        flows.put(owner, flow);
+                        activeFlows.add(flow);
+                    }
+                    flow.tasks.add(task);
+                }
+                queueDepth++;
+                maxQueueDepth = Math.max(maxQueueDepth, queueDepth);
+                return;
+            }
+            runningCount++;
+        }
+        runnable.run();
+    }
+
+    /**
+     * 请求结束，将等待的请求交由后台线程池执行
+     */
+    void release() {
+        List<Task> tasks = new ArrayList<>();
+        synchronized (this) {
+            if (runningCount > 0) {
+                runningCount--;
+            }
+
+            while (maxRunningCount <= 0 || runningCount < maxRunningCount) {
+                Task task = nextTask();
+                if (task == null) {
+                    break;
+                }
+                startTask(task);
+                tasks.add(task);
+            }
+        }
+        dispatch(tasks);
+    }
+
+    /**
+     * 上传任务结束（完成或取消），其排队的请求立即出队执行，不再等待额度及其他任务；
+     * 请求执行时会发现上传已结束并立即返回，之后仍需调用 {@link #release()}
+     *
+     * @param owner 结束的上传任务
+     */
+    void finish(Object owner) {
+        List<Task> tasks = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Task> iterator = priorityTasks.iterator();
+            while (iterator.hasNext()) {
+                Task task = iterator.next();
+                if (task.owner == owner) {
+                    iterator.remove();
+                    tasks.add(task);
+                }
+            }
+
+            Flow flow = flows.remove(owner);
+            if (flow != null) {
+                activeFlows.remove(flow);
+                tasks.addAll(flow.tasks);
+                flow.tasks.clear();
+            }
+
+            for (Task task : tasks) {
+                startTask(task);
+            }
+        }
+        dispatch(tasks);
+    }
+
+    // 出队的请求计入执行中的请求；需在锁内调用
+    private void startTask(Task task) {
+        runningCount++;
+        queueDepth--;
+
+        long waitTime = Utils.currentTimestamp() - task.enqueueTime;
+        waitCount++;
+        totalWaitTime += waitTime;
+        maxWaitTime = Math.max(maxWaitTime, waitTime);
+    }
+
+    private void dispatch(List<Task> tasks) {
+        for (Task task : tasks) {
+            executor.execute(task.runnable);
+        }
+    }
+
+    // 优先请求先执行，之后按 DRR 选取分片请求；需在锁内调用
+    private Task nextTask() {
+        if (!priorityTasks.isEmpty()) {
+            return priorityTasks.removeFirst();
+        }
+
+        while (!activeFlows.isEmpty()) {
+            Flow flow = activeFlows.getFirst();
+            if (!flow.hasQuantum) {
+                flow.hasQuantum = true;
+                flow.deficit += Quantum;
+            }
+
+            Task task = flow.tasks.getFirst();
+            if (task.cost <= flow.deficit) {
+                flow.deficit -= task.cost;
+                flow.tasks.removeFirst();
+                if (flow.tasks.isEmpty()) {
+                    // 队列为空的任务不保留额度
+                    activeFlows.removeFirst();
+                    flows.remove(flow.owner);
+                }
+                return task;
+            }
+
+            // 额度不足，轮到下一个任务
+            activeFlows.removeFirst();
+            activeFlows.add(flow);
+            flow.hasQuantum = false;
+        }
+        return null;
+    }
+
+    /**
+     * @return 正在执行的请求数
+     */
+    public synchronized int runningCount() {
+        return runningCount;
+    }
+
+    /**
+     * @return 正在排队的请求数
+     */
+    public synchronized int queueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * @return 排队请求数的最大值
+     */
+    public synchronized int maxQueueDepth() {
+        return maxQueueDepth;
+    }
+
+    /**
+     * @return 执行的请求总数，包括排队的请求
+     */
+    public synchronized long taskCount() {
+        return taskCount;
+    }
+
+    /**
+     * @return 排队后执行的请求数
+     */
+    public synchronized long waitCount() {
+        return waitCount;
+    }
+
+    /**
+     * @return 请求排队的总时长，单位：毫秒
+     */
+    public synchronized long totalWaitTime() {
+        return totalWaitTime;
+    }
+
+    /**
+     * @return 请求排队的最大时长，单位：毫秒
+     */
+    public synchronized long maxWaitTime() {
+        return maxWaitTime;
+    }
+
+    /**
+     * @return 排队请求的平均排队时长，单位：毫秒
+     */
+    public synchronized long averageWaitTime() {
+        return waitCount == 0 ? 0 : totalWaitTime / waitCount;
+    }
+
+    private static class Task {
+        private final Object owner;
+        private final Runnable runnable;
+        private final long cost;
+        private final long enqueueTime;
+
+        private Task(Object owner, Runnable runnable, long cost) {
+            this.owner = owner;
+            this.runnable = runnable;
+            this.cost = cost;
+            this.enqueueTime = Utils.currentTimestamp();
+        }
+    }
+
+    private static class Flow {
+        private final Object owner;
+        private final LinkedList<Task> tasks = new LinkedList<>();
+        private long deficit = 0;
+        private boolean hasQuantum = false;
+
+        private Flow(Object owner) {
+            this.owner = owner;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.qiniu.android.storage;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 abstract class UploadSource {
     /**
@@ -8,6 +9,11 @@ abstract class UploadSource {
      */
     static final long UnknownSourceSize = -1;
 
+    // 计算校验信息时分段读取的大小
+    private static final int DigestSegmentSize = 64 * 1024;
+
+    private UploadBufferPool bufferPool;
+
     /**
      * 获取资源唯一标识
      * 作为断点续传时判断是否为同一资源的依据之一；
@@ -49,12 +55,23 @@ abstract class UploadSource {
      */
     abstract long getSize();
 
+    /**
+     * 是否支持并发读取，也即按位置读取数据
+     * 支持时 readData 不依赖资源当前的读取位置，多个分片可以并发读取；不支持时（如：流）分片数据需按顺序串行读取
+     *
+     * @return 是否支持并发读取
+     */
+    boolean couldReadConcurrently() {
+        return false;
+    }
+
     /**
      * 读取数据
      * 1. 返回 byte[] 可能为空，但不会为 null；
      * 2. 当 byte[] 大小和 dataSize 不同时，则源数据已经读取结束
      * 3. 读取异常时抛出 IOException
-     * 4. 仅支持串行调用，且 dataOffset 依次递增
+     * 4. {@link #couldReadConcurrently()} 为 true 时，可多线程并发调用，dataOffset 无顺序要求；
+     * 否则仅支持串行调用，且 dataOffset 依次递增
      *
      * @param dataSize 数据大小
      * @param dataOffset 数据偏移量
@@ -63,6 +80,112 @@ abstract class UploadSource {
      */
     abstract byte[] readData(int dataSize, long dataOffset) throws IOException;
 
+    /**
+     * 读取数据到 buffer 中
+     * 1. 数据从 buffer 的 position 处开始写入，最多读取 buffer.remaining() 大小，读取后 position 后移
+     * 2. 当读取大小和 buffer.remaining() 不同时，则源数据已经读取结束
+     * 3. 默认由 {@link #readData(int, long)} 读取后拷贝，子类可直接读取到 buffer 中以避免临时数据的分配
+     *
+     * @param buffer     数据缓存
+     * @param dataOffset 数据偏移量
+     * @return 读取大小
+     * @throws IOException 异常
+     */
+    int readData(ByteBuffer buffer, long dataOffset) throws IOException {
+        byte[] data = readData(buffer.remaining(), dataOffset);
+        if (data == null) {
+            return 0;
+        }
+        buffer.put(data);
+        return data.length;
+    }
+
+    /**
+     * 读取数据，数据以 ByteBuffer 的形式返回
+     * 1. 返回的 ByteBuffer position 为 0，remaining 为数据大小，调用方不可修改其内容；没有数据时返回 null
+     * 2. 当 remaining 和 dataSize 不同时，则源数据已经读取结束
+     * 3. 设置了缓存池时，数据读取到从缓存池借用的缓存中，使用结束后需归还至缓存池
+     * 4. 支持零拷贝的资源（如：文件）会直接返回映射的数据，不会拷贝到 Java 堆中，也不会使用缓存池
+     * 5. digest 不为空时，数据分段读取，每段读取后即更新校验信息，不必在读取后再次遍历数据
+     *
+     * @param dataSize   数据大小
+     * @param dataOffset 数据偏移量
+     * @param digest     校验信息，可为 null
+     * @return 数据
+     * @throws IOException 异常
+     */
+    ByteBuffer readBuffer(int dataSize, long dataOffset, UploadDataDigest digest) throws IOException {
+        ByteBuffer buffer = bufferPool != null ? bufferPool.borrow(dataSize) : ByteBuffer.allocate(dataSize);
+        try {
+            readData(buffer, dataOffset, digest);
+        } catch (IOException e) {
+            recycleBuffer(buffer);
+            throw e;
+        }
+
+        buffer.flip();
+        if (!buffer.hasRemaining()) {
+            recycleBuffer(buffer);
+            return null;
+        }
+        return buffer;
+    }
+
+    private int readData(ByteBuffer buffer, long dataOffset, UploadDataDigest digest) throws IOException {
+        if (digest == null) {
+            return readData(buffer, dataOffset);
+        }
+
+        int limit = buffer.limit();
+        int readSize = 0;
+        try {
+            while (buffer.position() < limit) {
+                int segmentStart = buffer.position();
+                int segmentEnd = Math.min(limit, segmentStart + DigestSegmentSize);
+                buffer.limit(segmentEnd);
+                readData(buffer, dataOffset + readSize);
+
+                ByteBuffer segment = buffer.duplicate();
+                segment.flip();
+                segment.position(segmentStart);
+                digest.update(segment);
+                readSize += segment.remaining();
+
+                // 读取大小小于预期，数据读取结束
+                if (buffer.position() < segmentEnd) {
+                    break;
+                }
+            }
+        } finally {
+            buffer.limit(limit);
+        }
+        return readSize;
+    }
+
+    private void recycleBuffer(ByteBuffer buffer) {
+        if (bufferPool != null) {
+            bufferPool.recycle(buffer);
+        }
+    }
+
+    /**
+     * 设置分片数据缓存池
+     *
+     * @param bufferPool 缓存池，为 null 时不使用缓存池
+     */
+    void setBufferPool(UploadBufferPool bufferPool) {
+        this.bufferPool = bufferPool;
+    }
+
+    /**
+     * 获取分片数据缓存池
+     *
+     * @return 缓存池
+     */
+    UploadBufferPool getBufferPool() {
+        return bufferPool;
+    }
+
     /**
      * 关闭流
      */
@@ -3,15 +3,29 @@ package com.qiniu.android.storage;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
 class UploadSourceFile extends UploadSource {
 
     private Exception readException = null;
     private final File file;
+    private final boolean zeroCopy;
     private final RandomAccessFile randomAccessFile;
+    private final FileChannel fileChannel;
 
     UploadSourceFile(File file) {
+        this(file, false);
+    }
+
+    /**
+     * @param file     文件
+     * @param zeroCopy 是否使用零拷贝方式读取，开启后 {@link #readBuffer(int, long, UploadDataDigest)} 返回内存映射的数据，
+     *                 数据不会拷贝到 Java 堆中
+     */
+    UploadSourceFile(File file, boolean zeroCopy) {
         this.file = file;
+        this.zeroCopy = zeroCopy;
         RandomAccessFile randomAccessFile = null;
         try {
             randomAccessFile = new RandomAccessFile(file, "r");
@@ -19,6 +33,7 @@ class UploadSourceFile extends UploadSource {
             readException = e;
         }
         this.randomAccessFile = randomAccessFile;
+        this.fileChannel = randomAccessFile != null ? randomAccessFile.getChannel() : null;
     }
 
     @Override
@@ -46,39 +61,91 @@ class UploadSourceFile extends UploadSource {
         return file.length();
     }
 
+    @Override
+    boolean couldReadConcurrently() {
+        return fileChannel != null;
+    }
+
     @Override
     public byte[] readData(int dataSize, long dataOffset) throws IOException {
-        if (randomAccessFile == null) {
-            if (readException != null) {
-                throw new IOException(readException);
-            } else {
-                throw new IOException("file is invalid");
-            }
+        ByteBuffer buffer = ByteBuffer.allocate(dataSize);
+        int readSize = readData(buffer, dataOffset);
+        if (readSize < dataSize) {
+            byte[] newBuffer = new byte[readSize];
+            System.arraycopy(buffer.array(), 0, newBuffer, 0, readSize);
+            return newBuffer;
         }
+        return buffer.array();
+    }
+
+    // 按位置读取，不改变文件的读取位置，可多线程并发读取
+    @Override
+    int readData(ByteBuffer buffer, long dataOffset) throws IOException {
+        checkFileValid();
 
         int readSize = 0;
-        byte[] buffer = new byte[dataSize];
         try {
-            randomAccessFile.seek(dataOffset);
-            while (readSize < dataSize) {
-                int ret = randomAccessFile.read(buffer, readSize, (dataSize - readSize));
+            while (buffer.hasRemaining()) {
+                int ret = fileChannel.read(buffer, dataOffset + readSize);
                 if (ret < 0) {
                     break;
                 }
                 readSize += ret;
             }
-
-            if (readSize < dataSize) {
-                byte[] newBuffer = new byte[readSize];
-                System.arraycopy(buffer, 0, newBuffer, 0, readSize);
-                buffer = newBuffer;
-            }
         } catch (IOException e) {
             throw new IOException(e.getMessage());
         }
+        return readSize;
+    }
+
+    @Override
+    UploadBufferPool getBufferPool() {
+        // 零拷贝读取不使用缓存池
+        return zeroCopy ? null : super.getBufferPool();
+    }
+
+    @Override
+    ByteBuffer readBuffer(int dataSize, long dataOffset, UploadDataDigest digest) throws IOException {
+        if (!zeroCopy) {
+            return super.readBuffer(dataSize, dataOffset, digest);
+        }
+
+        checkFileValid();
+
+        long fileSize = fileChannel.size();
+        if (dataOffset >= fileSize) {
+            return null;
+        }
+
+        int readSize = (int) Math.min(dataSize, fileSize - dataOffset);
+        ByteBuffer buffer = null;
+        try {
+            buffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, dataOffset, readSize);
+        } catch (IOException e) {
+            // 部分文件系统不支持 mmap，降级为按位置读取到堆外内存
+            ByteBuffer directBuffer = ByteBuffer.allocateDirect(readSize);
+            readData(directBuffer, dataOffset);
+            directBuffer.flip();
+            buffer = directBuffer.asReadOnlyBuffer();
+        }
+
+        // 映射的数据在计算校验信息时才真正从文件读取
+        if (digest != null) {
+            digest.update(buffer);
+        }
         return buffer;
     }
 
+    private void checkFileValid() throws IOException {
+        if (randomAccessFile == null) {
+            if (readException != null) {
+                throw new IOException(readException);
+            } else {
+                throw new IOException("file is invalid");
+            }
+        }
+    }
+
     @Override
     public void close() {
         if (randomAccessFile != null) {
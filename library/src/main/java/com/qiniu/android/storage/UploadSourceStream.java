@@ -3,6 +3,7 @@ package com.qiniu.android.storage;
 import com.qiniu.android.utils.StringUtils;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 
 class UploadSourceStream extends UploadSource {
 
@@ -72,19 +73,39 @@ class UploadSourceStream extends UploadSource {
 
     @Override
     public byte[] readData(int dataSize, long dataOffset) throws IOException {
+        byte[] buffer = new byte[dataSize];
+        int readSize = readData(buffer, 0, dataSize, dataOffset);
+        if (readSize < dataSize) {
+            byte[] newBuffer = new byte[readSize];
+            System.arraycopy(buffer, 0, newBuffer, 0, readSize);
+            buffer = newBuffer;
+        }
+        return buffer;
+    }
+
+    @Override
+    int readData(ByteBuffer buffer, long dataOffset) throws IOException {
+        if (!buffer.hasArray()) {
+            return super.readData(buffer, dataOffset);
+        }
+
+        int readSize = readData(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining(), dataOffset);
+        buffer.position(buffer.position() + readSize);
+        return readSize;
+    }
+
+    private int readData(byte[] buffer, int bufferOffset, int dataSize, long dataOffset) throws IOException {
         if (inputStream == null) {
             throw new IOException("inputStream is empty");
         }
 
-        byte[] buffer = null;
+        int readSize = 0;
         synchronized (this) {
             boolean isEOF = false;
             while (true) {
                 if (readOffset == dataOffset) {
-                    int readSize = 0;
-                    buffer = new byte[dataSize];
                     while (readSize < dataSize) {
-                        int ret = inputStream.read(buffer, readSize, dataSize - readSize);
+                        int ret = inputStream.read(buffer, bufferOffset + readSize, dataSize - readSize);
                         if (ret < 0) {
                             isEOF = true;
                             break;
@@ -92,12 +113,6 @@ class UploadSourceStream extends UploadSource {
                         readSize += ret;
                     }
 
-                    if (readSize < dataSize) {
-                        byte[] newBuffer = new byte[readSize];
-                        System.arraycopy(buffer, 0, newBuffer, 0, readSize);
-                        buffer = newBuffer;
-                    }
-
                     readOffset += readSize;
                     if (isEOF) {
                         size = readOffset;
@@ -110,7 +125,7 @@ class UploadSourceStream extends UploadSource {
                 }
             }
         }
-        return buffer;
+        return readSize;
     }
 
     @Override
@@ -14,6 +14,7 @@ import com.qiniu.android.utils.StringUtils;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 
 @TargetApi(Build.VERSION_CODES.KITKAT)
 class UploadSourceUri extends UploadSourceStream {
@@ -68,6 +69,15 @@ class UploadSourceUri extends UploadSourceStream {
         return super.readData(dataSize, dataOffset);
     }
 
+    @Override
+    int readData(ByteBuffer buffer, long dataOffset) throws IOException {
+        if (readException != null) {
+            throw new IOException("Uri read data exception: " + readException, readException);
+        }
+
+        return super.readData(buffer, dataOffset);
+    }
+
     @Override
     public void close() {
         InputStream inputStream = getInputStream();
@@ -0,0 +1,122 @@
+package com.qiniu.android.storage;
+
+import com.qiniu.android.utils.AsyncRun;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * 限制同时执行的任务数
+ * 任务数未达到上限时任务在调用线程中直接执行，否则进入等待队列，有任务结束（{@link #release()}）时按顺序将等待的任务交由线程池执行，
+ * 不占用结束任务的线程；上传结束（完成或取消）时需调用 {@link #finish()}，等待的任务不再等待
+ * 注：等待的任务不会占用线程
+ */
+class UploadTaskLimiter {
+
+    private final Executor executor;
+
+    private int limit;
+    private int runningCount = 0;
+    private final LinkedList<Runnable> waitingTasks = new LinkedList<>();
+
+    UploadTaskLimiter(int limit) {
+        this(limit, AsyncRun.getBackgroundExecutor());
+    }
+
+    /**
+     * @param limit    任务数上限，最小为 1
+     * @param executor 等待的任务出队后在此执行
+     */
+    UploadTaskLimiter(int limit, Executor executor) {
+        this.limit = Math.max(limit, 1);
+        this.executor = executor;
+    }
+
+    synchronized int getLimit() {
+        return limit;
+    }
+
+    synchronized int runningCount() {
+        return runningCount;
+    }
+
+    synchronized int waitingCount() {
+        return waitingTasks.size();
+    }
+
+    /**
+     * 调整任务数上限，上限增大时执行等待的任务
+     *
+     * @param limit 任务数上限，最小为 1
+     */
+    void setLimit(int limit) {
+        synchronized (this) {
+            this.limit = Math.max(limit, 1);
+        }
+        runWaitingTasks();
+    }
+
+    /**
+     * 执行任务，任务结束后需调用 {@link #release()}
+     *
+     * @param task 任务
+     */
+    void acquire(Runnable task) {
+        if (task == null) {
+            return;
+        }
+
+        synchronized (this) {
+            if (runningCount >= limit) {
+                waitingTasks.add(task);
+                return;
+            }
+            runningCount++;
+        }
+        task.run();
+    }
+
+    /**
+     * 任务结束
+     */
+    void release() {
+        synchronized (this) {
+            if (runningCount > 0) {
+                runningCount--;
+            }
+        }
+        runWaitingTasks();
+    }
+
+    /**
+     * 上传结束（完成或取消），等待的任务立即出队执行，任务执行时会发现上传已结束并立即返回，之后仍需调用 {@link #release()}
+     */
+    void finish() {
+        List<Runnable> tasks = null;
+        synchronized (this) {
+            tasks = new ArrayList<>(waitingTasks);
+            waitingTasks.clear();
+            runningCount += tasks.size();
+        }
+        dispatch(tasks);
+    }
+
+    private void runWaitingTasks() {
+        List<Runnable> tasks = new ArrayList<>();
+        synchronized (this) {
+            while (runningCount < limit && !waitingTasks.isEmpty()) {
+                tasks.add(waitingTasks.removeFirst());
+                runningCount++;
+            }
+        }
+        dispatch(tasks);
+    }
+
+    private void dispatch(List<Runnable> tasks) {
+        for (Runnable task : tasks) {
+            executor.execute(task);
+        }
+    }
+}
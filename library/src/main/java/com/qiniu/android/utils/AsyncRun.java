@@ -3,11 +3,12 @@ package com.qiniu.android.utils;
 import android.os.Handler;
 import android.os.Looper;
 
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
@@ -25,6 +26,21 @@ public final class AsyncRun {
             1000L, TimeUnit.MILLISECONDS,
             new LinkedBlockingQueue<Runnable>());
 
+    // SDK 内部后台任务共享（上传请求调度、预读、竞速、DNS 预取等），任务可阻塞，空闲线程 60s 后回收
+    private static final int backgroundThreadPoolSize = 16;
+    private static final ThreadPoolExecutor backgroundExecutor = new ThreadPoolExecutor(backgroundThreadPoolSize,
+            backgroundThreadPoolSize, 60L, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(), new DaemonThreadFactory("qiniu-background"));
+    // 延迟任务计时，到期后将任务交由对应线程池执行，自身不执行任务
+    private static final ScheduledThreadPoolExecutor delayExecutor = new ScheduledThreadPoolExecutor(1,
+            new DaemonThreadFactory("qiniu-delay"));
+
+    static {
+        backgroundExecutor.allowCoreThreadTimeOut(true);
+        delayExecutor.setKeepAliveTime(60L, TimeUnit.SECONDS);
+        delayExecutor.allowCoreThreadTimeOut(true);
+    }
+
     public static void runInMain(Runnable r) {
         if (Looper.getMainLooper() == Looper.myLooper()){
             r.run();
@@ -39,11 +55,10 @@ public final class AsyncRun {
     public static void runInMain(int delay,
                                  final Runnable r){
 
-        delayTimerTask(delay, new TimerTask() {
+        delay(delay, new Runnable() {
             @Override
             public void run() {
                 mainThreadHandler.post(r);
-                this.cancel();
             }
         });
     }
@@ -58,18 +73,62 @@ public final class AsyncRun {
     public static void runInBack(int delay,
                                  final Runnable r) {
 
-        delayTimerTask(delay, new TimerTask() {
+        delay(delay, new Runnable() {
             @Override
             public void run() {
                 executorService.submit(r);
-                this.cancel();
             }
         });
     }
 
-    private static void delayTimerTask(int delay, TimerTask timerTask){
-        Timer timer = new Timer();
-        timer.schedule(timerTask, delay);
+    /**
+     * 在 SDK 内部共享的后台线程池中执行，任务可并发执行
+     */
+    public static void runInBackground(Runnable r) {
+        backgroundExecutor.execute(r);
+    }
+
+    /**
+     * 延迟后在 SDK 内部共享的后台线程池中执行，等待期间不占用线程
+     *
+     * delay: delay in milliseconds before task is to be executed.
+     *
+     * @return 用于取消未到期的任务，任务到期后取消无效
+     */
+    public static ScheduledFuture<?> runInBackground(long delay, final Runnable r) {
+        return delay(delay, new Runnable() {
+            @Override
+            public void run() {
+                backgroundExecutor.execute(r);
+            }
+        });
+    }
+
+    /**
+     * @return SDK 内部共享的后台线程池
+     */
+    public static Executor getBackgroundExecutor() {
+        return backgroundExecutor;
+    }
+
+    private static ScheduledFuture<?> delay(long delay, Runnable r) {
+        return delayExecutor.schedule(r, Math.max(delay, 0), TimeUnit.MILLISECONDS);
+    }
+
+    private static class DaemonThreadFactory implements ThreadFactory {
+
+        private final String name;
+
+        private DaemonThreadFactory(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, name);
+            thread.setDaemon(true);
+            return thread;
+        }
     }
 
 }
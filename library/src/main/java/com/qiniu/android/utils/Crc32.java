@@ -3,6 +3,7 @@ package com.qiniu.android.utils;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.zip.CRC32;
 
 /**
@@ -34,6 +35,29 @@ public final class Crc32 {
         return bytes(data, 0, data.length);
     }
 
+    /**
+     * 计算 ByteBuffer 中 [position, limit) 数据的校验码，不会改变 data 的 position
+     * 非堆内存数据（如：文件映射）会分段读取到缓冲区中计算，不会整体拷贝
+     *
+     * @param data 二进制数据
+     * @return 校验码
+     */
+    public static long bytes(ByteBuffer data) {
+        if (data.hasArray()) {
+            return bytes(data.array(), data.arrayOffset() + data.position(), data.remaining());
+        }
+
+        ByteBuffer source = data.duplicate();
+        byte[] buff = new byte[Math.min(64 * 1024, source.remaining())];
+        CRC32 crc32 = new CRC32();
+        while (source.hasRemaining()) {
+            int len = Math.min(buff.length, source.remaining());
+            source.get(buff, 0, len);
+            crc32.update(buff, 0, len);
+        }
+        return crc32.getValue();
+    }
+
     /**
      * 对文件内容计算crc32校验码
      *
@@ -7,8 +7,19 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 计算文件内容或者二进制数据的etag, etag算法是七牛用来标志数据唯一性的算法。
@@ -89,6 +100,84 @@ public final class Etag {
         return file(f);
     }
 
+    /**
+     * 并发计算文件内容的etag，文件各块（4M）的 sha1 由多个任务并发计算，结果与 {@link #file(File)} 一致
+     * 适用于较大的文件；concurrentTaskCount 小于等于 1 或文件只有一块时按顺序计算
+     *
+     * @param file                文件对象
+     * @param concurrentTaskCount 并发计算的任务数
+     * @return 文件内容的etag
+     * @throws IOException 文件读取异常
+     */
+    public static String file(File file, int concurrentTaskCount) throws IOException {
+        final long len = file.length();
+        final int blockCount = blockCount(len);
+        if (concurrentTaskCount <= 1 || blockCount <= 1) {
+            return file(file);
+        }
+
+        int taskCount = Math.min(concurrentTaskCount, blockCount);
+        final byte[][] blocks = new byte[blockCount][];
+        final AtomicInteger nextBlockIndex = new AtomicInteger(0);
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        final FileChannel channel = randomAccessFile.getChannel();
+        ExecutorService executor = Executors.newFixedThreadPool(taskCount);
+        try {
+            // 每个任务持有自己的缓冲区及 sha1，按块序号依次领取块，各块通过位置读取互不影响
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < taskCount; i++) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+                        MessageDigest sha1 = MessageDigest.getInstance("sha-1");
+                        int index = 0;
+                        while ((index = nextBlockIndex.getAndIncrement()) < blockCount) {
+                            long offset = (long) Configuration.BLOCK_SIZE * index;
+                            int size = (int) Math.min(Configuration.BLOCK_SIZE, len - offset);
+                            blocks[index] = oneBlock(buffer, sha1, channel, offset, size);
+                        }
+                        return null;
+                    }
+                }));
+            }
+
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("etag compute interrupted");
+        } finally {
+            executor.shutdownNow();
+            try {
+                randomAccessFile.close();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+        return resultEncode(blocks);
+    }
+
+    /**
+     * 并发计算文件内容的etag
+     *
+     * @param filePath            文件路径
+     * @param concurrentTaskCount 并发计算的任务数
+     * @return 文件内容的etag
+     * @throws IOException 文件读取异常
+     */
+    public static String file(String filePath, int concurrentTaskCount) throws IOException {
+        File f = new File(filePath);
+        return file(f, concurrentTaskCount);
+    }
+
     /**
      * 计算输入流的etag
      *
@@ -102,7 +191,7 @@ public final class Etag {
             return "Fto5o-5ea0sNMlW_75VgGJCv2AcJ";
         }
         byte[] buffer = new byte[64 * 1024];
-        byte[][] blocks = new byte[(int) ((len + Configuration.BLOCK_SIZE - 1) / Configuration.BLOCK_SIZE)][];
+        byte[][] blocks = new byte[blockCount(len)][];
         for (int i = 0; i < blocks.length; i++) {
             long left = len - (long) Configuration.BLOCK_SIZE * i;
             long read = left > Configuration.BLOCK_SIZE ? Configuration.BLOCK_SIZE : left;
@@ -141,6 +230,38 @@ public final class Etag {
         return sha1.digest();
     }
 
+    /**
+     * 单块计算hash，通过位置读取文件中的块数据
+     *
+     * @param buffer  数据缓冲区
+     * @param sha1    sha1，计算结束后会被重置
+     * @param channel 文件
+     * @param offset  块在文件中的偏移
+     * @param len     块数据长度
+     * @return 计算结果
+     * @throws IOException 读取出错
+     */
+    private static byte[] oneBlock(ByteBuffer buffer, MessageDigest sha1, FileChannel channel,
+                                   long offset, int len) throws IOException {
+        long position = offset;
+        long end = offset + len;
+        while (position < end) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), end - position));
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("file size changed while computing etag");
+            }
+            sha1.update(buffer.array(), 0, read);
+            position += read;
+        }
+        return sha1.digest();
+    }
+
+    private static int blockCount(long len) {
+        return (int) ((len + Configuration.BLOCK_SIZE - 1) / Configuration.BLOCK_SIZE);
+    }
+
     /**
      * 合并结果
      *
@@ -32,15 +32,13 @@ public class ListVector<E> extends Vector<E> {
 
     @Override
     public synchronized ListVector<E> subList(int fromIndex, int toIndex) {
-        ListVector listVector = new ListVector<E>();
-        // c.toArray might (incorrectly) not return Object[] (see 6260652)
-        if (elementData.getClass() != Object[].class) {
-            listVector.elementData = Arrays.copyOf(elementData, elementCount, Object[].class);
-            listVector.elementCount = listVector.elementData.length;
-        } else {
-            listVector.elementData = Arrays.copyOf(elementData, elementCount);
-            listVector.elementCount = elementCount;
+        if (fromIndex < 0 || toIndex > elementCount || fromIndex > toIndex) {
+            throw new IndexOutOfBoundsException("fromIndex:" + fromIndex + " toIndex:" + toIndex + " size:" + elementCount);
         }
+
+        ListVector listVector = new ListVector<E>();
+        listVector.elementData = Arrays.copyOfRange(elementData, fromIndex, toIndex, Object[].class);
+        listVector.elementCount = toIndex - fromIndex;
         return listVector;
     }
 
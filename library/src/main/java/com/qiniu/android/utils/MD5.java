@@ -1,4 +1,5 @@
 package com.qiniu.android.utils;
+import java.nio.ByteBuffer;
 import java.security.MessageDigest;
 import com.qiniu.android.dns.util.Hex;
 
@@ -14,4 +15,21 @@ public class MD5 {
         }
         return null;
     }
+
+    /**
+     * 计算 ByteBuffer 中 [position, limit) 数据的 md5，不会改变 data 的 position
+     *
+     * @param data 数据
+     * @return md5
+     */
+    public static String encrypt(ByteBuffer data) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            digest.update(data.duplicate());
+            return Hex.encodeHexString(digest.digest());
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
 }
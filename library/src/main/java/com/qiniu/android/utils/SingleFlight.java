@@ -79,7 +79,7 @@ public class SingleFlight<T> {
                         currentTasks = new ArrayList<>(finalCall.tasks);
                     }
                     if (finalKey != null) {
-                        synchronized (this) {
+                        synchronized (SingleFlight.this) {
                             callInfo.remove(finalKey);
                         }
                     }